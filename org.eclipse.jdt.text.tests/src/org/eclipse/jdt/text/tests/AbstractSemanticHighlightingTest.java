@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -110,6 +110,10 @@ public class AbstractSemanticHighlightingTest extends TestCase {
 		}
 	}
 
+	protected IDocument getDocument() {
+		return fSourceViewer.getDocument();
+	}
+
 	protected Position createPosition(int line, int column, int length) throws BadLocationException {
 		IDocument document= fSourceViewer.getDocument();
 		return new Position(document.getLineOffset(line) + column, length);
@@ -144,6 +148,19 @@ public class AbstractSemanticHighlightingTest extends TestCase {
 		EditorTestHelper.runEventQueue(100);
 	}
 
+	/**
+	 * Waits until the changes of the document have been reconciled.
+	 *
+	 * @param forced <code>true</code> if all positions should be reconciled
+	 * @since 3.8
+	 */
+	protected void reconcile(boolean forced) {
+		if (forced)
+			EditorTestHelper.forceReconcile(fSourceViewer);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+		EditorTestHelper.runEventQueue(100);
+	}
+
 	private void enableSemanticHighlighting(String preferenceKey) {
 		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
 		store.setValue(getEnabledPreferenceKey(preferenceKey), true);
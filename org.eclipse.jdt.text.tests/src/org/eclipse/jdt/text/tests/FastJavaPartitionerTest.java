@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentPartitioningChangedEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentPartitioningListener;
+import org.eclipse.jface.text.IDocumentPartitioningListenerExtension2;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.rules.FastPartitioner;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitioner;
+
+/**
+ * Tests that the {@link FastJavaPartitioner} computes the same partitions and reports the same
+ * partitioning changes as the {@link FastPartitioner}.
+ *
+ * @since 3.8
+ */
+public class FastJavaPartitionerTest extends TestCase {
+
+	private static final String[] TYPES= new String[] {
+		IJavaPartitions.JAVA_DOC,
+		IJavaPartitions.JAVA_MULTI_LINE_COMMENT,
+		IJavaPartitions.JAVA_SINGLE_LINE_COMMENT,
+		IJavaPartitions.JAVA_STRING,
+		IJavaPartitions.JAVA_CHARACTER,
+		IDocument.DEFAULT_CONTENT_TYPE
+	};
+
+	private static class ChangedRegionListener implements IDocumentPartitioningListener, IDocumentPartitioningListenerExtension2 {
+
+		IRegion fRegion;
+
+		public void documentPartitioningChanged(IDocument document) {
+		}
+
+		public void documentPartitioningChanged(DocumentPartitioningChangedEvent event) {
+			fRegion= event.getChangedRegion(IJavaPartitions.JAVA_PARTITIONING);
+		}
+	}
+
+	private Document fExpected;
+	private Document fActual;
+	private ChangedRegionListener fExpectedListener;
+	private ChangedRegionListener fActualListener;
+
+
+	public FastJavaPartitionerTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(FastJavaPartitionerTest.class);
+	}
+
+	protected void setUp() throws Exception {
+		fExpected= new Document();
+		fExpectedListener= new ChangedRegionListener();
+		setUpPartitioner(fExpected, new FastPartitioner(new FastJavaPartitionScanner(), TYPES), fExpectedListener);
+
+		fActual= new Document();
+		fActualListener= new ChangedRegionListener();
+		setUpPartitioner(fActual, new FastJavaPartitioner(new FastJavaPartitionScanner(), TYPES), fActualListener);
+	}
+
+	private static void setUpPartitioner(Document document, FastPartitioner partitioner, ChangedRegionListener listener) {
+		partitioner.connect(document);
+		document.setDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING, partitioner);
+		document.addDocumentPartitioningListener(listener);
+	}
+
+	protected void tearDown() throws Exception {
+		fExpected.getDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING).disconnect();
+		fActual.getDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING).disconnect();
+	}
+
+	private void set(String content) throws Exception {
+		fExpected.set(content);
+		fActual.set(content);
+		assertSamePartitioning();
+	}
+
+	private void replace(int offset, int length, String text) throws Exception {
+		fExpectedListener.fRegion= null;
+		fActualListener.fRegion= null;
+		fExpected.replace(offset, length, text);
+		fActual.replace(offset, length, text);
+
+		assertEquals(fExpectedListener.fRegion, fActualListener.fRegion);
+		assertSamePartitioning();
+	}
+
+	private void assertSamePartitioning() throws Exception {
+		ITypedRegion[] expected= fExpected.computePartitioning(IJavaPartitions.JAVA_PARTITIONING, 0, fExpected.getLength(), false);
+		ITypedRegion[] actual= fActual.computePartitioning(IJavaPartitions.JAVA_PARTITIONING, 0, fActual.getLength(), false);
+		assertEquals(expected.length, actual.length);
+		for (int i= 0; i < expected.length; i++)
+			assertEquals(expected[i], actual[i]);
+	}
+
+	private static String createContent(int members) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("class A {\n");
+		for (int i= 0; i < members; i++) {
+			buf.append("\t/** Member " + i + " */\n");
+			buf.append("\tString s" + i + "= \"" + i + "\"; // comment\n");
+			buf.append("\tchar c" + i + "= 'c'; /* comment */\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+
+	public void testSmallEdits() throws Exception {
+		set(createContent(10));
+		int offset= fActual.get().indexOf("String s5");
+		replace(offset, 0, "x");
+		replace(offset, 1, "");
+		replace(offset, 0, "/");
+		replace(offset + 1, 0, "/");
+		replace(offset, 2, "");
+	}
+
+	public void testUnclosedComment() throws Exception {
+		set(createContent(200));
+		int offset= fActual.get().indexOf("String s10");
+		replace(offset, 0, "/*");
+		replace(offset + 2, 0, "*/");
+		replace(offset, 4, "");
+
+		replace(offset, 0, "/*");
+		replace(offset, 2, "");
+	}
+
+	public void testUnclosedString() throws Exception {
+		set(createContent(200));
+		int offset= fActual.get().indexOf("String s10");
+		replace(offset, 0, "\"");
+		replace(offset, 1, "");
+
+		offset= fActual.get().indexOf("'c'", offset);
+		replace(offset, 1, "");
+		replace(offset, 0, "'");
+	}
+
+	public void testUnclosedJavadoc() throws Exception {
+		set(createContent(200));
+		int offset= fActual.get().indexOf("char c20");
+		replace(offset, 0, "/**");
+		replace(offset + 2, 1, "");
+		replace(offset, 2, "");
+	}
+
+	public void testEditsAtPartitionBoundaries() throws Exception {
+		set(createContent(100));
+		int offset= fActual.get().indexOf("*/", fActual.get().indexOf("Member 50"));
+		replace(offset, 2, "");
+		replace(offset, 0, "*/");
+		replace(offset + 2, 0, "\n");
+		replace(offset + 2, 1, "");
+
+		offset= fActual.get().indexOf("\"50\"");
+		replace(offset + 4, 0, "\"");
+		replace(offset + 4, 1, "");
+	}
+
+	public void testLargeReplace() throws Exception {
+		set(createContent(300));
+		String content= fActual.get();
+		int start= content.indexOf("Member 100");
+		int end= content.indexOf("Member 200");
+		replace(start, end - start, "/* ");
+		replace(start, 3, createContent(50));
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightings;
+
+/**
+ * Tests that reconciling the semantic highlighting after an edit gives the same positions as
+ * reconciling the whole compilation unit.
+ *
+ * @since 3.8
+ */
+public class IncrementalSemanticHighlightingTest extends AbstractSemanticHighlightingTest {
+
+	private static final Class THIS= IncrementalSemanticHighlightingTest.class;
+
+	public static Test suite() {
+		return new SemanticHighlightingTestSetup(new TestSuite(THIS), "/SHTest/src/SHTest.java");
+	}
+
+	private String fContent;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fContent= getDocument().get();
+		setUpSemanticHighlighting(SemanticHighlightings.FIELD);
+		setUpSemanticHighlighting(SemanticHighlightings.LOCAL_VARIABLE);
+		setUpSemanticHighlighting(SemanticHighlightings.LOCAL_VARIABLE_DECLARATION);
+		setUpSemanticHighlighting(SemanticHighlightings.DEPRECATED_MEMBER);
+	}
+
+	protected void tearDown() throws Exception {
+		getDocument().set(fContent);
+		reconcile(true);
+		super.tearDown();
+	}
+
+	private void replace(String search, String replacement) throws Exception {
+		IDocument document= getDocument();
+		int offset= document.get().indexOf(search);
+		assertTrue(offset != -1);
+		document.replace(offset, search.length(), replacement);
+	}
+
+	private void assertSameAsFullReconcile() throws Exception {
+		reconcile(false);
+		Position[] actual= getSemanticHighlightingPositions();
+		reconcile(true);
+		Position[] expected= getSemanticHighlightingPositions();
+		assertEqualPositions(expected, actual);
+	}
+
+	public void testEditInsideBody() throws Exception {
+		replace("local++;", "local++; int field= local; field++;");
+		assertSameAsFullReconcile();
+
+		replace("int field= local; field++;", "field++;");
+		assertSameAsFullReconcile();
+	}
+
+	public void testEditsInsideSeveralBodies() throws Exception {
+		replace("local++;", "local--;");
+		replace("deprecatedField++;", "int deprecatedField= 0; deprecatedField++;");
+		assertSameAsFullReconcile();
+	}
+
+	public void testRenamedFieldBindsNamesInUnchangedBody() throws Exception {
+		replace("deprecatedField++;", "deprecatedField++; local++;");
+		assertSameAsFullReconcile();
+
+		// 'local' in the unchanged body of 'deprecatedMethod' is bound to the renamed field,
+		// but still to the local variable in 'method'
+		replace("int field;", "int local;");
+		assertSameAsFullReconcile();
+
+		replace("int local;", "int field;");
+		assertSameAsFullReconcile();
+	}
+
+	public void testUnbalancedBrace() throws Exception {
+		replace("local++;", "local++; {");
+		assertSameAsFullReconcile();
+
+		replace("local++; {", "local++;");
+		assertSameAsFullReconcile();
+	}
+
+	public void testEditAtBodyBoundary() throws Exception {
+		replace("static void staticMethod() {}", "static void staticMethod() {field++;}");
+		assertSameAsFullReconcile();
+
+		replace("{field++;}", "{int field= 1;}");
+		assertSameAsFullReconcile();
+	}
+}
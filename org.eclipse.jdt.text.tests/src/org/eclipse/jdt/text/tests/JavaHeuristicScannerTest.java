@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1104,4 +1104,42 @@ public class JavaHeuristicScannerTest extends TestCase {
 		indent= fScanner.computeIndentation(offset).toString();
 		Assert.assertEquals("\t\t\t", indent);
 	}
+
+	public void testSnapshotModeScansLikeDocument() throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("class A {\n");
+		for (int i= 0; i < 500; i++) {
+			buf.append("\tvoid m" + i + "() { foo(\"{(\", '}', /* ) */ 1); } // {\n");
+			buf.append("\t/** } */ int f" + i + "= new int[] { " + i + " }[0];\n");
+		}
+		buf.append("}\n");
+		fDocument.set(buf.toString());
+
+		JavaHeuristicScanner snapshot= new JavaHeuristicScanner(fDocument);
+		snapshot.setSnapshotMode(true);
+		JavaHeuristicScanner plain= new JavaHeuristicScanner(fDocument);
+		int length= fDocument.getLength();
+		for (int offset= 1; offset < length; offset+= 97) {
+			Assert.assertEquals(plain.isDefaultPartition(offset), snapshot.isDefaultPartition(offset));
+			Assert.assertEquals(plain.previousToken(offset, JavaHeuristicScanner.UNBOUND), snapshot.previousToken(offset, JavaHeuristicScanner.UNBOUND));
+			Assert.assertEquals(plain.getPosition(), snapshot.getPosition());
+			Assert.assertEquals(plain.nextToken(offset, JavaHeuristicScanner.UNBOUND), snapshot.nextToken(offset, JavaHeuristicScanner.UNBOUND));
+			Assert.assertEquals(plain.getPosition(), snapshot.getPosition());
+			Assert.assertEquals(plain.findOpeningPeer(offset, '{', '}'), snapshot.findOpeningPeer(offset, '{', '}'));
+			Assert.assertEquals(plain.findClosingPeer(offset, '{', '}'), snapshot.findClosingPeer(offset, '{', '}'));
+		}
+	}
+
+	public void testSnapshotModeAfterModification() throws Exception {
+		fDocument.set("class A {\n\tint a;\n\t/* } */\n\tvoid foo() {\n\t\tfoo();\n");
+		JavaHeuristicScanner scanner= new JavaHeuristicScanner(fDocument);
+		scanner.setSnapshotMode(true);
+		int offset= fDocument.get().indexOf("foo();");
+		Assert.assertEquals(fDocument.get().indexOf("{\n\t\tfoo"), scanner.findOpeningPeer(offset, '{', '}'));
+
+		fDocument.replace(0, 0, "/* } */\n");
+		offset= fDocument.get().indexOf("foo();");
+		Assert.assertEquals(fDocument.get().indexOf("{\n\t\tfoo"), scanner.findOpeningPeer(offset, '{', '}'));
+		Assert.assertFalse(scanner.isDefaultPartition(3));
+	}
 }
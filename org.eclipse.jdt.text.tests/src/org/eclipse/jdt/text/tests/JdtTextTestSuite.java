@@ -37,6 +37,7 @@ public class JdtTextTestSuite {
 		suite.addTest(JavaColoringTest.suite());
 		suite.addTest(SmartSemicolonAutoEditStrategyTest.suite());
 		suite.addTest(JavaPartitionerTest.suite());
+		suite.addTest(FastJavaPartitionerTest.suite());
 		suite.addTest(PropertiesFilePartitionerTest.suite());
 		suite.addTest(PropertiesFileAutoEditStrategyTest.suite());
 //		suite.addTest(PartitionTokenScannerTest.suite());
@@ -54,6 +55,7 @@ public class JdtTextTestSuite {
 		suite.addTest(SpellingTestSuite.suite());
 		suite.addTest(SemanticHighlightingTest.suite());
 		suite.addTest(AutoboxingSemanticHighlightingTest.suite());
+		suite.addTest(IncrementalSemanticHighlightingTest.suite());
 		suite.addTest(NewForLoopJavaContextTest.suite());
 		suite.addTest(JavaDoubleClickSelectorTest.suite());
 		suite.addTest(BreakContinueTargetFinderTest.suite());
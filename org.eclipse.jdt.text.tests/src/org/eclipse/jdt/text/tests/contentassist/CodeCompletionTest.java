@@ -1919,6 +1919,94 @@ public class CodeCompletionTest extends AbstractCompletionTest {
 		}
 	}
 
+	public void testCachedProposals() throws Exception {
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+
+		IPackageFragment pack1= sourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("\n");
+		buf.append("public class B {\n");
+		buf.append("    int fooBar;\n");
+		buf.append("    int foobarBaz;\n");
+		buf.append("    int other;\n");
+		buf.append("    public void bar() {\n");
+		buf.append("        foo//here\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		String contents= buf.toString();
+
+		ICompilationUnit cu= pack1.createCompilationUnit("B.java", contents, false, null);
+
+		IEditorPart part= JavaUI.openInEditor(cu);
+		try {
+			int offset= contents.indexOf("//here");
+			ISourceViewer viewer= ((JavaEditor) part).getViewer();
+			IDocument doc= JavaUI.getDocumentProvider().getDocument(part.getEditorInput());
+			JavaCompletionProposalComputer computer= new JavaNoTypeCompletionProposalComputer();
+
+			List proposals= computeInSession(computer, viewer, offset, part);
+			IJavaCompletionProposal fooBar= findProposal(proposals, "fooBar");
+			IJavaCompletionProposal foobarBaz= findProposal(proposals, "foobarBaz");
+			assertNotNull("no proposal for fooBar", fooBar);
+			assertNotNull("no proposal for foobarBaz", foobarBaz);
+			int difference= fooBar.getRelevance() - foobarBaz.getRelevance();
+
+			// extending the prefix and invoking content assist again in a new session filters the previous proposals
+			doc.replace(offset, 0, "B");
+			offset++;
+			List cached= computeInSession(computer, viewer, offset, part);
+			assertSame(fooBar, findProposal(cached, "fooBar"));
+			assertSame(foobarBaz, findProposal(cached, "foobarBaz"));
+			assertNull(findProposal(cached, "other"));
+			for (int i= 0; i < cached.size(); i++)
+				assertTrue(proposals.contains(cached.get(i)));
+			// only fooBar still matches the case of the prefix
+			assertEquals(difference + 10, fooBar.getRelevance() - foobarBaz.getRelevance());
+
+			doc.replace(offset, 0, "ar");
+			offset+= 2;
+			cached= computeInSession(computer, viewer, offset, part);
+			assertSame(fooBar, findProposal(cached, "fooBar"));
+			assertSame(foobarBaz, findProposal(cached, "foobarBaz"));
+			// fooBar matches the prefix exactly
+			assertEquals(difference + 14, fooBar.getRelevance() - foobarBaz.getRelevance());
+
+			fooBar.apply(doc);
+			assertEquals(contents.replaceFirst("foo//here", "fooBar//here"), doc.get());
+			doc.set(contents);
+
+			// any other edit computes new proposals
+			offset= contents.indexOf("//here");
+			doc.replace(offset - 3, 0, " ");
+			offset++;
+			List computed= computeInSession(computer, viewer, offset, part);
+			IJavaCompletionProposal newFooBar= findProposal(computed, "fooBar");
+			assertNotNull("no proposal for fooBar", newFooBar);
+			assertNotSame(fooBar, newFooBar);
+		} finally {
+			part.getSite().getPage().closeAllEditors(false);
+		}
+	}
+
+	private static List computeInSession(JavaCompletionProposalComputer computer, ISourceViewer viewer, int offset, IEditorPart part) {
+		computer.sessionStarted();
+		try {
+			return computer.computeCompletionProposals(new JavaContentAssistInvocationContext(viewer, offset, part), null);
+		} finally {
+			computer.sessionEnded();
+		}
+	}
+
+	private static IJavaCompletionProposal findProposal(List proposals, String displayPrefix) {
+		for (int i= 0; i < proposals.size(); i++) {
+			IJavaCompletionProposal proposal= (IJavaCompletionProposal) proposals.get(i);
+			if (proposal.getDisplayString().startsWith(displayPrefix))
+				return proposal;
+		}
+		return null;
+	}
+
 	public void testConstructorCompletion_Bug336451() throws Exception {
 		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
 
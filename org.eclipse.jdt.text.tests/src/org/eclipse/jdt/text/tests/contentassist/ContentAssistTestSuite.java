@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -36,6 +36,8 @@ public class ContentAssistTestSuite {
 		suite.addTest(TypeCompletionTest17.suite());
 		suite.addTest(SpecialMethodsCompletionTest.suite());
 		suite.addTest(CodeCompletionTest.suite());
+		suite.addTest(LatencyHistogramTest.suite());
+		suite.addTest(HippieWordIndexTest.suite());
 		//$JUnit-END$
 
 		return suite;
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.contentassist;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jface.text.Document;
+
+import org.eclipse.jdt.internal.ui.text.java.HippieWordIndex;
+
+/**
+ * Tests for {@link HippieWordIndex}.
+ *
+ * @since 3.8
+ */
+public class HippieWordIndexTest extends TestCase {
+
+	public static Test suite() {
+		return new TestSuite(HippieWordIndexTest.class);
+	}
+
+	private static List getCompletions(Document document, String prefix, String exclude) {
+		List result= new ArrayList();
+		HippieWordIndex.getIndex(document).collectCompletions(prefix, exclude, result);
+		return result;
+	}
+
+	private static void assertSameAsNewIndex(Document document) {
+		HippieWordIndex index= HippieWordIndex.getIndex(document);
+		HippieWordIndex fresh= HippieWordIndex.getIndex(new Document(document.get()));
+		assertEquals(fresh.size(), index.size());
+		List expected= new ArrayList();
+		fresh.collectCompletions("", null, expected);
+		List actual= new ArrayList();
+		index.collectCompletions("", null, actual);
+		assertEquals(expected, actual);
+		for (int i= 0; i < expected.size(); i++) {
+			String word= (String) expected.get(i);
+			assertEquals(word, fresh.getCount(word), index.getCount(word));
+		}
+	}
+
+	public void testCompletions() throws Exception {
+		Document document= new Document("fooBar foo_baz fo fooBar f\u00fc\u00fcr foobar; x.fooBar()");
+		List completions= getCompletions(document, "foo", null);
+		assertEquals(3, completions.size());
+		assertEquals("fooBar", completions.get(0));
+		assertEquals("foo_baz", completions.get(1));
+		assertEquals("foobar", completions.get(2));
+
+		assertEquals(3, HippieWordIndex.getIndex(document).getCount("fooBar"));
+		assertEquals("f\u00fc\u00fcr", getCompletions(document, "f\u00fc", null).get(0));
+		assertTrue(getCompletions(document, "x", null).isEmpty());
+	}
+
+	public void testExcludedWord() throws Exception {
+		Document document= new Document("foobar fooBar fooBar");
+		assertEquals(1, getCompletions(document, "foo", "foobar").size());
+		assertEquals(2, getCompletions(document, "foo", "fooBar").size());
+	}
+
+	public void testEdits() throws Exception {
+		Document document= new Document("class A {\n\tint fooBar;\n\tvoid foo() { fooBar++; }\n}\n");
+		HippieWordIndex.getIndex(document);
+
+		document.replace(document.get().indexOf("fooBar"), 0, "x");
+		assertSameAsNewIndex(document);
+
+		document.replace(document.get().indexOf("foo()"), 3, "bar baz");
+		assertSameAsNewIndex(document);
+
+		// join and split words
+		int offset= document.get().indexOf(" baz");
+		document.replace(offset, 1, "");
+		assertSameAsNewIndex(document);
+		document.replace(offset, 0, " ");
+		assertSameAsNewIndex(document);
+
+		document.replace(0, document.getLength(), "interface B { }");
+		assertSameAsNewIndex(document);
+		assertEquals("interface", getCompletions(document, "int", null).get(0));
+
+		document.set("");
+		assertEquals(0, HippieWordIndex.getIndex(document).size());
+	}
+}
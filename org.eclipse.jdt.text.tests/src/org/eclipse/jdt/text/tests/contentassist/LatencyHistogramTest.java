@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.contentassist;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.internal.ui.text.java.LatencyHistogram;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ *
+ * @since 3.8
+ */
+public class LatencyHistogramTest extends TestCase {
+
+	public static Test suite() {
+		return new TestSuite(LatencyHistogramTest.class);
+	}
+
+	public void testBuckets() throws Exception {
+		assertEquals(0, LatencyHistogram.getBucket(0));
+		assertEquals(1, LatencyHistogram.getBucket(1));
+		assertEquals(2, LatencyHistogram.getBucket(2));
+		assertEquals(2, LatencyHistogram.getBucket(3));
+		assertEquals(3, LatencyHistogram.getBucket(4));
+		assertEquals(10, LatencyHistogram.getBucket(1000));
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+
+		for (int i= 0; i < LatencyHistogram.BUCKET_COUNT; i++)
+			assertEquals(i, LatencyHistogram.getBucket(LatencyHistogram.getLowerBound(i)));
+	}
+
+	public void testCounts() throws Exception {
+		LatencyHistogram histogram= new LatencyHistogram();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getPercentile(0.5));
+
+		for (int i= 0; i < 9; i++)
+			histogram.add(5);
+		histogram.add(3000);
+
+		assertEquals(10, histogram.getTotalCount());
+		assertEquals(9, histogram.getCount(LatencyHistogram.getBucket(5)));
+		assertEquals(1, histogram.getCount(LatencyHistogram.getBucket(3000)));
+		assertEquals(3000, histogram.getMaximum());
+		assertEquals(8, histogram.getPercentile(0.5));
+		assertEquals(8, histogram.getPercentile(0.9));
+		assertEquals(3000, histogram.getPercentile(1));
+
+		histogram.clear();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMaximum());
+	}
+}
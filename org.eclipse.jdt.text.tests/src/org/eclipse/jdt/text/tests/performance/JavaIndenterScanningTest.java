@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.rules.FastPartitioner;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+import org.eclipse.jdt.internal.ui.text.JavaHeuristicScanner;
+import org.eclipse.jdt.internal.ui.text.JavaIndenter;
+
+
+/**
+ * Measures {@link JavaIndenter#findReferencePosition(int)} and
+ * {@link JavaIndenter#computeIndentation(int)} at the end of documents that force the
+ * {@link JavaHeuristicScanner} to scan far back through many comments and strings, with and
+ * without the snapshot mode of the scanner.
+ *
+ * @since 3.8
+ */
+public class JavaIndenterScanningTest extends TextPerformanceTestCase {
+
+	private static final Class THIS= JavaIndenterScanningTest.class;
+
+	private static final int WARM_UP_RUNS= 10;
+
+	private static final int MEASURED_RUNS= 10;
+
+	private static final int OPERATIONS_PER_RUN= 20;
+
+	private Document fDocument;
+
+	private FastPartitioner fPartitioner;
+
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+
+		fDocument= new Document();
+		String[] types= new String[] {
+			IJavaPartitions.JAVA_DOC,
+			IJavaPartitions.JAVA_MULTI_LINE_COMMENT,
+			IJavaPartitions.JAVA_SINGLE_LINE_COMMENT,
+			IJavaPartitions.JAVA_STRING,
+			IJavaPartitions.JAVA_CHARACTER,
+			IDocument.DEFAULT_CONTENT_TYPE
+		};
+		fPartitioner= new FastPartitioner(new FastJavaPartitionScanner(), types);
+		fPartitioner.connect(fDocument);
+		fDocument.setDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING, fPartitioner);
+	}
+
+	protected void tearDown() throws Exception {
+		fDocument.setDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING, null);
+		fPartitioner.disconnect();
+		super.tearDown();
+	}
+
+	/**
+	 * A long array initializer of strings and comments containing braces and parentheses.
+	 *
+	 * @throws Exception if measuring fails
+	 */
+	public void testStringsAndComments() throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("class A {\n\tString[] values= {\n");
+		for (int i= 0; i < 5000; i++) {
+			buf.append("\t\t\"{(\" + \"" + i + ")}\", // } ) ;\n");
+			buf.append("\t\t/* { ( */ \"[\" /* ] ) } */,\n");
+		}
+		buf.append("\t\t\"end\"");
+		measure(buf.toString());
+	}
+
+	/**
+	 * A long method with a statement per line, each followed by a Javadoc-like comment.
+	 *
+	 * @throws Exception if measuring fails
+	 */
+	public void testLongMethod() throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("class A {\n\tvoid foo() {\n");
+		for (int i= 0; i < 5000; i++) {
+			buf.append("\t\tif (i == ").append(i).append(") foo(\"}\", '{');\n");
+			buf.append("\t\t/** { @link Object#equals(Object) } */\n");
+		}
+		buf.append("\t\tfoo(1,\n");
+		measure(buf.toString());
+	}
+
+	private void measure(String content) throws Exception {
+		fDocument.set(content);
+		int offset= fDocument.getLength();
+
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), offset, true);
+		measure(createPerformanceMeter("JavaIndenter: " + getName() + " (snapshot)"), getMeasuredRuns(), offset, true);
+		measure(createPerformanceMeter("JavaIndenter: " + getName() + " (document)"), getMeasuredRuns(), offset, false);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int runs, int offset, boolean snapshotMode) {
+		for (int i= 0; i < runs; i++) {
+			performanceMeter.start();
+			for (int j= 0; j < OPERATIONS_PER_RUN; j++) {
+				JavaHeuristicScanner scanner= new JavaHeuristicScanner(fDocument);
+				JavaIndenter indenter= new JavaIndenter(fDocument, scanner);
+				scanner.setSnapshotMode(snapshotMode);
+				indenter.findReferencePosition(offset);
+				assertNotNull(indenter.computeIndentation(offset));
+			}
+			performanceMeter.stop();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.rules.FastPartitioner;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitioner;
+
+
+/**
+ * Measures the re-partitioning of a generated 50000 line document when typing an unclosed
+ * comment, Javadoc or string near its top and removing it again, with the
+ * {@link FastJavaPartitioner} and, for comparison, with the {@link FastPartitioner}.
+ *
+ * @since 3.8
+ */
+public class LargeFilePartitioningTest extends TextPerformanceTestCase {
+
+	private static final Class THIS= LargeFilePartitioningTest.class;
+
+	private static final String[] TYPES= new String[] {
+		IJavaPartitions.JAVA_DOC,
+		IJavaPartitions.JAVA_MULTI_LINE_COMMENT,
+		IJavaPartitions.JAVA_SINGLE_LINE_COMMENT,
+		IJavaPartitions.JAVA_STRING,
+		IJavaPartitions.JAVA_CHARACTER,
+		IDocument.DEFAULT_CONTENT_TYPE
+	};
+
+	private static final int LINES= 50000;
+
+	private static final int WARM_UP_RUNS= 2;
+
+	private static final int MEASURED_RUNS= 5;
+
+	private static String fgContent;
+
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+		if (fgContent == null)
+			fgContent= createContent();
+	}
+
+	public void testTypeComment() throws Exception {
+		measure("/*");
+	}
+
+	public void testTypeJavadoc() throws Exception {
+		measure("/**");
+	}
+
+	public void testTypeString() throws Exception {
+		measure("\"");
+	}
+
+	private void measure(String text) throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), text, true);
+		measure(createPerformanceMeter("Java partitioner: type '" + text + "' (" + LINES + " lines)"), getMeasuredRuns(), text, true);
+		measure(createPerformanceMeter("Fast partitioner: type '" + text + "' (" + LINES + " lines)"), getMeasuredRuns(), text, false);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int runs, String text, boolean javaPartitioner) throws BadLocationException {
+		Document document= new Document(fgContent);
+		FastPartitioner partitioner= javaPartitioner ? new FastJavaPartitioner(new FastJavaPartitionScanner(), TYPES) : new FastPartitioner(new FastJavaPartitionScanner(), TYPES);
+		partitioner.connect(document);
+		document.setDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING, partitioner);
+		try {
+			int offset= fgContent.indexOf("\tint field");
+			for (int i= 0; i < runs; i++) {
+				performanceMeter.start();
+				// type the characters one by one, and remove them one by one
+				for (int j= 0; j < text.length(); j++)
+					document.replace(offset + j, 0, text.substring(j, j + 1));
+				for (int j= text.length() - 1; j >= 0; j--)
+					document.replace(offset + j, 1, "");
+				performanceMeter.stop();
+			}
+		} finally {
+			document.setDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING, null);
+			partitioner.disconnect();
+		}
+	}
+
+	private static String createContent() {
+		StringBuffer buf= new StringBuffer();
+		buf.append("class Generated {\n");
+		buf.append("\tint field;\n");
+		for (int i= 0; i < (LINES - 3) / 5; i++) {
+			buf.append("\t/** Returns the value " + i + ". */\n");
+			buf.append("\tString get" + i + "() {\n");
+			buf.append("\t\treturn \"" + i + "\" + 'c'; // " + i + "\n");
+			buf.append("\t}\n");
+			buf.append("\t/* generated */\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+}
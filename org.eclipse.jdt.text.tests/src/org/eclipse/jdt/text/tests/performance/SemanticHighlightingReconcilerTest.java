@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.reconciler.AbstractReconciler;
+import org.eclipse.jface.text.source.SourceViewer;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingManager;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingReconciler;
+
+
+/**
+ * Measures the time to reconcile the semantic highlighting after a single character has been
+ * typed into a method body, for compilation units of increasing size. The time of a full
+ * reconcile is measured for comparison.
+ *
+ * @since 3.8
+ */
+public class SemanticHighlightingReconcilerTest extends TextPerformanceTestCase {
+
+	private static final Class THIS= SemanticHighlightingReconcilerTest.class;
+
+	private static final String FOLDER= "/" + PerformanceTestSetup.PROJECT + "/Eclipse SWT Custom Widgets/common/org/eclipse/swt/custom/";
+
+	private static final String TYPE_NAME= "SemanticHighlightingReconcilerSubject";
+
+	private static final String FILE= FOLDER + TYPE_NAME + ".java";
+
+	private static final int WARM_UP_RUNS= 5;
+
+	private static final int MEASURED_RUNS= 20;
+
+	private JavaEditor fEditor;
+
+	private SourceViewer fSourceViewer;
+
+	private SemanticHighlightingReconciler fReconciler;
+
+
+	public static Test suite() {
+		return new PerformanceTestSetup(new TestSuite(THIS));
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+	}
+
+	protected void tearDown() throws Exception {
+		closeEditor();
+		ResourceTestHelper.delete(FILE);
+		super.tearDown();
+	}
+
+	public void test1000Lines() throws Exception {
+		measure(1000);
+	}
+
+	public void test5000Lines() throws Exception {
+		measure(5000);
+	}
+
+	public void test20000Lines() throws Exception {
+		measure(20000);
+	}
+
+	private void measure(int lines) throws Exception {
+		int offset= openEditor(lines);
+
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), offset, false);
+		measure(createPerformanceMeter("Java Editor: Semantic highlighting after typing (" + lines + " lines)"), getMeasuredRuns(), offset, false);
+		measure(createPerformanceMeter("Java Editor: Semantic highlighting full reconcile (" + lines + " lines)"), getMeasuredRuns(), offset, true);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int runs, int offset, boolean forced) throws Exception {
+		IDocument document= fSourceViewer.getDocument();
+		ICompilationUnit cu= (ICompilationUnit) fEditor.getInputJavaElement();
+		for (int i= 0; i < runs; i++) {
+			if (i % 2 == 0)
+				document.replace(offset, 0, " ");
+			else
+				document.replace(offset, 1, "");
+
+			fReconciler.aboutToBeReconciled();
+			CompilationUnit ast= cu.reconcile(ASTProvider.SHARED_AST_LEVEL, ICompilationUnit.FORCE_PROBLEM_DETECTION | ICompilationUnit.ENABLE_STATEMENTS_RECOVERY | ICompilationUnit.ENABLE_BINDINGS_RECOVERY, null, null);
+			assertNotNull(ast);
+
+			performanceMeter.start();
+			fReconciler.reconciled(ast, forced, new NullProgressMonitor());
+			performanceMeter.stop();
+
+			// apply the new positions
+			EditorTestHelper.runEventQueue(fEditor);
+		}
+	}
+
+	/**
+	 * Opens a compilation unit with the given number of lines and takes over the reconciling
+	 * of the editor.
+	 *
+	 * @param lines the number of lines
+	 * @return the offset of the edits in the middle of the compilation unit
+	 * @throws Exception if the editor can not be opened
+	 */
+	private int openEditor(int lines) throws Exception {
+		String content= createContent(lines);
+		ResourceTestHelper.write(FILE, content);
+		fEditor= (JavaEditor) EditorTestHelper.openInEditor(ResourceTestHelper.findFile(FILE), true);
+		fSourceViewer= EditorTestHelper.getSourceViewer(fEditor);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+		EditorTestHelper.runEventQueue(fEditor, 100);
+
+		EditorTestHelper.getReconciler(fSourceViewer).uninstall();
+		SemanticHighlightingManager manager= (SemanticHighlightingManager) new Accessor(fEditor, JavaEditor.class).get("fSemanticManager");
+		fReconciler= manager.getReconciler();
+
+		int offset= content.indexOf("local+= CONSTANT;", content.length() / 2);
+		assertTrue(offset != -1);
+		return offset;
+	}
+
+	private void closeEditor() {
+		if (fEditor == null)
+			return;
+
+		AbstractReconciler reconciler= EditorTestHelper.getReconciler(fSourceViewer);
+		if (reconciler != null)
+			reconciler.install(fSourceViewer);
+		EditorTestHelper.closeEditor(fEditor);
+		fEditor= null;
+		fSourceViewer= null;
+		fReconciler= null;
+	}
+
+	private static String createContent(int lines) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package org.eclipse.swt.custom;\n");
+		buf.append("class " + TYPE_NAME + " {\n");
+		buf.append("	static final int CONSTANT= 0;\n");
+		buf.append("	int field;\n");
+		for (int i= 0; i < (lines - 5) / 7; i++) {
+			buf.append("	void method" + i + "(StyledText text) {\n");
+			buf.append("		int local= text.getCharCount() + field;\n");
+			buf.append("		local+= CONSTANT;\n");
+			buf.append("		method" + i + "(text);\n");
+			buf.append("		field= local;\n");
+			buf.append("	}\n");
+			buf.append("\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+}
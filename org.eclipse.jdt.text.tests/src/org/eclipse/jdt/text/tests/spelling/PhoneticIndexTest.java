@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.spelling;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.internal.ui.text.spelling.engine.AbstractSpellDictionary;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.PhoneticIndex;
+
+/**
+ * Tests for {@link PhoneticIndex} and spell dictionaries using it.
+ *
+ * @since 3.8
+ */
+public class PhoneticIndexTest extends TestCase {
+
+	private static class IndexedDictionary extends AbstractSpellDictionary {
+
+		private final File fWordList;
+		private final File fIndexFile;
+
+		public IndexedDictionary(File wordList, File indexFile) {
+			fWordList= wordList;
+			fIndexFile= indexFile;
+		}
+
+		protected URL getURL() throws MalformedURLException {
+			return fWordList.toURI().toURL();
+		}
+
+		protected File getIndexFile() {
+			return fIndexFile;
+		}
+
+		protected String getEncoding() {
+			return "UTF-8";
+		}
+	}
+
+	private File fFolder;
+
+	public PhoneticIndexTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(PhoneticIndexTest.class);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fFolder= File.createTempFile("PhoneticIndexTest", null);
+		fFolder.delete();
+		fFolder.mkdirs();
+	}
+
+	protected void tearDown() throws Exception {
+		File[] files= fFolder.listFiles();
+		for (int i= 0; files != null && i < files.length; i++)
+			files[i].delete();
+		fFolder.delete();
+		super.tearDown();
+	}
+
+	private static List getWords(PhoneticIndex index, String hash) {
+		List result= new ArrayList();
+		int bucket= index.findBucket(hash);
+		if (bucket != -1) {
+			for (int word= index.getBucketStart(bucket); word < index.getBucketEnd(bucket); word++)
+				result.add(index.getWord(word));
+		}
+		return result;
+	}
+
+	private static PhoneticIndex createIndex() {
+		PhoneticIndex.Builder builder= new PhoneticIndex.Builder(0);
+		builder.add("T", "tree");
+		builder.add("T", "three");
+		builder.add("K", "caf\u00e9");
+		builder.add("T", "tea");
+		builder.add("K", "\ud83d\ude00");
+		// "Aa" and "BB" have the same hash code
+		builder.add("Aa", "aa");
+		builder.add("BB", "bb");
+		return builder.build();
+	}
+
+	private void assertIndex(PhoneticIndex index) {
+		assertEquals(4, index.getHashCount());
+		assertEquals(7, index.getWordCount());
+
+		List words= getWords(index, "T");
+		assertEquals(3, words.size());
+		assertEquals("tree", words.get(0));
+		assertEquals("three", words.get(1));
+		assertEquals("tea", words.get(2));
+
+		words= getWords(index, "K");
+		assertEquals(2, words.size());
+		assertEquals("caf\u00e9", words.get(0));
+		assertEquals("\ud83d\ude00", words.get(1));
+
+		assertEquals("aa", getWords(index, "Aa").get(0));
+		assertEquals("bb", getWords(index, "BB").get(0));
+		assertEquals(-1, index.findBucket("X"));
+
+		int bucket= index.findBucket("K");
+		int word= index.getBucketStart(bucket);
+		assertTrue(index.isEqual(word, "caf\u00e9"));
+		assertFalse(index.isEqual(word, "cafe"));
+		assertFalse(index.isEqual(word, "caf"));
+		assertFalse(index.isEqual(word, "caf\u00e9s"));
+		assertTrue(index.isEqual(word + 1, "\ud83d\ude00"));
+		assertFalse(index.isEqual(word + 1, "\ud83d"));
+
+		assertTrue(index.contains("three", false));
+		assertTrue(index.contains("caf\u00e9", false));
+		assertTrue(index.contains("\ud83d\ude00", false));
+		assertTrue(index.contains("bb", false));
+		assertFalse(index.contains("Three", false));
+		assertFalse(index.contains("thre", false));
+		assertTrue(index.contains("Three", true));
+		assertTrue(index.contains("CAF\u00c9", true));
+		assertFalse(index.contains("T", true));
+	}
+
+	public void testBuild() throws Exception {
+		assertIndex(createIndex());
+	}
+
+	public void testEmpty() throws Exception {
+		PhoneticIndex index= new PhoneticIndex.Builder(0).build();
+		assertEquals(0, index.getWordCount());
+		assertEquals(-1, index.findBucket("T"));
+	}
+
+	public void testWriteAndRead() throws Exception {
+		File file= new File(fFolder, "test.index");
+		createIndex().write(file, "stamp");
+		assertIndex(PhoneticIndex.read(file, "stamp"));
+		assertNull(PhoneticIndex.read(file, "other"));
+		assertNull(PhoneticIndex.read(new File(fFolder, "missing.index"), "stamp"));
+	}
+
+	public void testRewriteWhileInUse() throws Exception {
+		File file= new File(fFolder, "test.index");
+		createIndex().write(file, "stamp");
+		PhoneticIndex index= PhoneticIndex.read(file, "stamp");
+
+		// replacing a mapped file fails on platforms that lock it
+		try {
+			createIndex().write(file, "other");
+			assertNotNull(PhoneticIndex.read(file, "other"));
+		} catch (IOException e) {
+			assertNotNull(PhoneticIndex.read(file, "stamp"));
+		}
+		assertIndex(index);
+	}
+
+	private File writeWordList(String[] words) throws IOException {
+		File file= new File(fFolder, "words.dictionary");
+		Writer writer= new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			for (int i= 0; i < words.length; i++)
+				writer.write(words[i] + "\n");
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	public void testDictionaryUsesIndexFile() throws Exception {
+		File wordList= writeWordList(new String[] { "tree", "three", "caf\u00e9" });
+		File indexFile= new File(fFolder, "words.index");
+
+		IndexedDictionary dictionary= new IndexedDictionary(wordList, indexFile);
+		assertTrue(dictionary.isCorrect("tree"));
+		assertTrue(dictionary.isCorrect("Three"));
+		assertTrue(dictionary.isCorrect("caf\u00e9"));
+		assertFalse(dictionary.isCorrect("tee"));
+		assertTrue(indexFile.exists());
+
+		// the index is used as long as the word list is unchanged
+		long modified= indexFile.lastModified();
+		dictionary= new IndexedDictionary(wordList, indexFile);
+		assertTrue(dictionary.isCorrect("tree"));
+		assertTrue(dictionary.getProposals("thre", false).size() > 0);
+		assertEquals(modified, indexFile.lastModified());
+
+		writeWordList(new String[] { "tree", "three", "caf\u00e9", "tee" });
+		dictionary= new IndexedDictionary(wordList, indexFile);
+		assertTrue(dictionary.isCorrect("tee"));
+	}
+
+	public void testWordsAddedAfterLoading() throws Exception {
+		SpellCheckEngineTestCase.TestDictionary dictionary= new SpellCheckEngineTestCase.TestDictionary();
+		assertFalse(dictionary.isCorrect("tree"));
+		dictionary.addWord("tree");
+		assertTrue(dictionary.isCorrect("tree"));
+		assertTrue(dictionary.isCorrect("Tree"));
+		assertTrue(dictionary.isLoaded());
+		dictionary.unload();
+		assertFalse(dictionary.isCorrect("tree"));
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.text.edits.ReplaceEdit;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.TextChange;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import org.eclipse.jdt.internal.corext.refactoring.changes.TextChangeCompatibility;
+import org.eclipse.jdt.internal.corext.refactoring.util.StoredTextChange;
+import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
+
+/**
+ * Tests for {@link TextChangeManager}s that write changes to a temporary store.
+ *
+ * @since 3.8
+ */
+public class TextChangeManagerTest extends RefactoringTest {
+
+	private static final Class clazz= TextChangeManagerTest.class;
+
+	public TextChangeManagerTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new RefactoringTestSetup(new TestSuite(clazz));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringTestSetup(someTest);
+	}
+
+	private ICompilationUnit[] createUnits(int count) throws Exception {
+		ICompilationUnit[] result= new ICompilationUnit[count];
+		for (int i= 0; i < count; i++) {
+			result[i]= createCU(getPackageP(), "A" + i + ".java", "package p;\nclass A" + i + " {\n}\n");
+		}
+		return result;
+	}
+
+	private void renameTypes(TextChangeManager manager, ICompilationUnit[] cus) throws Exception {
+		for (int i= 0; i < cus.length; i++) {
+			String source= cus[i].getSource();
+			int offset= source.indexOf("A" + i);
+			TextChangeCompatibility.addTextEdit(manager.get(cus[i]), "rename", new ReplaceEdit(offset, 1 + String.valueOf(i).length(), "B" + i));
+		}
+	}
+
+	public void testStoreAndReadBack() throws Exception {
+		ICompilationUnit[] cus= createUnits(4);
+		TextChangeManager manager= new TextChangeManager(true, 2);
+		renameTypes(manager, cus);
+
+		assertEquals(2, manager.getStoredChangesCount());
+		assertEquals(4, manager.getAllCompilationUnits().length);
+		for (int i= 0; i < cus.length; i++) {
+			assertTrue(manager.containsChangesIn(cus[i]));
+		}
+
+		TextChange change= manager.get(cus[0]);
+		assertEquals(1, change.getTextEditChangeGroups().length);
+		assertEquals("rename", change.getTextEditChangeGroups()[0].getName());
+		assertEqualLines("package p;\nclass B0 {\n}\n", change.getPreviewContent(new NullProgressMonitor()));
+
+		TextChange[] changes= manager.getAllChanges();
+		assertEquals(4, changes.length);
+		for (int i= 0; i < changes.length; i++) {
+			assertEqualLines("package p;\nclass B" + i + " {\n}\n", changes[i].getPreviewContent(new NullProgressMonitor()));
+		}
+		// the changes read back are not kept in memory
+		assertEquals(2, manager.getStoredChangesCount());
+
+		manager.clear();
+		assertEquals(0, manager.getStoredChangesCount());
+	}
+
+	public void testStoreReusesReleasedRegions() throws Exception {
+		ICompilationUnit[] cus= createUnits(3);
+		TextChangeManager manager= new TextChangeManager(true, 1);
+		renameTypes(manager, cus);
+		assertEquals(2, manager.getStoredChangesCount());
+
+		long size= manager.getStoreSize();
+		assertTrue(size > 0);
+		for (int i= 0; i < 10; i++) {
+			// reads back one change and writes the least recently used one
+			manager.get(cus[i % cus.length]);
+			assertEquals(2, manager.getStoredChangesCount());
+			assertTrue(manager.getStoreSize() <= size);
+		}
+
+		manager.clear();
+		assertEquals(0, manager.getStoreSize());
+	}
+
+	public void testPerformStoredChanges() throws Exception {
+		ICompilationUnit[] cus= createUnits(3);
+		TextChangeManager manager= new TextChangeManager(true, 1);
+		renameTypes(manager, cus);
+		assertEquals(2, manager.getStoredChangesCount());
+
+		CompositeChange change= new CompositeChange("TextChangeManagerTest");
+		change.addAll(manager.getChangesToPerform());
+		change.initializeValidationData(new NullProgressMonitor());
+		assertTrue(change.isValid(new NullProgressMonitor()).isOK());
+		performChange(change);
+
+		for (int i= 0; i < cus.length; i++) {
+			assertEqualLines("package p;\nclass B" + i + " {\n}\n", cus[i].getSource());
+		}
+	}
+
+	public void testStoredChangesAreNotRetained() throws Exception {
+		ICompilationUnit[] cus= createUnits(2);
+		TextChangeManager manager= new TextChangeManager(true, 1);
+		renameTypes(manager, cus);
+		assertEquals(1, manager.getStoredChangesCount());
+
+		Change[] changes= manager.getChangesToPerform();
+		StoredTextChange stored= null;
+		for (int i= 0; i < changes.length; i++) {
+			if (changes[i] instanceof StoredTextChange)
+				stored= (StoredTextChange) changes[i];
+		}
+		assertNotNull(stored);
+		CompositeChange change= new CompositeChange("TextChangeManagerTest");
+		change.addAll(changes);
+		change.initializeValidationData(new NullProgressMonitor());
+
+		assertTrue(change.isValid(new NullProgressMonitor()).isOK());
+		assertFalse(stored.isMaterialized());
+
+		Change[] children= stored.getChildren();
+		assertEquals(1, children.length);
+		assertSame(stored, children[0].getParent());
+		assertFalse(stored.isMaterialized());
+
+		performChange(change);
+		assertFalse(stored.isMaterialized());
+		for (int i= 0; i < cus.length; i++) {
+			assertEqualLines("package p;\nclass B" + i + " {\n}\n", cus[i].getSource());
+		}
+	}
+
+	public void testModifiedFileIsDetected() throws Exception {
+		ICompilationUnit[] cus= createUnits(2);
+		TextChangeManager manager= new TextChangeManager(true, 1);
+		renameTypes(manager, cus);
+		assertEquals(1, manager.getStoredChangesCount());
+
+		CompositeChange change= new CompositeChange("TextChangeManagerTest");
+		change.addAll(manager.getChangesToPerform());
+		change.initializeValidationData(new NullProgressMonitor());
+
+		// the first unit has been stored, since it was least recently used
+		cus[0].getResource().touch(null);
+		cus[0].getResource().refreshLocal(IResource.DEPTH_ZERO, null);
+		assertTrue(change.isValid(new NullProgressMonitor()).hasFatalError());
+		change.dispose();
+	}
+}
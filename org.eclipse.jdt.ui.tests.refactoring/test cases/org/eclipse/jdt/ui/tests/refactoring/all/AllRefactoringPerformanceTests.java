@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.eclipse.jdt.ui.tests.refactoring.performance.AllHotPathPerformanceTests;
 import org.eclipse.jdt.ui.tests.refactoring.reorg.AllReorgPerformanceTests;
 import org.eclipse.jdt.ui.tests.refactoring.type.AllTypeConstraintsPerformanceTests;
 
@@ -23,6 +24,7 @@ public class AllRefactoringPerformanceTests extends TestCase {
 		TestSuite suite= new TestSuite("All Refactoring Performance Tests"); //$NON-NLS-1$
 		suite.addTest(AllReorgPerformanceTests.suite());
 		suite.addTest(AllTypeConstraintsPerformanceTests.suite());
+		suite.addTest(AllHotPathPerformanceTests.suite());
 		return suite;
 	}
 
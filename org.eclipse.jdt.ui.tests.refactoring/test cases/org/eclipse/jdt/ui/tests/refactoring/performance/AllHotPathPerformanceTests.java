@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class AllHotPathPerformanceTests {
+
+	public static Test suite() {
+		TestSuite suite= new TestSuite("All Refactoring Hot Path Performance Tests"); //$NON-NLS-1$
+		suite.addTest(ExtractMethodAnalyzerPerfTests.suite());
+		suite.addTest(CallInlinerPerfTests.suite());
+		suite.addTest(RippleMethodFinderPerfTests.suite());
+		suite.addTest(TextChangeManagerPerfTests.suite());
+		suite.addTest(CompilationUnitRewritePerfTests.suite());
+		suite.addTest(TypeSetPerfTests.suite());
+		suite.addTest(InferTypeArgumentsSolverPerfTests.suite());
+		return suite;
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.refactoring.code.InlineMethodRefactoring;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures the inlining of single method invocations, which is done by the <code>CallInliner</code>,
+ * on the inputs of the Inline Method tests. The changes are created but not performed.
+ */
+public class CallInlinerPerfTests extends HotPathPerformanceTestCase {
+
+	private static final String RESOURCES= "InlineMethodWorkspace/TestCases/";
+
+	private final List<ICompilationUnit> fUnits= new ArrayList<ICompilationUnit>();
+	private final List<CompilationUnit> fRoots= new ArrayList<CompilationUnit>();
+	private final List<int[]> fSelections= new ArrayList<int[]>();
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(CallInlinerPerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public CallInlinerPerfTests(String name) {
+		super(name);
+	}
+
+	private void initialize(String folder) throws Exception {
+		ICompilationUnit[] cus= createCUs(RESOURCES + folder, folder);
+		for (int i= 0; i < cus.length; i++) {
+			int[] selection= getSelection(cus[i]);
+			if (selection != null) {
+				fUnits.add(cus[i]);
+				fRoots.add(parse(cus[i]));
+				fSelections.add(selection);
+			}
+		}
+	}
+
+	private void inlineCalls() throws Exception {
+		for (int i= 0; i < fUnits.size(); i++) {
+			int[] selection= fSelections.get(i);
+			InlineMethodRefactoring refactoring= InlineMethodRefactoring.create(fUnits.get(i), fRoots.get(i), selection[0], selection[1]);
+			if (refactoring == null)
+				continue;
+			RefactoringStatus status= refactoring.checkAllConditions(new NullProgressMonitor());
+			if (!status.hasFatalError())
+				refactoring.createChange(new NullProgressMonitor()).dispose();
+		}
+	}
+
+	public void testSimple() throws Exception {
+		initialize("simple_in");
+		measure(3, 10, 2, new Operation() {
+			public void run() throws Exception {
+				inlineCalls();
+			}
+		});
+	}
+
+	public void testArgument() throws Exception {
+		initialize("argument_in");
+		measure(3, 10, 2, new Operation() {
+			public void run() throws Exception {
+				inlineCalls();
+			}
+		});
+	}
+}
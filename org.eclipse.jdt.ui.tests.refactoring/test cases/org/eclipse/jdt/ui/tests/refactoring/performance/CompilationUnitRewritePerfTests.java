@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.text.edits.TextEditGroup;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+
+import org.eclipse.jdt.internal.corext.refactoring.structure.CompilationUnitRewrite;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures the creation of changes with {@link CompilationUnitRewrite}s on the inputs of the
+ * Inline Method tests. Every method is renamed and an import is added.
+ */
+public class CompilationUnitRewritePerfTests extends HotPathPerformanceTestCase {
+
+	private static final String RESOURCES= "InlineMethodWorkspace/TestCases/";
+
+	private ICompilationUnit[] fUnits;
+	private CompilationUnit[] fRoots;
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(CompilationUnitRewritePerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public CompilationUnitRewritePerfTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fUnits= createCUs(RESOURCES + "simple_in", "simple_in");
+		fRoots= new CompilationUnit[fUnits.length];
+		for (int i= 0; i < fUnits.length; i++) {
+			fRoots[i]= parse(fUnits[i]);
+		}
+	}
+
+	private static void rewrite(ICompilationUnit cu, CompilationUnit root) throws Exception {
+		final CompilationUnitRewrite rewrite= new CompilationUnitRewrite(cu, root);
+		rewrite.getImportRewrite().addImport("java.util.List");
+		final ASTRewrite astRewrite= rewrite.getASTRewrite();
+		final TextEditGroup group= rewrite.createGroupDescription("rename");
+		root.accept(new ASTVisitor() {
+			public boolean visit(MethodDeclaration node) {
+				SimpleName name= node.getName();
+				astRewrite.set(name, SimpleName.IDENTIFIER_PROPERTY, name.getIdentifier() + "Renamed", group);
+				return true;
+			}
+		});
+		rewrite.createChange(true).dispose();
+	}
+
+	public void testRewrite() throws Exception {
+		measure(5, 10, 5, new Operation() {
+			public void run() throws Exception {
+				for (int i= 0; i < fUnits.length; i++) {
+					rewrite(fUnits[i], fRoots[i]);
+				}
+			}
+		});
+	}
+}
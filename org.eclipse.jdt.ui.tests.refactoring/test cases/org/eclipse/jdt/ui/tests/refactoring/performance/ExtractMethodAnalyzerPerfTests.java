@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.refactoring.code.ExtractMethodRefactoring;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures the selection analysis of Extract Method ({@link ExtractMethodRefactoring#checkInitialConditions(org.eclipse.core.runtime.IProgressMonitor)},
+ * which runs the <code>ExtractMethodAnalyzer</code>) on the inputs of the Extract Method tests, and
+ * on large generated methods.
+ */
+public class ExtractMethodAnalyzerPerfTests extends HotPathPerformanceTestCase {
+
+	private static final String RESOURCES= "ExtractMethodWorkSpace/ExtractMethodTests/";
+
+	private final List<CompilationUnit> fRoots= new ArrayList<CompilationUnit>();
+	private final List<int[]> fSelections= new ArrayList<int[]>();
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(ExtractMethodAnalyzerPerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public ExtractMethodAnalyzerPerfTests(String name) {
+		super(name);
+	}
+
+	private void initialize(String folder) throws Exception {
+		ICompilationUnit[] cus= createCUs(RESOURCES + folder, folder);
+		for (int i= 0; i < cus.length; i++) {
+			int[] selection= getSelection(cus[i]);
+			if (selection != null) {
+				fRoots.add(parse(cus[i]));
+				fSelections.add(selection);
+			}
+		}
+	}
+
+	private void analyzeSelections() throws Exception {
+		for (int i= 0; i < fRoots.size(); i++) {
+			int[] selection= fSelections.get(i);
+			ExtractMethodRefactoring refactoring= new ExtractMethodRefactoring(fRoots.get(i), selection[0], selection[1]);
+			refactoring.checkInitialConditions(new NullProgressMonitor());
+		}
+	}
+
+	public void testLocals() throws Exception {
+		initialize("locals_in");
+		measure(5, 10, 5, new Operation() {
+			public void run() throws Exception {
+				analyzeSelections();
+			}
+		});
+	}
+
+	public void testDuplicates() throws Exception {
+		initialize("duplicates_in");
+		measure(5, 10, 5, new Operation() {
+			public void run() throws Exception {
+				analyzeSelections();
+			}
+		});
+	}
+
+	public void testLargeMethod() throws Exception {
+		initializeLargeMethod(1700);
+		measure(2, 5, 1, new Operation() {
+			public void run() throws Exception {
+				analyzeSelections();
+			}
+		});
+	}
+
+	/**
+	 * Creates a method with about <code>3 * blocks</code> lines and <code>blocks</code> locals, like
+	 * the methods of generated parsers, and selects all statements but the last one.
+	 *
+	 * @param blocks the number of generated blocks
+	 * @throws Exception if the compilation unit cannot be created
+	 */
+	private void initializeLargeMethod(int blocks) throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package large_in;\n");
+		buf.append("public class A {\n");
+		buf.append("\tpublic int parse(int input) {\n");
+		buf.append("\t\tint state= 0;\n");
+		for (int i= 0; i < blocks; i++) {
+			buf.append("\t\tint v").append(i).append("= input + state * ").append(i).append(";\n");
+			buf.append("\t\tif (v").append(i).append(" > v").append(i / 2).append(")\n");
+			buf.append("\t\t\tstate= v").append(i).append(" - v").append(i / 3).append(";\n");
+		}
+		buf.append("\t\treturn state;\n");
+		buf.append("\t}\n");
+		buf.append("}\n");
+		String source= buf.toString();
+
+		IPackageFragment pack= getSourceFolder().createPackageFragment("large_in", true, null);
+		ICompilationUnit cu= pack.createCompilationUnit("A.java", source, true, null);
+		int start= source.indexOf("int v0");
+		int end= source.lastIndexOf(';', source.indexOf("return state;")) + 1;
+		fRoots.add(parse(cu));
+		fSelections.add(new int[] { start, end - start });
+	}
+}
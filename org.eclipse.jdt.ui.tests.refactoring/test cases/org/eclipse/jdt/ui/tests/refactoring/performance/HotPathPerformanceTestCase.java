@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
+
+import org.eclipse.jdt.ui.tests.refactoring.RefactoringTest;
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestCase;
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringTestPlugin;
+import org.eclipse.jdt.ui.tests.refactoring.reorg.TestProject;
+
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+
+/**
+ * Base class for throughput benchmarks of refactoring core code. The inputs are taken from
+ * the resources of the refactoring tests.
+ * <p>
+ * Each benchmark runs an operation repeatedly. Besides the measurements of the performance
+ * framework, the operations per second and the bytes allocated per operation are appended to
+ * the file named by the system property {@value #RESULTS_FILE_PROPERTY}, if set. Allocations
+ * are only counted on VMs that support thread allocation counters.
+ * </p>
+ *
+ * @since 3.8
+ */
+public abstract class HotPathPerformanceTestCase extends RefactoringPerformanceTestCase {
+
+	/**
+	 * An operation measured by a benchmark.
+	 */
+	protected interface Operation {
+		void run() throws Exception;
+	}
+
+	/**
+	 * System property naming the file the results are appended to.
+	 */
+	public static final String RESULTS_FILE_PROPERTY= "org.eclipse.jdt.ui.tests.refactoring.performance.results";
+
+	private static final String SELECTION_OPEN= "/*[*/";
+	private static final String SELECTION_CLOSE= "/*]*/";
+
+	private TestProject fTestProject;
+
+	public HotPathPerformanceTestCase(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fTestProject= new TestProject("HotPathProject");
+	}
+
+	protected void tearDown() throws Exception {
+		fTestProject.delete();
+		super.tearDown();
+	}
+
+	protected IPackageFragmentRoot getSourceFolder() {
+		return fTestProject.getSourceFolder();
+	}
+
+	/**
+	 * Creates compilation units from all Java files in a folder of the test resources.
+	 * The package declarations of the files are replaced with the given package.
+	 *
+	 * @param folder the folder, relative to the test resources
+	 * @param packageName the name of the package to create the units in
+	 * @return the created compilation units, sorted by name
+	 * @throws Exception if the units can not be created
+	 */
+	protected ICompilationUnit[] createCUs(String folder, String packageName) throws Exception {
+		IPackageFragment pack= getSourceFolder().createPackageFragment(packageName, true, null);
+		String[] names= getResourceNames(folder);
+		ICompilationUnit[] result= new ICompilationUnit[names.length];
+		for (int i= 0; i < names.length; i++) {
+			result[i]= createCU(pack, folder, names[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a compilation unit from a Java file of the test resources. The package
+	 * declaration of the file is replaced with the package of the unit.
+	 *
+	 * @param pack the package to create the unit in
+	 * @param folder the folder, relative to the test resources
+	 * @param name the name of the file
+	 * @return the created compilation unit
+	 * @throws Exception if the unit can not be created
+	 */
+	protected ICompilationUnit createCU(IPackageFragment pack, String folder, String name) throws Exception {
+		String source= RefactoringTest.getContents(RefactoringTestPlugin.getDefault().getTestResourceStream(folder + '/' + name));
+		int start= source.indexOf("package ");
+		if (start != -1) {
+			int end= source.indexOf(';', start);
+			source= source.substring(0, start) + "package " + pack.getElementName() + source.substring(end);
+		}
+		return pack.createCompilationUnit(name, source, true, null);
+	}
+
+	protected static String[] getResourceNames(String folder) {
+		List<String> result= new ArrayList<String>();
+		Enumeration<?> paths= RefactoringTestPlugin.getDefault().getBundle().getEntryPaths("resources/" + folder);
+		while (paths != null && paths.hasMoreElements()) {
+			String path= (String) paths.nextElement();
+			if (path.endsWith(".java"))
+				result.add(path.substring(path.lastIndexOf('/') + 1));
+		}
+		Collections.sort(result);
+		return result.toArray(new String[result.size()]);
+	}
+
+	protected static CompilationUnit parse(ICompilationUnit cu) {
+		return new RefactoringASTParser(ASTProvider.SHARED_AST_LEVEL).parse(cu, true);
+	}
+
+	/**
+	 * Returns the selection marked with <code>/*[*&#47;</code> and <code>/*]*&#47;</code>
+	 * in the given unit, in the same way as the selection tests do.
+	 *
+	 * @param cu the compilation unit
+	 * @return the offset and length of the selection, or <code>null</code> if the unit has no selection
+	 * @throws Exception if the source of the unit can not be accessed
+	 */
+	protected static int[] getSelection(ICompilationUnit cu) throws Exception {
+		String source= cu.getSource();
+		int open= source.indexOf(SELECTION_OPEN);
+		int close= source.indexOf(SELECTION_CLOSE);
+		if (open == -1 || close == -1)
+			return null;
+
+		int start;
+		int end;
+		if (open < close) {
+			// markers are part of the selection
+			start= open;
+			end= source.lastIndexOf(SELECTION_CLOSE) + SELECTION_CLOSE.length();
+		} else {
+			start= close + SELECTION_CLOSE.length();
+			end= source.lastIndexOf(SELECTION_OPEN);
+		}
+		if (end < start)
+			return null;
+		return new int[] { start, end - start };
+	}
+
+	/**
+	 * Measures the given operation. The operation is first run without measuring to warm
+	 * up, then <code>samples</code> times <code>operationsPerSample</code> times.
+	 *
+	 * @param warmUps the number of runs before measuring
+	 * @param samples the number of samples
+	 * @param operationsPerSample the number of runs per sample
+	 * @param operation the operation
+	 * @throws Exception if the operation fails
+	 */
+	protected void measure(int warmUps, int samples, int operationsPerSample, Operation operation) throws Exception {
+		joinBackgroudActivities();
+		for (int i= 0; i < warmUps; i++) {
+			operation.run();
+		}
+
+		long elapsed= 0;
+		long allocated= 0;
+		for (int i= 0; i < samples; i++) {
+			System.gc();
+			long allocatedBefore= getAllocatedBytes();
+			long start= System.nanoTime();
+			startMeasuring();
+			for (int j= 0; j < operationsPerSample; j++) {
+				operation.run();
+			}
+			stopMeasuring();
+			elapsed+= System.nanoTime() - start;
+			allocated= allocatedBefore == -1 ? -1 : allocated + getAllocatedBytes() - allocatedBefore;
+		}
+		commitMeasurements();
+
+		int operations= samples * operationsPerSample;
+		writeResult(operations * 1000000000d / Math.max(elapsed, 1), allocated == -1 ? -1 : allocated / operations);
+		assertPerformanceInRelativeBand(Dimension.CPU_TIME, -100, +10);
+	}
+
+	private void writeResult(double operationsPerSecond, long bytesPerOperation) throws IOException {
+		String fileName= System.getProperty(RESULTS_FILE_PROPERTY);
+		if (fileName == null)
+			return;
+
+		File file= new File(fileName);
+		boolean exists= file.exists();
+		PrintWriter writer= new PrintWriter(new FileWriter(file, true));
+		try {
+			if (!exists)
+				writer.println("# benchmark\toperations/s\tbytes/operation");
+			writer.println(getClass().getName() + '#' + getName() + '\t' + Math.round(operationsPerSecond) + '\t' + bytesPerOperation);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread, or -1 if the VM does not
+	 *         count allocations
+	 */
+	private static long getAllocatedBytes() {
+		try {
+			Class<?> beanClass= Class.forName("com.sun.management.ThreadMXBean");
+			Object bean= ManagementFactory.getThreadMXBean();
+			if (!beanClass.isInstance(bean))
+				return -1;
+			Method method= beanClass.getMethod("getThreadAllocatedBytes", new Class[] { long.class });
+			Long result= (Long) method.invoke(bean, new Object[] { new Long(Thread.currentThread().getId()) });
+			return result.longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.jdt.testplugin.JavaTestPlugin;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.refactoring.generics.InferTypeArgumentsConstraintCreator;
+import org.eclipse.jdt.internal.corext.refactoring.generics.InferTypeArgumentsConstraintsSolver;
+import org.eclipse.jdt.internal.corext.refactoring.generics.InferTypeArgumentsTCModel;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures creating and solving the type constraints of Infer Generic Type Arguments on the
+ * JUnit 3.8.1 sources used by the infer type arguments tests.
+ */
+public class InferTypeArgumentsSolverPerfTests extends HotPathPerformanceTestCase {
+
+	private IJavaProject fJavaProject;
+	private final List<CompilationUnit> fASTs= new ArrayList<CompilationUnit>();
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(InferTypeArgumentsSolverPerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public InferTypeArgumentsSolverPerfTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fJavaProject= JavaProjectHelper.createJavaProject("InferTypeArgumentsPerf", "bin");
+		assertNotNull(JavaProjectHelper.addRTJar(fJavaProject));
+		File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(JavaProjectHelper.JUNIT_SRC_381);
+		assertTrue(junitSrcArchive != null && junitSrcArchive.exists());
+		IPackageFragmentRoot src= JavaProjectHelper.addSourceContainerWithImport(fJavaProject, "src", junitSrcArchive, JavaProjectHelper.JUNIT_SRC_ENCODING);
+
+		IJavaElement[] packages= src.getChildren();
+		for (int i= 0; i < packages.length; i++) {
+			ICompilationUnit[] cus= ((IPackageFragment) packages[i]).getCompilationUnits();
+			for (int j= 0; j < cus.length; j++)
+				fASTs.add(parse(cus[j]));
+		}
+		assertFalse(fASTs.isEmpty());
+	}
+
+	protected void tearDown() throws Exception {
+		fASTs.clear();
+		if (fJavaProject != null && fJavaProject.exists())
+			JavaProjectHelper.delete(fJavaProject);
+		super.tearDown();
+	}
+
+	public void testSolveJUnit() throws Exception {
+		final InferTypeArgumentsConstraintsSolver[] lastSolver= new InferTypeArgumentsConstraintsSolver[1];
+		measure(3, 10, 1, new Operation() {
+			public void run() throws Exception {
+				InferTypeArgumentsTCModel model= new InferTypeArgumentsTCModel();
+				InferTypeArgumentsConstraintCreator creator= new InferTypeArgumentsConstraintCreator(model, false);
+				for (int i= 0; i < fASTs.size(); i++) {
+					fASTs.get(i).accept(creator);
+					model.newCu();
+				}
+				InferTypeArgumentsConstraintsSolver solver= new InferTypeArgumentsConstraintsSolver(model);
+				solver.solveConstraints(new NullProgressMonitor());
+				lastSolver[0]= solver;
+			}
+		});
+		InferTypeArgumentsConstraintsSolver.Statistics statistics= lastSolver[0].getStatistics();
+		assertTrue(statistics.toString(), statistics.getConstraints() > 0);
+		assertTrue(statistics.toString(), statistics.getEquivalenceSets() > 0);
+		assertTrue(statistics.toString(), statistics.getIterations() >= statistics.getEquivalenceSets());
+		assertTrue(statistics.toString(), statistics.getPeakMemory() > 0);
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+
+import org.eclipse.jdt.internal.corext.refactoring.rename.RippleMethodFinder2;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures {@link RippleMethodFinder2#getRelatedMethods(IMethod, org.eclipse.core.runtime.IProgressMonitor, org.eclipse.jdt.core.WorkingCopyOwner)}
+ * on the inputs of the ripple method finder tests. Each input is created in a package of its own,
+ * since the inputs declare types of the same names.
+ */
+public class RippleMethodFinderPerfTests extends HotPathPerformanceTestCase {
+
+	private static final String RESOURCES= "RippleMethodFinder";
+	private static final String TARGET= "/*target*/";
+
+	private final List<IMethod> fTargets= new ArrayList<IMethod>();
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(RippleMethodFinderPerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public RippleMethodFinderPerfTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		String[] names= getResourceNames(RESOURCES);
+		for (int i= 0; i < names.length; i++) {
+			IPackageFragment pack= getSourceFolder().createPackageFragment("p" + i, true, null);
+			ICompilationUnit cu= createCU(pack, RESOURCES, names[i]);
+			String source= cu.getSource();
+			IJavaElement[] elements= cu.codeSelect(source.indexOf(TARGET) + TARGET.length(), 0);
+			assertEquals(1, elements.length);
+			fTargets.add((IMethod) elements[0]);
+		}
+	}
+
+	public void testRelatedMethods() throws Exception {
+		measure(3, 10, 2, new Operation() {
+			public void run() throws Exception {
+				for (int i= 0; i < fTargets.size(); i++) {
+					RippleMethodFinder2.getRelatedMethods(fTargets.get(i), new NullProgressMonitor(), null);
+				}
+			}
+		});
+	}
+}
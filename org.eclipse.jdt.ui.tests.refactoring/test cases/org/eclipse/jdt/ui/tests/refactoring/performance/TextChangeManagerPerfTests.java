@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.text.edits.InsertEdit;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ltk.core.refactoring.Change;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import org.eclipse.jdt.internal.corext.refactoring.changes.TextChangeCompatibility;
+import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures the creation of text changes with a {@link TextChangeManager}, with and without a
+ * temporary store. The inputs of the Extract Method tests are indented by one edit per line.
+ */
+public class TextChangeManagerPerfTests extends HotPathPerformanceTestCase {
+
+	private static final String RESOURCES= "ExtractMethodWorkSpace/ExtractMethodTests/";
+
+	private ICompilationUnit[] fUnits;
+	private int[][] fLineOffsets;
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(TextChangeManagerPerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public TextChangeManagerPerfTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ICompilationUnit[] locals= createCUs(RESOURCES + "locals_in", "locals_in");
+		ICompilationUnit[] duplicates= createCUs(RESOURCES + "duplicates_in", "duplicates_in");
+		fUnits= new ICompilationUnit[locals.length + duplicates.length];
+		System.arraycopy(locals, 0, fUnits, 0, locals.length);
+		System.arraycopy(duplicates, 0, fUnits, locals.length, duplicates.length);
+
+		fLineOffsets= new int[fUnits.length][];
+		for (int i= 0; i < fUnits.length; i++) {
+			IDocument document= new Document(fUnits[i].getSource());
+			fLineOffsets[i]= new int[document.getNumberOfLines()];
+			for (int line= 0; line < fLineOffsets[i].length; line++) {
+				fLineOffsets[i][line]= document.getLineOffset(line);
+			}
+		}
+	}
+
+	private TextChangeManager createChanges(int maxChangesInMemory) {
+		TextChangeManager manager= new TextChangeManager(true, maxChangesInMemory);
+		for (int i= 0; i < fUnits.length; i++) {
+			for (int line= 0; line < fLineOffsets[i].length; line++) {
+				TextChangeCompatibility.addTextEdit(manager.get(fUnits[i]), "indent", new InsertEdit(fLineOffsets[i][line], "\t"));
+			}
+		}
+		return manager;
+	}
+
+	public void testInMemory() throws Exception {
+		measure(5, 10, 5, new Operation() {
+			public void run() throws Exception {
+				createChanges(Integer.MAX_VALUE).getAllChanges();
+			}
+		});
+	}
+
+	public void testStored() throws Exception {
+		measure(5, 10, 5, new Operation() {
+			public void run() throws Exception {
+				Change[] changes= createChanges(10).getChangesToPerform();
+				for (int i= 0; i < changes.length; i++) {
+					changes[i].dispose();
+				}
+			}
+		});
+	}
+}
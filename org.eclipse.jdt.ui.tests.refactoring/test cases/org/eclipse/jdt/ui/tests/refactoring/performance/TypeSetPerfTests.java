@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.performance;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.SimpleName;
+
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TypeEnvironment;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets.EnumeratedTypeSet;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets.TypeSet;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets.TypeSetEnvironment;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures the type set operations of the type constraint solvers on the types used by the
+ * inputs of the type constraint tests. Each input is created in a package of its own, since
+ * the inputs declare types of the same names.
+ */
+public class TypeSetPerfTests extends HotPathPerformanceTestCase {
+
+	private static final String RESOURCES= "TypeConstraints";
+
+	private TypeEnvironment fTypeEnvironment;
+	private TType[] fTypes;
+
+	public static Test suite() {
+		return new RefactoringPerformanceTestSetup(new TestSuite(TypeSetPerfTests.class));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public TypeSetPerfTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fTypeEnvironment= new TypeEnvironment(true);
+		final Set<TType> types= new LinkedHashSet<TType>();
+		String[] names= getResourceNames(RESOURCES);
+		for (int i= 0; i < names.length; i++) {
+			IPackageFragment pack= getSourceFolder().createPackageFragment("p" + i, true, null);
+			ICompilationUnit cu= createCU(pack, RESOURCES, names[i]);
+			parse(cu).accept(new ASTVisitor() {
+				public boolean visit(SimpleName node) {
+					ITypeBinding binding= node.resolveTypeBinding();
+					if (binding != null && !binding.isPrimitive() && !binding.isNullType()) {
+						TType type= fTypeEnvironment.create(binding);
+						if (type.isHierarchyType() || type.isArrayType())
+							types.add(type);
+					}
+					return false;
+				}
+			});
+		}
+		fTypes= types.toArray(new TType[types.size()]);
+		assertTrue(fTypes.length > 1);
+	}
+
+	protected void tearDown() throws Exception {
+		fTypeEnvironment= null;
+		fTypes= null;
+		super.tearDown();
+	}
+
+	public void testSubAndSuperTypes() throws Exception {
+		measure(3, 10, 20, new Operation() {
+			public void run() throws Exception {
+				TypeSetEnvironment environment= new TypeSetEnvironment(fTypeEnvironment);
+				for (int i= 0; i < fTypes.length; i++) {
+					EnumeratedTypeSet singleton= new EnumeratedTypeSet(fTypes[i], environment);
+					singleton.subTypes().enumerate();
+					singleton.superTypes().enumerate();
+				}
+			}
+		});
+	}
+
+	public void testIntersections() throws Exception {
+		measure(3, 10, 5, new Operation() {
+			public void run() throws Exception {
+				TypeSetEnvironment environment= new TypeSetEnvironment(fTypeEnvironment);
+				List<EnumeratedTypeSet> superTypes= new ArrayList<EnumeratedTypeSet>();
+				for (int i= 0; i < fTypes.length; i++)
+					superTypes.add(environment.createSuperTypesSet(fTypes[i]).enumerate());
+
+				for (int i= 0; i < superTypes.size(); i++) {
+					EnumeratedTypeSet first= superTypes.get(i);
+					for (int j= i + 1; j < superTypes.size(); j++) {
+						EnumeratedTypeSet second= superTypes.get(j);
+						TypeSet intersection= first.intersectedWith(second);
+						if (!intersection.isEmpty())
+							intersection.enumerate().lowerBound();
+						first.containsAll(second);
+						first.equals(second);
+					}
+				}
+			}
+		});
+	}
+
+	public void testBounds() throws Exception {
+		measure(3, 10, 20, new Operation() {
+			public void run() throws Exception {
+				TypeSetEnvironment environment= new TypeSetEnvironment(fTypeEnvironment);
+				EnumeratedTypeSet all= new EnumeratedTypeSet(environment);
+				for (int i= 0; i < fTypes.length; i++)
+					all.add(fTypes[i]);
+				for (int i= 0; i < fTypes.length; i++) {
+					all.lowerBound();
+					environment.createSuperTypesSet(fTypes[i]).enumerate().lowerBound();
+				}
+			}
+		});
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,7 @@ public class AllReorgPerformanceTests {
 		suite.addTest(RenameTypePerfAcceptanceTests.suite());
 		suite.addTest(RenameTypePerfTests1.suite());
 		suite.addTest(RenameTypePerfTests2.suite());
+		suite.addTest(RenameTypePerfTests3.suite());
 
 		suite.addTest(RenameMethodPerfTests1.suite());
 		suite.addTest(RenameMethodPerfTests2.suite());
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.reorg;
+
+import junit.framework.Test;
+
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Measures the time to rename a type against the number of references.
+ */
+public class RenameTypePerfTests3 extends AbstractRenameTypePerfTest {
+
+	public static Test suite() {
+		// we must make sure that cold is executed before warm
+		OrderedTestSuite suite= new OrderedTestSuite(RenameTypePerfTests3.class, new String[] {
+			"testCold_100_10",
+			"test_100_10",
+			"test_1000_10",
+			"test_1000_20",
+		});
+		return new RefactoringPerformanceTestSetup(suite);
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public RenameTypePerfTests3(String name) {
+		super(name);
+	}
+
+	public void testCold_100_10() throws Exception {
+		executeRefactoring(100, 10, false, 3);
+	}
+
+	public void test_100_10() throws Exception {
+		executeRefactoring(100, 10, true, 10);
+	}
+
+	public void test_1000_10() throws Exception {
+		executeRefactoring(1000, 10, true, 10);
+	}
+
+	public void test_1000_20() throws Exception {
+		tagAsSummary("Rename type - 20000 Refs", Dimension.ELAPSED_PROCESS);
+		executeRefactoring(1000, 20, true, 10);
+	}
+}
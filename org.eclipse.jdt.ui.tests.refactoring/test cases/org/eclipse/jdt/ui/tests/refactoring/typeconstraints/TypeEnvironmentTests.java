@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -35,6 +36,7 @@ import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
 import org.eclipse.jdt.internal.corext.dom.HierarchicalASTVisitor;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.SubTypeCache;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TypeEnvironment;
 
@@ -329,6 +331,51 @@ public class TypeEnvironmentTests extends AbstractCUTestCase {
 		testBindings(collector.getResult());
 	}
 
+	//---- shared subtype cache ------------------------------------------------
+
+	private ITypeBinding[] createTypeBindings(ICompilationUnit unit, String[] typeNames) {
+		IJavaElement[] types= new IJavaElement[typeNames.length];
+		for (int i= 0; i < typeNames.length; i++) {
+			types[i]= unit.getType(typeNames[i]);
+		}
+		ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+		parser.setProject(unit.getJavaProject());
+		IBinding[] bindings= parser.createBindings(types, null);
+		ITypeBinding[] result= new ITypeBinding[bindings.length];
+		for (int i= 0; i < bindings.length; i++) {
+			assertNotNull(bindings[i]);
+			result[i]= (ITypeBinding)bindings[i];
+		}
+		return result;
+	}
+
+	private boolean canAssignInNewEnvironment(ICompilationUnit unit) {
+		ITypeBinding[] bindings= createTypeBindings(unit, new String[] { "Shared", "SharedSub" });
+		TypeEnvironment environment= new TypeEnvironment();
+		TType lhs= environment.create(bindings[0]);
+		TType rhs= environment.create(bindings[1]);
+		boolean result= rhs.canAssignTo(lhs);
+		assertEquals("Different assignment rule", bindings[1].isAssignmentCompatible(bindings[0]), result);
+		return result;
+	}
+
+	public void testSharedSubTypeCache() throws Exception {
+		IPackageFragment pack= MyTestSetup.getGenericPackage();
+		ICompilationUnit unit= pack.createCompilationUnit("Shared.java", "package generic;\nclass Shared {}\nclass SharedSub extends Shared {}\n", true, null);
+		try {
+			SubTypeCache.clear();
+			assertTrue(canAssignInNewEnvironment(unit));
+			int hits= SubTypeCache.getCacheHits();
+			assertTrue(canAssignInNewEnvironment(unit));
+			assertTrue("Subtype check not shared", SubTypeCache.getCacheHits() > hits);
+
+			pack.createCompilationUnit("Shared.java", "package generic;\nclass Shared {}\nclass SharedSub {}\n", true, null);
+			assertFalse(canAssignInNewEnvironment(unit));
+		} finally {
+			unit.delete(true, null);
+		}
+	}
+
 	public void _testAssignment() throws Exception {
 		ASTNode node= createAST(MyTestSetup.getGenericPackage());
 		TypeBindingCollector collector= new TypeBindingCollector();
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.util.Random;
+
+import junit.framework.Test;
+
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
+import org.eclipse.jdt.internal.corext.util.TypeNameTable;
+
+/**
+ * Measures how long the open type dialog takes to filter the types of its type name snapshot,
+ * for an increasing number of types.
+ *
+ * @since 3.8
+ */
+public class OpenTypeFilterPerfTest extends JdtPerformanceTestCase {
+
+	private static final String[] WORDS= {
+		"Abstract", "Action", "Array", "Buffer", "Cache", "Class", "Compiler", "Content", "Default", "Element",
+		"Event", "Exception", "Factory", "File", "Handler", "Hash", "Input", "Java", "List", "Listener",
+		"Manager", "Map", "Model", "Node", "Null", "Output", "Parser", "Pointer", "Provider", "Reader",
+		"Reference", "Resource", "Scanner", "Set", "Stream", "String", "Table", "Tree", "Type", "Writer"
+	};
+
+	private static final String[] PATTERNS= { "NPE", "HM", "Str", "*Exception" };
+
+	public static Test suite() {
+		return new OrderedTestSuite(
+				OpenTypeFilterPerfTest.class,
+				new String[] {
+					"testFilter10000",
+					"testFilter100000",
+					"testFilter1000000",
+				});
+	}
+
+	public OpenTypeFilterPerfTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		System.out.println("starting " + OpenTypeFilterPerfTest.class.getName() + "#" + getName());
+		super.setUp();
+	}
+
+	//---
+
+	public void testFilter10000() throws Exception {
+		measureFilter(10000);
+	}
+
+	public void testFilter100000() throws Exception {
+		measureFilter(100000);
+	}
+
+	public void testFilter1000000() throws Exception {
+		measureFilter(1000000);
+	}
+
+	//---
+
+	private void measureFilter(int typeCount) throws Exception {
+		TypeNameTable table= createTable(typeCount);
+		TypeInfoFilter[] filters= new TypeInfoFilter[PATTERNS.length];
+		for (int i= 0; i < PATTERNS.length; i++)
+			filters[i]= new TypeInfoFilter(PATTERNS[i], SearchEngine.createWorkspaceScope(), IJavaSearchConstants.TYPE, null);
+
+		// warm up
+		for (int i= 0; i < filters.length; i++)
+			table.match(filters[i], new NullProgressMonitor());
+
+		tagAsSummary("Open Type filter, " + typeCount + " types", Dimension.ELAPSED_PROCESS);
+		for (int run= 0; run < 10; run++) {
+			startMeasuring();
+			for (int i= 0; i < filters.length; i++)
+				table.match(filters[i], new NullProgressMonitor());
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformanceInRelativeBand(Dimension.ELAPSED_PROCESS, -100, +10);
+	}
+
+	private static TypeNameTable createTable(int typeCount) {
+		TypeNameTable table= new TypeNameTable();
+		Random random= new Random(typeCount);
+		for (int i= 0; i < typeCount; i++) {
+			StringBuffer name= new StringBuffer();
+			int wordCount= 1 + random.nextInt(4);
+			for (int j= 0; j < wordCount; j++)
+				name.append(WORDS[random.nextInt(WORDS.length)]);
+			name.append(i);
+			String packageName= "org.example.p" + (i % 500);
+			String rootHandle= "=P" + (i % 20) + "/src";
+			table.add(rootHandle, true, packageName, name.toString(), name + ".java", 0);
+		}
+		return table;
+	}
+}
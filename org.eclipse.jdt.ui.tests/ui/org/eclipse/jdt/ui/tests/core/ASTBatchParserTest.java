@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.SimpleName;
+
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParserStatistics;
+
+
+public class ASTBatchParserTest extends TestCase {
+
+	private static final Class THIS= ASTBatchParserTest.class;
+
+	private static final int UNIT_COUNT= 40;
+
+	private IJavaProject fJavaProject1;
+	private IJavaProject fJavaProject2;
+
+	public ASTBatchParserTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	protected void setUp() throws Exception {
+		fJavaProject1= ProjectTestSetup.getProject();
+		fJavaProject2= JavaProjectHelper.createJavaProject("ASTBatchParserTest2", "bin");
+		JavaProjectHelper.addRTJar(fJavaProject2);
+		JavaProjectHelper.addRequiredProject(fJavaProject2, fJavaProject1);
+	}
+
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.delete(fJavaProject2);
+		JavaProjectHelper.clear(fJavaProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private ICompilationUnit[] createUnits() throws Exception {
+		List result= new ArrayList();
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJavaProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("pack1", true, null);
+		for (int i= 0; i < UNIT_COUNT; i++) {
+			StringBuffer buf= new StringBuffer();
+			buf.append("package pack1;\n");
+			buf.append("public class A" + i + (i > 0 ? " extends A" + (i - 1) : "") + " {\n");
+			buf.append("    public A" + i + " foo" + i + "(java.util.List<String> list) {\n");
+			buf.append("        return list.isEmpty() ? this : null;\n");
+			buf.append("    }\n");
+			buf.append("}\n");
+			result.add(pack1.createCompilationUnit("A" + i + ".java", buf.toString(), false, null));
+		}
+		IPackageFragmentRoot root2= JavaProjectHelper.addSourceContainer(fJavaProject2, "src");
+		IPackageFragment pack2= root2.createPackageFragment("pack2", true, null);
+		for (int i= 0; i < UNIT_COUNT; i++) {
+			StringBuffer buf= new StringBuffer();
+			buf.append("package pack2;\n");
+			buf.append("import pack1.A" + i + ";\n");
+			buf.append("public class B" + i + " extends A" + i + " {\n");
+			buf.append("    public Unknown bar() {\n");
+			buf.append("        return foo" + i + "(null);\n");
+			buf.append("    }\n");
+			buf.append("}\n");
+			result.add(pack2.createCompilationUnit("B" + i + ".java", buf.toString(), false, null));
+		}
+		// mix the projects, the parser must group the units by project
+		Collections.shuffle(result, new Random(4711));
+		return (ICompilationUnit[]) result.toArray(new ICompilationUnit[result.size()]);
+	}
+
+	private static Map parse(ASTBatchParser parser, ICompilationUnit[] units) {
+		final Map result= new HashMap();
+		parser.createASTs(units, new String[0], new ASTRequestor() {
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				assertNull("AST accepted twice", result.put(source.getHandleIdentifier(), describe(ast)));
+			}
+		}, null);
+		return result;
+	}
+
+	private static String describe(CompilationUnit ast) {
+		final StringBuffer buf= new StringBuffer();
+		buf.append(ast.toString());
+		buf.append("problems: ").append(ast.getProblems().length).append('\n');
+		ast.accept(new ASTVisitor() {
+			public boolean visit(SimpleName node) {
+				ITypeBinding binding= node.resolveTypeBinding();
+				buf.append(node.getIdentifier()).append(": ").append(binding != null ? binding.getKey() : "null").append('\n');
+				return false;
+			}
+		});
+		return buf.toString();
+	}
+
+	private static ASTBatchParser createParser(boolean parallel, final int workers) {
+		return new ASTBatchParser(parallel) {
+			protected int getWorkerCount(int unitCount) {
+				return Math.min(workers, unitCount);
+			}
+		};
+	}
+
+	public void testParallelEqualsSequential() throws Exception {
+		ICompilationUnit[] units= createUnits();
+
+		Map sequential= parse(createParser(false, 1), units);
+		assertEquals(units.length, sequential.size());
+
+		Map parallel= parse(createParser(true, 3), units);
+		assertEquals(sequential.keySet(), parallel.keySet());
+		for (int i= 0; i < units.length; i++) {
+			String key= units[i].getHandleIdentifier();
+			assertEquals(key, sequential.get(key), parallel.get(key));
+		}
+	}
+
+	public void testStatistics() throws Exception {
+		ICompilationUnit[] units= createUnits();
+
+		ASTBatchParser parser= createParser(true, 3);
+		parse(parser, units);
+
+		ASTBatchParserStatistics statistics= parser.getStatistics();
+		assertEquals(units.length, statistics.getASTCount());
+		// chunks never span projects
+		assertTrue(statistics.toString(), statistics.getChunkCount() >= 2);
+		assertTrue(statistics.toString(), statistics.getLargestChunk() >= 1);
+		assertTrue(statistics.toString(), statistics.getLargestChunk() <= UNIT_COUNT);
+		assertTrue(statistics.toString(), statistics.getParseTime() >= 0);
+		// concurrent chunks are counted once in the elapsed time
+		assertTrue(statistics.toString(), statistics.getElapsedTime() <= statistics.getParseTime());
+		assertTrue(statistics.toString(), statistics.getPeakUsedHeap() > 0);
+
+		// statistics accumulate over invocations
+		parse(parser, units);
+		assertEquals(2 * units.length, statistics.getASTCount());
+		assertTrue(statistics.toString(), statistics.getChunkCount() >= 4);
+	}
+}
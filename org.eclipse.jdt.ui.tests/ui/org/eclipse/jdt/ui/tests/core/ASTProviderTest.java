@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,9 +35,13 @@ import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
 
+import org.eclipse.ui.IEditorPart;
+
 import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jdt.ui.SharedASTProvider;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 /**
  * Tests the AST provider.
@@ -110,6 +114,7 @@ public class ASTProviderTest extends CoreTests {
 
 
 	protected void tearDown() throws Exception {
+		JavaPlugin.getActivePage().closeAllEditors(false);
 		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
 	}
 
@@ -138,6 +143,64 @@ public class ASTProviderTest extends CoreTests {
 		cu.getBuffer().save(null, true);
 	}
 
+	private ICompilationUnit createType(String name) throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class " + name + " {\n");
+		buf.append("}\n");
+		return pack1.createCompilationUnit(name + ".java", buf.toString(), false, null);
+	}
+
+	public void testRecentAST() throws Exception {
+		ICompilationUnit cu1= createType("E1");
+		ICompilationUnit cu2= createType("E2");
+
+		JavaUI.openInEditor(cu1);
+		CompilationUnit ast1= SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_YES, null);
+		assertNotNull(ast1);
+
+		JavaUI.openInEditor(cu2);
+		assertNotNull(SharedASTProvider.getAST(cu2, SharedASTProvider.WAIT_YES, null));
+
+		// the AST of the previous editor is still available
+		assertSame(ast1, SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_NO, null));
+
+		// and restored when switching back
+		JavaUI.openInEditor(cu1);
+		assertSame(ast1, SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_NO, null));
+	}
+
+	public void testRecentASTModified() throws Exception {
+		ICompilationUnit cu1= createType("E1");
+		ICompilationUnit cu2= createType("E2");
+
+		JavaUI.openInEditor(cu1);
+		CompilationUnit ast1= SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_YES, null);
+		assertNotNull(ast1);
+
+		JavaUI.openInEditor(cu2);
+		assertNotNull(SharedASTProvider.getAST(cu2, SharedASTProvider.WAIT_YES, null));
+
+		cu1.getBuffer().append("\n");
+		assertNotSame(ast1, SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_NO, null));
+	}
+
+	public void testRecentASTClosed() throws Exception {
+		ICompilationUnit cu1= createType("E1");
+		ICompilationUnit cu2= createType("E2");
+
+		IEditorPart editor1= JavaUI.openInEditor(cu1);
+		CompilationUnit ast1= SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_YES, null);
+		assertNotNull(ast1);
+
+		JavaUI.openInEditor(cu2);
+		assertNotNull(SharedASTProvider.getAST(cu2, SharedASTProvider.WAIT_YES, null));
+
+		JavaPlugin.getActivePage().closeEditor(editor1, false);
+		assertNotSame(ast1, SharedASTProvider.getAST(cu1, SharedASTProvider.WAIT_NO, null));
+	}
+
 	private static String getNormalizeNumber(int number) {
 		if (number < 10) {
 			return "000" + number;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -37,6 +37,7 @@ public class CoreTests extends TestCase {
 		suite.addTest(AddImportTest.suite());
 		suite.addTest(SourceActionTests.suite());
 		suite.addTest(ASTNodesInsertTest.suite());
+		suite.addTest(ASTBatchParserTest.suite());
 		suite.addTest(BindingsNameTest.suite());
 		suite.addTest(CallHierarchyTest.suite());
 		suite.addTest(ClassPathDetectorTest.suite());
@@ -55,8 +56,11 @@ public class CoreTests extends TestCase {
 		suite.addTest(ScopeAnalyzerTest.suite());
 		suite.addTest(TemplateStoreTest.suite());
 		suite.addTest(TypeHierarchyTest.suite());
+		suite.addTest(SuperTypeHierarchyCacheTest.suite());
 		suite.addTest(TypeRulesTest.suite());
 		suite.addTest(TypeInfoTest.suite());
+		suite.addTest(TypeNameTableTest.suite());
+		suite.addTest(TypeNameSnapshotTest.suite());
 		suite.addTest(StringsTest.suite());
 		suite.addTest(IndentManipulationTest.suite());
 		suite.addTest(SelectionHistoryTest.suite());
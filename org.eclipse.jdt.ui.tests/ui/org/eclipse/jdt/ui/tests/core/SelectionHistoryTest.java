@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.ui.tests.core;
 
+import java.io.File;
 import java.text.Collator;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -22,6 +23,8 @@ import org.w3c.dom.Element;
 
 import org.eclipse.jdt.internal.corext.util.History;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 public class SelectionHistoryTest extends TestCase {
 
@@ -127,6 +130,102 @@ public class SelectionHistoryTest extends TestCase {
 
 	}
 
+	private static final class PersistentTestHistory extends History {
+
+		public static final String FILE_NAME= "SelectionHistoryTest.xml";
+
+		public PersistentTestHistory() {
+			super(FILE_NAME);
+		}
+		protected void setAttributes(Object object, Element element) {
+			element.setAttribute("name", (String) object);
+		}
+		protected Object createFromElement(Element element) {
+			return element.getAttribute("name");
+		}
+		protected Object getKey(Object object) {
+			return object;
+		}
+		public String[] getNames() {
+			return (String[]) getValues().toArray(new String[0]);
+		}
+	}
+
+	private static File getStateFile(String name) {
+		return JavaPlugin.getDefault().getStateLocation().append(name).toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		getStateFile(PersistentTestHistory.FILE_NAME).delete();
+		getStateFile(PersistentTestHistory.FILE_NAME + ".journal").delete();
+	}
+
+	public void testNormalizedPosition() throws Exception {
+		History history= new TestHistory();
+		assertEquals(0.0f, history.getNormalizedPosition("a"), 0.0f);
+
+		history.accessed("a");
+		history.accessed("b");
+		history.accessed("c");
+		history.accessed("d");
+		assertEquals(1.0f, history.getNormalizedPosition("d"), 0.0f);
+		assertEquals(0.25f, history.getNormalizedPosition("a"), 0.0f);
+
+		history.remove("d");
+		assertEquals(1.0f, history.getNormalizedPosition("c"), 0.0f);
+		assertEquals(0.0f, history.getNormalizedPosition("d"), 0.0f);
+		assertEquals(-1, history.getPosition("d"));
+	}
+
+	public void testJournal() throws Exception {
+		File file= getStateFile(PersistentTestHistory.FILE_NAME);
+		File journal= getStateFile(PersistentTestHistory.FILE_NAME + ".journal");
+
+		PersistentTestHistory history= new PersistentTestHistory();
+		history.load();
+		history.accessed("a");
+		history.accessed("b");
+		history.accessed("c");
+		history.save();
+		assertTrue(file.exists());
+		assertFalse(journal.exists());
+		long xmlLength= file.length();
+
+		history.accessed("d");
+		history.remove("b");
+		history.accessed("a");
+		history.save();
+		assertEquals(xmlLength, file.length());
+		assertTrue(journal.exists());
+
+		PersistentTestHistory loaded= new PersistentTestHistory();
+		loaded.load();
+		assertEquals(new String[] {"c", "d", "a"}, loaded.getNames());
+		assertEquals(loaded.getNames(), history.getNames());
+	}
+
+	public void testJournalCompaction() throws Exception {
+		File journal= getStateFile(PersistentTestHistory.FILE_NAME + ".journal");
+
+		PersistentTestHistory history= new PersistentTestHistory();
+		history.load();
+		history.accessed("a");
+		history.save();
+		for (int i= 0; i < History.COMPACTION_THRESHOLD; i++) {
+			history.accessed(i % 2 == 0 ? "a" : "b");
+			history.save();
+		}
+		assertTrue(journal.exists());
+
+		history.accessed("c");
+		history.save();
+		assertFalse(journal.exists());
+
+		PersistentTestHistory loaded= new PersistentTestHistory();
+		loaded.load();
+		assertEquals(new String[] {"a", "b", "c"}, loaded.getNames());
+	}
+
 	public void testOrganizeImportHistory01() throws Exception {
 		History history= new TestHistory();
 		Comparator comparator= new TestHistoryComparator(history);
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+
+import org.eclipse.jdt.internal.corext.util.SuperTypeHierarchyCache;
+
+
+public class SuperTypeHierarchyCacheTest extends TestCase {
+
+	private static final Class THIS= SuperTypeHierarchyCacheTest.class;
+
+	private IJavaProject fJavaProject1;
+	private long fMaxMemory;
+	private int fMaxEntries;
+
+	public SuperTypeHierarchyCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	protected void setUp() throws Exception {
+		fJavaProject1= ProjectTestSetup.getProject();
+		fMaxMemory= SuperTypeHierarchyCache.getMaxMemory();
+		fMaxEntries= SuperTypeHierarchyCache.getMaxEntries();
+		SuperTypeHierarchyCache.clear();
+	}
+
+	protected void tearDown () throws Exception {
+		SuperTypeHierarchyCache.setMaxMemory(fMaxMemory);
+		SuperTypeHierarchyCache.setMaxEntries(fMaxEntries);
+		SuperTypeHierarchyCache.clear();
+		JavaProjectHelper.clear(fJavaProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private IType[] createTypes() throws Exception {
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJavaProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("pack1", true, null);
+
+		ICompilationUnit cu1= pack1.getCompilationUnit("A.java");
+		IType typeA= cu1.createType("public class A {\n}\n", null, true, null);
+
+		ICompilationUnit cu2= pack1.getCompilationUnit("B.java");
+		IType typeB= cu2.createType("public class B extends A {\n}\n", null, true, null);
+
+		ICompilationUnit cu3= pack1.getCompilationUnit("C.java");
+		IType typeC= cu3.createType("public class C {\n}\n", null, true, null);
+
+		return new IType[] { typeA, typeB, typeC };
+	}
+
+	public void testHitsAndMisses() throws Exception {
+		IType[] types= createTypes();
+
+		int misses= SuperTypeHierarchyCache.getCacheMisses();
+		int hits= SuperTypeHierarchyCache.getCacheHits();
+
+		ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(types[1]);
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
+
+		// the super type is contained in the hierarchy of the sub type
+		assertTrue(SuperTypeHierarchyCache.hasInCache(types[0]));
+		assertSame(hierarchy, SuperTypeHierarchyCache.getTypeHierarchy(types[0]));
+		assertEquals(hits + 1, SuperTypeHierarchyCache.getCacheHits());
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
+
+		assertFalse(SuperTypeHierarchyCache.hasInCache(types[2]));
+		SuperTypeHierarchyCache.getTypeHierarchy(types[2]);
+		assertEquals(misses + 2, SuperTypeHierarchyCache.getCacheMisses());
+		assertEquals(2, SuperTypeHierarchyCache.getCacheSize());
+	}
+
+	public void testEvictionByMemory() throws Exception {
+		IType[] types= createTypes();
+
+		SuperTypeHierarchyCache.getTypeHierarchy(types[1]);
+		SuperTypeHierarchyCache.getTypeHierarchy(types[2]);
+		assertEquals(2, SuperTypeHierarchyCache.getCacheSize());
+
+		int evictions= SuperTypeHierarchyCache.getCacheEvictions();
+
+		// keep room for one hierarchy only, the least recently used is evicted
+		SuperTypeHierarchyCache.setMaxMemory(SuperTypeHierarchyCache.getEstimatedMemory() - 1);
+		assertEquals(1, SuperTypeHierarchyCache.getCacheSize());
+		assertEquals(evictions + 1, SuperTypeHierarchyCache.getCacheEvictions());
+		assertFalse(SuperTypeHierarchyCache.hasInCache(types[1]));
+		assertTrue(SuperTypeHierarchyCache.hasInCache(types[2]));
+	}
+
+	public void testMemoryIsDefaultBound() throws Exception {
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJavaProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("pack1", true, null);
+		int count= 20;
+		IType[] types= new IType[count];
+		for (int i= 0; i < count; i++) {
+			types[i]= pack1.getCompilationUnit("T" + i + ".java").createType("public class T" + i + " {\n}\n", null, true, null);
+		}
+
+		for (int i= 0; i < count; i++) {
+			SuperTypeHierarchyCache.getTypeHierarchy(types[i]);
+		}
+		// the small hierarchies fit into the default memory budget
+		assertTrue(SuperTypeHierarchyCache.getEstimatedMemory() <= SuperTypeHierarchyCache.getMaxMemory());
+		assertEquals(count, SuperTypeHierarchyCache.getCacheSize());
+		for (int i= 0; i < count; i++) {
+			assertTrue(SuperTypeHierarchyCache.hasInCache(types[i]));
+		}
+	}
+
+	public void testEvictionByEntryCount() throws Exception {
+		IType[] types= createTypes();
+
+		SuperTypeHierarchyCache.setMaxEntries(1);
+		SuperTypeHierarchyCache.getTypeHierarchy(types[1]);
+		int evictions= SuperTypeHierarchyCache.getCacheEvictions();
+
+		SuperTypeHierarchyCache.getTypeHierarchy(types[2]);
+		assertEquals(1, SuperTypeHierarchyCache.getCacheSize());
+		assertEquals(evictions + 1, SuperTypeHierarchyCache.getCacheEvictions());
+		assertFalse(SuperTypeHierarchyCache.hasInCache(types[1]));
+		assertTrue(SuperTypeHierarchyCache.hasInCache(types[2]));
+	}
+
+	public void testSharedTypes() throws Exception {
+		IType[] types= createTypes();
+
+		// both hierarchies contain java.lang.Object
+		ITypeHierarchy hierarchyB= SuperTypeHierarchyCache.getTypeHierarchy(types[1]);
+		ITypeHierarchy hierarchyC= SuperTypeHierarchyCache.getTypeHierarchy(types[2]);
+		IType object= hierarchyB.getSuperclass(types[0]);
+		assertNotNull(object);
+		assertTrue(hierarchyC.contains(object));
+
+		// evict the hierarchy of C, Object is still found in the hierarchy of B
+		SuperTypeHierarchyCache.setMaxEntries(2);
+		SuperTypeHierarchyCache.getTypeHierarchy(types[1]);
+		SuperTypeHierarchyCache.setMaxEntries(1);
+		assertFalse(SuperTypeHierarchyCache.hasInCache(types[2]));
+
+		int misses= SuperTypeHierarchyCache.getCacheMisses();
+		assertSame(hierarchyB, SuperTypeHierarchyCache.getTypeHierarchy(object));
+		assertEquals(misses, SuperTypeHierarchyCache.getCacheMisses());
+	}
+
+	public void testMethodOverrideTester() throws Exception {
+		IType[] types= createTypes();
+
+		assertSame(SuperTypeHierarchyCache.getMethodOverrideTester(types[1]), SuperTypeHierarchyCache.getMethodOverrideTester(types[1]));
+
+		SuperTypeHierarchyCache.clear();
+		assertFalse(SuperTypeHierarchyCache.hasInCache(types[1]));
+		assertEquals(0, SuperTypeHierarchyCache.getEstimatedMemory());
+	}
+}
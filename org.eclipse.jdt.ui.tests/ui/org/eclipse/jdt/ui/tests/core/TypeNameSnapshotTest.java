@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
+
+import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
+import org.eclipse.jdt.internal.corext.util.TypeNameSnapshot;
+
+
+public class TypeNameSnapshotTest extends TestCase {
+
+	private static final Class THIS= TypeNameSnapshotTest.class;
+
+	private IJavaProject fJProject1;
+	private IPackageFragment fPack;
+	private File fFile;
+	private List fSnapshots;
+
+	public TypeNameSnapshotTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	protected void setUp() throws Exception {
+		fJProject1= JavaProjectHelper.createJavaProject("TestProject1", "bin");
+		assertNotNull("jre is null", JavaProjectHelper.addRTJar(fJProject1));
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		fPack= root.createPackageFragment("snap", true, null);
+		fPack.createCompilationUnit("SnapshotFoo.java", "package snap;\npublic class SnapshotFoo {\n class SnapshotInner {\n }\n}\n", true, null);
+		fPack.createCompilationUnit("ISnapshotBar.java", "package snap;\npublic interface ISnapshotBar {\n}\n", true, null);
+
+		fFile= File.createTempFile("TypeNameSnapshotTest", ".dat");
+		fFile.delete();
+		fSnapshots= new ArrayList();
+	}
+
+	protected void tearDown() throws Exception {
+		for (int i= 0; i < fSnapshots.size(); i++)
+			((TypeNameSnapshot) fSnapshots.get(i)).dispose();
+		JavaProjectHelper.delete(fJProject1);
+		fFile.delete();
+	}
+
+	private TypeNameSnapshot createSnapshot() {
+		TypeNameSnapshot snapshot= new TypeNameSnapshot(fFile);
+		fSnapshots.add(snapshot);
+		return snapshot;
+	}
+
+	private TypeNameSnapshot createReconciledSnapshot() throws Exception {
+		TypeNameSnapshot snapshot= createSnapshot();
+		snapshot.reconcile(new NullProgressMonitor());
+		assertTrue(snapshot.isAvailable());
+		assertTrue(snapshot.isReconciled());
+		assertFalse(snapshot.needsReconcile());
+		return snapshot;
+	}
+
+	private static List collect(TypeNameSnapshot snapshot, String pattern) {
+		return collect(snapshot, pattern, IJavaSearchConstants.TYPE);
+	}
+
+	private static List collect(TypeNameSnapshot snapshot, String pattern, int elementKind) {
+		final List result= new ArrayList();
+		TypeInfoFilter filter= new TypeInfoFilter(pattern, SearchEngine.createWorkspaceScope(), elementKind, null);
+		snapshot.collect(filter, new TypeNameMatchRequestor() {
+			public void acceptTypeNameMatch(TypeNameMatch match) {
+				assertTrue(match.getType().exists());
+				result.add(match.getFullyQualifiedName());
+			}
+		}, new NullProgressMonitor());
+		Collections.sort(result);
+		return result;
+	}
+
+	private static void assertTypes(String[] expected, List actual) {
+		assertEquals(actual.toString(), expected.length, actual.size());
+		for (int i= 0; i < expected.length; i++)
+			assertEquals(expected[i], actual.get(i));
+	}
+
+	public void testCollect() throws Exception {
+		TypeNameSnapshot snapshot= createSnapshot();
+		assertFalse(snapshot.isAvailable());
+		assertTrue(snapshot.needsReconcile());
+		assertTypes(new String[0], collect(snapshot, "SnapshotFoo"));
+
+		snapshot.reconcile(new NullProgressMonitor());
+		assertTypes(new String[] { "snap.SnapshotFoo" }, collect(snapshot, "SnapshotF"));
+		assertTypes(new String[] { "snap.SnapshotFoo" }, collect(snapshot, "snapshotfoo"));
+		assertTypes(new String[] { "snap.SnapshotFoo.SnapshotInner" }, collect(snapshot, "SnapshotInner"));
+		assertTypes(new String[] { "snap.ISnapshotBar" }, collect(snapshot, "ISB"));
+		assertTypes(new String[] { "snap.ISnapshotBar" }, collect(snapshot, "ISnapshot", IJavaSearchConstants.INTERFACE));
+		assertTypes(new String[0], collect(snapshot, "ISnapshot", IJavaSearchConstants.CLASS));
+	}
+
+	public void testDelta() throws Exception {
+		TypeNameSnapshot snapshot= createReconciledSnapshot();
+
+		ICompilationUnit cu= fPack.createCompilationUnit("SnapshotNew.java", "package snap;\npublic class SnapshotNew {\n}\n", true, null);
+		assertTypes(new String[] { "snap.SnapshotNew" }, collect(snapshot, "SnapshotNew"));
+
+		cu.getBuffer().setContents("package snap;\npublic class SnapshotNew {\n}\nclass SnapshotNewer {\n}\n");
+		cu.save(null, true);
+		assertTypes(new String[] { "snap.SnapshotNew", "snap.SnapshotNewer" }, collect(snapshot, "SnapshotNew"));
+
+		cu.delete(true, null);
+		assertTypes(new String[0], collect(snapshot, "SnapshotNew"));
+		assertTypes(new String[] { "snap.SnapshotFoo" }, collect(snapshot, "SnapshotF"));
+		assertFalse(snapshot.needsReconcile());
+
+		// removed roots are dropped
+		JavaProjectHelper.removeSourceContainer(fJProject1, "src");
+		assertTypes(new String[0], collect(snapshot, "SnapshotF"));
+	}
+
+	public void testPersistence() throws Exception {
+		TypeNameSnapshot snapshot= createReconciledSnapshot();
+		fPack.createCompilationUnit("SnapshotNew.java", "package snap;\npublic class SnapshotNew {\n}\n", true, null);
+		assertTypes(new String[] { "snap.SnapshotNew" }, collect(snapshot, "SnapshotNew"));
+
+		// units changed since the last read are not read on save
+		fPack.createCompilationUnit("SnapshotLater.java", "package snap;\npublic class SnapshotLater {\n}\n", true, null);
+		snapshot.save();
+		assertTrue(fFile.exists());
+
+		TypeNameSnapshot loaded= createSnapshot();
+		assertTrue(loaded.isAvailable());
+		assertFalse(loaded.isReconciled());
+		assertTrue(loaded.needsReconcile());
+		assertTypes(new String[] { "snap.SnapshotFoo" }, collect(loaded, "SnapshotF"));
+		assertTypes(new String[] { "snap.SnapshotFoo.SnapshotInner" }, collect(loaded, "SnapshotInner"));
+		assertTypes(new String[] { "snap.SnapshotNew" }, collect(loaded, "SnapshotNew"));
+		assertTypes(new String[0], collect(loaded, "SnapshotLater"));
+		assertTypes(new String[] { "snap.ISnapshotBar" }, collect(loaded, "ISnapshot", IJavaSearchConstants.INTERFACE));
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+
+import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
+import org.eclipse.jdt.internal.corext.util.TypeNameTable;
+
+
+public class TypeNameTableTest extends TestCase {
+
+	private static final Class THIS= TypeNameTableTest.class;
+
+	private static final String[] NAMES= {
+		"HashMap", "Hashtable", "HASHMAP", "hashMap", "HashMapTest", "HMap", "NullPointerException",
+		"NoPermissionError", "NPE", "String", "StringBuffer", "Strings", "ScrollBar", "Map.Entry",
+		"Map.Entry.Key", "\u00e9t\u00e9", "X", "IOException", "Foo$Bar", "TreeMap", "List1", "List2"
+	};
+
+	private static final String[] PATTERNS= {
+		"", "H", "h", "HM", "hm", "HaMa", "HashM", "hashm", "HASH", "NPE", "NPE<", "npe", "NuPoE",
+		"Str", "Str ", "S*B", "*Map", "Ma*", "Entry", "E", "K", "\u00e9", "\u00c9t", "X ", "IOE",
+		"L1", "List1", "java.util.HM", "util.", "Map.", "Map.E"
+	};
+
+	public TypeNameTableTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	private static TypeNameTable createTable(int copies) {
+		TypeNameTable table= new TypeNameTable();
+		for (int i= 0; i < copies; i++) {
+			for (int j= 0; j < NAMES.length; j++) {
+				String name= NAMES[j];
+				table.add("=P/src", true, i % 2 == 0 ? "java.util" : "", name, name + ".java", getModifiers(name));
+			}
+		}
+		return table;
+	}
+
+	private static int getModifiers(String name) {
+		return name.startsWith("I") ? Flags.AccInterface : 0;
+	}
+
+	private static List getExpected(TypeNameTable table, TypeInfoFilter filter, String[] containerNames) {
+		List result= new ArrayList();
+		for (int i= 0; i < table.size(); i++) {
+			if (filter.matchesName(table.getSimpleName(i)) && filter.matchesPackage(containerNames[i]) && filter.matchesModifiers(getModifiers(NAMES[i % NAMES.length])))
+				result.add(new Integer(i));
+		}
+		return result;
+	}
+
+	private static List toList(int[] indexes) {
+		List result= new ArrayList();
+		for (int i= 0; i < indexes.length; i++)
+			result.add(new Integer(indexes[i]));
+		return result;
+	}
+
+	private static String[] getContainerNames(int copies) {
+		String[] result= new String[copies * NAMES.length];
+		for (int i= 0; i < copies; i++) {
+			for (int j= 0; j < NAMES.length; j++) {
+				String packageName= i % 2 == 0 ? "java.util" : "";
+				String name= NAMES[j];
+				int index= name.lastIndexOf('.');
+				String enclosing= index == -1 ? "" : name.substring(0, index);
+				if (enclosing.length() == 0)
+					result[i * NAMES.length + j]= packageName;
+				else
+					result[i * NAMES.length + j]= packageName.length() == 0 ? enclosing : packageName + '.' + enclosing;
+			}
+		}
+		return result;
+	}
+
+	private void assertMatches(int copies) {
+		TypeNameTable table= createTable(copies);
+		String[] containerNames= getContainerNames(copies);
+		for (int i= 0; i < PATTERNS.length; i++) {
+			TypeInfoFilter filter= new TypeInfoFilter(PATTERNS[i], SearchEngine.createWorkspaceScope(), IJavaSearchConstants.TYPE, null);
+			List expected= getExpected(table, filter, containerNames);
+			assertEquals(PATTERNS[i], expected, toList(table.match(filter, new NullProgressMonitor())));
+		}
+	}
+
+	public void testMatch() throws Exception {
+		assertMatches(2);
+	}
+
+	public void testMatchInChunks() throws Exception {
+		// more types than are matched by one task
+		assertMatches(2000);
+	}
+
+	public void testSimpleName() throws Exception {
+		TypeNameTable table= createTable(1);
+		for (int i= 0; i < NAMES.length; i++) {
+			String name= NAMES[i];
+			assertEquals(name.substring(name.lastIndexOf('.') + 1), table.getSimpleName(i));
+		}
+	}
+
+	public void testModifiers() throws Exception {
+		TypeNameTable table= createTable(1);
+		TypeInfoFilter filter= new TypeInfoFilter("I", SearchEngine.createWorkspaceScope(), IJavaSearchConstants.INTERFACE, null);
+		int[] matches= table.match(filter, new NullProgressMonitor());
+		assertEquals(1, matches.length);
+		assertEquals("IOException", table.getSimpleName(matches[0]));
+	}
+}
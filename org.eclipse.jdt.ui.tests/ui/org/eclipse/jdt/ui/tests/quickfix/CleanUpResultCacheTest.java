@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.quickfix;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.CoreException;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+
+import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring;
+import org.eclipse.jdt.internal.corext.fix.CleanUpResultCache;
+
+import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+public class CleanUpResultCacheTest extends CleanUpTestCase {
+
+	private static final Class THIS= CleanUpResultCacheTest.class;
+
+	public CleanUpResultCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		CleanUpResultCache.getInstance().clear();
+	}
+
+	protected void tearDown() throws Exception {
+		CleanUpResultCache.getInstance().clear();
+		super.tearDown();
+	}
+
+	private void performCachedRefactoring(ICompilationUnit[] cus) throws CoreException {
+		CleanUpRefactoring ref= new CleanUpRefactoring();
+		ref.setUseOptionsFromProfile(true);
+		ref.setUseResultCache(true);
+		performRefactoring(ref, cus, JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps());
+	}
+
+	private ICompilationUnit createUnit(IPackageFragment pack, String name, boolean blocks) throws CoreException {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class " + name + " {\n");
+		buf.append("    public boolean b= true;\n");
+		buf.append("    public void foo() {\n");
+		if (blocks) {
+			buf.append("        if (b) {\n");
+			buf.append("            System.out.println(10);\n");
+			buf.append("        }\n");
+		} else {
+			buf.append("        if (b)\n");
+			buf.append("            System.out.println(10);\n");
+		}
+		buf.append("    }\n");
+		buf.append("}\n");
+		return pack.createCompilationUnit(name + ".java", buf.toString(), false, null);
+	}
+
+	public void testUnchangedUnitIsSkipped() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1= createUnit(pack1, "E1", true);
+		String expected1= cu1.getBuffer().getContents();
+
+		enable(CleanUpConstants.CONTROL_STATEMENTS_USE_BLOCKS);
+		enable(CleanUpConstants.CONTROL_STATMENTS_USE_BLOCKS_ALWAYS);
+
+		CleanUpResultCache cache= CleanUpResultCache.getInstance();
+		performCachedRefactoring(new ICompilationUnit[] {cu1});
+		assertEquals(1, cache.getSize());
+
+		int hits= cache.getCacheHits();
+		performCachedRefactoring(new ICompilationUnit[] {cu1});
+		assertEquals(hits + 1, cache.getCacheHits());
+		assertEqualString(cu1.getBuffer().getContents(), expected1);
+	}
+
+	public void testChangedUnitIsNotRemembered() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1= createUnit(pack1, "E1", false);
+
+		enable(CleanUpConstants.CONTROL_STATEMENTS_USE_BLOCKS);
+		enable(CleanUpConstants.CONTROL_STATMENTS_USE_BLOCKS_ALWAYS);
+
+		performCachedRefactoring(new ICompilationUnit[] {cu1});
+		assertEquals(0, CleanUpResultCache.getInstance().getSize());
+	}
+
+	public void testOptionsArePartOfKey() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1= createUnit(pack1, "E1", true);
+
+		enable(CleanUpConstants.CONTROL_STATEMENTS_USE_BLOCKS);
+		enable(CleanUpConstants.CONTROL_STATMENTS_USE_BLOCKS_ALWAYS);
+
+		CleanUpResultCache cache= CleanUpResultCache.getInstance();
+		performCachedRefactoring(new ICompilationUnit[] {cu1});
+		assertEquals(1, cache.getSize());
+
+		enable(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_FIELD_USE_THIS);
+		enable(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_FIELD_USE_THIS_ALWAYS);
+
+		int hits= cache.getCacheHits();
+		performCachedRefactoring(new ICompilationUnit[] {cu1});
+		assertEquals(hits, cache.getCacheHits());
+		assertTrue(cu1.getBuffer().getContents().indexOf("this.b") != -1);
+	}
+
+	public void testStructuralChangeInvalidates() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1= createUnit(pack1, "E1", true);
+
+		enable(CleanUpConstants.CONTROL_STATEMENTS_USE_BLOCKS);
+		enable(CleanUpConstants.CONTROL_STATMENTS_USE_BLOCKS_ALWAYS);
+
+		CleanUpResultCache cache= CleanUpResultCache.getInstance();
+		performCachedRefactoring(new ICompilationUnit[] {cu1});
+		assertEquals(1, cache.getSize());
+
+		// a new type may change the result of clean ups in the project
+		createUnit(pack1, "E2", true);
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testDisabledAfterShutdown() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1= createUnit(pack1, "E1", true);
+
+		enable(CleanUpConstants.CONTROL_STATEMENTS_USE_BLOCKS);
+		enable(CleanUpConstants.CONTROL_STATMENTS_USE_BLOCKS_ALWAYS);
+
+		CleanUpResultCache.shutdown();
+		try {
+			CleanUpResultCache cache= CleanUpResultCache.getInstance();
+			assertSame(cache, CleanUpResultCache.getInstance());
+			assertNull(cache.getKeys(fJProject1, new ICompilationUnit[] {cu1}, JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps()));
+
+			performCachedRefactoring(new ICompilationUnit[] {cu1});
+			assertEquals(0, cache.getSize());
+		} finally {
+			CleanUpResultCache.startup();
+		}
+	}
+}
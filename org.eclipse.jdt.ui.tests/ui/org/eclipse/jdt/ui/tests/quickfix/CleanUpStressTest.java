@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -5206,6 +5206,14 @@ public class CleanUpStressTest extends CleanUpTestCase {
     }
 
 	public void testAllCleanUps() throws Exception {
+		doAllCleanUps(false);
+	}
+
+	public void testAllCleanUpsConcurrent() throws Exception {
+		doAllCleanUps(true);
+	}
+
+	private void doAllCleanUps(boolean concurrent) throws Exception {
 		List cus= new ArrayList();
 		addAllCUs(fJProject1.getChildren(), cus);
 
@@ -5260,7 +5268,7 @@ public class CleanUpStressTest extends CleanUpTestCase {
 		enable(CleanUpConstants.SORT_MEMBERS_ALL);
 
 		ICompilationUnit[] units= (ICompilationUnit[])cus.toArray(new ICompilationUnit[cus.size()]);
-		performRefactoring(units);
+		performRefactoring(units, concurrent);
 
 
 //		generateTable(units);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -83,6 +83,7 @@ public class CleanUpTestCase extends QuickFixTest {
 		suite.addTest(CleanUpAnnotationTest.suite());
 		suite.addTest(SaveParticipantTest.suite());
 		suite.addTest(CleanUpActionTest.suite());
+		suite.addTest(CleanUpResultCacheTest.suite());
 
 		return suite;
 	}
@@ -200,8 +201,13 @@ public class CleanUpTestCase extends QuickFixTest {
 	}
 
 	protected final RefactoringStatus performRefactoring(ICompilationUnit[] cus) throws CoreException {
+		return performRefactoring(cus, false);
+	}
+
+	protected final RefactoringStatus performRefactoring(ICompilationUnit[] cus, boolean concurrent) throws CoreException {
 		final CleanUpRefactoring ref= new CleanUpRefactoring();
 		ref.setUseOptionsFromProfile(true);
+		ref.setConcurrent(concurrent);
 		ICleanUp[] cleanUps= JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps();
 
 		return performRefactoring(ref, cus, cleanUps);
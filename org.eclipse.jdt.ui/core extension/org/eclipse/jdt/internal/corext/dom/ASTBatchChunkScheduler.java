@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Hands out the chunks of compilation units parsed by the {@link ASTBatchParser}.
+ * <p>
+ * The size of a chunk is computed from the source length of the compilation
+ * units and from the heap that is available when the chunk is requested. The
+ * heap growth observed while parsing a chunk is used to refine the estimated memory
+ * needed per source character, such that the following chunks shrink on heap
+ * pressure and grow if there is room. Since concurrent workers allocate on the
+ * same heap, the growth is attributed to the source of all chunks that were
+ * parsed at the same time, not to the measured chunk alone.
+ * </p>
+ * <p>
+ * The source lengths of all compilation units are determined when the scheduler
+ * is created, such that handing out a chunk does not access the file system.
+ * </p>
+ * <p>
+ * The scheduler is thread safe.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class ASTBatchChunkScheduler {
+
+	/**
+	 * A chunk of compilation units from the same project.
+	 */
+	static final class Chunk {
+
+		private final ICompilationUnit[] fUnits;
+		private final long fSourceLength;
+		private final long fUsedHeapBefore;
+		private final long fStartTime;
+		private long fPeakUsedHeap;
+		private long fConcurrentSourceLength;
+
+		private Chunk(ICompilationUnit[] units, long sourceLength) {
+			fUnits= units;
+			fSourceLength= sourceLength;
+			fUsedHeapBefore= getUsedHeap();
+			fPeakUsedHeap= fUsedHeapBefore;
+			fStartTime= System.currentTimeMillis();
+			fConcurrentSourceLength= sourceLength;
+		}
+
+		public ICompilationUnit[] getUnits() {
+			return fUnits;
+		}
+
+		/**
+		 * Samples the heap while the chunk is parsed. Called whenever an
+		 * AST of this chunk has been created.
+		 */
+		public synchronized void sampleHeap() {
+			fPeakUsedHeap= Math.max(fPeakUsedHeap, getUsedHeap());
+		}
+
+		synchronized long getHeapGrowth() {
+			return Math.max(0, fPeakUsedHeap - fUsedHeapBefore);
+		}
+
+		synchronized long getPeakUsedHeap() {
+			return fPeakUsedHeap;
+		}
+	}
+
+	/**
+	 * Estimated heap used per character of source, before any chunk has been measured.
+	 */
+	private static final int INITIAL_BYTES_PER_CHAR= 32;
+
+	/**
+	 * Source length assumed for compilation units whose length cannot be determined cheaply.
+	 */
+	private static final int DEFAULT_SOURCE_LENGTH= 10000;
+
+	/**
+	 * Maximal number of compilation units in one chunk.
+	 */
+	private static final int MAX_CHUNK_SIZE= 1000;
+
+	/**
+	 * Fraction of the free heap that all workers together may use.
+	 */
+	private static final double HEAP_FRACTION= 0.5;
+
+	private final ICompilationUnit[][] fUnitsByProject;
+	private final int[][] fSourceLengths;
+	private final int fWorkers;
+	private final ASTBatchParserStatistics fStatistics;
+
+	private int fProjectIndex;
+	private int fCursor;
+	private double fBytesPerChar;
+	private int fLastChunkSize;
+
+	/**
+	 * The chunks currently being parsed.
+	 */
+	private final List<Chunk> fActiveChunks;
+	private long fActiveSourceLength;
+
+	/**
+	 * The start time of the first of the chunks currently being parsed.
+	 */
+	private long fBusySince;
+
+	/**
+	 * Creates a scheduler and determines the source length of all compilation units.
+	 *
+	 * @param unitsByProject the compilation units to parse, split by project
+	 * @param workers the number of workers that parse chunks concurrently
+	 * @param statistics the statistics to update
+	 */
+	public ASTBatchChunkScheduler(ICompilationUnit[][] unitsByProject, int workers, ASTBatchParserStatistics statistics) {
+		fUnitsByProject= unitsByProject;
+		fSourceLengths= new int[unitsByProject.length][];
+		for (int i= 0; i < unitsByProject.length; i++) {
+			ICompilationUnit[] units= unitsByProject[i];
+			fSourceLengths[i]= new int[units.length];
+			for (int k= 0; k < units.length; k++) {
+				fSourceLengths[i][k]= getSourceLength(units[k]);
+			}
+		}
+		fWorkers= workers;
+		fStatistics= statistics;
+		fProjectIndex= 0;
+		fCursor= 0;
+		fBytesPerChar= INITIAL_BYTES_PER_CHAR;
+		fLastChunkSize= 0;
+		fActiveChunks= new ArrayList<Chunk>(workers);
+		fActiveSourceLength= 0;
+	}
+
+	/**
+	 * Returns the next chunk to parse.
+	 *
+	 * @return the next chunk or <code>null</code> if all compilation units have been handed out
+	 */
+	public synchronized Chunk nextChunk() {
+		while (fProjectIndex < fUnitsByProject.length && fCursor == fUnitsByProject[fProjectIndex].length) {
+			fProjectIndex++;
+			fCursor= 0;
+		}
+		if (fProjectIndex == fUnitsByProject.length)
+			return null;
+
+		ICompilationUnit[] units= fUnitsByProject[fProjectIndex];
+		int[] lengths= fSourceLengths[fProjectIndex];
+
+		long budget= (long) (getAvailableHeap() * HEAP_FRACTION / fWorkers / fBytesPerChar);
+		int maxSize= fLastChunkSize == 0 ? MAX_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, fLastChunkSize * 2);
+
+		int start= fCursor;
+		long sourceLength= 0;
+		do {
+			sourceLength+= lengths[fCursor];
+			fCursor++;
+		} while (fCursor < units.length && fCursor - start < maxSize && sourceLength + lengths[fCursor] <= budget);
+
+		ICompilationUnit[] chunkUnits= new ICompilationUnit[fCursor - start];
+		System.arraycopy(units, start, chunkUnits, 0, chunkUnits.length);
+		fLastChunkSize= chunkUnits.length;
+
+		Chunk chunk= new Chunk(chunkUnits, sourceLength);
+		if (fActiveChunks.isEmpty())
+			fBusySince= chunk.fStartTime;
+		fActiveChunks.add(chunk);
+		fActiveSourceLength+= sourceLength;
+		for (int i= 0; i < fActiveChunks.size(); i++) {
+			Chunk active= fActiveChunks.get(i);
+			active.fConcurrentSourceLength= Math.max(active.fConcurrentSourceLength, fActiveSourceLength);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Informs the scheduler that all ASTs of the given chunk have been created.
+	 *
+	 * @param chunk the chunk that has been parsed
+	 */
+	public void chunkDone(Chunk chunk) {
+		long growth= chunk.getHeapGrowth();
+		long end= System.currentTimeMillis();
+		fStatistics.chunkDone(chunk.fUnits.length, end - chunk.fStartTime, chunk.getPeakUsedHeap());
+
+		synchronized (this) {
+			fActiveChunks.remove(chunk);
+			fActiveSourceLength-= chunk.fSourceLength;
+			if (fActiveChunks.isEmpty())
+				fStatistics.parsed(end - fBusySince);
+			// the heap grew by the allocations of all chunks parsed at the same time
+			if (chunk.fConcurrentSourceLength > 0 && growth > 0) {
+				double measured= (double) growth / chunk.fConcurrentSourceLength;
+				if (measured > fBytesPerChar) {
+					// shrink immediately
+					fBytesPerChar= measured;
+				} else {
+					// grow slowly
+					fBytesPerChar= (fBytesPerChar + measured) / 2;
+				}
+			}
+		}
+	}
+
+	private static long getUsedHeap() {
+		Runtime runtime= Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long getAvailableHeap() {
+		return Runtime.getRuntime().maxMemory() - getUsedHeap();
+	}
+
+	private static int getSourceLength(ICompilationUnit unit) {
+		try {
+			if (unit.isOpen()) {
+				IBuffer buffer= unit.getBuffer();
+				if (buffer != null)
+					return buffer.getLength();
+			}
+			IResource resource= unit.getResource();
+			if (resource != null) {
+				IPath location= resource.getLocation();
+				if (location != null) {
+					long length= location.toFile().length();
+					if (length > 0)
+						return (int) Math.min(length, Integer.MAX_VALUE);
+				}
+			}
+		} catch (JavaModelException e) {
+			// use the default
+		}
+		return DEFAULT_SOURCE_LENGTH;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,20 +11,27 @@
 package org.eclipse.jdt.internal.corext.dom;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.IBinding;
 
 import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
@@ -33,35 +40,90 @@ import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
  * Creates AST from a set of compilation units. Uses the
  * batch parser. Splits the set of compilation units in subsets
  * such that it is unlikely that a out of memory exception will occur.
+ * The size of the subsets adapts to the source length of the compilation
+ * units and to the heap growth observed while parsing the previous subsets.
+ * <p>
+ * In parallel mode (see {@link #ASTBatchParser(boolean)}), the subsets are
+ * parsed concurrently by a bounded pool of worker threads. The pool size is
+ * limited by the number of available processors and by the maximum heap size.
+ * Calls to the <code>ASTRequestor</code> are serialized, i.e. the requestor
+ * is never called by two threads at the same time, unless the requestor is a
+ * {@link ConcurrentASTRequestor}.
+ * </p>
+ * <p>
+ * The requestor is wrapped and must therefore not use
+ * <code>ASTRequestor#createBindings(String[])</code>.
+ * </p>
  *
  * @since 3.4
  */
 public class ASTBatchParser {
 
-	private static final int MAX_AT_ONCE;
-	static {
-		long maxMemory= Runtime.getRuntime().maxMemory();
-		int ratio= (int) Math.round((double) maxMemory / (64 * 0x100000));
-		switch (ratio) {
-			case 0:
-				MAX_AT_ONCE= 25;
-				break;
-			case 1:
-				MAX_AT_ONCE= 100;
-				break;
-			case 2:
-				MAX_AT_ONCE= 200;
-				break;
-			case 3:
-				MAX_AT_ONCE= 300;
-				break;
-			case 4:
-				MAX_AT_ONCE= 400;
-				break;
-			default:
-				MAX_AT_ONCE= 500;
-				break;
-		}
+	/**
+	 * A requestor that may be called by several workers at the same time in
+	 * parallel mode. Each AST is passed on the worker thread that created it,
+	 * while the bindings of the AST are valid. The requestor must be thread safe.
+	 *
+	 * @since 3.8
+	 */
+	public static abstract class ConcurrentASTRequestor extends ASTRequestor {
+	}
+
+	/**
+	 * Name of the system property that enables the parallel mode for callers
+	 * which leave the choice to the user, see {@link #isParallelEnabled()}.
+	 *
+	 * @since 3.8
+	 */
+	public static final String PARALLEL_PROPERTY= "org.eclipse.jdt.ui.astBatchParser.parallel"; //$NON-NLS-1$
+
+	/**
+	 * Heap that is reserved for each worker in parallel mode.
+	 */
+	private static final long MEMORY_PER_WORKER= 256 * 0x100000;
+
+	private final boolean fParallel;
+	private final ASTBatchParserStatistics fStatistics;
+
+	/**
+	 * Creates a new batch parser that parses the compilation units sequentially.
+	 */
+	public ASTBatchParser() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new batch parser.
+	 *
+	 * @param parallel <code>true</code> to parse independent subsets of compilation units
+	 *   concurrently, <code>false</code> to parse them sequentially on the calling thread
+	 * @since 3.8
+	 */
+	public ASTBatchParser(boolean parallel) {
+		fParallel= parallel;
+		fStatistics= new ASTBatchParserStatistics();
+	}
+
+	/**
+	 * Tells whether the parallel mode has been enabled with the
+	 * {@link #PARALLEL_PROPERTY} system property.
+	 *
+	 * @return <code>true</code> if callers should create parallel parsers
+	 * @since 3.8
+	 */
+	public static boolean isParallelEnabled() {
+		return Boolean.getBoolean(PARALLEL_PROPERTY);
+	}
+
+	/**
+	 * Returns the counters collected by all invocations of
+	 * {@link #createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}
+	 * on this parser.
+	 *
+	 * @return the statistics of this parser
+	 */
+	public ASTBatchParserStatistics getStatistics() {
+		return fStatistics;
 	}
 
 	/**
@@ -91,32 +153,109 @@ public class ASTBatchParser {
 
 		monitor.beginTask("", compilationUnits.length); //$NON-NLS-1$
 		try {
+			int workers= getWorkerCount(compilationUnits.length);
+			ASTBatchChunkScheduler scheduler= new ASTBatchChunkScheduler(splitByProject(compilationUnits), workers, fStatistics);
+			if (workers > 1) {
+				createASTsParallel(scheduler, workers, bindingKeys, requestor, monitor);
+			} else {
+				ASTBatchChunkScheduler.Chunk chunk;
+				while ((chunk= scheduler.nextChunk()) != null) {
+					parseChunk(chunk, bindingKeys, requestor, monitor);
+					scheduler.chunkDone(chunk);
+				}
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private void createASTsParallel(final ASTBatchChunkScheduler scheduler, int workers, final String[] bindingKeys, ASTRequestor requestor, IProgressMonitor monitor) {
+		final ASTRequestor workerRequestor= requestor instanceof ConcurrentASTRequestor ? requestor : new SerializedASTRequestor(requestor);
+		final SynchronizedProgressMonitor sharedMonitor= new SynchronizedProgressMonitor(monitor);
+
+		ExecutorService executor= Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private int fCount= 0;
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread= new Thread(runnable, "AST Batch Parser " + (++fCount)); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<?>> futures= new ArrayList<Future<?>>(workers);
+			for (int i= 0; i < workers; i++) {
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						ASTBatchChunkScheduler.Chunk chunk;
+						while ((chunk= scheduler.nextChunk()) != null) {
+							if (sharedMonitor.isCanceled())
+								throw new OperationCanceledException();
 
-			ICompilationUnit[][] splited= splitByProject(compilationUnits);
-			for (int i= 0; i < splited.length; i++) {
-				ICompilationUnit[] units= splited[i];
-
-				if (units.length <= MAX_AT_ONCE) {
-					createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, new SubProgressMonitor(monitor, units.length));
-				} else {
-					List<ICompilationUnit> list= Arrays.asList(units);
-					int end= 0;
-					int cursor= 0;
-					while (cursor < units.length) {
-						end= Math.min(end + MAX_AT_ONCE, units.length);
-						List<ICompilationUnit> toParse= list.subList(cursor, end);
-
-						createParser(units[0].getJavaProject()).createASTs(toParse.toArray(new ICompilationUnit[toParse.size()]), bindingKeys, requestor,
-								new SubProgressMonitor(monitor, toParse.size()));
-						cursor= end;
+							parseChunk(chunk, bindingKeys, workerRequestor, sharedMonitor);
+							scheduler.chunkDone(chunk);
+						}
 					}
+				}));
+			}
+
+			for (Iterator<Future<?>> iterator= futures.iterator(); iterator.hasNext();) {
+				Future<?> future= iterator.next();
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				} catch (ExecutionException e) {
+					sharedMonitor.abort();
+					Throwable cause= e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
 				}
 			}
 		} finally {
-			monitor.done();
+			executor.shutdownNow();
 		}
 	}
 
+	private void parseChunk(final ASTBatchChunkScheduler.Chunk chunk, String[] bindingKeys, final ASTRequestor requestor, IProgressMonitor monitor) {
+		ICompilationUnit[] units= chunk.getUnits();
+		ASTRequestor measuringRequestor= new ASTRequestor() {
+			@Override
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				chunk.sampleHeap();
+				requestor.acceptAST(source, ast);
+			}
+
+			@Override
+			public void acceptBinding(String bindingKey, IBinding binding) {
+				requestor.acceptBinding(bindingKey, binding);
+			}
+		};
+		createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, measuringRequestor, new SubProgressMonitor(monitor, units.length));
+	}
+
+	/**
+	 * Returns the number of workers to use for parsing <code>unitCount</code> compilation units.
+	 * <p>
+	 * Subclasses may override
+	 * </p>
+	 *
+	 * @param unitCount the number of compilation units to parse
+	 * @return the number of workers, <code>1</code> to parse on the calling thread
+	 * @since 3.8
+	 */
+	protected int getWorkerCount(int unitCount) {
+		if (!fParallel || unitCount <= 1)
+			return 1;
+
+		Runtime runtime= Runtime.getRuntime();
+		int byMemory= (int) Math.max(1, runtime.maxMemory() / MEMORY_PER_WORKER);
+		return Math.min(unitCount, Math.min(runtime.availableProcessors(), byMemory));
+	}
+
 	/**
 	 * Creates a new parser which can be used to create ASTs
 	 * for compilation units in <code>project</code>
@@ -173,4 +312,90 @@ public class ASTBatchParser {
 
 		return true;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Forwards to a requestor, such that at most one thread at a time
+	 * calls the requestor.
+	 */
+	private static final class SerializedASTRequestor extends ASTRequestor {
+
+		private final ASTRequestor fRequestor;
+
+		public SerializedASTRequestor(ASTRequestor requestor) {
+			fRequestor= requestor;
+		}
+
+		@Override
+		public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+			synchronized (fRequestor) {
+				fRequestor.acceptAST(source, ast);
+			}
+		}
+
+		@Override
+		public void acceptBinding(String bindingKey, IBinding binding) {
+			synchronized (fRequestor) {
+				fRequestor.acceptBinding(bindingKey, binding);
+			}
+		}
+	}
+
+	/**
+	 * A progress monitor that can be shared by the workers.
+	 */
+	private static final class SynchronizedProgressMonitor extends ProgressMonitorWrapper {
+
+		private volatile boolean fAborted= false;
+
+		public SynchronizedProgressMonitor(IProgressMonitor monitor) {
+			super(monitor);
+		}
+
+		/**
+		 * Stops the remaining workers without canceling the wrapped monitor.
+		 */
+		public void abort() {
+			fAborted= true;
+		}
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			super.beginTask(name, totalWork);
+		}
+
+		@Override
+		public synchronized void done() {
+			super.done();
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			super.internalWorked(work);
+		}
+
+		@Override
+		public synchronized boolean isCanceled() {
+			return fAborted || super.isCanceled();
+		}
+
+		@Override
+		public synchronized void setCanceled(boolean value) {
+			super.setCanceled(value);
+		}
+
+		@Override
+		public synchronized void setTaskName(String name) {
+			super.setTaskName(name);
+		}
+
+		@Override
+		public synchronized void subTask(String name) {
+			super.subTask(name);
+		}
+
+		@Override
+		public synchronized void worked(int work) {
+			super.worked(work);
+		}
+	}
+}
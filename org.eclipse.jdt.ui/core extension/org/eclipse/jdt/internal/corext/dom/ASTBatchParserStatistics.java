@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.dom;
+
+/**
+ * Counters collected by an {@link ASTBatchParser}.
+ *
+ * @see ASTBatchParser#getStatistics()
+ * @since 3.8
+ */
+public final class ASTBatchParserStatistics {
+
+	private int fASTCount;
+	private int fChunkCount;
+	private long fParseTime;
+	private long fElapsedTime;
+	private int fLargestChunk;
+	private long fPeakUsedHeap;
+
+	ASTBatchParserStatistics() {
+	}
+
+	synchronized void chunkDone(int size, long parseTime, long peakUsedHeap) {
+		fASTCount+= size;
+		fChunkCount++;
+		fParseTime+= parseTime;
+		fLargestChunk= Math.max(fLargestChunk, size);
+		fPeakUsedHeap= Math.max(fPeakUsedHeap, peakUsedHeap);
+	}
+
+	synchronized void parsed(long elapsedTime) {
+		fElapsedTime+= elapsedTime;
+	}
+
+	/**
+	 * @return the number of ASTs created
+	 */
+	public synchronized int getASTCount() {
+		return fASTCount;
+	}
+
+	/**
+	 * @return the number of chunks parsed
+	 */
+	public synchronized int getChunkCount() {
+		return fChunkCount;
+	}
+
+	/**
+	 * @return the number of compilation units in the largest chunk
+	 */
+	public synchronized int getLargestChunk() {
+		return fLargestChunk;
+	}
+
+	/**
+	 * Returns the time spent parsing, in milliseconds. Chunks parsed concurrently
+	 * are counted individually.
+	 *
+	 * @return the accumulated parse time in milliseconds
+	 */
+	public synchronized long getParseTime() {
+		return fParseTime;
+	}
+
+	/**
+	 * Returns the wall-clock time during which chunks were parsed, in milliseconds. Time during
+	 * which several chunks were parsed concurrently is counted once.
+	 *
+	 * @return the elapsed parse time in milliseconds
+	 */
+	public synchronized long getElapsedTime() {
+		return fElapsedTime;
+	}
+
+	/**
+	 * Returns the largest used heap sampled while chunks were parsed.
+	 *
+	 * @return the peak used heap in bytes
+	 */
+	public synchronized long getPeakUsedHeap() {
+		return fPeakUsedHeap;
+	}
+
+	/**
+	 * @return the number of ASTs created per second of elapsed time
+	 */
+	public synchronized double getASTsPerSecond() {
+		if (fElapsedTime == 0)
+			return 0;
+		return fASTCount * 1000.0 / fElapsedTime;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuffer buf= new StringBuffer();
+		buf.append("ASTs: ").append(fASTCount); //$NON-NLS-1$
+		buf.append(", chunks: ").append(fChunkCount); //$NON-NLS-1$
+		buf.append(", largest chunk: ").append(fLargestChunk); //$NON-NLS-1$
+		buf.append(", ASTs/s: ").append(Math.round(getASTsPerSecond())); //$NON-NLS-1$
+		buf.append(", peak heap: ").append(fPeakUsedHeap / 0x100000).append(" MB"); //$NON-NLS-1$ //$NON-NLS-2$
+		return buf.toString();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1020,6 +1020,18 @@ public class CleanUpConstants {
 	 */
 	public static final String SHOW_CLEAN_UP_WIZARD= "cleanup.showwizard"; //$NON-NLS-1$
 
+	/**
+	 * Should the Clean Up Action compute the fixes for different compilation units concurrently?
+	 * The fixes are only computed concurrently if all clean ups support it. <br>
+	 * <br>
+	 * Possible values: {<code><b>true</b></code>, <code><b>false</b></code> <br>
+	 * Default value: <code><b>true</b></code><br>
+	 * <br>
+	 * 
+	 * @since 3.8
+	 */
+	public static final String COMPUTE_CONCURRENTLY= "cleanup.compute_concurrently"; //$NON-NLS-1$
+
 	/**
 	 * A key to a serialized string in the <code>InstanceScope</code> containing all the profiles.<br>
 	 * Following code snippet can load the profiles:
@@ -1270,6 +1282,7 @@ public class CleanUpConstants {
 		}
 
 		store.setDefault(SHOW_CLEAN_UP_WIZARD, true);
+		store.setDefault(COMPUTE_CONCURRENTLY, true);
 		store.setDefault(CLEANUP_PROFILE, DEFAULT_PROFILE);
 		store.setDefault(CLEANUP_ON_SAVE_PROFILE, DEFAULT_SAVE_PARTICIPANT_PROFILE);
 	}
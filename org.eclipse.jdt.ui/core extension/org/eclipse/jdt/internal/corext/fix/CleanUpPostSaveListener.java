@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -339,6 +339,17 @@ public class CleanUpPostSaveListener implements IPostSaveListener {
 
 			ICleanUp[] cleanUps= getCleanUps(unit.getJavaProject().getProject());
 
+			CleanUpResultCache cache= CleanUpResultCache.getInstance();
+			String cacheKey= null;
+			if (changedRegions == null || !requiresChangedRegions(cleanUps)) {
+				String[] keys= cache.getKeys(unit.getJavaProject(), new ICompilationUnit[] { unit }, cleanUps);
+				if (keys != null)
+					cacheKey= keys[0];
+				if (cache.isUnchanged(cacheKey))
+					return;
+			}
+			boolean unchanged= true;
+
 			long oldFileValue= unit.getResource().getModificationStamp();
 			long oldDocValue= getDocumentStamp((IFile)unit.getResource(), new SubProgressMonitor(monitor, 2));
 
@@ -371,6 +382,8 @@ public class CleanUpPostSaveListener implements IPostSaveListener {
     				}
     				if (showStatus(preCondition) != Window.OK)
     					return;
+    				if (!preCondition.isOK())
+    					unchanged= false;
 
     				Map<String, String> options= new HashMap<String, String>();
     				for (int i= 0; i < cleanUps.length; i++) {
@@ -402,9 +415,12 @@ public class CleanUpPostSaveListener implements IPostSaveListener {
     				}
     				if (showStatus(postCondition) != Window.OK)
     					return;
+    				if (!postCondition.isOK())
+    					unchanged= false;
 
     				cleanUps= undoneCleanUps.toArray(new ICleanUp[undoneCleanUps.size()]);
     				if (change != null) {
+    					unchanged= false;
     					result.add(change);
 
     					change.setSaveMode(TextFileChange.LEAVE_DIRTY);
@@ -424,6 +440,9 @@ public class CleanUpPostSaveListener implements IPostSaveListener {
     				}
     			} while (cleanUps.length > 0);
     			success= true;
+
+    			if (unchanged)
+    				cache.setUnchanged(cacheKey, unit.getJavaProject());
 			} finally {
 				manager.changePerformed(result, success);
 			}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,12 +11,18 @@
 package org.eclipse.jdt.internal.corext.fix;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.eclipse.swt.widgets.Display;
 
@@ -81,6 +87,7 @@ import org.eclipse.jdt.ui.cleanup.ICleanUpFix;
 import org.eclipse.jdt.ui.text.java.IProblemLocation;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.AbstractCleanUp;
 import org.eclipse.jdt.internal.ui.fix.IMultiFix.MultiFixContext;
 import org.eclipse.jdt.internal.ui.fix.MapCleanUpOptions;
 import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
@@ -270,48 +277,80 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 			fMonitor.subTask(fMonitor.getSubTaskMessage(source));
 
-			ICompilationUnit primary= (ICompilationUnit)source.getPrimaryElement();
-			ParseListElement element= fCompilationUnitParseElementMap.get(primary);
+			ParseListElement element= getParseListElement(source);
 			CleanUpTarget target= element.getTarget();
 
-			CleanUpContext context;
-			if (target instanceof MultiFixTarget) {
-				context= new MultiFixContext(source, ast, ((MultiFixTarget)target).getProblems());
-			} else {
-				context= new CleanUpContext(source, ast);
-			}
-			ICleanUp[] rejectedCleanUps= calculateSolutions(context, element.getCleanUps());
+			List<ICleanUp> result= new ArrayList<ICleanUp>();
+			CleanUpChange solution= calculateSolution(createContext(source, ast, target), element.getCleanUps(), result);
 
-			if (rejectedCleanUps.length > 0) {
-				fUndoneElements.add(new ParseListElement(target, rejectedCleanUps));
-				fMonitor.reset();
-			} else {
-				fMonitor.flush();
-			}
+			integrate(source, target, solution, result.toArray(new ICleanUp[result.size()]));
 		}
 
 		public void acceptSource(ICompilationUnit source) {
 			acceptAST(source, null);
 		}
 
+		/**
+		 * Returns the requestor to pass to the {@link ASTBatchParser}.
+		 *
+		 * @return the requestor that receives the ASTs
+		 */
+		public ASTRequestor getASTRequestor() {
+			return this;
+		}
+
+		/**
+		 * Called after all ASTs and sources have been accepted.
+		 */
+		public void done() {
+		}
+
+		/**
+		 * Releases the resources held by this requestor.
+		 */
+		public void dispose() {
+		}
+
 		public List<ParseListElement> getUndoneElements() {
 			return fUndoneElements;
 		}
 
-		private ICleanUp[] calculateSolutions(CleanUpContext context, ICleanUp[] cleanUps) {
-			List<ICleanUp>result= new ArrayList<ICleanUp>();
-			CleanUpChange solution;
+		protected ParseListElement getParseListElement(ICompilationUnit source) {
+			ICompilationUnit primary= (ICompilationUnit)source.getPrimaryElement();
+			return fCompilationUnitParseElementMap.get(primary);
+		}
+
+		protected static CleanUpContext createContext(ICompilationUnit source, CompilationUnit ast, CleanUpTarget target) {
+			if (target instanceof MultiFixTarget) {
+				return new MultiFixContext(source, ast, ((MultiFixTarget)target).getProblems());
+			} else {
+				return new CleanUpContext(source, ast);
+			}
+		}
+
+		protected static CleanUpChange calculateSolution(CleanUpContext context, ICleanUp[] cleanUps, List<ICleanUp> rejectedCleanUps) {
 			try {
-				solution= calculateChange(context, cleanUps, result, null);
+				return calculateChange(context, cleanUps, rejectedCleanUps, null);
 			} catch (CoreException e) {
 				throw new FixCalculationException(e);
 			}
+		}
 
+		protected void subTask(ICompilationUnit source) {
+			fMonitor.subTask(fMonitor.getSubTaskMessage(source));
+		}
+
+		protected void integrate(ICompilationUnit source, CleanUpTarget target, CleanUpChange solution, ICleanUp[] rejectedCleanUps) {
 			if (solution != null) {
-				integrateSolution(solution, context.getCompilationUnit());
+				integrateSolution(solution, source);
 			}
 
-			return result.toArray(new ICleanUp[result.size()]);
+			if (rejectedCleanUps.length > 0) {
+				fUndoneElements.add(new ParseListElement(target, rejectedCleanUps));
+				fMonitor.reset();
+			} else {
+				fMonitor.flush();
+			}
 		}
 
 		private void integrateSolution(CleanUpChange solution, ICompilationUnit source) {
@@ -326,16 +365,160 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	/**
+	 * Computes the fixes for different compilation units concurrently. The fix for a
+	 * compilation unit is computed in <code>acceptAST</code> on the worker thread that
+	 * created the AST, while its bindings are valid. Each worker uses its own copies
+	 * of the clean ups. The results are integrated in the order of the parse list,
+	 * such that the result equals the result of a sequential run.
+	 */
+	private static class ConcurrentCleanUpASTRequestor extends CleanUpASTRequestor {
+
+		private static final class FixResult {
+
+			private final ICompilationUnit fSource;
+			private final CleanUpChange fSolution;
+			private final ICleanUp[] fRejectedCleanUps;
+
+			public FixResult(ICompilationUnit source, CleanUpChange solution, ICleanUp[] rejectedCleanUps) {
+				fSource= source;
+				fSolution= solution;
+				fRejectedCleanUps= rejectedCleanUps;
+			}
+		}
+
+		private final List<ParseListElement> fParseList;
+		private final BlockingQueue<Map<ICleanUp, ICleanUp>> fCleanUpCopies;
+		private final Map<ICompilationUnit, FixResult> fResults;
+		private final int fWorkerCount;
+
+		/**
+		 * @param parseList the elements to compute fixes for
+		 * @param solutions the solutions computed so far
+		 * @param monitor the progress monitor
+		 * @param cleanUpCopies for each worker a map from the clean ups to their copies
+		 */
+		public ConcurrentCleanUpASTRequestor(List<ParseListElement> parseList, Hashtable<ICompilationUnit, List<CleanUpChange>> solutions, CleanUpRefactoringProgressMonitor monitor, List<Map<ICleanUp, ICleanUp>> cleanUpCopies) {
+			super(parseList, solutions, monitor);
+			fParseList= parseList;
+			fCleanUpCopies= new ArrayBlockingQueue<Map<ICleanUp, ICleanUp>>(cleanUpCopies.size(), false, cleanUpCopies);
+			fResults= Collections.synchronizedMap(new HashMap<ICompilationUnit, FixResult>());
+			fWorkerCount= cleanUpCopies.size();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ASTRequestor getASTRequestor() {
+			return new ASTBatchParser.ConcurrentASTRequestor() {
+				@Override
+				public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+					ConcurrentCleanUpASTRequestor.this.acceptAST(source, ast);
+				}
+			};
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * Called concurrently by the workers of the {@link ASTBatchParser}.
+		 * </p>
+		 */
+		@Override
+		public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+			ParseListElement element= getParseListElement(source);
+
+			Map<ICleanUp, ICleanUp> copies= takeCleanUpCopies();
+			FixResult result;
+			try {
+				result= calculateFix(source, ast, element, copies);
+			} finally {
+				fCleanUpCopies.add(copies);
+			}
+			fResults.put(element.getTarget().getCompilationUnit(), result);
+		}
+
+		private Map<ICleanUp, ICleanUp> takeCleanUpCopies() {
+			try {
+				return fCleanUpCopies.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+		}
+
+		private static FixResult calculateFix(ICompilationUnit source, CompilationUnit ast, ParseListElement element, Map<ICleanUp, ICleanUp> copies) {
+			ICleanUp[] cleanUps= element.getCleanUps();
+			ICleanUp[] copiedCleanUps= new ICleanUp[cleanUps.length];
+			for (int i= 0; i < cleanUps.length; i++) {
+				copiedCleanUps[i]= copies.get(cleanUps[i]);
+			}
+
+			List<ICleanUp> rejected= new ArrayList<ICleanUp>();
+			CleanUpChange solution= calculateSolution(createContext(source, ast, element.getTarget()), copiedCleanUps, rejected);
+
+			// map the rejected copies back to the clean ups
+			List<ICleanUp> result= new ArrayList<ICleanUp>(rejected.size());
+			for (int i= 0; i < copiedCleanUps.length; i++) {
+				if (rejected.contains(copiedCleanUps[i]))
+					result.add(cleanUps[i]);
+			}
+			return new FixResult(source, solution, result.toArray(new ICleanUp[result.size()]));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void done() {
+			for (Iterator<ParseListElement> iter= fParseList.iterator(); iter.hasNext();) {
+				ParseListElement element= iter.next();
+				FixResult result= fResults.remove(element.getTarget().getCompilationUnit());
+				if (result == null)
+					continue;
+
+				subTask(result.fSource);
+				integrate(result.fSource, element.getTarget(), result.fSolution, result.fRejectedCleanUps);
+			}
+		}
+
+		/**
+		 * Returns the number of workers that can compute fixes at the same time.
+		 *
+		 * @return the number of copies of the clean ups
+		 */
+		public int getWorkerCount() {
+			return fWorkerCount;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void dispose() {
+			fResults.clear();
+		}
+	}
+
 	private class CleanUpFixpointIterator {
 
 		private List<ParseListElement> fParseList;
 		private final Hashtable<ICompilationUnit, List<CleanUpChange>> fSolutions;
 		private final Hashtable<ICompilationUnit, ICompilationUnit> fWorkingCopies; // map from primary to working copy
 		private final Map<String, String> fCleanUpOptions;
+		private final List<Map<ICleanUp, ICleanUp>> fConcurrentCleanUps;
 		private final int fSize;
 		private int fIndex;
 
-		public CleanUpFixpointIterator(CleanUpTarget[] targets, ICleanUp[] cleanUps) {
+		/**
+		 * @param targets the targets to clean up
+		 * @param cleanUps the clean ups to apply
+		 * @param concurrentCleanUps for each worker a map from the clean ups to their copies,
+		 * 			or <code>null</code> to compute the fixes sequentially
+		 */
+		public CleanUpFixpointIterator(CleanUpTarget[] targets, ICleanUp[] cleanUps, List<Map<ICleanUp, ICleanUp>> concurrentCleanUps) {
+			fConcurrentCleanUps= concurrentCleanUps;
 			fSolutions= new Hashtable<ICompilationUnit, List<CleanUpChange>>(targets.length);
 			fWorkingCopies= new Hashtable<ICompilationUnit, ICompilationUnit>();
 
@@ -387,37 +570,54 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 				}
 
 				CleanUpRefactoringProgressMonitor cuMonitor= new CleanUpRefactoringProgressMonitor(monitor, parseList.size() + sourceList.size(), fSize, fIndex);
-				CleanUpASTRequestor requestor= new CleanUpASTRequestor(fParseList, fSolutions, cuMonitor);
-				if (parseList.size() > 0) {
-					ASTBatchParser parser= new ASTBatchParser() {
-						@Override
-						protected ASTParser createParser(IJavaProject project) {
-							ASTParser result= createCleanUpASTParser();
-							result.setProject(project);
-
-							Map<String, String> options= RefactoringASTParser.getCompilerOptions(project);
-							options.putAll(fCleanUpOptions);
-							result.setCompilerOptions(options);
-							return result;
-						}
-					};
-					try {
+				final CleanUpASTRequestor requestor;
+				if (fConcurrentCleanUps != null) {
+					requestor= new ConcurrentCleanUpASTRequestor(fParseList, fSolutions, cuMonitor, fConcurrentCleanUps);
+				} else {
+					requestor= new CleanUpASTRequestor(fParseList, fSolutions, cuMonitor);
+				}
+				try {
+					if (parseList.size() > 0) {
+						ASTBatchParser parser= new ASTBatchParser(fConcurrentCleanUps != null || ASTBatchParser.isParallelEnabled()) {
+							@Override
+							protected int getWorkerCount(int unitCount) {
+								int workers= super.getWorkerCount(unitCount);
+								if (requestor instanceof ConcurrentCleanUpASTRequestor)
+									workers= Math.min(workers, ((ConcurrentCleanUpASTRequestor)requestor).getWorkerCount());
+								return workers;
+							}
+
+							@Override
+							protected ASTParser createParser(IJavaProject project) {
+								ASTParser result= createCleanUpASTParser();
+								result.setProject(project);
+
+								Map<String, String> options= RefactoringASTParser.getCompilerOptions(project);
+								options.putAll(fCleanUpOptions);
+								result.setCompilerOptions(options);
+								return result;
+							}
+						};
 						ICompilationUnit[] units= parseList.toArray(new ICompilationUnit[parseList.size()]);
-						parser.createASTs(units, new String[0], requestor, cuMonitor);
-					} catch (FixCalculationException e) {
-						throw e.getException();
+						parser.createASTs(units, new String[0], requestor.getASTRequestor(), cuMonitor);
 					}
-				}
 
-				for (Iterator<ICompilationUnit> iterator= sourceList.iterator(); iterator.hasNext();) {
-					ICompilationUnit cu= iterator.next();
+					for (Iterator<ICompilationUnit> iterator= sourceList.iterator(); iterator.hasNext();) {
+						ICompilationUnit cu= iterator.next();
 
-					monitor.worked(1);
+						monitor.worked(1);
 
-					requestor.acceptSource(cu);
+						requestor.acceptSource(cu);
 
-					if (monitor.isCanceled())
-						throw new OperationCanceledException();
+						if (monitor.isCanceled())
+							throw new OperationCanceledException();
+					}
+
+					requestor.done();
+				} catch (FixCalculationException e) {
+					throw e.getException();
+				} finally {
+					requestor.dispose();
 				}
 
 				fParseList= requestor.getUndoneElements();
@@ -523,6 +723,10 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 	private boolean fUseOptionsFromProfile;
 
+	private boolean fConcurrent;
+
+	private boolean fUseResultCache;
+
 	public CleanUpRefactoring() {
 		this(FixMessages.CleanUpRefactoring_Refactoring_name);
 	}
@@ -532,12 +736,40 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		fCleanUps= new ArrayList<ICleanUp>();
 		fProjects= new Hashtable<IJavaProject, List<CleanUpTarget>>();
 		fUseOptionsFromProfile= false;
+		fConcurrent= false;
+		fUseResultCache= false;
 	}
 
 	public void setUseOptionsFromProfile(boolean enabled) {
 		fUseOptionsFromProfile= enabled;
 	}
 
+	/**
+	 * Sets whether the fixes for different compilation units are computed concurrently.
+	 * <p>
+	 * Fixes are only computed concurrently if all clean ups are {@link AbstractCleanUp}s
+	 * which can create concurrent copies of themselves, see {@link AbstractCleanUp#createConcurrentCopy()}.
+	 * The resulting change is the same as the change computed sequentially.
+	 * </p>
+	 *
+	 * @param concurrent <code>true</code> to compute fixes concurrently
+	 * @since 3.8
+	 */
+	public void setConcurrent(boolean concurrent) {
+		fConcurrent= concurrent;
+	}
+
+	/**
+	 * Sets whether compilation units which the clean ups are known to not change are skipped.
+	 * Compilation units found to be unchanged are remembered in the {@link CleanUpResultCache}.
+	 *
+	 * @param useResultCache <code>true</code> to use the clean up result cache
+	 * @since 3.8
+	 */
+	public void setUseResultCache(boolean useResultCache) {
+		fUseResultCache= useResultCache;
+	}
+
 	public void addCompilationUnit(ICompilationUnit unit) {
 		addCleanUpTarget(new CleanUpTarget(unit));
 	}
@@ -667,16 +899,35 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 						return result;
 				}
 
+				Map<ICompilationUnit, String> cacheKeys= null;
+				if (fUseResultCache) {
+					cacheKeys= new HashMap<ICompilationUnit, String>();
+					int count= targets.length;
+					targets= removeUnchanged(project, targets, cleanUps, cacheKeys);
+					pm.worked(2 * (count - targets.length) * cleanUps.length);
+					if (targets.length == 0) {
+						pm.worked(4 * cleanUps.length);
+						continue;
+					}
+				}
+				int entryCount= result.getEntries().length;
+
 				result.merge(checkPreConditions(project, targets, new SubProgressMonitor(pm, 3 * cleanUps.length)));
 				if (result.hasFatalError())
 					return result;
 
-				Change[] changes= cleanUpProject(project, targets, cleanUps, pm);
+				Change[] changes= cleanUpProject(project, targets, cleanUps, pm, result);
+				if (result.hasFatalError())
+					return result;
 
 				result.merge(checkPostConditions(new SubProgressMonitor(pm, cleanUps.length)));
 				if (result.hasFatalError())
 					return result;
 
+				// the verdict is only valid if the clean ups did not report any problem
+				if (cacheKeys != null && result.getEntries().length == entryCount)
+					rememberUnchanged(project, changes, cacheKeys);
+
 				for (int i= 0; i < changes.length; i++) {
 					change.add(changes[i]);
 				}
@@ -707,8 +958,60 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
-	private Change[] cleanUpProject(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, IProgressMonitor monitor) throws CoreException {
-		CleanUpFixpointIterator iter= new CleanUpFixpointIterator(targets, cleanUps);
+	/**
+	 * Removes the targets which the clean ups are known to not change.
+	 *
+	 * @param project the project containing the targets
+	 * @param targets the targets to clean up
+	 * @param cleanUps the clean ups to apply
+	 * @param cacheKeys a map to which the result cache keys of the remaining targets are added
+	 * @return the targets to clean up
+	 */
+	private static CleanUpTarget[] removeUnchanged(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, Map<ICompilationUnit, String> cacheKeys) {
+		ICompilationUnit[] units= new ICompilationUnit[targets.length];
+		for (int i= 0; i < targets.length; i++) {
+			units[i]= targets[i].getCompilationUnit();
+		}
+
+		CleanUpResultCache cache= CleanUpResultCache.getInstance();
+		String[] keys= cache.getKeys(project, units, cleanUps);
+		if (keys == null)
+			return targets;
+
+		List<CleanUpTarget> result= new ArrayList<CleanUpTarget>(targets.length);
+		for (int i= 0; i < targets.length; i++) {
+			// the result of a multi fix depends on the problems to fix
+			if (targets[i] instanceof MultiFixTarget || keys[i] == null) {
+				result.add(targets[i]);
+			} else if (!cache.isUnchanged(keys[i])) {
+				result.add(targets[i]);
+				cacheKeys.put(units[i], keys[i]);
+			}
+		}
+		return result.toArray(new CleanUpTarget[result.size()]);
+	}
+
+	private static void rememberUnchanged(IJavaProject project, Change[] changes, Map<ICompilationUnit, String> cacheKeys) {
+		Set<ICompilationUnit> changed= new HashSet<ICompilationUnit>();
+		for (int i= 0; i < changes.length; i++) {
+			if (changes[i] instanceof MultiStateCompilationUnitChange) {
+				changed.add(((MultiStateCompilationUnitChange)changes[i]).getCompilationUnit());
+			} else if (changes[i] instanceof CompilationUnitChange) {
+				changed.add(((CompilationUnitChange)changes[i]).getCompilationUnit());
+			}
+		}
+
+		CleanUpResultCache cache= CleanUpResultCache.getInstance();
+		for (Iterator<Entry<ICompilationUnit, String>> iter= cacheKeys.entrySet().iterator(); iter.hasNext();) {
+			Entry<ICompilationUnit, String> entry= iter.next();
+			if (!changed.contains(entry.getKey()))
+				cache.setUnchanged(entry.getValue(), project);
+		}
+	}
+
+	private Change[] cleanUpProject(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, IProgressMonitor monitor, RefactoringStatus status) throws CoreException {
+		List<Map<ICleanUp, ICleanUp>> concurrentCleanUps= fConcurrent ? createConcurrentCleanUps(project, targets, cleanUps) : null;
+		CleanUpFixpointIterator iter= new CleanUpFixpointIterator(targets, cleanUps, concurrentCleanUps);
 
 		SubProgressMonitor subMonitor= new SubProgressMonitor(monitor, 2 * targets.length * cleanUps.length);
 		subMonitor.beginTask("", targets.length); //$NON-NLS-1$
@@ -721,10 +1024,66 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 			return iter.getResult();
 		} finally {
 			iter.dispose();
+			if (concurrentCleanUps != null)
+				status.merge(checkPostConditions(concurrentCleanUps));
 			subMonitor.done();
 		}
 	}
 
+	/**
+	 * Creates a copy of the clean ups for each worker that computes fixes concurrently.
+	 *
+	 * @param project the project to clean up
+	 * @param targets the targets to clean up
+	 * @param cleanUps the clean ups to copy
+	 * @return for each worker a map from the clean ups to their copies, or <code>null</code>
+	 *         if the fixes must be computed sequentially
+	 * @throws CoreException if checking the pre conditions of a copy fails
+	 */
+	private static List<Map<ICleanUp, ICleanUp>> createConcurrentCleanUps(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps) throws CoreException {
+		int workers= Math.min(Runtime.getRuntime().availableProcessors(), targets.length);
+		if (workers <= 1)
+			return null;
+
+		for (int i= 0; i < cleanUps.length; i++) {
+			if (!(cleanUps[i] instanceof AbstractCleanUp))
+				return null;
+		}
+
+		ICompilationUnit[] compilationUnits= new ICompilationUnit[targets.length];
+		for (int i= 0; i < targets.length; i++) {
+			compilationUnits[i]= targets[i].getCompilationUnit();
+		}
+
+		List<Map<ICleanUp, ICleanUp>> result= new ArrayList<Map<ICleanUp, ICleanUp>>(workers);
+		for (int i= 0; i < workers; i++) {
+			Map<ICleanUp, ICleanUp> copies= new IdentityHashMap<ICleanUp, ICleanUp>();
+			for (int j= 0; j < cleanUps.length; j++) {
+				AbstractCleanUp copy= ((AbstractCleanUp)cleanUps[j]).createConcurrentCopy();
+				if (copy == null)
+					return null;
+
+				// problems are reported by the pre condition check of the original clean up
+				if (copy.checkPreConditions(project, compilationUnits, new NullProgressMonitor()).hasFatalError())
+					return null;
+
+				copies.put(cleanUps[j], copy);
+			}
+			result.add(copies);
+		}
+		return result;
+	}
+
+	private static RefactoringStatus checkPostConditions(List<Map<ICleanUp, ICleanUp>> concurrentCleanUps) throws CoreException {
+		RefactoringStatus result= new RefactoringStatus();
+		for (Iterator<Map<ICleanUp, ICleanUp>> iter= concurrentCleanUps.iterator(); iter.hasNext();) {
+			for (Iterator<ICleanUp> copies= iter.next().values().iterator(); copies.hasNext();) {
+				result.merge(copies.next().checkPostConditions(new NullProgressMonitor()));
+			}
+		}
+		return result;
+	}
+
 	private RefactoringStatus setOptionsFromProfile(IJavaProject javaProject, ICleanUp[] cleanUps) {
 		Map<String, String> options= CleanUpPreferenceUtil.loadOptions(new ProjectScope(javaProject.getProject()));
 		if (options == null)
@@ -0,0 +1,794 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.fix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Map.Entry;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
+
+import org.eclipse.jdt.ui.PreferenceConstants;
+import org.eclipse.jdt.ui.cleanup.CleanUpOptions;
+import org.eclipse.jdt.ui.cleanup.ICleanUp;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.AbstractCleanUp;
+
+/**
+ * Remembers the compilation units for which a set of clean ups did not produce
+ * any change, such that they can be skipped without building an AST.
+ * <p>
+ * A verdict is stored under a key computed from the content of the compilation
+ * unit, the clean ups and their options, the options of the Java project, the
+ * preferences used by the clean ups and the resolved class path of the project.
+ * Since the result of a clean up may also depend on the other compilation units
+ * of the project, all verdicts of a project and of the projects requiring it are
+ * discarded on class path changes and on structural changes of its compilation
+ * units. The cache is stored in the state location of the plug-in. On load, the
+ * verdicts of a project are only kept if its source files, the source files of the
+ * projects it requires and its resolved class path did not change in the mean time.
+ * </p>
+ * <p>
+ * The cache listens to Java element changes from {@link #startup()} on, which is
+ * called when the plug-in starts. The stored verdicts are loaded on first use.
+ * After {@link #shutdown()}, {@link #getInstance()} returns a cache that does not
+ * store any verdicts.
+ * </p>
+ * <p>
+ * The cache is thread safe.
+ * </p>
+ *
+ * @since 3.8
+ */
+public class CleanUpResultCache {
+
+	private class CacheDeltaListener implements IElementChangedListener {
+
+		public void elementChanged(ElementChangedEvent event) {
+			Set<IJavaProject> projects= new HashSet<IJavaProject>();
+			processDelta(event.getDelta(), projects);
+			if (!projects.isEmpty())
+				invalidate(projects.toArray(new IJavaProject[projects.size()]));
+		}
+
+		private void processDelta(IJavaElementDelta delta, Set<IJavaProject> projects) {
+			IJavaElement element= delta.getElement();
+
+			boolean isChanged= delta.getKind() == IJavaElementDelta.CHANGED;
+			int flags= delta.getFlags();
+
+			switch (element.getElementType()) {
+				case IJavaElement.JAVA_MODEL:
+					processChildrenDelta(delta, projects);
+					return;
+				case IJavaElement.JAVA_PROJECT:
+					if (!isChanged || (flags & (IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+						projects.add(element.getJavaProject());
+						return;
+					}
+					processChildrenDelta(delta, projects);
+					return;
+				case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+					if (!isChanged || (flags & (IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_REORDER)) != 0) {
+						projects.add(element.getJavaProject());
+						return;
+					}
+					processChildrenDelta(delta, projects);
+					return;
+				case IJavaElement.PACKAGE_FRAGMENT:
+					if (!isChanged) {
+						projects.add(element.getJavaProject());
+						return;
+					}
+					processChildrenDelta(delta, projects);
+					return;
+				case IJavaElement.COMPILATION_UNIT:
+					if (!JavaModelUtil.isPrimary((ICompilationUnit)element))
+						return;
+
+					if (!isChanged || isUnknownChange(flags) || hasStructuralChange(delta))
+						projects.add(element.getJavaProject());
+					return;
+				case IJavaElement.CLASS_FILE:
+					projects.add(element.getJavaProject());
+					return;
+				default:
+					return;
+			}
+		}
+
+		private boolean isUnknownChange(int flags) {
+			return (flags & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_FINE_GRAINED)) == IJavaElementDelta.F_CONTENT;
+		}
+
+		/**
+		 * Tells whether the declarations visible to other compilation units have changed.
+		 * Changes of imports and of member bodies are not structural.
+		 *
+		 * @param delta the delta of a compilation unit or a member
+		 * @return <code>true</code> if the delta contains a structural change
+		 */
+		private boolean hasStructuralChange(IJavaElementDelta delta) {
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++) {
+				IJavaElementDelta child= children[i];
+				switch (child.getElement().getElementType()) {
+					case IJavaElement.PACKAGE_DECLARATION:
+					case IJavaElement.IMPORT_CONTAINER:
+					case IJavaElement.IMPORT_DECLARATION:
+						continue;
+					default:
+						if (child.getKind() != IJavaElementDelta.CHANGED)
+							return true;
+						if ((child.getFlags() & (IJavaElementDelta.F_MODIFIERS | IJavaElementDelta.F_SUPER_TYPES | IJavaElementDelta.F_ANNOTATIONS)) != 0)
+							return true;
+						if (hasStructuralChange(child))
+							return true;
+				}
+			}
+			return false;
+		}
+
+		private void processChildrenDelta(IJavaElementDelta delta, Set<IJavaProject> projects) {
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++) {
+				processDelta(children[i], projects);
+			}
+		}
+	}
+
+	private static final String FILENAME= "CleanUpResultCache.dat"; //$NON-NLS-1$
+
+	private static final int VERSION= 2;
+
+	/**
+	 * Maximal number of verdicts kept, the least recently used ones are dropped first.
+	 */
+	private static final int MAX_ENTRIES= 20000;
+
+	/**
+	 * Preferences of the UI plug-in which influence the result of a clean up.
+	 */
+	private static final String[] UI_PREFERENCES= {
+			PreferenceConstants.ORGIMPORTS_IMPORTORDER,
+			PreferenceConstants.ORGIMPORTS_ONDEMANDTHRESHOLD,
+			PreferenceConstants.ORGIMPORTS_STATIC_ONDEMANDTHRESHOLD,
+			PreferenceConstants.ORGIMPORTS_IGNORELOWERCASE,
+			PreferenceConstants.APPEARANCE_MEMBER_SORT_ORDER,
+			PreferenceConstants.APPEARANCE_VISIBILITY_SORT_ORDER,
+			PreferenceConstants.APPEARANCE_ENABLE_VISIBILITY_SORT_ORDER,
+			PreferenceConstants.CODEGEN_ADD_COMMENTS,
+			PreferenceConstants.CODEGEN_KEYWORD_THIS,
+			PreferenceConstants.CODEGEN_USE_OVERRIDE_ANNOTATION,
+			"org.eclipse.jdt.ui.text.custom_code_templates" //$NON-NLS-1$
+	};
+
+	private static CleanUpResultCache fgInstance;
+	private static boolean fgIsShutdown;
+
+	/**
+	 * Creates the cache and starts listening to Java element changes, such that changes
+	 * made before the cache is first used invalidate the stored verdicts. Called when
+	 * the plug-in starts.
+	 */
+	public static synchronized void startup() {
+		if (fgInstance == null || fgIsShutdown)
+			fgInstance= new CleanUpResultCache(true);
+		fgIsShutdown= false;
+	}
+
+	public static synchronized CleanUpResultCache getInstance() {
+		if (fgInstance == null)
+			fgInstance= fgIsShutdown ? new CleanUpResultCache() : new CleanUpResultCache(true);
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		fgIsShutdown= true;
+		if (fgInstance == null)
+			return;
+		fgInstance.doShutdown();
+		fgInstance= new CleanUpResultCache();
+	}
+
+	/**
+	 * Map from key to the name of the project of the compilation unit, in access order.
+	 */
+	private final LinkedHashMap<String, String> fEntries;
+
+	/**
+	 * Map from project name to the fingerprint of its source files, the source files of the
+	 * required projects and its class path when the cache was stored. The verdicts of a project
+	 * are validated against the fingerprint when it is first used.
+	 */
+	private final Map<String, String> fStoredFingerprints;
+
+	/**
+	 * Names of the projects invalidated before the stored verdicts have been loaded.
+	 */
+	private final Set<String> fInvalidatedBeforeLoad;
+
+	/**
+	 * The delta listener, or <code>null</code> if the cache is disabled.
+	 */
+	private final IElementChangedListener fDeltaListener;
+	private final boolean fPersistent;
+	private boolean fLoaded;
+
+	private int fHits;
+	private int fMisses;
+
+	/**
+	 * @param persistent <code>true</code> to load the cache from and store it to the
+	 *            state location
+	 */
+	CleanUpResultCache(boolean persistent) {
+		fPersistent= persistent;
+		fEntries= new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, String> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+		fStoredFingerprints= new HashMap<String, String>();
+		fInvalidatedBeforeLoad= new HashSet<String>();
+		fLoaded= !persistent;
+
+		fDeltaListener= new CacheDeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener, ElementChangedEvent.POST_CHANGE);
+	}
+
+	/**
+	 * Creates a disabled cache, which does not listen to Java element changes and does not
+	 * store any verdicts.
+	 */
+	private CleanUpResultCache() {
+		fPersistent= false;
+		fEntries= new LinkedHashMap<String, String>();
+		fStoredFingerprints= new HashMap<String, String>();
+		fInvalidatedBeforeLoad= new HashSet<String>();
+		fLoaded= true;
+		fDeltaListener= null;
+	}
+
+	/**
+	 * Computes the keys under which the verdicts for the given compilation units are stored.
+	 *
+	 * @param project the project containing the compilation units
+	 * @param units the compilation units
+	 * @param cleanUps the clean ups to apply
+	 * @return the keys, an element is <code>null</code> if no verdict can be stored for the
+	 *         compilation unit. Returns <code>null</code> if no verdict can be stored for any
+	 *         of the compilation units
+	 */
+	public String[] getKeys(IJavaProject project, ICompilationUnit[] units, ICleanUp[] cleanUps) {
+		if (fDeltaListener == null)
+			return null;
+
+		String projectKey;
+		try {
+			projectKey= getProjectKey(project, cleanUps);
+		} catch (CoreException e) {
+			JavaPlugin.log(e);
+			return null;
+		}
+		if (projectKey == null)
+			return null;
+
+		ensureLoaded();
+		validate(project);
+
+		String[] result= new String[units.length];
+		for (int i= 0; i < units.length; i++) {
+			try {
+				String source= units[i].getSource();
+				if (source != null) {
+					MessageDigest digest= createDigest();
+					update(digest, projectKey);
+					update(digest, units[i].getHandleIdentifier());
+					update(digest, source);
+					result[i]= toHex(digest.digest());
+				}
+			} catch (JavaModelException e) {
+				// no verdict for this unit
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param key the key of the compilation unit, or <code>null</code>
+	 * @return <code>true</code> if the clean ups are known to not change the compilation unit
+	 */
+	public synchronized boolean isUnchanged(String key) {
+		if (key != null && fEntries.get(key) != null) {
+			fHits++;
+			return true;
+		}
+		fMisses++;
+		return false;
+	}
+
+	/**
+	 * Remembers that the clean ups did not change the compilation unit.
+	 *
+	 * @param key the key of the compilation unit, or <code>null</code>
+	 * @param project the project containing the compilation unit
+	 */
+	public synchronized void setUnchanged(String key, IJavaProject project) {
+		if (key != null)
+			fEntries.put(key, project.getElementName());
+	}
+
+	/**
+	 * Discards the verdicts for the given projects and for all projects requiring them.
+	 *
+	 * @param projects the projects to invalidate
+	 */
+	public void invalidate(IJavaProject[] projects) {
+		Set<String> names= new HashSet<String>();
+		for (int i= 0; i < projects.length; i++) {
+			names.add(projects[i].getElementName());
+		}
+
+		synchronized (this) {
+			if (!fLoaded) {
+				fInvalidatedBeforeLoad.addAll(names);
+				return;
+			}
+			if (fEntries.isEmpty() && fStoredFingerprints.isEmpty())
+				return;
+		}
+
+		try {
+			addRequiringProjects(names);
+		} catch (JavaModelException e) {
+			// dependencies are unknown
+			clear();
+			return;
+		}
+
+		synchronized (this) {
+			for (Iterator<String> iter= fEntries.values().iterator(); iter.hasNext();) {
+				if (names.contains(iter.next()))
+					iter.remove();
+			}
+			fStoredFingerprints.keySet().removeAll(names);
+		}
+	}
+
+	public void clear() {
+		ensureLoaded();
+		synchronized (this) {
+			fEntries.clear();
+			fStoredFingerprints.clear();
+		}
+	}
+
+	public int getSize() {
+		ensureLoaded();
+		synchronized (this) {
+			return fEntries.size();
+		}
+	}
+
+	/**
+	 * Loads the stored verdicts if not done yet and discards the verdicts of the projects
+	 * which changed in the mean time.
+	 */
+	private void ensureLoaded() {
+		IJavaProject[] invalidated;
+		synchronized (this) {
+			if (fLoaded)
+				return;
+			load();
+			fLoaded= true;
+
+			IJavaModel model= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot());
+			invalidated= new IJavaProject[fInvalidatedBeforeLoad.size()];
+			int i= 0;
+			for (Iterator<String> iter= fInvalidatedBeforeLoad.iterator(); iter.hasNext();) {
+				invalidated[i++]= model.getJavaProject(iter.next());
+			}
+			fInvalidatedBeforeLoad.clear();
+		}
+		if (invalidated.length > 0)
+			invalidate(invalidated);
+	}
+
+	public synchronized int getCacheHits() {
+		return fHits;
+	}
+
+	public synchronized int getCacheMisses() {
+		return fMisses;
+	}
+
+	private static void addRequiringProjects(Set<String> names) throws JavaModelException {
+		IJavaProject[] projects= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects();
+		boolean changed;
+		do {
+			changed= false;
+			for (int i= 0; i < projects.length; i++) {
+				IJavaProject project= projects[i];
+				if (names.contains(project.getElementName()) || !project.getProject().isOpen())
+					continue;
+
+				String[] required= project.getRequiredProjectNames();
+				for (int j= 0; j < required.length; j++) {
+					if (names.contains(required[j])) {
+						names.add(project.getElementName());
+						changed= true;
+						break;
+					}
+				}
+			}
+		} while (changed);
+	}
+
+	private void validate(IJavaProject project) {
+		String name= project.getElementName();
+		String fingerprint;
+		synchronized (this) {
+			fingerprint= fStoredFingerprints.remove(name);
+		}
+		if (fingerprint == null)
+			return;
+
+		String current= null;
+		try {
+			current= getFingerprint(project);
+		} catch (CoreException e) {
+			JavaPlugin.log(e);
+		}
+		if (!fingerprint.equals(current))
+			invalidate(new IJavaProject[] { project });
+	}
+
+	/**
+	 * Computes the part of the key shared by all compilation units of a project.
+	 *
+	 * @param project the project
+	 * @param cleanUps the clean ups
+	 * @return the key or <code>null</code> if the clean ups do not allow to store verdicts
+	 * @throws CoreException if the class path of the project can not be resolved
+	 */
+	private static String getProjectKey(IJavaProject project, ICleanUp[] cleanUps) throws CoreException {
+		MessageDigest digest= createDigest();
+		update(digest, String.valueOf(VERSION));
+
+		for (int i= 0; i < cleanUps.length; i++) {
+			if (!(cleanUps[i] instanceof AbstractCleanUp))
+				return null;
+
+			CleanUpOptions options= ((AbstractCleanUp)cleanUps[i]).getOptions();
+			if (options == null)
+				return null;
+
+			update(digest, cleanUps[i].getClass().getName());
+			Map<String, String> sorted= new TreeMap<String, String>();
+			for (Iterator<String> iter= options.getKeys().iterator(); iter.hasNext();) {
+				String key= iter.next();
+				sorted.put(key, options.getValue(key));
+			}
+			update(digest, sorted);
+		}
+
+		update(digest, new TreeMap<String, String>(project.getOptions(true)));
+
+		for (int i= 0; i < UI_PREFERENCES.length; i++) {
+			update(digest, UI_PREFERENCES[i]);
+			update(digest, String.valueOf(PreferenceConstants.getPreference(UI_PREFERENCES[i], project)));
+		}
+
+		updateClasspath(digest, project);
+		return toHex(digest.digest());
+	}
+
+	private static void updateClasspath(MessageDigest digest, IJavaProject project) throws JavaModelException {
+		IWorkspaceRoot root= ResourcesPlugin.getWorkspace().getRoot();
+		IClasspathEntry[] classpath= project.getResolvedClasspath(true);
+		for (int i= 0; i < classpath.length; i++) {
+			IClasspathEntry entry= classpath[i];
+			IPath path= entry.getPath();
+			update(digest, entry.getEntryKind() + path.toString());
+			if (entry.getEntryKind() == IClasspathEntry.CPE_LIBRARY) {
+				IResource resource= root.findMember(path);
+				if (resource != null) {
+					update(digest, String.valueOf(resource.getModificationStamp()));
+				} else {
+					File file= path.toFile();
+					update(digest, file.lastModified() + ":" + file.length()); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of the source files of a project and of the projects
+	 * it requires, and of the resolved class path of the project.
+	 *
+	 * @param project the project
+	 * @return the fingerprint or <code>null</code> if the project is not accessible
+	 * @throws CoreException if the resources or the class path can not be accessed
+	 */
+	private static String getFingerprint(IJavaProject project) throws CoreException {
+		if (!project.getProject().isAccessible())
+			return null;
+
+		Set<String> names= new TreeSet<String>();
+		addRequiredProjects(project, names);
+
+		MessageDigest digest= createDigest();
+		IWorkspaceRoot root= ResourcesPlugin.getWorkspace().getRoot();
+		for (Iterator<String> iter= names.iterator(); iter.hasNext();) {
+			String name= iter.next();
+			update(digest, name);
+			updateSources(digest, root.getProject(name));
+		}
+		updateClasspath(digest, project);
+		return toHex(digest.digest());
+	}
+
+	private static void addRequiredProjects(IJavaProject project, Set<String> names) throws JavaModelException {
+		if (!names.add(project.getElementName()) || !project.getProject().isAccessible())
+			return;
+
+		String[] required= project.getRequiredProjectNames();
+		IJavaModel model= project.getJavaModel();
+		for (int i= 0; i < required.length; i++) {
+			addRequiredProjects(model.getJavaProject(required[i]), names);
+		}
+	}
+
+	private static void updateSources(MessageDigest digest, IProject project) throws CoreException {
+		if (!project.isAccessible())
+			return;
+
+		final Map<String, Long> stamps= new TreeMap<String, Long>();
+		project.accept(new IResourceProxyVisitor() {
+			public boolean visit(IResourceProxy proxy) throws CoreException {
+				if (proxy.getType() == IResource.FILE && JavaCore.isJavaLikeFileName(proxy.getName()))
+					stamps.put(proxy.requestFullPath().toString(), new Long(proxy.getModificationStamp()));
+				return true;
+			}
+		}, IResource.NONE);
+
+		for (Iterator<Entry<String, Long>> iter= stamps.entrySet().iterator(); iter.hasNext();) {
+			Entry<String, Long> entry= iter.next();
+			update(digest, entry.getKey());
+			update(digest, entry.getValue().toString());
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, Map<String, String> map) {
+		for (Iterator<Entry<String, String>> iter= map.entrySet().iterator(); iter.hasNext();) {
+			Entry<String, String> entry= iter.next();
+			update(digest, entry.getKey());
+			update(digest, String.valueOf(entry.getValue()));
+		}
+	}
+
+	private static void update(MessageDigest digest, String string) {
+		try {
+			digest.update(string.getBytes("UTF-8")); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			// every Java platform is required to support UTF-8
+			throw new IllegalStateException(e);
+		}
+		digest.update((byte)0);
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuffer buf= new StringBuffer(bytes.length * 2);
+		for (int i= 0; i < bytes.length; i++) {
+			int b= bytes[i] & 0xFF;
+			if (b < 0x10)
+				buf.append('0');
+			buf.append(Integer.toHexString(b));
+		}
+		return buf.toString();
+	}
+
+	private void doShutdown() {
+		if (fDeltaListener == null)
+			return;
+
+		synchronized (this) {
+			if (!fLoaded && fInvalidatedBeforeLoad.isEmpty()) {
+				JavaCore.removeElementChangedListener(fDeltaListener);
+				return; // the stored verdicts are still valid
+			}
+		}
+		ensureLoaded();
+		if (!fPersistent) {
+			JavaCore.removeElementChangedListener(fDeltaListener);
+			return;
+		}
+
+		// the fingerprints are computed without holding the lock while the cache still listens
+		// to changes, such that verdicts invalidated in the mean time are not saved
+		Map<String, String> fingerprints= computeFingerprints();
+		JavaCore.removeElementChangedListener(fDeltaListener);
+		save(fingerprints);
+	}
+
+	private File getFile() {
+		return JavaPlugin.getDefault().getStateLocation().append(FILENAME).toFile();
+	}
+
+	private synchronized void load() {
+		File file= getFile();
+		if (!file.exists())
+			return;
+
+		DataInputStream in= null;
+		try {
+			in= new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION)
+				return;
+
+			int projectCount= in.readInt();
+			for (int i= 0; i < projectCount; i++) {
+				String name= in.readUTF();
+				String fingerprint= in.readUTF();
+				int count= in.readInt();
+				for (int j= 0; j < count; j++) {
+					fEntries.put(in.readUTF(), name);
+				}
+				fStoredFingerprints.put(name, fingerprint);
+			}
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			fEntries.clear();
+			fStoredFingerprints.clear();
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the fingerprints of the projects which have verdicts. Stored fingerprints which
+	 * have not been validated yet are kept.
+	 *
+	 * @return the fingerprints, by project name
+	 */
+	private Map<String, String> computeFingerprints() {
+		Map<String, String> fingerprints= new HashMap<String, String>();
+		synchronized (this) {
+			for (Iterator<String> iter= fEntries.values().iterator(); iter.hasNext();) {
+				String name= iter.next();
+				if (!fingerprints.containsKey(name))
+					fingerprints.put(name, fStoredFingerprints.get(name));
+			}
+		}
+
+		IJavaModel model= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot());
+		for (Iterator<Entry<String, String>> iter= fingerprints.entrySet().iterator(); iter.hasNext();) {
+			Entry<String, String> entry= iter.next();
+			if (entry.getValue() != null)
+				continue;
+			try {
+				entry.setValue(getFingerprint(model.getJavaProject(entry.getKey())));
+			} catch (CoreException e) {
+				JavaPlugin.log(e);
+			}
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * Writes the verdicts of the projects with a fingerprint.
+	 *
+	 * @param fingerprints the fingerprints, by project name
+	 */
+	private void save(Map<String, String> fingerprints) {
+		Map<String, Set<String>> keysByProject= new HashMap<String, Set<String>>();
+		synchronized (this) {
+			for (Iterator<Entry<String, String>> iter= fEntries.entrySet().iterator(); iter.hasNext();) {
+				Entry<String, String> entry= iter.next();
+				if (fingerprints.get(entry.getValue()) == null)
+					continue;
+				Set<String> keys= keysByProject.get(entry.getValue());
+				if (keys == null) {
+					keys= new HashSet<String>();
+					keysByProject.put(entry.getValue(), keys);
+				}
+				keys.add(entry.getKey());
+			}
+		}
+
+		File file= getFile();
+		DataOutputStream out= null;
+		try {
+			out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(VERSION);
+			out.writeInt(keysByProject.size());
+			for (Iterator<Entry<String, Set<String>>> iter= keysByProject.entrySet().iterator(); iter.hasNext();) {
+				Entry<String, Set<String>> entry= iter.next();
+				Set<String> keys= entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeUTF(fingerprints.get(entry.getKey()));
+				out.writeInt(keys.size());
+				for (Iterator<String> keyIter= keys.iterator(); keyIter.hasNext();) {
+					out.writeUTF(keyIter.next());
+				}
+			}
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			file.delete();
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,16 +10,24 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,8 +46,10 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -59,24 +69,93 @@ import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
  * MAX_HISTORY_SIZE. If the list exceeds this size the eldest element is removed
  * from the list. An element can be added/renewed with a call to <code>accessed(Object)</code>.
  *
- * The history can be stored to/loaded from an xml file.
+ * The history can be stored to/loaded from an xml file. Changes since the xml file has been written
+ * are appended to a binary journal next to the xml file, which is compacted into a new xml file
+ * once it holds more than {@link #COMPACTION_THRESHOLD} entries.
+ *
+ * The positions are read from an immutable snapshot, so that {@link #getPosition(Object)} and
+ * {@link #getNormalizedPosition(Object)} do not lock the history.
  */
 public abstract class History {
 
+	/**
+	 * The positions of the keys in the history, replaced as a whole when the history changes.
+	 *
+	 * @since 3.8
+	 */
+	private static final class PositionSnapshot {
+		final Map<Object, Integer> fPositions;
+		final int fSize;
+
+		PositionSnapshot(Map<Object, Integer> positions) {
+			fPositions= positions;
+			fSize= positions.size();
+		}
+	}
+
+	/**
+	 * A change of the history that is not yet written to the journal.
+	 *
+	 * @since 3.8
+	 */
+	private static final class JournalEntry {
+		final byte fOperation;
+		final Object fObject;
+
+		JournalEntry(byte operation, Object object) {
+			fOperation= operation;
+			fObject= object;
+		}
+	}
+
 	private static final String DEFAULT_ROOT_NODE_NAME= "histroyRootNode"; //$NON-NLS-1$
 	private static final String DEFAULT_INFO_NODE_NAME= "infoNode"; //$NON-NLS-1$
 	private static final int MAX_HISTORY_SIZE= 60;
 
+	private static final String JOURNAL_FILE_EXTENSION= ".journal"; //$NON-NLS-1$
+	private static final int JOURNAL_MAGIC= 0x4A484A4C;
+	private static final int JOURNAL_VERSION= 1;
+	private static final byte OPERATION_ACCESSED= 1;
+	private static final byte OPERATION_REMOVED= 2;
+
+	/**
+	 * The number of journal entries after which the journal is compacted into the xml file.
+	 *
+	 * @since 3.8
+	 */
+	public static final int COMPACTION_THRESHOLD= 4 * MAX_HISTORY_SIZE;
+
 	private static JavaUIException createException(Throwable t, String message) {
 		return new JavaUIException(JavaUIStatus.createError(IStatus.ERROR, message, t));
 	}
 
 	private final Map<Object, Object> fHistory;
-	private final Hashtable<Object, Integer> fPositions;
+	private volatile PositionSnapshot fPositions;
 	private final String fFileName;
 	private final String fRootNodeName;
 	private final String fInfoNodeName;
 
+	/**
+	 * The changes not yet written to the journal.
+	 *
+	 * @since 3.8
+	 */
+	private final List<JournalEntry> fPendingEntries;
+
+	/**
+	 * The number of entries in the journal file.
+	 *
+	 * @since 3.8
+	 */
+	private int fJournalSize;
+
+	/**
+	 * Tells whether the next save must write the complete history to the xml file.
+	 *
+	 * @since 3.8
+	 */
+	private boolean fNeedsCompaction;
+
 	public History(String fileName, String rootNodeName, String infoNodeName) {
 		fHistory= new LinkedHashMap<Object, Object>(80, 0.75f, true) {
 			private static final long serialVersionUID= 1L;
@@ -88,7 +167,8 @@ public abstract class History {
 		fFileName= fileName;
 		fRootNodeName= rootNodeName;
 		fInfoNodeName= infoNodeName;
-		fPositions= new Hashtable<Object, Integer>(MAX_HISTORY_SIZE);
+		fPositions= new PositionSnapshot(Collections.<Object, Integer>emptyMap());
+		fPendingEntries= new ArrayList<JournalEntry>();
 	}
 
 	public History(String fileName) {
@@ -98,6 +178,7 @@ public abstract class History {
 	public synchronized void accessed(Object object) {
 		fHistory.put(getKey(object), object);
 		rebuildPositions();
+		addJournalEntry(OPERATION_ACCESSED, object);
 	}
 
 	public synchronized boolean contains(Object object) {
@@ -113,14 +194,14 @@ public abstract class History {
 	}
 
 	public synchronized Object remove(Object object) {
-		Object removed= fHistory.remove(getKey(object));
-		rebuildPositions();
-		return removed;
+		return removeKey(getKey(object));
 	}
 
 	public synchronized Object removeKey(Object key) {
 		Object removed= fHistory.remove(key);
 		rebuildPositions();
+		if (removed != null)
+			addJournalEntry(OPERATION_REMOVED, removed);
 		return removed;
 	}
 
@@ -129,33 +210,42 @@ public abstract class History {
 	 * The position is a value between zero and one where zero
 	 * means not contained in history and one means newest element
 	 * in history. The lower the value the older the element.
+	 * <p>
+	 * This method does not lock the history.
+	 * </p>
 	 *
 	 * @param key The key of the object to inspect
 	 * @return value in [0.0, 1.0] the lower the older the element
 	 */
-	public synchronized float getNormalizedPosition(Object key) {
-		if (!containsKey(key))
+	public float getNormalizedPosition(Object key) {
+		PositionSnapshot snapshot= fPositions;
+		Integer position= snapshot.fPositions.get(key);
+		if (position == null)
 			return 0.0f;
 
-		int pos= fPositions.get(key).intValue() + 1;
+		int pos= position.intValue() + 1;
 
-		//containsKey(key) implies fHistory.size()>0
-		return (float)pos / (float)fHistory.size();
+		//position != null implies snapshot.fSize>0
+		return (float)pos / (float)snapshot.fSize;
 	}
 
 	/**
 	 * Absolute position of object denoted by key in the
 	 * history or -1 if !containsKey(key). The higher the
 	 * newer.
+	 * <p>
+	 * This method does not lock the history.
+	 * </p>
 	 *
 	 * @param key The key of the object to inspect
 	 * @return value between 0 and MAX_HISTORY_SIZE - 1, or -1
 	 */
-	public synchronized int getPosition(Object key) {
-		if (!containsKey(key))
+	public int getPosition(Object key) {
+		Integer position= fPositions.fPositions.get(key);
+		if (position == null)
 			return -1;
 
-		return fPositions.get(key).intValue();
+		return position.intValue();
 	}
 
 	public synchronized void load() {
@@ -167,8 +257,10 @@ public abstract class History {
 				reader = new InputStreamReader(new FileInputStream(file), "utf-8");//$NON-NLS-1$
 				load(new InputSource(reader));
 			} catch (IOException e) {
+				fNeedsCompaction= true;
 				JavaPlugin.log(e);
 			} catch (CoreException e) {
+				fNeedsCompaction= true;
 				JavaPlugin.log(e);
 			} finally {
 				try {
@@ -179,15 +271,37 @@ public abstract class History {
 				}
 			}
 		}
+		loadJournal(getJournalFile(file));
 	}
 
+	/**
+	 * Saves the history. The changes since the last save are appended to the journal, unless the
+	 * journal is due for compaction, in which case the complete history is written to the xml
+	 * file and the journal is deleted.
+	 */
 	public synchronized void save() {
 		IPath stateLocation= JavaPlugin.getDefault().getStateLocation().append(fFileName);
 		File file= stateLocation.toFile();
+		File journal= getJournalFile(file);
+		if (!fNeedsCompaction && file.exists() && fJournalSize + fPendingEntries.size() <= COMPACTION_THRESHOLD) {
+			if (fPendingEntries.isEmpty() || appendJournal(journal))
+				return;
+		}
+
+		// the journal is obsolete once the xml file holds the complete history
+		if (journal.exists() && !journal.delete()) {
+			JavaPlugin.logErrorMessage("Could not delete history journal " + journal); //$NON-NLS-1$
+			return;
+		}
+		fPendingEntries.clear();
+		fJournalSize= 0;
+		fNeedsCompaction= true;
+
 		OutputStream out= null;
 		try {
 			out= new FileOutputStream(file);
 			save(out);
+			fNeedsCompaction= false;
 		} catch (IOException e) {
 			JavaPlugin.log(e);
 		} catch (CoreException e) {
@@ -240,14 +354,141 @@ public abstract class History {
 	protected abstract Object getKey(Object object);
 
 	private void rebuildPositions() {
-		fPositions.clear();
+		Map<Object, Integer> positions= new HashMap<Object, Integer>(2 * fHistory.size());
 		Collection<Object> values= fHistory.values();
 		int pos=0;
 		for (Iterator<Object> iter= values.iterator(); iter.hasNext();) {
 			Object element= iter.next();
-			fPositions.put(getKey(element), new Integer(pos));
+			positions.put(getKey(element), new Integer(pos));
 			pos++;
 		}
+		fPositions= new PositionSnapshot(positions);
+	}
+
+	private void addJournalEntry(byte operation, Object object) {
+		if (fNeedsCompaction)
+			return;
+		if (fPendingEntries.size() >= COMPACTION_THRESHOLD) {
+			// rewriting the xml file is cheaper than replaying so many changes
+			fPendingEntries.clear();
+			fNeedsCompaction= true;
+			return;
+		}
+		fPendingEntries.add(new JournalEntry(operation, object));
+	}
+
+	private static File getJournalFile(File file) {
+		return new File(file.getPath() + JOURNAL_FILE_EXTENSION);
+	}
+
+	/**
+	 * Appends the pending entries to the journal.
+	 *
+	 * @param journal the journal file
+	 * @return <code>true</code> if the entries have been written, <code>false</code> if the
+	 *         history has to be compacted instead
+	 * @since 3.8
+	 */
+	private boolean appendJournal(File journal) {
+		DataOutputStream out= null;
+		try {
+			Document document= DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			boolean isNew= !journal.exists() || journal.length() == 0;
+			out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)));
+			if (isNew) {
+				out.writeInt(JOURNAL_MAGIC);
+				out.writeInt(JOURNAL_VERSION);
+			}
+			for (Iterator<JournalEntry> iter= fPendingEntries.iterator(); iter.hasNext();) {
+				JournalEntry entry= iter.next();
+				Element element= document.createElement(fInfoNodeName);
+				setAttributes(entry.fObject, element);
+				NamedNodeMap attributes= element.getAttributes();
+				out.writeByte(entry.fOperation);
+				out.writeInt(attributes.getLength());
+				for (int i= 0; i < attributes.getLength(); i++) {
+					Attr attribute= (Attr) attributes.item(i);
+					out.writeUTF(attribute.getName());
+					out.writeUTF(attribute.getValue());
+				}
+			}
+			out.close();
+			out= null;
+			fJournalSize+= fPendingEntries.size();
+			fPendingEntries.clear();
+			return true;
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+		} catch (ParserConfigurationException e) {
+			JavaPlugin.log(e);
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replays the entries of the journal. A journal that cannot be read completely is compacted
+	 * on the next save.
+	 *
+	 * @param journal the journal file
+	 * @since 3.8
+	 */
+	private void loadJournal(File journal) {
+		fPendingEntries.clear();
+		fJournalSize= 0;
+		if (!journal.exists())
+			return;
+
+		DataInputStream in= null;
+		try {
+			Document document= DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			in= new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+			if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION) {
+				fNeedsCompaction= true;
+				return;
+			}
+			while (true) {
+				int operation= in.read();
+				if (operation == -1)
+					break;
+				int count= in.readInt();
+				Element element= document.createElement(fInfoNodeName);
+				for (int i= 0; i < count; i++)
+					element.setAttribute(in.readUTF(), in.readUTF());
+				fJournalSize++;
+
+				Object object= createFromElement(element);
+				if (object == null)
+					continue;
+				if (operation == OPERATION_ACCESSED)
+					fHistory.put(getKey(object), object);
+				else if (operation == OPERATION_REMOVED)
+					fHistory.remove(getKey(object));
+			}
+		} catch (EOFException e) {
+			// truncated entry, e.g. after a crash while saving
+			fNeedsCompaction= true;
+		} catch (IOException e) {
+			fNeedsCompaction= true;
+			JavaPlugin.log(e);
+		} catch (ParserConfigurationException e) {
+			fNeedsCompaction= true;
+			JavaPlugin.log(e);
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			}
+		}
+		rebuildPositions();
 	}
 
 	private void load(InputSource inputSource) throws CoreException {
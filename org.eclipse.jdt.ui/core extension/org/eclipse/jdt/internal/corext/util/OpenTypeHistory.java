@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,9 +15,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.w3c.dom.Element;
 
@@ -54,13 +56,18 @@ import org.eclipse.jdt.internal.corext.CorextMessages;
 
 /**
  * History for the open type dialog. Object and keys are both {@link TypeNameMatch}s.
+ * <p>
+ * The consistency check after Java element changes only checks the types below the changed
+ * elements. All types are checked after startup and after {@link #markAsInconsistent()}.
+ * </p>
  */
 public class OpenTypeHistory extends History {
 
 	private static class TypeHistoryDeltaListener implements IElementChangedListener {
 		public void elementChanged(ElementChangedEvent event) {
-			if (processDelta(event.getDelta())) {
-				OpenTypeHistory.getInstance().markAsInconsistent();
+			Set<IJavaElement> changedElements= new HashSet<IJavaElement>();
+			if (processDelta(event.getDelta(), changedElements)) {
+				OpenTypeHistory.getInstance().markAsInconsistent(changedElements);
 			}
 		}
 
@@ -68,11 +75,12 @@ public class OpenTypeHistory extends History {
 		 * Computes whether the history needs a consistency check or not.
 		 *
 		 * @param delta the Java element delta
+		 * @param changedElements the set to add the elements to whose types must be checked
 		 *
 		 * @return <code>true</code> if consistency must be checked
 		 *  <code>false</code> otherwise.
 		 */
-		private boolean processDelta(IJavaElementDelta delta) {
+		private boolean processDelta(IJavaElementDelta delta, Set<IJavaElement> changedElements) {
 			IJavaElement elem= delta.getElement();
 
 			boolean isChanged= delta.getKind() == IJavaElementDelta.CHANGED;
@@ -82,31 +90,36 @@ public class OpenTypeHistory extends History {
 				case IJavaElement.JAVA_PROJECT:
 					if (isRemoved || (isChanged &&
 							(delta.getFlags() & IJavaElementDelta.F_CLOSED) != 0)) {
+						changedElements.add(elem);
 						return true;
 					}
-					return processChildrenDelta(delta);
+					return processChildrenDelta(delta, changedElements);
 				case IJavaElement.PACKAGE_FRAGMENT_ROOT:
 					if (isRemoved || (isChanged && (
 							(delta.getFlags() & IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED) != 0 ||
 							(delta.getFlags() & IJavaElementDelta.F_REMOVED_FROM_CLASSPATH) != 0))) {
+						changedElements.add(elem);
 						return true;
 					}
-					return processChildrenDelta(delta);
+					return processChildrenDelta(delta, changedElements);
 				case IJavaElement.TYPE:
 					if (isChanged && (delta.getFlags() & IJavaElementDelta.F_MODIFIERS) != 0) {
+						changedElements.add(elem);
 						return true;
 					}
 					if (isRemoved) {
+						changedElements.add(elem);
 						return true;
 					}
-					return processChildrenDelta(delta);
+					return processChildrenDelta(delta, changedElements);
 				case IJavaElement.JAVA_MODEL:
 				case IJavaElement.PACKAGE_FRAGMENT:
 				case IJavaElement.CLASS_FILE:
 					if (isRemoved) {
+						changedElements.add(elem);
 						return true;
 					}
-					return processChildrenDelta(delta);
+					return processChildrenDelta(delta, changedElements);
 				case IJavaElement.COMPILATION_UNIT:
 					// Not the primary compilation unit. Ignore it
 					if (!JavaModelUtil.isPrimary((ICompilationUnit) elem)) {
@@ -114,9 +127,10 @@ public class OpenTypeHistory extends History {
 					}
 
 					if (isRemoved || (isChanged && isUnknownStructuralChange(delta.getFlags()))) {
+						changedElements.add(elem);
 						return true;
 					}
-					return processChildrenDelta(delta);
+					return processChildrenDelta(delta, changedElements);
 				default:
 					// fields, methods, imports ect
 					return false;
@@ -135,14 +149,15 @@ public class OpenTypeHistory extends History {
 		}
 		*/
 
-		private boolean processChildrenDelta(IJavaElementDelta delta) {
+		private boolean processChildrenDelta(IJavaElementDelta delta, Set<IJavaElement> changedElements) {
 			IJavaElementDelta[] children= delta.getAffectedChildren();
+			boolean result= false;
 			for (int i= 0; i < children.length; i++) {
-				if (processDelta(children[i])) {
-					return true;
+				if (processDelta(children[i], changedElements)) {
+					result= true;
 				}
 			}
-			return false;
+			return result;
 		}
 	}
 
@@ -167,6 +182,10 @@ public class OpenTypeHistory extends History {
 	private volatile boolean fNeedsConsistencyCheck;
 	// Map of cached time stamps
 	private Map<TypeNameMatch, Long> fTimestampMapping;
+	// Elements whose types must be checked, guarded by itself
+	private final Set<IJavaElement> fChangedElements;
+	// Whether all types must be checked, guarded by fChangedElements
+	private boolean fNeedsFullCheck;
 
 	private final IElementChangedListener fDeltaListener;
 	private final UpdateJob fUpdateJob;
@@ -195,6 +214,8 @@ public class OpenTypeHistory extends History {
 	private OpenTypeHistory() {
 		super(FILENAME, NODE_ROOT, NODE_TYPE_INFO);
 		fTimestampMapping= new HashMap<TypeNameMatch, Long>();
+		fChangedElements= new HashSet<IJavaElement>();
+		fNeedsFullCheck= true;
 		fNeedsConsistencyCheck= true;
 		load();
 		fDeltaListener= new TypeHistoryDeltaListener();
@@ -208,7 +229,30 @@ public class OpenTypeHistory extends History {
 		fUpdateJob.setPriority(Job.SHORT);
 	}
 
+	/**
+	 * Marks all types of the history as to be checked.
+	 */
 	public void markAsInconsistent() {
+		synchronized (fChangedElements) {
+			fNeedsFullCheck= true;
+		}
+		scheduleUpdate();
+	}
+
+	/**
+	 * Marks the types below the given elements as to be checked.
+	 *
+	 * @param changedElements the changed Java elements
+	 * @since 3.8
+	 */
+	public void markAsInconsistent(Collection<IJavaElement> changedElements) {
+		synchronized (fChangedElements) {
+			fChangedElements.addAll(changedElements);
+		}
+		scheduleUpdate();
+	}
+
+	private void scheduleUpdate() {
 		fNeedsConsistencyCheck= true;
 		// cancel the old job. If no job is running this is a NOOP.
 		fUpdateJob.cancel();
@@ -246,7 +290,7 @@ public class OpenTypeHistory extends History {
 		// Fetching the timestamp might not be cheap (remote file system
 		// external Jars. So check if we alreay have one.
 		if (!fTimestampMapping.containsKey(info)) {
-			fTimestampMapping.put(info, new Long(getContainerTimestamp(info)));
+			fTimestampMapping.put(info, new Long(getContainerTimestamp(info, null)));
 		}
 		super.accessed(info);
 	}
@@ -258,7 +302,7 @@ public class OpenTypeHistory extends History {
 
 	public synchronized void replace(TypeNameMatch old, TypeNameMatch newMatch) {
 		fTimestampMapping.remove(old);
-		fTimestampMapping.put(newMatch, new Long(getContainerTimestamp(newMatch)));
+		fTimestampMapping.put(newMatch, new Long(getContainerTimestamp(newMatch, null)));
 		super.remove(old);
 		super.accessed(newMatch);
 	}
@@ -297,12 +341,42 @@ public class OpenTypeHistory extends History {
 		// Setting fNeedsConsistencyCheck is necessary here since
 		// markAsInconsistent isn't synchronized.
 		fNeedsConsistencyCheck= true;
+		boolean fullCheck;
+		Set<IJavaElement> changedElements;
+		synchronized (fChangedElements) {
+			fullCheck= fNeedsFullCheck;
+			changedElements= new HashSet<IJavaElement>(fChangedElements);
+			fNeedsFullCheck= false;
+			fChangedElements.clear();
+		}
+		try {
+			internalCheckConsistency(fullCheck, changedElements, monitor);
+		} catch (OperationCanceledException e) {
+			// check the elements again next time
+			synchronized (fChangedElements) {
+				fNeedsFullCheck|= fullCheck;
+				fChangedElements.addAll(changedElements);
+			}
+			throw e;
+		}
+		synchronized (fChangedElements) {
+			fNeedsConsistencyCheck= fNeedsFullCheck || !fChangedElements.isEmpty();
+		}
+	}
+
+	private void internalCheckConsistency(boolean fullCheck, Set<IJavaElement> changedElements, IProgressMonitor monitor) throws OperationCanceledException {
 		List<Object> typesToCheck= new ArrayList<Object>(getKeys());
+		// container time stamps fetched during this check
+		Map<Object, Long> containerTimestamps= new HashMap<Object, Long>();
 		monitor.beginTask(CorextMessages.TypeInfoHistory_consistency_check, typesToCheck.size());
 		monitor.setTaskName(CorextMessages.TypeInfoHistory_consistency_check);
 		for (Iterator<Object> iter= typesToCheck.iterator(); iter.hasNext();) {
 			TypeNameMatch type= (TypeNameMatch)iter.next();
-			long currentTimestamp= getContainerTimestamp(type);
+			if (!fullCheck && !isBelow(type, changedElements) && !isContainerDirty(type)) {
+				monitor.worked(1);
+				continue;
+			}
+			long currentTimestamp= getContainerTimestamp(type, containerTimestamps);
 			Long lastTested= fTimestampMapping.get(type);
 			if (lastTested != null && currentTimestamp != IResource.NULL_STAMP && currentTimestamp == lastTested.longValue() && !isContainerDirty(type))
 				continue;
@@ -327,7 +401,39 @@ public class OpenTypeHistory extends History {
 			monitor.worked(1);
 		}
 		monitor.done();
-		fNeedsConsistencyCheck= false;
+	}
+
+	private static boolean isBelow(TypeNameMatch match, Set<IJavaElement> elements) {
+		if (elements.isEmpty())
+			return false;
+		for (IJavaElement element= match.getType(); element != null; element= element.getParent()) {
+			if (elements.contains(element))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the time stamp of the file or archive containing the given type.
+	 *
+	 * @param match the type
+	 * @param containerTimestamps the time stamps already fetched for the containers, or
+	 *            <code>null</code>
+	 * @return the time stamp, or {@link IResource#NULL_STAMP} if not available
+	 */
+	private long getContainerTimestamp(TypeNameMatch match, Map<Object, Long> containerTimestamps) {
+		Object container= match.getType().getResource();
+		if (container == null)
+			container= match.getPackageFragmentRoot();
+		if (containerTimestamps != null) {
+			Long timestamp= containerTimestamps.get(container);
+			if (timestamp == null) {
+				timestamp= new Long(getContainerTimestamp(match));
+				containerTimestamps.put(container, timestamp);
+			}
+			return timestamp.longValue();
+		}
+		return getContainerTimestamp(match);
 	}
 
 	private long getContainerTimestamp(TypeNameMatch match) {
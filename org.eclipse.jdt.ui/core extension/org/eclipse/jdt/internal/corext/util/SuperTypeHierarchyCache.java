@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,16 @@
 package org.eclipse.jdt.internal.corext.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -23,16 +31,31 @@ import org.eclipse.jdt.core.JavaModelException;
 
 /**
  * A thread-safe cache for super type hierarchies.
+ * <p>
+ * The cache is bounded by the estimated memory used by the cached hierarchies
+ * (see {@link #setMaxMemory(long)}) and by the number of cached hierarchies
+ * (see {@link #setMaxEntries(int)}). The entry limit also bounds the number of
+ * hierarchies that listen to Java element changes. Every type contained in a
+ * cached hierarchy is indexed, such that look-ups do not need to scan the cached
+ * hierarchies and do not need to lock. Types contained in several hierarchies,
+ * like <code>java.lang.Object</code>, are indexed for each of them. The least
+ * recently accessed hierarchies are evicted first. Hierarchies are also evicted
+ * when they change.
+ * </p>
  */
 public class SuperTypeHierarchyCache {
 
 	private static class HierarchyCacheEntry implements ITypeHierarchyChangedListener {
 
-		private ITypeHierarchy fTypeHierarchy;
-		private long fLastAccess;
+		private volatile ITypeHierarchy fTypeHierarchy;
+		private final IType[] fTypes;
+		private final List<IType> fTesterTypes;
+		private volatile long fLastAccess;
 
 		public HierarchyCacheEntry(ITypeHierarchy hierarchy) {
 			fTypeHierarchy= hierarchy;
+			fTypes= hierarchy.getAllTypes();
+			fTesterTypes= new ArrayList<IType>(1);
 			fTypeHierarchy.addTypeHierarchyChangedListener(this);
 			markAsAccessed();
 		}
@@ -45,8 +68,20 @@ public class SuperTypeHierarchyCache {
 			return fTypeHierarchy;
 		}
 
+		public IType[] getTypes() {
+			return fTypes;
+		}
+
+		public List<IType> getTesterTypes() {
+			return fTesterTypes;
+		}
+
+		public long getEstimatedMemory() {
+			return ENTRY_OVERHEAD + (long) fTypes.length * BYTES_PER_TYPE;
+		}
+
 		public void markAsAccessed() {
-			fLastAccess= System.currentTimeMillis();
+			fLastAccess= fgAccessCounter.incrementAndGet();
 		}
 
 		public long getLastAccess() {
@@ -65,19 +100,53 @@ public class SuperTypeHierarchyCache {
 		 */
 		@Override
 		public String toString() {
-			return "Super hierarchy of: " + fTypeHierarchy.getType().getElementName(); //$NON-NLS-1$
+			ITypeHierarchy hierarchy= fTypeHierarchy;
+			if (hierarchy == null)
+				return "Disposed super hierarchy"; //$NON-NLS-1$
+			return "Super hierarchy of: " + hierarchy.getType().getElementName(); //$NON-NLS-1$
 		}
 
 	}
 
+	/**
+	 * Estimated memory used by a cached hierarchy, not counting its types.
+	 */
+	private static final long ENTRY_OVERHEAD= 1024;
+
+	/**
+	 * Estimated memory used per type of a cached hierarchy.
+	 */
+	private static final long BYTES_PER_TYPE= 512;
+
+	/**
+	 * Default maximal number of cached hierarchies. The cache is bounded by the estimated memory
+	 * of the hierarchies, this limit only bounds the number of type hierarchy changed listeners
+	 * registered by the cached hierarchies.
+	 */
+	private static final int MAX_ENTRIES= 1000;
+
+	private static final HierarchyCacheEntry[] NO_ENTRIES= new HierarchyCacheEntry[0];
 
-	private static final int CACHE_SIZE= 8;
+	private static final Object fgLock= new Object();
 
-	private static ArrayList<HierarchyCacheEntry> fgHierarchyCache= new ArrayList<HierarchyCacheEntry>(CACHE_SIZE);
-	private static Map<IType, MethodOverrideTester> fgMethodOverrideTesterCache= new LRUMap<IType, MethodOverrideTester>(CACHE_SIZE);
+	private static final Set<HierarchyCacheEntry> fgHierarchyCache= new HashSet<HierarchyCacheEntry>();
+	/**
+	 * Maps a type to the entries whose hierarchy contains it. The arrays are never
+	 * modified, they are replaced while holding {@link #fgLock}. The most recently
+	 * added entry is last.
+	 */
+	private static final Map<IType, HierarchyCacheEntry[]> fgTypeIndex= new ConcurrentHashMap<IType, HierarchyCacheEntry[]>();
+	private static final Map<IType, MethodOverrideTester> fgMethodOverrideTesterCache= new ConcurrentHashMap<IType, MethodOverrideTester>();
 
-	private static int fgCacheHits= 0;
-	private static int fgCacheMisses= 0;
+	private static final AtomicLong fgAccessCounter= new AtomicLong();
+
+	private static long fgMaxMemory= Math.max(4 * 0x100000, Runtime.getRuntime().maxMemory() / 64);
+	private static long fgEstimatedMemory= 0;
+	private static int fgMaxEntries= MAX_ENTRIES;
+
+	private static final AtomicInteger fgCacheHits= new AtomicInteger();
+	private static final AtomicInteger fgCacheMisses= new AtomicInteger();
+	private static final AtomicInteger fgCacheEvictions= new AtomicInteger();
 
 	/**
 	 * Returns a super type hierarchy that contains the given type.
@@ -95,34 +164,25 @@ public class SuperTypeHierarchyCache {
 	}
 
 	public static MethodOverrideTester getMethodOverrideTester(IType type) throws JavaModelException {
-		MethodOverrideTester test= null;
-		synchronized (fgMethodOverrideTesterCache) {
-			test= fgMethodOverrideTesterCache.get(type);
-		}
+		MethodOverrideTester test= fgMethodOverrideTesterCache.get(type);
 		if (test == null) {
 			ITypeHierarchy hierarchy= getTypeHierarchy(type); // don't nest the locks
-			synchronized (fgMethodOverrideTesterCache) {
+			synchronized (fgLock) {
 				test= fgMethodOverrideTesterCache.get(type); // test again after waiting a long time for 'getTypeHierarchy'
 				if (test == null) {
 					test= new MethodOverrideTester(type, hierarchy);
-					fgMethodOverrideTesterCache.put(type, test);
+					HierarchyCacheEntry entry= findEntry(type, hierarchy);
+					if (entry != null) {
+						// only cache testers of cached hierarchies, they are removed together
+						fgMethodOverrideTesterCache.put(type, test);
+						entry.getTesterTypes().add(type);
+					}
 				}
 			}
 		}
 		return test;
 	}
 
-	private static void removeMethodOverrideTester(ITypeHierarchy hierarchy) {
-		synchronized (fgMethodOverrideTesterCache) {
-			for (Iterator<MethodOverrideTester> iter= fgMethodOverrideTesterCache.values().iterator(); iter.hasNext();) {
-				MethodOverrideTester curr= iter.next();
-				if (curr.getTypeHierarchy().equals(hierarchy)) {
-					iter.remove();
-				}
-			}
-		}
-	}
-
 	/**
 	 * Returns a super type hierarchy that contains the given type.
 	 * The returned hierarchy may actually be based on a subtype of the
@@ -138,43 +198,84 @@ public class SuperTypeHierarchyCache {
 	public static ITypeHierarchy getTypeHierarchy(IType type, IProgressMonitor progressMonitor) throws JavaModelException {
 		ITypeHierarchy hierarchy= findTypeHierarchyInCache(type);
 		if (hierarchy == null) {
-			fgCacheMisses++;
+			fgCacheMisses.incrementAndGet();
 			hierarchy= type.newSupertypeHierarchy(progressMonitor);
 			addTypeHierarchyToCache(hierarchy);
 		} else {
-			fgCacheHits++;
+			fgCacheHits.incrementAndGet();
 		}
 		return hierarchy;
 	}
 
 	private static void addTypeHierarchyToCache(ITypeHierarchy hierarchy) {
-		synchronized (fgHierarchyCache) {
-			int nEntries= fgHierarchyCache.size();
-			if (nEntries >= CACHE_SIZE) {
-				// find obsolete entries or remove entry that was least recently accessed
-				HierarchyCacheEntry oldest= null;
-				ArrayList<HierarchyCacheEntry> obsoleteHierarchies= new ArrayList<HierarchyCacheEntry>(CACHE_SIZE);
-				for (int i= 0; i < nEntries; i++) {
-					HierarchyCacheEntry entry= fgHierarchyCache.get(i);
-					ITypeHierarchy curr= entry.getTypeHierarchy();
-					if (!curr.exists() || hierarchy.contains(curr.getType())) {
-						obsoleteHierarchies.add(entry);
-					} else {
-						if (oldest == null || entry.getLastAccess() < oldest.getLastAccess()) {
-							oldest= entry;
-						}
+		HierarchyCacheEntry newEntry= new HierarchyCacheEntry(hierarchy);
+		synchronized (fgLock) {
+			// entries for types contained in the new hierarchy are obsolete
+			IType[] types= newEntry.getTypes();
+			for (int i= 0; i < types.length; i++) {
+				HierarchyCacheEntry[] entries= getEntries(types[i]);
+				for (int k= 0; k < entries.length; k++) {
+					ITypeHierarchy curr= entries[k].getTypeHierarchy();
+					if (curr == null || types[i].equals(curr.getType())) {
+						removeHierarchyEntryFromCache(entries[k]);
 					}
 				}
-				if (!obsoleteHierarchies.isEmpty()) {
-					for (int i= 0; i < obsoleteHierarchies.size(); i++) {
-						removeHierarchyEntryFromCache(obsoleteHierarchies.get(i));
-					}
-				} else if (oldest != null) {
-					removeHierarchyEntryFromCache(oldest);
-				}
 			}
-			HierarchyCacheEntry newEntry= new HierarchyCacheEntry(hierarchy);
+
 			fgHierarchyCache.add(newEntry);
+			fgEstimatedMemory+= newEntry.getEstimatedMemory();
+			for (int i= 0; i < types.length; i++) {
+				HierarchyCacheEntry[] entries= getEntries(types[i]);
+				HierarchyCacheEntry[] newEntries= new HierarchyCacheEntry[entries.length + 1];
+				System.arraycopy(entries, 0, newEntries, 0, entries.length);
+				newEntries[entries.length]= newEntry;
+				fgTypeIndex.put(types[i], newEntries);
+			}
+			evict(newEntry);
+		}
+	}
+
+	private static HierarchyCacheEntry[] getEntries(IType type) {
+		HierarchyCacheEntry[] entries= fgTypeIndex.get(type);
+		return entries != null ? entries : NO_ENTRIES;
+	}
+
+	private static HierarchyCacheEntry findEntry(IType type, ITypeHierarchy hierarchy) {
+		HierarchyCacheEntry[] entries= getEntries(type);
+		for (int i= 0; i < entries.length; i++) {
+			if (entries[i].getTypeHierarchy() == hierarchy)
+				return entries[i];
+		}
+		return null;
+	}
+
+	private static boolean isFull() {
+		return fgEstimatedMemory > fgMaxMemory || fgHierarchyCache.size() > fgMaxEntries;
+	}
+
+	/**
+	 * Evicts the least recently accessed entries until the cache fits into
+	 * the configured memory and number of entries.
+	 *
+	 * @param keep an entry that must not be evicted, or <code>null</code>
+	 */
+	private static void evict(HierarchyCacheEntry keep) {
+		if (!isFull())
+			return;
+
+		HierarchyCacheEntry[] entries= fgHierarchyCache.toArray(new HierarchyCacheEntry[fgHierarchyCache.size()]);
+		Arrays.sort(entries, new Comparator<HierarchyCacheEntry>() {
+			public int compare(HierarchyCacheEntry e1, HierarchyCacheEntry e2) {
+				long a1= e1.getLastAccess();
+				long a2= e2.getLastAccess();
+				return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+			}
+		});
+		for (int i= 0; i < entries.length && isFull(); i++) {
+			if (entries[i] != keep) {
+				removeHierarchyEntryFromCache(entries[i]);
+				fgCacheEvictions.incrementAndGet();
+			}
 		}
 	}
 
@@ -190,38 +291,139 @@ public class SuperTypeHierarchyCache {
 
 
 	private static ITypeHierarchy findTypeHierarchyInCache(IType type) {
-		synchronized (fgHierarchyCache) {
-			for (int i= fgHierarchyCache.size() - 1; i>= 0; i--) {
-				HierarchyCacheEntry curr= fgHierarchyCache.get(i);
-				ITypeHierarchy hierarchy= curr.getTypeHierarchy();
-				if (!hierarchy.exists()) {
-					removeHierarchyEntryFromCache(curr);
-				} else {
-					if (hierarchy.contains(type)) {
-						curr.markAsAccessed();
-						return hierarchy;
-					}
-				}
+		HierarchyCacheEntry[] entries= getEntries(type);
+		for (int i= entries.length - 1; i >= 0; i--) {
+			HierarchyCacheEntry entry= entries[i];
+			ITypeHierarchy hierarchy= entry.getTypeHierarchy();
+			if (hierarchy == null)
+				continue; // removed concurrently
+
+			if (!hierarchy.exists()) {
+				removeHierarchyEntryFromCache(entry);
+			} else {
+				entry.markAsAccessed();
+				return hierarchy;
 			}
 		}
 		return null;
 	}
 
 	private static void removeHierarchyEntryFromCache(HierarchyCacheEntry entry) {
-		synchronized (fgHierarchyCache) {
-			removeMethodOverrideTester(entry.getTypeHierarchy());
+		synchronized (fgLock) {
+			if (!fgHierarchyCache.remove(entry))
+				return;
+
+			fgEstimatedMemory-= entry.getEstimatedMemory();
+			IType[] types= entry.getTypes();
+			for (int i= 0; i < types.length; i++) {
+				HierarchyCacheEntry[] entries= getEntries(types[i]);
+				int index= Arrays.asList(entries).indexOf(entry);
+				if (index == -1)
+					continue;
+				if (entries.length == 1) {
+					fgTypeIndex.remove(types[i]);
+				} else {
+					HierarchyCacheEntry[] newEntries= new HierarchyCacheEntry[entries.length - 1];
+					System.arraycopy(entries, 0, newEntries, 0, index);
+					System.arraycopy(entries, index + 1, newEntries, index, newEntries.length - index);
+					fgTypeIndex.put(types[i], newEntries);
+				}
+			}
+			for (Iterator<IType> iter= entry.getTesterTypes().iterator(); iter.hasNext();) {
+				fgMethodOverrideTesterCache.remove(iter.next());
+			}
 			entry.dispose();
-			fgHierarchyCache.remove(entry);
 		}
 	}
 
+	/**
+	 * Sets the estimated memory the cached hierarchies may use. Evicts hierarchies
+	 * if the cache does not fit into the new limit.
+	 *
+	 * @param maxMemory the maximal estimated memory in bytes
+	 */
+	public static void setMaxMemory(long maxMemory) {
+		synchronized (fgLock) {
+			fgMaxMemory= maxMemory;
+			evict(null);
+		}
+	}
+
+	/**
+	 * Returns the estimated memory the cached hierarchies may use.
+	 *
+	 * @return the maximal estimated memory in bytes
+	 */
+	public static long getMaxMemory() {
+		synchronized (fgLock) {
+			return fgMaxMemory;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of cached hierarchies. Evicts hierarchies if the
+	 * cache contains more hierarchies.
+	 *
+	 * @param maxEntries the maximal number of cached hierarchies
+	 */
+	public static void setMaxEntries(int maxEntries) {
+		synchronized (fgLock) {
+			fgMaxEntries= maxEntries;
+			evict(null);
+		}
+	}
+
+	/**
+	 * Returns the maximal number of cached hierarchies.
+	 *
+	 * @return the maximal number of cached hierarchies
+	 */
+	public static int getMaxEntries() {
+		synchronized (fgLock) {
+			return fgMaxEntries;
+		}
+	}
+
+	/**
+	 * Returns the estimated memory used by the cached hierarchies.
+	 *
+	 * @return the estimated memory in bytes
+	 */
+	public static long getEstimatedMemory() {
+		synchronized (fgLock) {
+			return fgEstimatedMemory;
+		}
+	}
+
+	/**
+	 * Returns the number of cached hierarchies.
+	 *
+	 * @return the number of cached hierarchies
+	 */
+	public static int getCacheSize() {
+		synchronized (fgLock) {
+			return fgHierarchyCache.size();
+		}
+	}
+
+	/**
+	 * Removes all hierarchies from the cache.
+	 */
+	public static void clear() {
+		synchronized (fgLock) {
+			List<HierarchyCacheEntry> entries= new ArrayList<HierarchyCacheEntry>(fgHierarchyCache);
+			for (Iterator<HierarchyCacheEntry> iter= entries.iterator(); iter.hasNext();) {
+				removeHierarchyEntryFromCache(iter.next());
+			}
+		}
+	}
 
 	/**
 	 * Gets the number of times the hierarchy could be taken from the hierarchy.
 	 * @return Returns a int
 	 */
 	public static int getCacheHits() {
-		return fgCacheHits;
+		return fgCacheHits.get();
 	}
 
 	/**
@@ -229,6 +431,15 @@ public class SuperTypeHierarchyCache {
 	 * @return Returns a int
 	 */
 	public static int getCacheMisses() {
-		return fgCacheMisses;
+		return fgCacheMisses.get();
+	}
+
+	/**
+	 * Gets the number of hierarchies that have been evicted because the
+	 * cache exceeded its memory or entry limit.
+	 * @return Returns a int
+	 */
+	public static int getCacheEvictions() {
+		return fgCacheEvictions.get();
 	}
 }
@@ -166,16 +166,41 @@ public class TypeInfoFilter {
 	}
 
 	private boolean matchesName(TypeNameMatch type) {
+		return matchesName(type.getSimpleTypeName());
+	}
+
+	/**
+	 * Tells whether the given simple type name matches the name pattern.
+	 *
+	 * @param simpleTypeName the simple name of a type
+	 * @return <code>true</code> if the name matches
+	 * @since 3.8
+	 */
+	public boolean matchesName(String simpleTypeName) {
 		if (fText.length() == 0) {
 			return true; //empty pattern matches all names
 		}
-		return fNameMatcher.matches(type.getSimpleTypeName());
+		return fNameMatcher.matches(simpleTypeName);
 	}
 
 	private boolean matchesPackage(TypeNameMatch type) {
 		if (fPackageMatcher == null)
 			return true;
-		return fPackageMatcher.matches(type.getTypeContainerName());
+		return matchesPackage(type.getTypeContainerName());
+	}
+
+	/**
+	 * Tells whether the given type container name matches the package pattern.
+	 *
+	 * @param typeContainerName the package name of a type, followed by the names of its
+	 *            enclosing types
+	 * @return <code>true</code> if there is no package pattern or the name matches
+	 * @since 3.8
+	 */
+	public boolean matchesPackage(String typeContainerName) {
+		if (fPackageMatcher == null)
+			return true;
+		return fPackageMatcher.matches(typeContainerName);
 	}
 
 	private boolean matchesScope(TypeNameMatch type) {
@@ -187,7 +212,20 @@ public class TypeInfoFilter {
 	private boolean matchesModifiers(TypeNameMatch type) {
 		if (fElementKind == IJavaSearchConstants.TYPE)
 			return true;
-		int modifiers= type.getModifiers() & TYPE_MODIFIERS;
+		return matchesModifiers(type.getModifiers());
+	}
+
+	/**
+	 * Tells whether a type with the given modifiers is of the element kind of this filter.
+	 *
+	 * @param typeModifiers the modifiers of a type
+	 * @return <code>true</code> if the modifiers match
+	 * @since 3.8
+	 */
+	public boolean matchesModifiers(int typeModifiers) {
+		if (fElementKind == IJavaSearchConstants.TYPE)
+			return true;
+		int modifiers= typeModifiers & TYPE_MODIFIERS;
 		switch (fElementKind) {
 			case IJavaSearchConstants.CLASS:
 				return modifiers == 0;
@@ -0,0 +1,624 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * A compact snapshot of the names of all types in the workspace. It lets the open type dialog
+ * show types right after startup, before the search engine has finished indexing.
+ * <p>
+ * The names are kept in a {@link TypeNameTable}. The snapshot is saved in the state location on
+ * shutdown, updated from Java element deltas while it is in use, and replaced by
+ * {@link #reconcile(IProgressMonitor)} with the result of a full type name search.
+ * </p>
+ * <p>
+ * The delta listener only queues the changed compilation units and removed roots. The queued
+ * changes are applied to the table in place when it is read, while holding the write lock of the
+ * table. {@link #collect(TypeInfoFilter, TypeNameMatchRequestor, IProgressMonitor)} matches while
+ * holding the read lock, so the delta listener never waits for matching.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class TypeNameSnapshot {
+
+	private class DeltaListener implements IElementChangedListener {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	}
+
+	private static final String FILENAME= "TypeNameSnapshot.dat"; //$NON-NLS-1$
+	private static final int FILE_MAGIC= 0x544E5353;
+	private static final int FILE_VERSION= 1;
+
+	/** The number of changed compilation units above which a full reconcile is cheaper. */
+	private static final int MAX_PENDING_UNITS= 100;
+
+	private static TypeNameSnapshot fgInstance;
+
+	/**
+	 * Returns the snapshot, loading it from the state location on first access.
+	 *
+	 * @return the snapshot
+	 */
+	public static synchronized TypeNameSnapshot getInstance() {
+		if (fgInstance == null)
+			fgInstance= new TypeNameSnapshot(JavaPlugin.getDefault().getStateLocation().append(FILENAME).toFile());
+		return fgInstance;
+	}
+
+	/**
+	 * Saves the snapshot if it has been used.
+	 */
+	public static synchronized void shutdown() {
+		TypeNameTable.shutdown();
+		if (fgInstance == null)
+			return;
+		fgInstance.save();
+		fgInstance.dispose();
+	}
+
+	private final File fFile;
+	private final IElementChangedListener fDeltaListener;
+	private TypeNameTable fTable;
+	private boolean fIsReconciled;
+	private boolean fIsStale;
+	private boolean fIsDirty;
+	private final Set<ICompilationUnit> fPendingUnits= new LinkedHashSet<ICompilationUnit>();
+	/** The handle identifiers of the removed roots, or prefixes of them ending with '/'. */
+	private final Set<String> fRemovedRoots= new HashSet<String>();
+	private final ReadWriteLock fTableLock= new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a snapshot that is kept in the given file and listens to Java element changes until
+	 * it is disposed. Clients should use {@link #getInstance()}, this constructor is public for
+	 * tests.
+	 *
+	 * @param file the file to load the snapshot from and to save it to
+	 */
+	public TypeNameSnapshot(File file) {
+		fFile= file;
+		fDeltaListener= new DeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener, ElementChangedEvent.POST_CHANGE);
+		load();
+	}
+
+	/**
+	 * Stops listening to Java element changes.
+	 */
+	public void dispose() {
+		JavaCore.removeElementChangedListener(fDeltaListener);
+	}
+
+	/**
+	 * Tells whether the snapshot contains types, e.g. from a previous session.
+	 *
+	 * @return <code>true</code> if the snapshot can be used
+	 */
+	public synchronized boolean isAvailable() {
+		return fTable != null;
+	}
+
+	/**
+	 * Tells whether the snapshot has been reconciled with the search engine in this session.
+	 *
+	 * @return <code>true</code> if the snapshot has been reconciled
+	 */
+	public synchronized boolean isReconciled() {
+		return fIsReconciled;
+	}
+
+	/**
+	 * Tells whether the snapshot should be reconciled, because it has not been reconciled in this
+	 * session or because of changes that cannot be applied incrementally.
+	 *
+	 * @return <code>true</code> if {@link #reconcile(IProgressMonitor)} should be called
+	 */
+	public synchronized boolean needsReconcile() {
+		return !fIsReconciled || fIsStale;
+	}
+
+	/**
+	 * Replaces the snapshot with the types found by the search engine in the workspace.
+	 *
+	 * @param monitor the progress monitor
+	 * @throws JavaModelException if the search fails
+	 * @throws OperationCanceledException if the monitor has been cancelled
+	 */
+	public void reconcile(IProgressMonitor monitor) throws JavaModelException {
+		boolean wasStale;
+		synchronized (this) {
+			wasStale= fIsStale;
+			fIsStale= false;
+		}
+		final TypeNameTable table= new TypeNameTable();
+		boolean done= false;
+		try {
+			new SearchEngine().searchAllTypeNames(
+					null,
+					0,
+					null,
+					SearchPattern.R_PATTERN_MATCH,
+					IJavaSearchConstants.TYPE,
+					SearchEngine.createWorkspaceScope(),
+					new TypeNameMatchRequestor() {
+						@Override
+						public void acceptTypeNameMatch(TypeNameMatch match) {
+							table.add(match);
+						}
+					},
+					IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
+					monitor);
+			done= true;
+		} finally {
+			synchronized (this) {
+				if (done) {
+					fTable= table;
+					fIsReconciled= true;
+					fIsDirty= true;
+				} else {
+					fIsStale|= wasStale;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes the types of the snapshot that match the given filter to the requestor. Types
+	 * filtered by the type filter preferences are left out.
+	 *
+	 * @param filter the filter for the names, package names and modifiers
+	 * @param requestor the requestor
+	 * @param monitor the progress monitor
+	 * @throws OperationCanceledException if the monitor has been cancelled
+	 */
+	public void collect(TypeInfoFilter filter, TypeNameMatchRequestor requestor, IProgressMonitor monitor) {
+		TypeNameTable table= getTable();
+		if (table == null)
+			return;
+
+		fTableLock.readLock().lock();
+		try {
+			int[] matches= table.match(filter, monitor);
+			IPackageFragmentRoot[] roots= new IPackageFragmentRoot[table.fRootHandles.size()];
+			for (int i= 0; i < matches.length; i++) {
+				if ((i & 0x3ff) == 0 && monitor.isCanceled())
+					throw new OperationCanceledException();
+
+				int index= matches[i];
+				int root= table.fRoots[index];
+				String packageName= table.fPackageNames.get(table.fPackages[index]);
+				String qualifiedName= table.getQualifiedName(index);
+				if (TypeFilter.isFiltered(JavaModelUtil.concatenateName(packageName, qualifiedName)))
+					continue;
+
+				if (roots[root] == null) {
+					IJavaElement element= JavaCore.create(table.fRootHandles.get(root));
+					if (!(element instanceof IPackageFragmentRoot))
+						continue;
+					roots[root]= (IPackageFragmentRoot) element;
+				}
+				IType type= createType(roots[root], packageName, qualifiedName, table.getFileName(index), table.isSource(index));
+				requestor.acceptTypeNameMatch(SearchEngine.createTypeNameMatch(type, table.fModifiers[index]));
+			}
+		} finally {
+			fTableLock.readLock().unlock();
+		}
+	}
+
+	private static IType createType(IPackageFragmentRoot root, String packageName, String qualifiedName, String fileName, boolean isSource) {
+		IPackageFragment pack= root.getPackageFragment(packageName);
+		if (!isSource) {
+			IClassFile classFile= pack.getClassFile(fileName);
+			return classFile.getType();
+		}
+		String[] names= qualifiedName.split("\\."); //$NON-NLS-1$
+		IType type= pack.getCompilationUnit(fileName).getType(names[0]);
+		for (int i= 1; i < names.length; i++)
+			type= type.getType(names[i]);
+		return type;
+	}
+
+	private synchronized void processDelta(IJavaElementDelta delta) {
+		if (fTable == null)
+			return;
+
+		IJavaElement element= delta.getElement();
+		int kind= delta.getKind();
+		int flags= delta.getFlags();
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+				break;
+			case IJavaElement.JAVA_PROJECT:
+				if (kind == IJavaElementDelta.REMOVED || (flags & IJavaElementDelta.F_CLOSED) != 0) {
+					fRemovedRoots.add(element.getHandleIdentifier() + '/');
+					return;
+				}
+				if (kind == IJavaElementDelta.ADDED || (flags & (IJavaElementDelta.F_OPENED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0)
+					fIsStale= true;
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				if (kind == IJavaElementDelta.REMOVED || (flags & IJavaElementDelta.F_REMOVED_FROM_CLASSPATH) != 0) {
+					fRemovedRoots.add(element.getHandleIdentifier());
+					return;
+				}
+				if (kind == IJavaElementDelta.ADDED || (flags & (IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED)) != 0) {
+					fIsStale= true;
+					return;
+				}
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT:
+				if (kind != IJavaElementDelta.CHANGED) {
+					fIsStale= true;
+					return;
+				}
+				break;
+			case IJavaElement.COMPILATION_UNIT:
+				ICompilationUnit unit= (ICompilationUnit) element;
+				if (JavaModelUtil.isPrimary(unit) && (kind != IJavaElementDelta.CHANGED || (flags & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_CHILDREN)) != 0))
+					addPendingUnit(unit);
+				return;
+			case IJavaElement.CLASS_FILE:
+				fIsStale= true;
+				return;
+			default:
+				return;
+		}
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++)
+			processDelta(children[i]);
+	}
+
+	private void addPendingUnit(ICompilationUnit unit) {
+		if (fIsStale)
+			return;
+		if (fPendingUnits.size() >= MAX_PENDING_UNITS) {
+			fPendingUnits.clear();
+			fIsStale= true;
+			return;
+		}
+		fPendingUnits.add(unit);
+	}
+
+	/**
+	 * Marks the types of the removed roots as removed.
+	 *
+	 * @param table the table to modify, the caller holds the write lock of the table
+	 * @param removedRoots the handle identifiers of the removed roots, or prefixes of them ending
+	 *            with '/'
+	 * @return <code>true</code> if types have been removed
+	 */
+	private static boolean removeRoots(TypeNameTable table, String[] removedRoots) {
+		Set<Integer> removed= new HashSet<Integer>();
+		for (int i= 0; i < table.fRootHandles.size(); i++) {
+			String rootHandle= table.fRootHandles.get(i);
+			for (int k= 0; k < removedRoots.length; k++) {
+				String handle= removedRoots[k];
+				if (handle.endsWith("/") ? rootHandle.startsWith(handle) : rootHandle.equals(handle)) //$NON-NLS-1$
+					removed.add(new Integer(i));
+			}
+		}
+		if (removed.isEmpty())
+			return false;
+
+		for (int i= 0; i < table.fSize; i++) {
+			if (table.fRoots[i] != -1 && removed.contains(new Integer(table.fRoots[i])))
+				table.remove(i);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the current table, after applying the queued changes to it. The types of the changed
+	 * compilation units are read without holding any lock, and the table is then modified while
+	 * holding its write lock.
+	 *
+	 * @return the table, or <code>null</code> if the snapshot is not available
+	 */
+	private TypeNameTable getTable() {
+		ICompilationUnit[] units;
+		synchronized (this) {
+			if (fTable == null || (fPendingUnits.isEmpty() && fRemovedRoots.isEmpty()))
+				return fTable;
+			units= fPendingUnits.toArray(new ICompilationUnit[fPendingUnits.size()]);
+			fPendingUnits.clear();
+		}
+
+		IType[][] types= new IType[units.length][];
+		int[][] flags= new int[units.length][];
+		boolean failed= false;
+		for (int i= 0; i < units.length; i++) {
+			if (!units[i].exists())
+				continue;
+			try {
+				types[i]= units[i].getAllTypes();
+				flags[i]= new int[types[i].length];
+				for (int k= 0; k < types[i].length; k++)
+					flags[i][k]= types[i][k].getFlags();
+			} catch (JavaModelException e) {
+				types[i]= null;
+				failed= true;
+			}
+		}
+
+		fTableLock.writeLock().lock();
+		try {
+			TypeNameTable table;
+			String[] removedRoots;
+			synchronized (this) {
+				table= fTable;
+				removedRoots= fRemovedRoots.toArray(new String[fRemovedRoots.size()]);
+				fRemovedRoots.clear();
+			}
+			if (table == null)
+				return null;
+
+			boolean modified= removeRoots(table, removedRoots);
+			boolean complete= true;
+			if (units.length > 0) {
+				complete= replaceTypes(table, units, types, flags);
+				modified= true;
+			}
+			synchronized (this) {
+				if (failed || !complete)
+					fIsStale= true;
+				if (modified)
+					fIsDirty= true;
+			}
+			return table;
+		} finally {
+			fTableLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the types of the given compilation units in the table.
+	 *
+	 * @param table the table to modify, the caller holds the write lock of the table
+	 * @param units the compilation units
+	 * @param types the current types of each compilation unit, or <code>null</code> if the unit
+	 *            does not exist anymore
+	 * @param flags the flags of the types
+	 * @return <code>false</code> if some types could not be added because their root is not in the
+	 *         table yet
+	 */
+	private static boolean replaceTypes(TypeNameTable table, ICompilationUnit[] units, IType[][] types, int[][] flags) {
+		boolean complete= true;
+		Set<Long> packages= new HashSet<Long>();
+		Set<String> files= new HashSet<String>();
+		int[] roots= new int[units.length];
+		for (int i= 0; i < units.length; i++) {
+			Integer root= table.fRootIndexes.get(units[i].getParent().getParent().getHandleIdentifier());
+			if (root == null) {
+				// types of a root that is not in the snapshot yet
+				complete= false;
+				roots[i]= -1;
+				continue;
+			}
+			roots[i]= root.intValue();
+			String packageName= units[i].getParent().getElementName();
+			Integer pack= table.fPackageIndexes.get(packageName);
+			if (pack != null) {
+				packages.add(new Long(getPackageKey(roots[i], pack.intValue())));
+				files.add(getFileKey(roots[i], pack.intValue(), units[i].getElementName()));
+			}
+		}
+
+		for (int i= 0; i < table.fSize; i++) {
+			int root= table.fRoots[i];
+			if (root == -1 || !packages.contains(new Long(getPackageKey(root, table.fPackages[i]))))
+				continue;
+			if (table.isSource(i) && files.contains(getFileKey(root, table.fPackages[i], table.getFileName(i))))
+				table.remove(i);
+		}
+
+		for (int i= 0; i < units.length; i++) {
+			if (roots[i] == -1 || types[i] == null)
+				continue;
+			int pack= table.getPackageIndex(units[i].getParent().getElementName());
+			for (int k= 0; k < types[i].length; k++)
+				table.add(roots[i], pack, types[i][k].getTypeQualifiedName('.'), units[i].getElementName(), flags[i][k]);
+		}
+		return complete;
+	}
+
+	private static long getPackageKey(int root, int pack) {
+		return ((long) root << 32) | pack;
+	}
+
+	private static String getFileKey(int root, int pack, String fileName) {
+		return root + "/" + pack + "/" + fileName; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void load() {
+		if (!fFile.exists())
+			return;
+
+		DataInputStream in= null;
+		try {
+			in= new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)));
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+				return;
+
+			TypeNameTable table= new TypeNameTable();
+			int rootCount= in.readInt();
+			for (int i= 0; i < rootCount; i++) {
+				String handle= in.readUTF();
+				table.getRootIndex(handle, in.readBoolean());
+			}
+			int packageCount= in.readInt();
+			for (int i= 0; i < packageCount; i++)
+				table.getPackageIndex(in.readUTF());
+
+			int size= in.readInt();
+			int charCount= in.readInt();
+			table.fChars= new char[charCount];
+			for (int i= 0; i < charCount; i++)
+				table.fChars[i]= in.readChar();
+			table.fCharCount= charCount;
+			table.fRoots= readInts(in, size);
+			table.fPackages= readInts(in, size);
+			table.fModifiers= readInts(in, size);
+			table.fNameOffsets= readInts(in, size);
+			table.fNameLengths= readInts(in, size);
+			table.fFileOffsets= readInts(in, size);
+			table.fFileLengths= readInts(in, size);
+			table.fSize= size;
+			table.computeNameKeys();
+			fTable= table;
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
+	private static int[] readInts(DataInputStream in, int size) throws IOException {
+		int[] result= new int[Math.max(size, 1)];
+		for (int i= 0; i < size; i++)
+			result[i]= in.readInt();
+		return result;
+	}
+
+	/**
+	 * Writes the snapshot without the removed types, if it has changed since it has been loaded
+	 * or saved. Only changes that do not need the Java model are applied before: the types of
+	 * changed compilation units that have not been read yet are not saved, the snapshot is
+	 * reconciled in the next session anyway.
+	 */
+	public void save() {
+		fTableLock.writeLock().lock();
+		try {
+			TypeNameTable table;
+			String[] removedRoots;
+			synchronized (this) {
+				table= fTable;
+				if (table == null)
+					return;
+				removedRoots= fRemovedRoots.toArray(new String[fRemovedRoots.size()]);
+				fRemovedRoots.clear();
+			}
+			boolean modified= removeRoots(table, removedRoots);
+			synchronized (this) {
+				if (!fIsDirty && !modified)
+					return;
+			}
+
+			TypeNameTable compacted= new TypeNameTable();
+			compacted.fRootHandles.addAll(table.fRootHandles);
+			compacted.fSourceRoots.addAll(table.fSourceRoots);
+			compacted.fRootIndexes.putAll(table.fRootIndexes);
+			compacted.fPackageNames.addAll(table.fPackageNames);
+			compacted.fPackageIndexes.putAll(table.fPackageIndexes);
+			for (int i= 0; i < table.fSize; i++) {
+				if (table.fRoots[i] != -1)
+					compacted.add(table.fRoots[i], table.fPackages[i], table.getQualifiedName(i), table.getFileName(i), table.fModifiers[i]);
+			}
+			if (write(compacted)) {
+				synchronized (this) {
+					if (fTable == table) {
+						fTable= compacted;
+						fIsDirty= false;
+					}
+				}
+			}
+		} finally {
+			fTableLock.writeLock().unlock();
+		}
+	}
+
+	private boolean write(TypeNameTable compacted) {
+		DataOutputStream out= null;
+		try {
+			out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile)));
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(compacted.fRootHandles.size());
+			for (int i= 0; i < compacted.fRootHandles.size(); i++) {
+				out.writeUTF(compacted.fRootHandles.get(i));
+				out.writeBoolean(compacted.fSourceRoots.get(i).booleanValue());
+			}
+			out.writeInt(compacted.fPackageNames.size());
+			for (int i= 0; i < compacted.fPackageNames.size(); i++)
+				out.writeUTF(compacted.fPackageNames.get(i));
+
+			int size= compacted.fSize;
+			out.writeInt(size);
+			out.writeInt(compacted.fCharCount);
+			for (int i= 0; i < compacted.fCharCount; i++)
+				out.writeChar(compacted.fChars[i]);
+			writeInts(out, compacted.fRoots, size);
+			writeInts(out, compacted.fPackages, size);
+			writeInts(out, compacted.fModifiers, size);
+			writeInts(out, compacted.fNameOffsets, size);
+			writeInts(out, compacted.fNameLengths, size);
+			writeInts(out, compacted.fFileOffsets, size);
+			writeInts(out, compacted.fFileLengths, size);
+			return true;
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			return false;
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values, int size) throws IOException {
+		for (int i= 0; i < size; i++)
+			out.writeInt(values[i]);
+	}
+}
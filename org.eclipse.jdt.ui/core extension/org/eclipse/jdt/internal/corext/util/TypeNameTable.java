@@ -0,0 +1,441 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * A table of type names, stored in parallel arrays. The names of all types are kept in a single
+ * character arena, split into an index into a table of package names and the type qualified name.
+ * <p>
+ * For each type, the table also keeps the start of the simple name and the set of upper case
+ * letters of the simple name. {@link #match(TypeInfoFilter, IProgressMonitor)} uses them to reject
+ * most names of a camel case or prefix pattern without creating strings, and matches large tables
+ * in chunks on several threads.
+ * </p>
+ * <p>
+ * This class is not thread safe, except that several threads may match the same table while it
+ * is not modified.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class TypeNameTable {
+
+	/** The number of types matched by one task. */
+	private static final int CHUNK_SIZE= 16 * 1024;
+
+	private static final int[] NO_INDEXES= new int[0];
+
+	private static ExecutorService fgExecutor;
+
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			fgExecutor= Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Type Name Matcher"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fgExecutor;
+	}
+
+	/**
+	 * Stops the threads used for matching.
+	 */
+	public static synchronized void shutdown() {
+		if (fgExecutor != null) {
+			fgExecutor.shutdownNow();
+			fgExecutor= null;
+		}
+	}
+
+	final List<String> fRootHandles= new ArrayList<String>();
+	final List<Boolean> fSourceRoots= new ArrayList<Boolean>();
+	final Map<String, Integer> fRootIndexes= new HashMap<String, Integer>();
+	final List<String> fPackageNames= new ArrayList<String>();
+	final Map<String, Integer> fPackageIndexes= new HashMap<String, Integer>();
+
+	char[] fChars= new char[1024];
+	int fCharCount;
+
+	int fSize;
+	/** The root index of each type, or <code>-1</code> if the type has been removed. */
+	int[] fRoots= new int[64];
+	int[] fPackages= new int[64];
+	int[] fModifiers= new int[64];
+	int[] fNameOffsets= new int[64];
+	int[] fNameLengths= new int[64];
+	/** The offset of the file name, or <code>-1</code> if it is derived from the type name. */
+	int[] fFileOffsets= new int[64];
+	int[] fFileLengths= new int[64];
+
+	/** The offset of the simple name in the arena, computed from the qualified name. */
+	int[] fSimpleNameOffsets= new int[64];
+	/** The upper case letters 'A' to 'Z' of the simple name as a bit set, computed from the name. */
+	int[] fUpperCaseMasks= new int[64];
+
+	int getRootIndex(String handle, boolean isSource) {
+		Integer index= fRootIndexes.get(handle);
+		if (index == null) {
+			index= new Integer(fRootHandles.size());
+			fRootHandles.add(handle);
+			fSourceRoots.add(Boolean.valueOf(isSource));
+			fRootIndexes.put(handle, index);
+		}
+		return index.intValue();
+	}
+
+	int getPackageIndex(String packageName) {
+		Integer index= fPackageIndexes.get(packageName);
+		if (index == null) {
+			index= new Integer(fPackageNames.size());
+			fPackageNames.add(packageName);
+			fPackageIndexes.put(packageName, index);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Returns the number of types in the table, including removed types.
+	 *
+	 * @return the number of types
+	 */
+	public int size() {
+		return fSize;
+	}
+
+	void add(TypeNameMatch match) {
+		IType type= match.getType();
+		IPackageFragmentRoot root= match.getPackageFragmentRoot();
+		boolean isSource= !type.isBinary();
+		String fileName= isSource ? type.getCompilationUnit().getElementName() : type.getClassFile().getElementName();
+		add(getRootIndex(root.getHandleIdentifier(), isSource), getPackageIndex(match.getPackageName()), match.getTypeQualifiedName(), fileName, match.getModifiers());
+	}
+
+	/**
+	 * Adds a type to the table.
+	 *
+	 * @param rootHandle the handle identifier of the package fragment root of the type
+	 * @param isSource <code>true</code> if the root is a source folder
+	 * @param packageName the package name of the type
+	 * @param qualifiedName the type qualified name of the type, with '.' separating the names of
+	 *            enclosing types
+	 * @param fileName the name of the compilation unit or class file of the type
+	 * @param modifiers the modifiers of the type
+	 */
+	public void add(String rootHandle, boolean isSource, String packageName, String qualifiedName, String fileName, int modifiers) {
+		add(getRootIndex(rootHandle, isSource), getPackageIndex(packageName), qualifiedName, fileName, modifiers);
+	}
+
+	void add(int root, int pack, String qualifiedName, String fileName, int modifiers) {
+		if (fSize == fRoots.length) {
+			int capacity= 2 * fSize;
+			fRoots= grow(fRoots, capacity);
+			fPackages= grow(fPackages, capacity);
+			fModifiers= grow(fModifiers, capacity);
+			fNameOffsets= grow(fNameOffsets, capacity);
+			fNameLengths= grow(fNameLengths, capacity);
+			fFileOffsets= grow(fFileOffsets, capacity);
+			fFileLengths= grow(fFileLengths, capacity);
+			fSimpleNameOffsets= grow(fSimpleNameOffsets, capacity);
+			fUpperCaseMasks= grow(fUpperCaseMasks, capacity);
+		}
+		fRoots[fSize]= root;
+		fPackages[fSize]= pack;
+		fModifiers[fSize]= modifiers;
+		fNameOffsets[fSize]= append(qualifiedName);
+		fNameLengths[fSize]= qualifiedName.length();
+		if (fileName.equals(getDerivedFileName(qualifiedName, fSourceRoots.get(root).booleanValue()))) {
+			fFileOffsets[fSize]= -1;
+			fFileLengths[fSize]= 0;
+		} else {
+			fFileOffsets[fSize]= append(fileName);
+			fFileLengths[fSize]= fileName.length();
+		}
+		computeNameKey(fSize);
+		fSize++;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] result= new int[capacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	private int append(String string) {
+		int length= string.length();
+		if (fCharCount + length > fChars.length) {
+			char[] chars= new char[Math.max(2 * fChars.length, fCharCount + length)];
+			System.arraycopy(fChars, 0, chars, 0, fCharCount);
+			fChars= chars;
+		}
+		int offset= fCharCount;
+		string.getChars(0, length, fChars, offset);
+		fCharCount+= length;
+		return offset;
+	}
+
+	/**
+	 * Computes the simple name offsets and upper case masks of all types, e.g. after the other
+	 * arrays have been read from a file.
+	 */
+	void computeNameKeys() {
+		fSimpleNameOffsets= new int[Math.max(fSize, 1)];
+		fUpperCaseMasks= new int[Math.max(fSize, 1)];
+		for (int i= 0; i < fSize; i++)
+			computeNameKey(i);
+	}
+
+	private void computeNameKey(int index) {
+		int start= fNameOffsets[index];
+		int end= start + fNameLengths[index];
+		int nameStart= start;
+		int mask= 0;
+		for (int i= start; i < end; i++) {
+			char ch= fChars[i];
+			if (ch == '.') {
+				nameStart= i + 1;
+				mask= 0;
+			} else {
+				mask|= getUpperCaseBit(ch);
+			}
+		}
+		fSimpleNameOffsets[index]= nameStart;
+		fUpperCaseMasks[index]= mask;
+	}
+
+	private static int getUpperCaseBit(char ch) {
+		return ch >= 'A' && ch <= 'Z' ? 1 << (ch - 'A') : 0;
+	}
+
+	void remove(int index) {
+		fRoots[index]= -1;
+	}
+
+	String getQualifiedName(int index) {
+		return new String(fChars, fNameOffsets[index], fNameLengths[index]);
+	}
+
+	/**
+	 * Returns the simple name of a type.
+	 *
+	 * @param index the index of the type
+	 * @return the simple name
+	 */
+	public String getSimpleName(int index) {
+		int start= fSimpleNameOffsets[index];
+		return new String(fChars, start, fNameOffsets[index] + fNameLengths[index] - start);
+	}
+
+	String getFileName(int index) {
+		if (fFileOffsets[index] == -1)
+			return getDerivedFileName(getQualifiedName(index), isSource(index));
+		return new String(fChars, fFileOffsets[index], fFileLengths[index]);
+	}
+
+	boolean isSource(int index) {
+		return fSourceRoots.get(fRoots[index]).booleanValue();
+	}
+
+	private static String getDerivedFileName(String qualifiedName, boolean isSource) {
+		if (isSource) {
+			int index= qualifiedName.indexOf('.');
+			return (index == -1 ? qualifiedName : qualifiedName.substring(0, index)) + ".java"; //$NON-NLS-1$
+		}
+		return qualifiedName.replace('.', '$') + ".class"; //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the types whose name, type container name and modifiers match the given filter.
+	 * Large tables are matched in chunks on several threads.
+	 *
+	 * @param filter the filter
+	 * @param monitor the progress monitor
+	 * @return the indexes of the matching types, in ascending order
+	 * @throws OperationCanceledException if the monitor has been cancelled
+	 */
+	public int[] match(final TypeInfoFilter filter, final IProgressMonitor monitor) {
+		final NameKey key= new NameKey(filter);
+		int chunkCount= (fSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (chunkCount <= 1 || Runtime.getRuntime().availableProcessors() == 1)
+			return match(filter, key, 0, fSize, monitor);
+
+		ExecutorService executor= getExecutor();
+		List<Future<int[]>> futures= new ArrayList<Future<int[]>>(chunkCount);
+		for (int i= 0; i < chunkCount; i++) {
+			final int start= i * CHUNK_SIZE;
+			final int end= Math.min(start + CHUNK_SIZE, fSize);
+			futures.add(executor.submit(new Callable<int[]>() {
+				public int[] call() throws Exception {
+					return match(filter, key, start, end, monitor);
+				}
+			}));
+		}
+
+		int[][] chunks= new int[chunkCount][];
+		int count= 0;
+		try {
+			for (int i= 0; i < chunkCount; i++) {
+				chunks[i]= futures.get(i).get();
+				count+= chunks[i].length;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OperationCanceledException)
+				throw (OperationCanceledException) e.getCause();
+			JavaPlugin.log(e.getCause());
+			return match(filter, key, 0, fSize, monitor);
+		} finally {
+			for (int i= 0; i < chunkCount; i++)
+				futures.get(i).cancel(false);
+		}
+
+		int[] result= new int[count];
+		int offset= 0;
+		for (int i= 0; i < chunkCount; i++) {
+			System.arraycopy(chunks[i], 0, result, offset, chunks[i].length);
+			offset+= chunks[i].length;
+		}
+		return result;
+	}
+
+	private int[] match(TypeInfoFilter filter, NameKey key, int start, int end, IProgressMonitor monitor) {
+		boolean hasPackagePattern= filter.getPackagePattern() != null;
+		int[] result= NO_INDEXES;
+		int count= 0;
+		for (int i= start; i < end; i++) {
+			if ((i & 0x3ff) == 0 && monitor.isCanceled())
+				throw new OperationCanceledException();
+
+			if (fRoots[i] == -1 || !filter.matchesModifiers(fModifiers[i]))
+				continue;
+			if (!key.mayMatch(this, i) || !filter.matchesName(getSimpleName(i)))
+				continue;
+			if (hasPackagePattern && !filter.matchesPackage(getTypeContainerName(i)))
+				continue;
+
+			if (count == result.length) {
+				int[] grown= new int[Math.max(2 * count, 16)];
+				System.arraycopy(result, 0, grown, 0, count);
+				result= grown;
+			}
+			result[count++]= i;
+		}
+		if (count == result.length)
+			return result;
+		int[] trimmed= new int[count];
+		System.arraycopy(result, 0, trimmed, 0, count);
+		return trimmed;
+	}
+
+	String getTypeContainerName(int index) {
+		String packageName= fPackageNames.get(fPackages[index]);
+		int start= fNameOffsets[index];
+		int enclosingLength= fSimpleNameOffsets[index] - start - 1;
+		if (enclosingLength <= 0)
+			return packageName;
+		return JavaModelUtil.concatenateName(packageName, new String(fChars, start, enclosingLength));
+	}
+
+	/**
+	 * The parts of a name pattern that can be checked against the precomputed keys of the table:
+	 * the first character and, for camel case patterns, the upper case letters.
+	 */
+	private static final class NameKey {
+
+		private final boolean fCheckFirst;
+		private final char fFirst;
+		private final String fPattern;
+		private final int fUpperCaseMask;
+		/** <code>true</code> if a name whose upper case letters do not match may still match as prefix. */
+		private final boolean fPrefixFallback;
+
+		NameKey(TypeInfoFilter filter) {
+			String pattern= filter.getNamePattern();
+			int kind= filter.getSearchFlags();
+			fPattern= pattern;
+			fCheckFirst= filter.getText().length() > 0 && pattern.length() > 0 && kind != SearchPattern.R_PATTERN_MATCH;
+			fFirst= fCheckFirst ? pattern.charAt(0) : 0;
+			int mask= 0;
+			if (kind == SearchPattern.R_CAMELCASE_MATCH || kind == SearchPattern.R_CAMELCASE_SAME_PART_COUNT_MATCH) {
+				for (int i= 0; i < pattern.length(); i++)
+					mask|= getUpperCaseBit(pattern.charAt(i));
+			}
+			fUpperCaseMask= fCheckFirst ? mask : 0;
+			fPrefixFallback= kind == SearchPattern.R_CAMELCASE_MATCH;
+		}
+
+		/**
+		 * Tells whether the simple name of the given type may match. Rejects names whose first
+		 * character differs from the pattern, and names that lack an upper case letter of a camel
+		 * case pattern and cannot match as prefix.
+		 *
+		 * @param table the table
+		 * @param index the index of the type
+		 * @return <code>false</code> if the name cannot match
+		 */
+		boolean mayMatch(TypeNameTable table, int index) {
+			if (!fCheckFirst)
+				return true;
+			int start= table.fSimpleNameOffsets[index];
+			int length= table.fNameOffsets[index] + table.fNameLengths[index] - start;
+			if (length == 0 || !equalsIgnoreCase(table.fChars[start], fFirst))
+				return false;
+			if ((table.fUpperCaseMasks[index] & fUpperCaseMask) == fUpperCaseMask)
+				return true;
+			return fPrefixFallback && startsWithIgnoreCase(table.fChars, start, length);
+		}
+
+		private boolean startsWithIgnoreCase(char[] chars, int start, int length) {
+			int patternLength= fPattern.length();
+			if (patternLength > length)
+				return false;
+			for (int i= 0; i < patternLength; i++) {
+				if (!equalsIgnoreCase(chars[start + i], fPattern.charAt(i)))
+					return false;
+			}
+			return true;
+		}
+
+		private static boolean equalsIgnoreCase(char c1, char c2) {
+			if (c1 == c2)
+				return true;
+			// same as String#equalsIgnoreCase(String)
+			char u1= Character.toUpperCase(c1);
+			char u2= Character.toUpperCase(c2);
+			return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+		}
+	}
+}
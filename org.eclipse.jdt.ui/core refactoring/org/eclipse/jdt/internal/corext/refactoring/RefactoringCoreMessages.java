@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -2297,6 +2297,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String StatementAnalyzer_while_expression_body;
 
+	public static String StoredTextChange_file_modified;
+
 	public static String StubCreationOperation_creating_type_stubs;
 
 	public static String SuperTypeRefactoringProcessor_category_description;
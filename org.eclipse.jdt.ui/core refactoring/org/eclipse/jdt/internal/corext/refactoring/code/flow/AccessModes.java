@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.code.flow;
+
+/**
+ * The access modes of the local variables of a {@link FlowContext}, stored as one bit set per
+ * access mode. A local variable is {@link FlowInfo#UNUSED} iff it is contained in none of the bit
+ * sets. A bit set only grows up to the highest local it contains, such that the access modes of
+ * a single variable access stay small even in methods with thousands of locals.
+ * <p>
+ * The merge operations implement the merge tables of {@link FlowInfo} on 64 locals at a time
+ * and update the receiver in place.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class AccessModes {
+
+	private static final int READ= 0;
+	private static final int READ_POTENTIAL= 1;
+	private static final int WRITE= 2;
+	private static final int WRITE_POTENTIAL= 3;
+	private static final int UNKNOWN= 4;
+	private static final int PLANE_COUNT= 5;
+
+	private final int fLength;
+	/**
+	 * The bit sets, indexed by the plane constants. An array is <code>null</code> if the
+	 * bit set is empty, and words beyond its end are 0.
+	 */
+	private final long[][] fPlanes= new long[PLANE_COUNT][];
+
+	/**
+	 * Creates access modes in which all locals are unused.
+	 *
+	 * @param length the number of locals
+	 */
+	public AccessModes(int length) {
+		fLength= length;
+	}
+
+	public int getLength() {
+		return fLength;
+	}
+
+	public int get(int index) {
+		int word= index >> 6;
+		long bit= 1L << index;
+		for (int plane= 0; plane < PLANE_COUNT; plane++) {
+			if ((getWord(plane, word) & bit) != 0)
+				return getAccessMode(plane);
+		}
+		return FlowInfo.UNUSED;
+	}
+
+	public void set(int index, int accessMode) {
+		int word= index >> 6;
+		long bit= 1L << index;
+		for (int plane= 0; plane < PLANE_COUNT; plane++) {
+			long[] words= fPlanes[plane];
+			if (words != null && word < words.length)
+				words[word]&= ~bit;
+		}
+		if (accessMode != FlowInfo.UNUSED) {
+			int plane= getPlane(accessMode);
+			setWord(plane, word, getWord(plane, word) | bit);
+		}
+	}
+
+	/**
+	 * Returns the next local at or after the given index that has one of the given access modes.
+	 *
+	 * @param accessModes a combination of access modes
+	 * @param from the index to start at
+	 * @return the index of the local, or <code>-1</code> if there is none
+	 */
+	public int nextIndex(int accessModes, int from) {
+		int words= (fLength + 63) >> 6;
+		for (int word= from >> 6; word < words; word++) {
+			long used= 0;
+			long selected= 0;
+			for (int plane= 0; plane < PLANE_COUNT; plane++) {
+				long bits= getWord(plane, word);
+				used|= bits;
+				if ((accessModes & getAccessMode(plane)) != 0)
+					selected|= bits;
+			}
+			if ((accessModes & FlowInfo.UNUSED) != 0)
+				selected|= ~used;
+			if (word == from >> 6)
+				selected&= -1L << from;
+			if (selected != 0) {
+				int index= (word << 6) + Long.numberOfTrailingZeros(selected);
+				return index < fLength ? index : -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Turns reads and writes into potential reads and writes. This is the result of a
+	 * conditional merge with unused locals, and of a sequential merge after an open branch.
+	 */
+	public void makePotential() {
+		fPlanes[READ_POTENTIAL]= or(fPlanes[READ_POTENTIAL], fPlanes[READ]);
+		fPlanes[READ]= null;
+		fPlanes[WRITE_POTENTIAL]= or(fPlanes[WRITE_POTENTIAL], fPlanes[WRITE]);
+		fPlanes[WRITE]= null;
+	}
+
+	/**
+	 * Merges the access modes of two conditional branches.
+	 *
+	 * @param other the access modes of the other branch
+	 */
+	public void mergeConditional(AccessModes other) {
+		int words= Math.max(getWordCount(), other.getWordCount());
+		for (int word= 0; word < words; word++) {
+			long read= getWord(READ, word);
+			long readPotential= getWord(READ_POTENTIAL, word);
+			long write= getWord(WRITE, word);
+			long writePotential= getWord(WRITE_POTENTIAL, word);
+			long unknown= getWord(UNKNOWN, word);
+			long otherRead= other.getWord(READ, word);
+			long otherReadPotential= other.getWord(READ_POTENTIAL, word);
+			long otherWrite= other.getWord(WRITE, word);
+			long otherWritePotential= other.getWord(WRITE_POTENTIAL, word);
+			long otherUnknown= other.getWord(UNKNOWN, word);
+
+			long anyRead= read | readPotential;
+			long anyWrite= write | writePotential;
+			long otherAnyRead= otherRead | otherReadPotential;
+			long otherAnyWrite= otherWrite | otherWritePotential;
+			long newUnknown= unknown | otherUnknown | (anyRead & otherAnyWrite) | (anyWrite & otherAnyRead);
+			long newRead= read & otherRead;
+			long newWrite= write & otherWrite;
+
+			setWord(READ, word, newRead);
+			setWord(READ_POTENTIAL, word, (anyRead | otherAnyRead) & ~newUnknown & ~newRead);
+			setWord(WRITE, word, newWrite);
+			setWord(WRITE_POTENTIAL, word, (anyWrite | otherAnyWrite) & ~newUnknown & ~newWrite);
+			setWord(UNKNOWN, word, newUnknown);
+		}
+	}
+
+	/**
+	 * Merges the access modes of a following statement when computing the arguments of a
+	 * selection: a read supersedes a potential write.
+	 *
+	 * @param other the access modes of the following statement
+	 */
+	public void mergeArguments(AccessModes other) {
+		int words= Math.max(getWordCount(), other.getWordCount());
+		for (int word= 0; word < words; word++) {
+			long read= getWord(READ, word);
+			long readPotential= getWord(READ_POTENTIAL, word);
+			long write= getWord(WRITE, word);
+			long writePotential= getWord(WRITE_POTENTIAL, word);
+			long unknown= getWord(UNKNOWN, word);
+			long otherRead= other.getWord(READ, word);
+			long otherReadPotential= other.getWord(READ_POTENTIAL, word);
+			long otherWrite= other.getWord(WRITE, word);
+			long otherWritePotential= other.getWord(WRITE_POTENTIAL, word);
+			long otherUnknown= other.getWord(UNKNOWN, word);
+
+			long unused= ~(read | readPotential | write | writePotential | unknown);
+			long overridable= unused | writePotential;
+
+			setWord(READ, word, read | (overridable & otherRead));
+			setWord(READ_POTENTIAL, word, readPotential | (overridable & otherReadPotential));
+			setWord(WRITE, word, write | (overridable & otherWrite));
+			setWord(WRITE_POTENTIAL, word, (writePotential & ~(otherRead | otherReadPotential | otherWrite)) | (unused & otherWritePotential));
+			setWord(UNKNOWN, word, unknown | (unused & otherUnknown));
+		}
+	}
+
+	/**
+	 * Merges the access modes of a following statement when computing the return values of a
+	 * selection: a write is final, and a potential write only becomes a write.
+	 *
+	 * @param other the access modes of the following statement
+	 */
+	public void mergeReturnValues(AccessModes other) {
+		int words= Math.max(getWordCount(), other.getWordCount());
+		for (int word= 0; word < words; word++) {
+			long read= getWord(READ, word);
+			long readPotential= getWord(READ_POTENTIAL, word);
+			long write= getWord(WRITE, word);
+			long writePotential= getWord(WRITE_POTENTIAL, word);
+			long unknown= getWord(UNKNOWN, word);
+			long otherRead= other.getWord(READ, word);
+			long otherReadPotential= other.getWord(READ_POTENTIAL, word);
+			long otherWrite= other.getWord(WRITE, word);
+			long otherWritePotential= other.getWord(WRITE_POTENTIAL, word);
+			long otherUnknown= other.getWord(UNKNOWN, word);
+
+			long notWritten= ~(write | writePotential);
+			long otherUnused= ~(otherRead | otherReadPotential | otherWrite | otherWritePotential | otherUnknown);
+
+			setWord(READ, word, (notWritten & otherRead) | (read & otherUnused));
+			setWord(READ_POTENTIAL, word, (notWritten & otherReadPotential) | (readPotential & otherUnused));
+			setWord(WRITE, word, write | otherWrite);
+			setWord(WRITE_POTENTIAL, word, (writePotential & ~otherWrite) | (notWritten & otherWritePotential));
+			setWord(UNKNOWN, word, (notWritten & otherUnknown) | (unknown & otherUnused));
+		}
+	}
+
+	private int getWordCount() {
+		int result= 0;
+		for (int plane= 0; plane < PLANE_COUNT; plane++) {
+			long[] words= fPlanes[plane];
+			if (words != null && words.length > result)
+				result= words.length;
+		}
+		return result;
+	}
+
+	private long getWord(int plane, int word) {
+		long[] words= fPlanes[plane];
+		return words != null && word < words.length ? words[word] : 0;
+	}
+
+	private void setWord(int plane, int word, long value) {
+		long[] words= fPlanes[plane];
+		if (words == null || word >= words.length) {
+			if (value == 0)
+				return;
+			int maxLength= (fLength + 63) >> 6;
+			int length= words == null ? word + 1 : Math.max(word + 1, Math.min(2 * words.length, maxLength));
+			long[] newWords= new long[length];
+			if (words != null)
+				System.arraycopy(words, 0, newWords, 0, words.length);
+			fPlanes[plane]= words= newWords;
+		}
+		words[word]= value;
+	}
+
+	private static long[] or(long[] first, long[] second) {
+		if (first == null)
+			return second;
+		if (second == null)
+			return first;
+		if (first.length < second.length) {
+			long[] temp= first;
+			first= second;
+			second= temp;
+		}
+		for (int i= 0; i < second.length; i++)
+			first[i]|= second[i];
+		return first;
+	}
+
+	private static int getAccessMode(int plane) {
+		return 1 << (plane + 1);
+	}
+
+	private static int getPlane(int accessMode) {
+		return Integer.numberOfTrailingZeros(accessMode) - 1;
+	}
+}
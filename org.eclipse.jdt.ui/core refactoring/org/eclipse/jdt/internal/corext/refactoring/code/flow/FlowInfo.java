@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -41,21 +41,21 @@ public abstract class FlowInfo {
 	public static final int UNKNOWN= 			1 << 5;
 
 	// Table to merge access modes for condition statements (e.g branch[x] || branch[y]).
-	private static final int[][] ACCESS_MODE_CONDITIONAL_TABLE= {
-	/*	  					  UNUSED		   READ			    READ_POTENTIAL   WRTIE			  WRITE_POTENTIAL  UNKNOWN */
-	/* UNUSED */			{ UNUSED,		   READ_POTENTIAL,  READ_POTENTIAL,  WRITE_POTENTIAL, WRITE_POTENTIAL, UNKNOWN },
-	/* READ */				{ READ_POTENTIAL,  READ,			READ_POTENTIAL,  UNKNOWN,		  UNKNOWN,         UNKNOWN },
-	/* READ_POTENTIAL */	{ READ_POTENTIAL,  READ_POTENTIAL,  READ_POTENTIAL,  UNKNOWN,		  UNKNOWN,         UNKNOWN },
-	/* WRITE */				{ WRITE_POTENTIAL, UNKNOWN,			UNKNOWN,		 WRITE,			  WRITE_POTENTIAL, UNKNOWN },
-	/* WRITE_POTENTIAL */   { WRITE_POTENTIAL, UNKNOWN,			UNKNOWN,		 WRITE_POTENTIAL, WRITE_POTENTIAL, UNKNOWN },
-	/* UNKNOWN */ 			{ UNKNOWN, 		   UNKNOWN,			UNKNOWN,		 UNKNOWN, 		  UNKNOWN,		   UNKNOWN }
-	};
+	// Implemented by AccessModes#mergeConditional(AccessModes).
+	//
+	//	  					  UNUSED		   READ			    READ_POTENTIAL   WRTIE			  WRITE_POTENTIAL  UNKNOWN
+	// UNUSED				{ UNUSED,		   READ_POTENTIAL,  READ_POTENTIAL,  WRITE_POTENTIAL, WRITE_POTENTIAL, UNKNOWN },
+	// READ					{ READ_POTENTIAL,  READ,			READ_POTENTIAL,  UNKNOWN,		  UNKNOWN,         UNKNOWN },
+	// READ_POTENTIAL		{ READ_POTENTIAL,  READ_POTENTIAL,  READ_POTENTIAL,  UNKNOWN,		  UNKNOWN,         UNKNOWN },
+	// WRITE				{ WRITE_POTENTIAL, UNKNOWN,			UNKNOWN,		 WRITE,			  WRITE_POTENTIAL, UNKNOWN },
+	// WRITE_POTENTIAL		{ WRITE_POTENTIAL, UNKNOWN,			UNKNOWN,		 WRITE_POTENTIAL, WRITE_POTENTIAL, UNKNOWN },
+	// UNKNOWN 				{ UNKNOWN, 		   UNKNOWN,			UNKNOWN,		 UNKNOWN, 		  UNKNOWN,		   UNKNOWN }
 
 	// Table to change access mode if there is an open branch statement
-	private static final int[] ACCESS_MODE_OPEN_BRANCH_TABLE= {
-	/*	UNUSED	READ			READ_POTENTIAL  WRTIE				WRITE_POTENTIAL  UNKNOWN */
-		UNUSED,	READ_POTENTIAL,	READ_POTENTIAL,	WRITE_POTENTIAL,	WRITE_POTENTIAL, UNKNOWN
-	};
+	// Implemented by AccessModes#makePotential().
+	//
+	//	UNUSED	READ			READ_POTENTIAL  WRTIE				WRITE_POTENTIAL  UNKNOWN
+	//	UNUSED,	READ_POTENTIAL,	READ_POTENTIAL,	WRITE_POTENTIAL,	WRITE_POTENTIAL, UNKNOWN
 
 	// Table to merge return modes for condition statements (y: fReturnKind, x: other.fReturnKind)
 	private static final int[][] RETURN_KIND_CONDITIONAL_TABLE = {
@@ -85,7 +85,7 @@ public abstract class FlowInfo {
 	protected static final IVariableBinding[] EMPTY_ARRAY= new IVariableBinding[0];
 
 	protected int fReturnKind;
-	protected int[] fAccessModes;
+	protected AccessModes fAccessModes;
 	protected Set<String> fBranches;
 	//protected Set<ITypeBinding> fExceptions;
 	protected Set<ITypeBinding> fTypeVariables;
@@ -253,13 +253,11 @@ public abstract class FlowInfo {
 	 */
 	public IVariableBinding[] get(FlowContext context, int mode) {
 		List<IVariableBinding> result= new ArrayList<IVariableBinding>();
-		int[] locals= getAccessModes();
+		AccessModes locals= getAccessModes();
 		if (locals == null)
 			return EMPTY_ARRAY;
-		for (int i= 0; i < locals.length; i++) {
-			int accessMode= locals[i];
-			if ((accessMode & mode) != 0)
-				result.add(context.getLocalFromIndex(i));
+		for (int i= locals.nextIndex(mode, 0); i != -1; i= locals.nextIndex(mode, i + 1)) {
+			result.add(context.getLocalFromIndex(i));
 		}
 		return result.toArray(new IVariableBinding[result.size()]);
 	}
@@ -282,7 +280,7 @@ public abstract class FlowInfo {
 		int index= context.getIndexFromLocal(local);
 		if (index == -1)
 			return unusedMode;
-		return (fAccessModes[index] & mode) != 0;
+		return (fAccessModes.get(index) & mode) != 0;
 	}
 
 	/**
@@ -298,32 +296,31 @@ public abstract class FlowInfo {
 		int index= context.getIndexFromLocal(local);
 		if (index == -1)
 			return UNUSED;
-		return fAccessModes[index];
+		return fAccessModes.get(index);
 	}
 
-	protected int[] getAccessModes() {
+	protected AccessModes getAccessModes() {
 		return fAccessModes;
 	}
 
 	protected void clearAccessMode(IVariableBinding binding, FlowContext context) {
 		if (fAccessModes == null)	// all are unused
 			return;
-		fAccessModes[binding.getVariableId() - context.getStartingIndex()]= UNUSED;
+		fAccessModes.set(binding.getVariableId() - context.getStartingIndex(), UNUSED);
 	}
 
 	protected void mergeAccessModeSequential(FlowInfo otherInfo, FlowContext context) {
 		if (!context.considerAccessMode())
 			return;
 
-		int[] others= otherInfo.fAccessModes;
+		AccessModes others= otherInfo.fAccessModes;
 		if (others == null)	// others are all unused. So nothing to do
 			return;
 
 		// Must not consider return kind since a return statement can't control execution flow
 		// inside a method. It always leaves the method.
 		if (branches()) {
-			for (int i= 0; i < others.length; i++)
-				others[i]= ACCESS_MODE_OPEN_BRANCH_TABLE[getIndex(others[i])];
+			others.makePotential();
 		}
 
 		if (fAccessModes == null) {	// all current variables are unused
@@ -332,88 +329,35 @@ public abstract class FlowInfo {
 		}
 
 		if (context.computeArguments()) {
-			handleComputeArguments(others);
+			fAccessModes.mergeArguments(others);
 		} else if (context.computeReturnValues()) {
-			handleComputeReturnValues(others);
+			fAccessModes.mergeReturnValues(others);
 		} else if (context.computeMerge()) {
-			handleMergeValues(others);
-		}
-	}
-
-	private void handleComputeReturnValues(int[] others) {
-		for (int i= 0; i < fAccessModes.length; i++) {
-			int accessmode= fAccessModes[i];
-			int othermode= others[i];
-			if (accessmode == WRITE)
-				continue;
-			if (accessmode == WRITE_POTENTIAL) {
-				if (othermode == WRITE)
-					fAccessModes[i]= WRITE;
-				continue;
-			}
-
-			if (others[i] != UNUSED)
-				fAccessModes[i]= othermode;
-		}
-	}
-
-	private void handleComputeArguments(int[] others) {
-		for (int i= 0; i < fAccessModes.length; i++) {
-			int accessMode= fAccessModes[i];
-			int otherMode= others[i];
-			if (accessMode == UNUSED) {
-				fAccessModes[i]= otherMode;
-			} else if (accessMode == WRITE_POTENTIAL && (otherMode == READ || otherMode == READ_POTENTIAL)) {
-				// Read always supersedes a potential write even if the read is potential as well
-				// (we have to consider the potential read as an argument then).
-				fAccessModes[i]= otherMode;
-			} else if (accessMode == WRITE_POTENTIAL && otherMode == WRITE) {
-				fAccessModes[i]= WRITE;
-			}
+			fAccessModes.mergeConditional(others);
 		}
 	}
 
-	private void handleMergeValues(int[] others) {
-		for (int i= 0; i < fAccessModes.length; i++) {
-			fAccessModes[i]= ACCESS_MODE_CONDITIONAL_TABLE
-				[getIndex(fAccessModes[i])]
-				[getIndex(others[i])];
-		}
-	}
-
-	protected void createAccessModeArray(FlowContext context) {
-		fAccessModes= new int[context.getArrayLength()];
-		for (int i= 0; i < fAccessModes.length; i++) {
-			fAccessModes[i]= UNUSED;
-		}
+	protected void createAccessModes(FlowContext context) {
+		fAccessModes= new AccessModes(context.getArrayLength());
 	}
 
 	protected void mergeAccessModeConditional(FlowInfo otherInfo, FlowContext context) {
 		if (!context.considerAccessMode())
 			return;
 
-		int[] others= otherInfo.fAccessModes;
+		AccessModes others= otherInfo.fAccessModes;
 		// first access
 		if (fAccessModes == null) {
 			if (others != null)
 				fAccessModes= others;
 			else
-				createAccessModeArray(context);
+				createAccessModes(context);
 			return;
 		} else {
 			if (others == null) {
-				for (int i= 0; i < fAccessModes.length; i++) {
-					int unused_index= getIndex(UNUSED);
-					fAccessModes[i]= ACCESS_MODE_CONDITIONAL_TABLE
-						[getIndex(fAccessModes[i])]
-						[unused_index];
-				}
+				fAccessModes.makePotential();
 			} else {
-				for (int i= 0; i < fAccessModes.length; i++) {
-					fAccessModes[i]= ACCESS_MODE_CONDITIONAL_TABLE
-						[getIndex(fAccessModes[i])]
-						[getIndex(others[i])];
-				}
+				fAccessModes.mergeConditional(others);
 			}
 		}
 	}
@@ -426,36 +370,10 @@ public abstract class FlowInfo {
 			return;
 
 		if (fAccessModes == null) {
-			createAccessModeArray(context);
+			createAccessModes(context);
 			return;
 		}
 
-		int unused_index= getIndex(UNUSED);
-		for (int i= 0; i < fAccessModes.length; i++) {
-			fAccessModes[i]= ACCESS_MODE_CONDITIONAL_TABLE
-				[getIndex(fAccessModes[i])]
-				[unused_index];
-		}
-	}
-
-	private static int getIndex(int accessMode) {
-		 // Fast log function
-		 switch (accessMode) {
-		 	case UNUSED:
-		 		return 0;
-		 	case READ:
-		 		return 1;
-		 	case READ_POTENTIAL:
-		 		return 2;
-		 	case WRITE:
-		 		return 3;
-		 	case WRITE_POTENTIAL:
-		 		return 4;
-		 	case UNKNOWN:
-		 		return 5;
-		 }
-		 return -1;
+		fAccessModes.makePotential();
 	}
 }
-
-
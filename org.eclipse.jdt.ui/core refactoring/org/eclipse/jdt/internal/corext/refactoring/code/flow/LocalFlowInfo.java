@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,8 +20,8 @@ class LocalFlowInfo extends FlowInfo {
 		super(NO_RETURN);
 		fVariableId= binding.getVariableId();
 		if (context.considerAccessMode()) {
-			createAccessModeArray(context);
-			fAccessModes[fVariableId - context.getStartingIndex()]= localAccessMode;
+			createAccessModes(context);
+			fAccessModes.set(fVariableId - context.getStartingIndex(), localAccessMode);
 			context.manageLocal(binding);
 		}
 	}
@@ -30,14 +30,14 @@ class LocalFlowInfo extends FlowInfo {
 		super(NO_RETURN);
 		fVariableId= info.fVariableId;
 		if (context.considerAccessMode()) {
-			createAccessModeArray(context);
-			fAccessModes[fVariableId - context.getStartingIndex()]= localAccessMode;
+			createAccessModes(context);
+			fAccessModes.set(fVariableId - context.getStartingIndex(), localAccessMode);
 		}
 	}
 
 	public void setWriteAccess(FlowContext context) {
 		if (context.considerAccessMode()) {
-			fAccessModes[fVariableId - context.getStartingIndex()]= FlowInfo.WRITE;
+			fAccessModes.set(fVariableId - context.getStartingIndex(), FlowInfo.WRITE);
 		}
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,10 +17,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -57,27 +57,195 @@ public class InferTypeArgumentsConstraintsSolver {
 		public static TTypeComparator INSTANCE= new TTypeComparator();
 	}
 
+	/**
+	 * Statistics of a run of the solver.
+	 *
+	 * @since 3.8
+	 */
+	public static final class Statistics {
+		long fSolveTime;
+		long fPeakMemory;
+		int fVariables;
+		int fEquivalenceSets;
+		int fConstraints;
+		int fIterations;
+		int fConstraintEvaluations;
+		int fEstimateUpdates;
+
+		/**
+		 * @return the time taken by {@link InferTypeArgumentsConstraintsSolver#solveConstraints(IProgressMonitor)}, in milliseconds
+		 */
+		public long getSolveTime() {
+			return fSolveTime;
+		}
+
+		/**
+		 * @return the highest used heap sampled while solving, in bytes
+		 */
+		public long getPeakMemory() {
+			return fPeakMemory;
+		}
+
+		/**
+		 * @return the number of constraint variables
+		 */
+		public int getVariables() {
+			return fVariables;
+		}
+
+		/**
+		 * @return the number of type equivalence sets
+		 */
+		public int getEquivalenceSets() {
+			return fEquivalenceSets;
+		}
+
+		/**
+		 * @return the number of type constraints
+		 */
+		public int getConstraints() {
+			return fConstraints;
+		}
+
+		/**
+		 * @return the number of equivalence sets taken from the work list
+		 */
+		public int getIterations() {
+			return fIterations;
+		}
+
+		/**
+		 * @return the number of times a constraint has been evaluated
+		 */
+		public int getConstraintEvaluations() {
+			return fConstraintEvaluations;
+		}
+
+		/**
+		 * @return the number of times the type estimate of an equivalence set has been narrowed
+		 */
+		public int getEstimateUpdates() {
+			return fEstimateUpdates;
+		}
+
+		@Override
+		public String toString() {
+			return "Solved " + fConstraints + " constraints on " + fVariables + " variables in " + fEquivalenceSets + " equivalence sets: " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					+ fSolveTime + " ms, peak heap " + fPeakMemory / 1024 + " KB" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ ", " + fIterations + " iterations, " + fConstraintEvaluations + " constraint evaluations, " + fEstimateUpdates + " estimate updates"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+	}
+
+	/**
+	 * A first-in first-out work list of equivalence set numbers that holds each number at most once.
+	 */
+	private static final class WorkList {
+		private final int[] fElements;
+		private final boolean[] fContained;
+		private int fHead;
+		private int fSize;
+
+		WorkList(int capacity) {
+			fElements= new int[Math.max(1, capacity)];
+			fContained= new boolean[capacity];
+		}
+
+		void add(int element) {
+			if (fContained[element])
+				return;
+			fContained[element]= true;
+			fElements[(fHead + fSize) % fElements.length]= element;
+			fSize++;
+		}
+
+		int remove() {
+			int element= fElements[fHead];
+			fHead= (fHead + 1) % fElements.length;
+			fSize--;
+			fContained[element]= false;
+			return element;
+		}
+
+		boolean isEmpty() {
+			return fSize == 0;
+		}
+
+		int size() {
+			return fSize;
+		}
+	}
+
 	private final static String CHOSEN_TYPE= "chosenType"; //$NON-NLS-1$
 
+	/**
+	 * Number of work list iterations between two samples of the used heap.
+	 */
+	private static final int HEAP_SAMPLE_INTERVAL= 1024;
+
 	private final InferTypeArgumentsTCModel fTCModel;
 	private TypeSetEnvironment fTypeSetEnvironment;
 
 	/**
-	 * The work-list used by the type constraint solver to hold the set of
-	 * nodes in the constraint graph that remain to be (re-)processed. Entries
-	 * are <code>ConstraintVariable2</code>s.
+	 * The equivalence sets of the constraint variables, indexed by set number.
 	 */
-	private LinkedList<ConstraintVariable2> fWorkList;
+	private TypeEquivalenceSet[] fSets;
+	/**
+	 * The type constraints, indexed by constraint number.
+	 */
+	private ITypeConstraint2[] fConstraints;
+	/**
+	 * The set numbers of the left and right variables of the constraints, indexed by constraint number.
+	 */
+	private int[] fLeftSets;
+	private int[] fRightSets;
+	/**
+	 * The numbers of the constraints on the variables of set <code>s</code> are
+	 * <code>fDependents[fDependentsStart[s]]</code> to <code>fDependents[fDependentsStart[s + 1] - 1]</code>.
+	 */
+	private int[] fDependentsStart;
+	private int[] fDependents;
 
 	private InferTypeArgumentsUpdate fUpdate;
 
+	private final Statistics fStatistics= new Statistics();
+
 
 	public InferTypeArgumentsConstraintsSolver(InferTypeArgumentsTCModel typeConstraintFactory) {
 		fTCModel= typeConstraintFactory;
-		fWorkList= new LinkedList<ConstraintVariable2>();
+	}
+
+	/**
+	 * @return the statistics of the last run of {@link #solveConstraints(IProgressMonitor)}
+	 * @since 3.8
+	 */
+	public Statistics getStatistics() {
+		return fStatistics;
 	}
 
 	public InferTypeArgumentsUpdate solveConstraints(IProgressMonitor pm) {
+		long start= System.currentTimeMillis();
+		fStatistics.fPeakMemory= 0;
+		sampleHeap();
+		try {
+			return internalSolveConstraints(pm);
+		} finally {
+			sampleHeap();
+			fStatistics.fSolveTime= System.currentTimeMillis() - start;
+			if (InferTypeArgumentsTCModel.DEBUG)
+				System.out.println(fStatistics);
+		}
+	}
+
+	/**
+	 * Records the currently used heap in the statistics. The heap is sampled instead of
+	 * resetting the peak usage of the memory pools, which is shared by the whole VM.
+	 */
+	private void sampleHeap() {
+		Runtime runtime= Runtime.getRuntime();
+		fStatistics.fPeakMemory= Math.max(fStatistics.fPeakMemory, runtime.totalMemory() - runtime.freeMemory());
+	}
+
+	private InferTypeArgumentsUpdate internalSolveConstraints(IProgressMonitor pm) {
 		pm.beginTask("", 2); //$NON-NLS-1$
 		fUpdate= new InferTypeArgumentsUpdate();
 
@@ -122,13 +290,73 @@ public class InferTypeArgumentsConstraintsSolver {
 		initializeTypeEstimates(allConstraintVariables);
 		if (pm.isCanceled())
 			throw new OperationCanceledException();
-		fWorkList.addAll(Arrays.asList(allConstraintVariables));
+		createDependencyIndex(allConstraintVariables);
 		runSolver(new SubProgressMonitor(pm, 1));
+		fSets= null;
+		fConstraints= null;
+		fLeftSets= null;
+		fRightSets= null;
+		fDependentsStart= null;
+		fDependents= null;
 		chooseTypes(allConstraintVariables, new SubProgressMonitor(pm, 1));
 		findCastsToRemove(fTCModel.getCastVariables());
 		return fUpdate;
 	}
 
+	/**
+	 * Numbers the equivalence sets of the given variables and the type constraints, and
+	 * indexes the constraints by the equivalence sets of their variables.
+	 *
+	 * @param allConstraintVariables the constraint variables
+	 */
+	private void createDependencyIndex(ConstraintVariable2[] allConstraintVariables) {
+		Map<TypeEquivalenceSet, Integer> setNumbers= new IdentityHashMap<TypeEquivalenceSet, Integer>();
+		List<TypeEquivalenceSet> sets= new ArrayList<TypeEquivalenceSet>();
+		for (int i= 0; i < allConstraintVariables.length; i++)
+			getSetNumber(allConstraintVariables[i], setNumbers, sets);
+
+		fConstraints= fTCModel.getAllTypeConstraints();
+		fLeftSets= new int[fConstraints.length];
+		fRightSets= new int[fConstraints.length];
+		for (int i= 0; i < fConstraints.length; i++) {
+			fLeftSets[i]= getSetNumber(fConstraints[i].getLeft(), setNumbers, sets);
+			fRightSets[i]= getSetNumber(fConstraints[i].getRight(), setNumbers, sets);
+		}
+		fSets= sets.toArray(new TypeEquivalenceSet[sets.size()]);
+
+		fDependentsStart= new int[fSets.length + 1];
+		for (int i= 0; i < fConstraints.length; i++) {
+			fDependentsStart[fLeftSets[i] + 1]++;
+			if (fRightSets[i] != fLeftSets[i])
+				fDependentsStart[fRightSets[i] + 1]++;
+		}
+		for (int i= 0; i < fSets.length; i++)
+			fDependentsStart[i + 1]+= fDependentsStart[i];
+		fDependents= new int[fDependentsStart[fSets.length]];
+		int[] next= new int[fSets.length];
+		System.arraycopy(fDependentsStart, 0, next, 0, fSets.length);
+		for (int i= 0; i < fConstraints.length; i++) {
+			fDependents[next[fLeftSets[i]]++]= i;
+			if (fRightSets[i] != fLeftSets[i])
+				fDependents[next[fRightSets[i]]++]= i;
+		}
+
+		fStatistics.fVariables= allConstraintVariables.length;
+		fStatistics.fEquivalenceSets= fSets.length;
+		fStatistics.fConstraints= fConstraints.length;
+	}
+
+	private static int getSetNumber(ConstraintVariable2 cv, Map<TypeEquivalenceSet, Integer> setNumbers, List<TypeEquivalenceSet> sets) {
+		TypeEquivalenceSet set= cv.getTypeEquivalenceSet();
+		Integer number= setNumbers.get(set);
+		if (number != null)
+			return number.intValue();
+		int result= sets.size();
+		setNumbers.put(set, new Integer(result));
+		sets.add(set);
+		return result;
+	}
+
 	private void initializeTypeEstimates(ConstraintVariable2[] allConstraintVariables) {
 		for (int i= 0; i < allConstraintVariables.length; i++) {
 			ConstraintVariable2 cv= allConstraintVariables[i];
@@ -191,12 +419,19 @@ public class InferTypeArgumentsConstraintsSolver {
 	}
 
 	private void runSolver(SubProgressMonitor pm) {
-		pm.beginTask("", fWorkList.size() * 3); //$NON-NLS-1$
-		while (! fWorkList.isEmpty()) {
-			// Get a variable whose type estimate has changed
-			ConstraintVariable2 cv= fWorkList.removeFirst();
-			List<ITypeConstraint2> usedIn= fTCModel.getUsedIn(cv);
-			processConstraints(usedIn);
+		WorkList workList= new WorkList(fSets.length);
+		for (int i= 0; i < fSets.length; i++)
+			workList.add(i);
+
+		pm.beginTask("", workList.size() * 3); //$NON-NLS-1$
+		while (! workList.isEmpty()) {
+			// Get an equivalence set whose type estimate has changed
+			int set= workList.remove();
+			fStatistics.fIterations++;
+			if (fStatistics.fIterations % HEAP_SAMPLE_INTERVAL == 0)
+				sampleHeap();
+			for (int i= fDependentsStart[set], end= fDependentsStart[set + 1]; i < end; i++)
+				maintainSimpleConstraint(fDependents[i], workList);
 			pm.worked(1);
 			if (pm.isCanceled())
 				throw new OperationCanceledException();
@@ -205,34 +440,19 @@ public class InferTypeArgumentsConstraintsSolver {
 	}
 
 	/**
-	 * Given a list of <code>ITypeConstraint2</code>s that all refer to a
-	 * given <code>ConstraintVariable2</code> (whose type bound has presumably
-	 * just changed), process each <code>ITypeConstraint</code>, propagating
-	 * the type bound across the constraint as needed.
+	 * Propagates the type estimates across a constraint whose variables have (presumably) just
+	 * changed, and adds the equivalence sets whose estimates have been narrowed to the work list.
 	 *
-	 * @param usedIn the <code>List</code> of <code>ITypeConstraint2</code>s
-	 * to process
+	 * @param constraint the number of the constraint
+	 * @param workList the work list
 	 */
-	private void processConstraints(List<ITypeConstraint2> usedIn) {
-		Iterator<ITypeConstraint2> iter= usedIn.iterator();
-		while (iter.hasNext()) {
-			ITypeConstraint2 tc= iter.next();
-
-				maintainSimpleConstraint(tc);
-				//TODO: prune tcs which cannot cause further changes
-				// Maybe these should be pruned after a special first loop over all ConstraintVariables,
-				// Since this can only happen once for every CV in the work list.
-//				if (isConstantConstraint(stc))
-//					fTypeConstraintFactory.removeUsedIn(stc, changedCv);
-		}
-	}
-
-	private void maintainSimpleConstraint(ITypeConstraint2 stc) {
-		ConstraintVariable2 left= stc.getLeft();
-		ConstraintVariable2 right= stc.getRight();
+	private void maintainSimpleConstraint(int constraint, WorkList workList) {
+		fStatistics.fConstraintEvaluations++;
+		int left= fLeftSets[constraint];
+		int right= fRightSets[constraint];
 
-		TypeEquivalenceSet leftSet= left.getTypeEquivalenceSet();
-		TypeEquivalenceSet rightSet= right.getTypeEquivalenceSet();
+		TypeEquivalenceSet leftSet= fSets[left];
+		TypeEquivalenceSet rightSet= fSets[right];
 		TypeSet leftEstimate= (TypeSet) leftSet.getTypeEstimate();
 		TypeSet rightEstimate= (TypeSet) rightSet.getTypeEstimate();
 
@@ -252,7 +472,8 @@ public class InferTypeArgumentsConstraintsSolver {
 //				throw new IllegalStateException("Type estimate set is now empty for LHS in " + left + " <= " + right + "; estimates were " + leftEstimate + " <= " + rightEstimate); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
 			leftSet.setTypeEstimate(xsection);
-			fWorkList.addAll(Arrays.asList(leftSet.getContributingVariables()));
+			fStatistics.fEstimateUpdates++;
+			workList.add(left);
 		}
 		if (! lhsSuperTypes.containsAll(rightEstimate)) {
 			TypeSet xsection= rightEstimate.intersectedWith(lhsSuperTypes);
@@ -261,7 +482,8 @@ public class InferTypeArgumentsConstraintsSolver {
 //				throw new IllegalStateException("Type estimate set is now empty for RHS in " + left + " <= " + right + "; estimates were " + leftEstimate + " <= " + rightEstimate); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
 			rightSet.setTypeEstimate(xsection);
-			fWorkList.addAll(Arrays.asList(rightSet.getContributingVariables()));
+			fStatistics.fEstimateUpdates++;
+			workList.add(right);
 		}
 	}
 
@@ -325,14 +547,10 @@ public class InferTypeArgumentsConstraintsSolver {
 		}
 	}
 
-	private static final int MAX_CACHE= 1024;
-	private Map<TType, Boolean> fInterfaceTaggingCache= new LinkedHashMap<TType, Boolean>(MAX_CACHE, 0.75f, true) {
-		private static final long serialVersionUID= 1L;
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<TType, Boolean> eldest) {
-			return size() > MAX_CACHE;
-		}
-	};
+	/**
+	 * Whether an interface is a tagging interface, kept for the lifetime of the solver.
+	 */
+	private Map<TType, Boolean> fInterfaceTaggingCache= new HashMap<TType, Boolean>();
 
 	private ArrayList<TType> getNonTaggingInterfaces(ArrayList<TType> interfaceCandidates) {
 		ArrayList<TType> unresolvedTypes= new ArrayList<TType>();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -288,10 +288,7 @@ public class InferTypeArgumentsTCModel {
 			} else if (leftSet == rightSet) {
 				return;
 			} else {
-				ConstraintVariable2[] cvs= rightSet.getContributingVariables();
-				leftSet.addAll(cvs);
-				for (int i= 0; i < cvs.length; i++)
-					cvs[i].setTypeEquivalenceSet(leftSet);
+				TypeEquivalenceSet.union(leftSet, rightSet);
 			}
 		}
 	}
@@ -472,7 +472,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 			pm.beginTask("", 12 + referenceSearchTicks + affectedCusTicks + similarElementTicks + createChangeTicks + qualifiedNamesTicks); //$NON-NLS-1$
 			pm.setTaskName(RefactoringCoreMessages.RenameTypeRefactoring_checking);
 
-			fChangeManager= new TextChangeManager(true);
+			fChangeManager= new TextChangeManager(true, TextChangeManager.DEFAULT_CHANGES_IN_MEMORY);
 
 			result.merge(checkNewElementName(getNewElementName()));
 			if (result.hasFatalError())
@@ -1074,7 +1074,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 					((TextFileChange) textChange).setSaveMode(TextFileChange.FORCE_SAVE);
 				}
 			}
-			result.addAll(fChangeManager.getAllChanges());
+			result.addAll(fChangeManager.getChangesToPerform());
 			if (willRenameCU()) {
 				IResource resource= fType.getCompilationUnit().getResource();
 				if (resource != null && resource.isLinked()) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -335,12 +335,8 @@ public final class SuperTypeConstraintsModel {
 					right.setTypeEquivalenceSet(first);
 				} else if (first == second)
 					return;
-				else {
-					final ConstraintVariable2[] variables= second.getContributingVariables();
-					first.addAll(variables);
-					for (int index= 0; index < variables.length; index++)
-						variables[index].setTypeEquivalenceSet(first);
-				}
+				else
+					TypeEquivalenceSet.union(first, second);
 			}
 		}
 	}
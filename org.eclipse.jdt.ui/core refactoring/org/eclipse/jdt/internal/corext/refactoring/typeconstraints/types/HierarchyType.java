@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,12 @@ public abstract class HierarchyType extends TType {
 	private HierarchyType fSuperclass;
 	private HierarchyType[] fInterfaces;
 	private IType fJavaElementType;
+	/**
+	 * The id of this type in the {@link SubTypeCache}, or 0 if this type
+	 * does not use the shared cache.
+	 * @since 3.8
+	 */
+	private int fSubTypeCacheId;
 
 	protected HierarchyType(TypeEnvironment environment) {
 		super(environment);
@@ -41,6 +47,23 @@ public abstract class HierarchyType extends TType {
 		for (int i= 0; i < interfaces.length; i++) {
 			fInterfaces[i]= (HierarchyType)environment.create(interfaces[i]);
 		}
+		fSubTypeCacheId= internInSubTypeCache();
+	}
+
+	private int internInSubTypeCache() {
+		// a supertype without an id is not verified against the cache (or still being initialized)
+		int[] superTypeIds= new int[fInterfaces.length + 1];
+		if (fSuperclass != null) {
+			superTypeIds[0]= fSuperclass.fSubTypeCacheId;
+			if (superTypeIds[0] == 0)
+				return 0;
+		}
+		for (int i= 0; i < fInterfaces.length; i++) {
+			superTypeIds[i + 1]= fInterfaces[i].fSubTypeCacheId;
+			if (superTypeIds[i + 1] == 0)
+				return 0;
+		}
+		return getEnvironment().internInSubTypeCache(this, superTypeIds);
 	}
 
 	@Override
@@ -58,8 +81,17 @@ public abstract class HierarchyType extends TType {
 	}
 
 	public boolean isSubType(HierarchyType other) {
-		if (getEnvironment() == other.getEnvironment()) {
-			Map<TypeTuple, Boolean> cache= getEnvironment().getSubTypeCache();
+		TypeEnvironment environment= getEnvironment();
+		if (environment == other.getEnvironment()) {
+			if (fSubTypeCacheId != 0 && other.fSubTypeCacheId != 0 && environment.isUsingSubTypeCache()) {
+				int value= environment.getSharedSubType(fSubTypeCacheId, other.fSubTypeCacheId);
+				if (value != TypePairTable.UNKNOWN)
+					return value == TypePairTable.TRUE;
+				boolean isSub= doIsSubType(other);
+				environment.putSharedSubType(fSubTypeCacheId, other.fSubTypeCacheId, isSub);
+				return isSub;
+			}
+			Map<TypeTuple, Boolean> cache= environment.getSubTypeCache();
 			TypeTuple key= new TypeTuple(this, other);
 			Boolean value= cache.get(key);
 			if (value != null)
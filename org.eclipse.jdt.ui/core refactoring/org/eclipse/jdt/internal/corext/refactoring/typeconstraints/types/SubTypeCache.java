@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * A thread-safe cache for the subtype checks of {@link HierarchyType}s, shared by all
+ * {@link TypeEnvironment}s.
+ * <p>
+ * A type environment is discarded at the end of a refactoring, but the results of its subtype
+ * checks stay valid as long as the type hierarchies do not change. Therefore, the cache interns
+ * hierarchy types by their Java element and binding key into ids that are stable across type
+ * environments, and keeps the subtype checks in a {@link TypePairTable} over these ids. Since
+ * the Java element of a type knows its project, the ids are scoped to the project of a type.
+ * </p>
+ * <p>
+ * The cache is cleared when a Java element delta may affect type hierarchies. Type environments
+ * can also see hierarchies that are not reflected in the Java model (e.g. of ASTs created from
+ * a source string), so the cache also remembers the direct supertypes of every interned type.
+ * A type environment only uses the cache as long as all of its types agree with it, and it
+ * clears the cache if they do not. Every clear starts a new generation of the cache, and type
+ * environments that have joined an older generation stop using the cache.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class SubTypeCache {
+
+	private static final class TypeKey {
+		private final IType fElement;
+		private final String fBindingKey;
+
+		public TypeKey(IType element, String bindingKey) {
+			fElement= element;
+			fBindingKey= bindingKey;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (! (other instanceof TypeKey))
+				return false;
+			TypeKey otherKey= (TypeKey) other;
+			return fElement.equals(otherKey.fElement) && fBindingKey.equals(otherKey.fBindingKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return fElement.hashCode() + fBindingKey.hashCode();
+		}
+	}
+
+	private static final class DeltaListener implements IElementChangedListener {
+		public void elementChanged(ElementChangedEvent event) {
+			if (affectsHierarchies(event.getDelta()))
+				clear();
+		}
+	}
+
+	/** Result of {@link #get(int, int, int)} if the generation is outdated. */
+	static final int STALE= -2;
+
+	/**
+	 * Maximal number of interned types. The cache is cleared when it is full.
+	 */
+	private static final int MAX_TYPES= 0x8000;
+
+	/**
+	 * Maximal number of cached subtype checks. The checks are cleared when the table is full.
+	 */
+	private static final int MAX_CHECKS= 0x20000;
+
+	private static final Object fgLock= new Object();
+
+	private static final Map<TypeKey, Integer> fgTypeIds= new HashMap<TypeKey, Integer>();
+	/**
+	 * The ids of the direct supertypes of the interned types, indexed by type id - 1.
+	 * The first element is the id of the superclass, or 0 if the type has none.
+	 */
+	private static final List<int[]> fgSuperTypeIds= new ArrayList<int[]>();
+	private static final TypePairTable fgSubTypeChecks= new TypePairTable();
+
+	private static int fgGeneration= 0;
+	private static boolean fgListening= false;
+
+	private static int fgCacheHits= 0;
+	private static int fgCacheMisses= 0;
+	private static int fgCacheClears= 0;
+
+	private SubTypeCache() {
+	}
+
+	/**
+	 * Returns the current generation of the cache. Registers the cache as element changed
+	 * listener on first use.
+	 *
+	 * @return the current generation
+	 */
+	static int getGeneration() {
+		boolean startListening;
+		synchronized (fgLock) {
+			startListening= !fgListening;
+			fgListening= true;
+		}
+		if (startListening) // don't nest the locks
+			JavaCore.addElementChangedListener(new DeltaListener(), ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+		synchronized (fgLock) {
+			return fgGeneration;
+		}
+	}
+
+	/**
+	 * Interns a hierarchy type.
+	 *
+	 * @param generation the generation of the cache the caller has joined
+	 * @param element the Java element of the type
+	 * @param bindingKey the binding key of the type
+	 * @param superTypeIds the ids of the direct supertypes of the type, see {@link #fgSuperTypeIds}
+	 * @return the positive id of the type, or 0 if the caller must stop using the cache
+	 */
+	static int intern(int generation, IType element, String bindingKey, int[] superTypeIds) {
+		TypeKey key= new TypeKey(element, bindingKey);
+		synchronized (fgLock) {
+			if (generation != fgGeneration)
+				return 0;
+			Integer id= fgTypeIds.get(key);
+			if (id != null) {
+				if (Arrays.equals(fgSuperTypeIds.get(id.intValue() - 1), superTypeIds))
+					return id.intValue();
+				// the hierarchy changed without a delta, or the caller sees a different hierarchy
+				clear();
+				return 0;
+			}
+			if (fgTypeIds.size() == MAX_TYPES) {
+				clear();
+				return 0;
+			}
+			int newId= fgTypeIds.size() + 1;
+			fgTypeIds.put(key, Integer.valueOf(newId));
+			fgSuperTypeIds.add(superTypeIds);
+			return newId;
+		}
+	}
+
+	/**
+	 * Returns the cached result of a subtype check.
+	 *
+	 * @param generation the generation of the cache the caller has joined
+	 * @param type the id of the potential subtype
+	 * @param other the id of the potential supertype
+	 * @return {@link TypePairTable#TRUE}, {@link TypePairTable#FALSE}, {@link TypePairTable#UNKNOWN},
+	 * 		or {@link #STALE} if the caller must stop using the cache
+	 */
+	static int get(int generation, int type, int other) {
+		synchronized (fgLock) {
+			if (generation != fgGeneration)
+				return STALE;
+			int result= fgSubTypeChecks.get(type, other);
+			if (result == TypePairTable.UNKNOWN)
+				fgCacheMisses++;
+			else
+				fgCacheHits++;
+			return result;
+		}
+	}
+
+	/**
+	 * Caches the result of a subtype check.
+	 *
+	 * @param generation the generation of the cache the caller has joined
+	 * @param type the id of the potential subtype
+	 * @param other the id of the potential supertype
+	 * @param isSubType the result of the check
+	 */
+	static void put(int generation, int type, int other, boolean isSubType) {
+		synchronized (fgLock) {
+			if (generation != fgGeneration)
+				return;
+			if (fgSubTypeChecks.size() == MAX_CHECKS)
+				fgSubTypeChecks.clear();
+			fgSubTypeChecks.put(type, other, isSubType);
+		}
+	}
+
+	/**
+	 * Removes all types and subtype checks from the cache.
+	 */
+	public static void clear() {
+		synchronized (fgLock) {
+			fgGeneration++;
+			fgTypeIds.clear();
+			fgSuperTypeIds.clear();
+			fgSubTypeChecks.clear();
+			fgCacheClears++;
+		}
+	}
+
+	/**
+	 * Returns the number of interned types.
+	 *
+	 * @return the number of types
+	 */
+	public static int getTypeCount() {
+		synchronized (fgLock) {
+			return fgTypeIds.size();
+		}
+	}
+
+	/**
+	 * Returns the number of subtype checks that could be taken from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public static int getCacheHits() {
+		synchronized (fgLock) {
+			return fgCacheHits;
+		}
+	}
+
+	/**
+	 * Returns the number of subtype checks that were not in the cache.
+	 *
+	 * @return the number of cache misses
+	 */
+	public static int getCacheMisses() {
+		synchronized (fgLock) {
+			return fgCacheMisses;
+		}
+	}
+
+	/**
+	 * Returns the number of times the cache has been cleared.
+	 *
+	 * @return the number of clears
+	 */
+	public static int getCacheClears() {
+		synchronized (fgLock) {
+			return fgCacheClears;
+		}
+	}
+
+	/**
+	 * Returns whether the given delta may change the supertypes of a type, or the type a binding
+	 * key resolves to. Changes inside of members are ignored, since the type environments verify
+	 * the supertypes of local and anonymous types before they use the cache.
+	 *
+	 * @param delta the Java element delta
+	 * @return <code>true</code> if the cache must be cleared
+	 */
+	private static boolean affectsHierarchies(IJavaElementDelta delta) {
+		int kind= delta.getKind();
+		int flags= delta.getFlags();
+		switch (delta.getElement().getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			case IJavaElement.PACKAGE_FRAGMENT:
+				// F_CONTENT on containers is about non-Java resources
+				if (kind != IJavaElementDelta.CHANGED || (flags & ~(IJavaElementDelta.F_CHILDREN | IJavaElementDelta.F_CONTENT)) != 0)
+					return true;
+				break;
+			case IJavaElement.COMPILATION_UNIT:
+				if (kind != IJavaElementDelta.CHANGED
+						|| (flags & (IJavaElementDelta.F_PRIMARY_WORKING_COPY | IJavaElementDelta.F_PRIMARY_RESOURCE)) != 0
+						|| (flags & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_FINE_GRAINED)) == IJavaElementDelta.F_CONTENT)
+					return true;
+				break;
+			case IJavaElement.TYPE:
+				if (kind != IJavaElementDelta.CHANGED || (flags & IJavaElementDelta.F_SUPER_TYPES) != 0)
+					return true;
+				break;
+			case IJavaElement.FIELD:
+			case IJavaElement.METHOD:
+			case IJavaElement.INITIALIZER:
+			case IJavaElement.ANNOTATION:
+			case IJavaElement.TYPE_PARAMETER:
+				return false;
+			default:
+				// class files, imports and package declarations
+				return true;
+		}
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (affectsHierarchies(children[i]))
+				return true;
+		}
+		return false;
+	}
+}
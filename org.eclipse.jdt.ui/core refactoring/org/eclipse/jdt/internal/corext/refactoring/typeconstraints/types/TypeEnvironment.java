@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -39,6 +39,9 @@ import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
  * A type environment comprises a set of {@link TType}s that stand for Java {@link ITypeBinding}s.
  * In contrast to type bindings, TTypes of the same type environment also work across project boundaries and
  * across compiler environments, i.e. a type environment can handle bindings from multiple {@link ASTParser} sessions.
+ * <p>
+ * The subtype checks of hierarchy types are shared with other type environments through the {@link SubTypeCache}.
+ * </p>
  * 
  * @see TType
  */
@@ -130,11 +133,27 @@ public class TypeEnvironment {
 	 * information was not requested in the constructor.
 	 */
 	private Map<TType, ArrayList<TType>> fSubTypes;
+	/**
+	 * The number of subtypes added to {@link #fSubTypes}.
+	 * @since 3.8
+	 */
+	private int fSubTypesCount;
 	/**
 	 * If <code>true</code>, replace all capture types by their wildcard type.
 	 * @since 3.7
 	 */
 	private final boolean fRemoveCapures;
+	/**
+	 * The generation of the {@link SubTypeCache} this environment has joined, or
+	 * <code>-1</code> if it has not joined the cache yet.
+	 * @since 3.8
+	 */
+	private int fSubTypeCacheGeneration= -1;
+	/**
+	 * <code>true</code> iff this environment has stopped using the {@link SubTypeCache}.
+	 * @since 3.8
+	 */
+	private boolean fSubTypeCacheDetached;
 
 	public static ITypeBinding[] createTypeBindings(TType[] types, IJavaProject project) {
 		final Map<String, Object> mapping= new HashMap<String, Object>();
@@ -186,6 +205,67 @@ public class TypeEnvironment {
 		return fSubTypeCache;
 	}
 
+	/**
+	 * Interns a hierarchy type of this environment in the {@link SubTypeCache}.
+	 *
+	 * @param type the type
+	 * @param superTypeIds the ids of the direct supertypes, superclass first
+	 * @return the id of the type, or 0 if the type cannot use the shared cache
+	 * @since 3.8
+	 */
+	int internInSubTypeCache(HierarchyType type, int[] superTypeIds) {
+		if (fSubTypeCacheDetached)
+			return 0;
+		if (fSubTypeCacheGeneration == -1)
+			fSubTypeCacheGeneration= SubTypeCache.getGeneration();
+		int id= SubTypeCache.intern(fSubTypeCacheGeneration, type.getJavaElementType(), type.getBindingKey(), superTypeIds);
+		if (id == 0)
+			fSubTypeCacheDetached= true;
+		return id;
+	}
+
+	/**
+	 * Returns whether this environment still uses the {@link SubTypeCache}.
+	 *
+	 * @return <code>true</code> iff subtype checks of interned types go to the shared cache
+	 * @since 3.8
+	 */
+	boolean isUsingSubTypeCache() {
+		return !fSubTypeCacheDetached;
+	}
+
+	/**
+	 * Returns the result of a subtype check from the {@link SubTypeCache}.
+	 *
+	 * @param type the id of the potential subtype
+	 * @param other the id of the potential supertype
+	 * @return {@link TypePairTable#TRUE}, {@link TypePairTable#FALSE}, or {@link TypePairTable#UNKNOWN}
+	 * @since 3.8
+	 */
+	int getSharedSubType(int type, int other) {
+		if (fSubTypeCacheDetached)
+			return TypePairTable.UNKNOWN;
+		int result= SubTypeCache.get(fSubTypeCacheGeneration, type, other);
+		if (result == SubTypeCache.STALE) {
+			fSubTypeCacheDetached= true;
+			return TypePairTable.UNKNOWN;
+		}
+		return result;
+	}
+
+	/**
+	 * Stores the result of a subtype check in the {@link SubTypeCache}.
+	 *
+	 * @param type the id of the potential subtype
+	 * @param other the id of the potential supertype
+	 * @param isSubType the result of the check
+	 * @since 3.8
+	 */
+	void putSharedSubType(int type, int other, boolean isSubType) {
+		if (!fSubTypeCacheDetached)
+			SubTypeCache.put(fSubTypeCacheGeneration, type, other, isSubType);
+	}
+
 	public TType create(ITypeBinding binding) {
 		if (binding.isPrimitive()) {
 			return createPrimitiveType(binding);
@@ -277,6 +357,17 @@ public class TypeEnvironment {
 		return fSubTypes;
 	}
 
+	/**
+	 * Returns the number of subtypes remembered so far. The result changes whenever
+	 * {@link TType#getSubTypes()} may return more types than before.
+	 *
+	 * @return the number of remembered subtypes
+	 * @since 3.8
+	 */
+	public int getSubTypesCount() {
+		return fSubTypesCount;
+	}
+
 	private void cacheSubType(TType supertype, TType result) {
 		if (fSubTypes == null)
 			return;
@@ -291,6 +382,7 @@ public class TypeEnvironment {
 			Assert.isTrue(! subtypes.contains(result));
 		}
 		subtypes.add(result);
+		fSubTypesCount++;
 	}
 
 	private void cacheSubTypes(TType[] interfaces, TType result) {
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
+
+import org.eclipse.core.runtime.Assert;
+
+
+/**
+ * An open addressing hash table from pairs of positive type ids to <code>boolean</code>s.
+ * Neither keys nor values are boxed, such that look-ups do not create any objects.
+ * <p>
+ * The table is not thread-safe.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class TypePairTable {
+
+	/** Result of {@link #get(int, int)} if the pair is not contained in the table. */
+	public static final int UNKNOWN= -1;
+	/** Result of {@link #get(int, int)} if the pair is mapped to <code>false</code>. */
+	public static final int FALSE= 0;
+	/** Result of {@link #get(int, int)} if the pair is mapped to <code>true</code>. */
+	public static final int TRUE= 1;
+
+	private static final int INITIAL_CAPACITY= 256;
+
+	/**
+	 * The keys of the table, <code>0</code> marks a free slot. The capacity is a power of two.
+	 */
+	private long[] fKeys;
+	private boolean[] fValues;
+	private int fSize;
+
+	public TypePairTable() {
+		clear();
+	}
+
+	/**
+	 * Returns the value of the given pair.
+	 *
+	 * @param first the first type id, must be positive
+	 * @param second the second type id, must be positive
+	 * @return {@link #TRUE}, {@link #FALSE}, or {@link #UNKNOWN} if the pair is not contained
+	 */
+	public int get(int first, int second) {
+		long key= createKey(first, second);
+		long[] keys= fKeys;
+		int mask= keys.length - 1;
+		for (int i= hash(key) & mask; ; i= (i + 1) & mask) {
+			long current= keys[i];
+			if (current == key)
+				return fValues[i] ? TRUE : FALSE;
+			if (current == 0)
+				return UNKNOWN;
+		}
+	}
+
+	/**
+	 * Maps the given pair to a value.
+	 *
+	 * @param first the first type id, must be positive
+	 * @param second the second type id, must be positive
+	 * @param value the value
+	 */
+	public void put(int first, int second, boolean value) {
+		Assert.isTrue(first > 0 && second > 0);
+		if (2 * (fSize + 1) > fKeys.length)
+			rehash(2 * fKeys.length);
+		long key= createKey(first, second);
+		int mask= fKeys.length - 1;
+		int i= hash(key) & mask;
+		while (fKeys[i] != 0 && fKeys[i] != key)
+			i= (i + 1) & mask;
+		if (fKeys[i] == 0) {
+			fKeys[i]= key;
+			fSize++;
+		}
+		fValues[i]= value;
+	}
+
+	public int size() {
+		return fSize;
+	}
+
+	public void clear() {
+		fKeys= new long[INITIAL_CAPACITY];
+		fValues= new boolean[INITIAL_CAPACITY];
+		fSize= 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys= fKeys;
+		boolean[] oldValues= fValues;
+		fKeys= new long[capacity];
+		fValues= new boolean[capacity];
+		int mask= capacity - 1;
+		for (int j= 0; j < oldKeys.length; j++) {
+			long key= oldKeys[j];
+			if (key != 0) {
+				int i= hash(key) & mask;
+				while (fKeys[i] != 0)
+					i= (i + 1) & mask;
+				fKeys[i]= key;
+				fValues[i]= oldValues[j];
+			}
+		}
+	}
+
+	private static long createKey(int first, int second) {
+		return ((long) first << 32) | (second & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key) {
+		// Fibonacci hashing spreads the consecutive ids over the whole table
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,19 +10,23 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets;
 
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.NoSuchElementException;
 
 import org.eclipse.core.runtime.Assert;
 
-import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.ArrayType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets.TypeSetEnvironment.TypeClosure;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints2.TTypes;
 
 /**
  * A type-safe wrapper for {@code Set<TType>} that also adds {@code TType}-specific
  * functionality, e.g. subTypes() and superTypes().
+ * <p>
+ * The members are kept as the ids the {@link TypeSetEnvironment} assigns to types, in a
+ * bit set for the set operations and in an array for iterating in insertion order.
+ * </p>
  */
 public class EnumeratedTypeSet extends TypeSet {
 	static private int sCount= 0;
@@ -35,10 +39,17 @@ public class EnumeratedTypeSet extends TypeSet {
 		sCount= 0;
 	}
 
+	private static final int[] NO_IDS= new int[0];
+
+	/**
+	 * The ids of the TTypes in this EnumeratedTypeSet, in insertion order.
+	 */
+	private int[] fIds= NO_IDS;
+	private int fSize;
 	/**
-	 * Set containing the TTypes in this EnumeratedTypeSet.
+	 * The ids of the TTypes in this EnumeratedTypeSet.
 	 */
-	Set<TType> fMembers= new LinkedHashSet<TType>();
+	private BitSet fBits= new BitSet();
 
 	/**
 	 * Constructs a new EnumeratedTypeSet with the members of Set s in it.
@@ -50,7 +61,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	public EnumeratedTypeSet(Iterator<TType> types, TypeSetEnvironment typeSetEnvironment) {
 		super(typeSetEnvironment);
 		while (types.hasNext()) {
-			fMembers.add(types.next());
+			add(types.next());
 		}
 		sCount++;
 	}
@@ -74,7 +85,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	public EnumeratedTypeSet(TType t, TypeSetEnvironment typeSetEnvironment) {
 		super(typeSetEnvironment);
 		Assert.isNotNull(t);
-		fMembers.add(t);
+		add(t);
 		sCount++;
 	}
 
@@ -92,19 +103,19 @@ public class EnumeratedTypeSet extends TypeSet {
 		if (o instanceof EnumeratedTypeSet) {
 			EnumeratedTypeSet other= (EnumeratedTypeSet) o;
 
-			return fMembers.equals(other.fMembers);
+			return fSize == other.fSize && fBits.equals(getBits(other));
 		} else if (o instanceof SingletonTypeSet) {
 			SingletonTypeSet other= (SingletonTypeSet) o;
 
-			return (fMembers.size() == 1) && fMembers.contains(other.anyMember());
+			return (fSize == 1) && contains(other.anyMember());
 		} else if (o instanceof TypeSet) {
 			TypeSet other= (TypeSet) o;
 
 			for(Iterator<TType> otherIter= other.iterator(); otherIter.hasNext(); ) {
-				if (!fMembers.contains(otherIter.next()))
+				if (!contains(otherIter.next()))
 					return false;
 			}
-			for(Iterator<TType> myIter= fMembers.iterator(); myIter.hasNext(); ) {
+			for(Iterator<TType> myIter= iterator(); myIter.hasNext(); ) {
 				if (!other.contains(myIter.next()))
 					return false;
 			}
@@ -115,7 +126,11 @@ public class EnumeratedTypeSet extends TypeSet {
 
 	@Override
 	public int hashCode() {
-		return 37 + fMembers.hashCode();
+		// same as for a java.util.Set of the members
+		int hashCode= 0;
+		for (int i= 0; i < fSize; i++)
+			hashCode+= getType(fIds[i]).hashCode();
+		return 37 + hashCode;
 	}
 
 	/**
@@ -149,8 +164,8 @@ public class EnumeratedTypeSet extends TypeSet {
 			// More than an optimization: the universe never contains array types, so
 			// if s2 has array types, the following will retain them, as it should.
 			EnumeratedTypeSet ets2= (EnumeratedTypeSet) s2;
-			fMembers= new LinkedHashSet<TType>();
-			fMembers.addAll(ets2.fMembers);
+			clear();
+			addAll(ets2);
 		} else
 			retainAll(s2);
 	}
@@ -164,7 +179,7 @@ public class EnumeratedTypeSet extends TypeSet {
 		if (isUniverse())
 			return makeClone(); // subtypes(universe) = universe
 
-		if (fMembers.contains(getJavaLangObject()))
+		if (contains(getJavaLangObject()))
 			return getTypeSetEnvironment().getUniverseTypeSet();
 
 		return getTypeSetEnvironment().createSubTypesSet(this);
@@ -197,7 +212,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	public TypeSet makeClone() {
 		EnumeratedTypeSet result= new EnumeratedTypeSet(getTypeSetEnvironment());
 
-		result.fMembers.addAll(fMembers);
+		result.addAll(this);
 		result.initComplete();
 		return result;
 	}
@@ -206,17 +221,16 @@ public class EnumeratedTypeSet extends TypeSet {
 	 * @see java.util.Set#size()
 	 */
 	public int size() {
-		return fMembers.size();
+		return fSize;
 	}
 
 	/* (non-Javadoc)
 	 * @see java.util.Set#clear()
 	 */
 	public void clear() {
-		if (isUniverse())
-			fMembers= new LinkedHashSet<TType>();
-		else
-			fMembers.clear();
+		fIds= NO_IDS;
+		fSize= 0;
+		fBits= new BitSet();
 	}
 
 	/* (non-Javadoc)
@@ -224,14 +238,17 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public boolean isEmpty() {
-		return fMembers.isEmpty();
+		return fSize == 0;
 	}
 
 	/* (non-Javadoc)
 	 * @see java.util.Set#toArray()
 	 */
 	public TType[] toArray() {
-		return fMembers.toArray(new TType[fMembers.size()]);
+		TType[] result= new TType[fSize];
+		for (int i= 0; i < fSize; i++)
+			result[i]= getType(fIds[i]);
+		return result;
 	}
 
 	/* (non-Javadoc)
@@ -240,7 +257,35 @@ public class EnumeratedTypeSet extends TypeSet {
 	public boolean add(TType t) {
 		// Doesn't make sense to do here what other methods do (copy-and-modify)
 		Assert.isTrue(!isUniverse(), "Someone's trying to expand the universe!"); //$NON-NLS-1$
-		return fMembers.add(t);
+		return addId(getTypeSetEnvironment().getTypeId(t));
+	}
+
+	private boolean addId(int id) {
+		if (fBits.get(id))
+			return false;
+		fBits.set(id);
+		if (fSize == fIds.length) {
+			int[] newIds= new int[Math.max(4, fSize * 2)];
+			System.arraycopy(fIds, 0, newIds, 0, fSize);
+			fIds= newIds;
+		}
+		fIds[fSize++]= id;
+		return true;
+	}
+
+	/**
+	 * Adds the types of the given closure that are not members yet.
+	 *
+	 * @param closure the closure of a type
+	 * @return <code>true</code> iff this set changed
+	 * @since 3.8
+	 */
+	boolean addAll(TypeClosure closure) {
+		boolean changed= false;
+		int[] ids= closure.fIds;
+		for (int i= 0; i < ids.length; i++)
+			changed|= addId(ids[i]);
+		return changed;
 	}
 
 	/* (non-Javadoc)
@@ -250,21 +295,47 @@ public class EnumeratedTypeSet extends TypeSet {
 	public boolean contains(TType t) {
 		if (isUniverse())
 			return true;
-		return fMembers.contains(t);
+		int id= getTypeSetEnvironment().findTypeId(t);
+		return id != -1 && fBits.get(id);
 	}
 
 	/* (non-Javadoc)
 	 * @see java.util.Set#remove(java.lang.Object)
 	 */
 	public boolean remove(TType t) {
-		if (isUniverse())
-			fMembers= cloneSet(fMembers);
-		return fMembers.remove(t);
+		int id= getTypeSetEnvironment().findTypeId(t);
+		if (id == -1 || !fBits.get(id))
+			return false;
+		fBits.clear(id);
+		compact();
+		return true;
+	}
+
+	/**
+	 * Removes the ids that are no longer in {@link #fBits} from {@link #fIds}.
+	 */
+	private void compact() {
+		int size= 0;
+		for (int i= 0; i < fSize; i++) {
+			int id= fIds[i];
+			if (fBits.get(id))
+				fIds[size++]= id;
+		}
+		fSize= size;
 	}
 
-	private Set<TType> cloneSet(Set<TType> members) {
-		Set<TType> result= new LinkedHashSet<TType>();
-		result.addAll(members);
+	/**
+	 * Returns the members of the given set as ids of the environment of this set.
+	 *
+	 * @param s the set
+	 * @return the bits of the set, which must not be modified
+	 */
+	private BitSet getBits(EnumeratedTypeSet s) {
+		if (s.getTypeSetEnvironment() == getTypeSetEnvironment())
+			return s.fBits;
+		BitSet result= new BitSet();
+		for (int i= 0; i < s.fSize; i++)
+			result.set(getTypeSetEnvironment().getTypeId(s.getType(s.fIds[i])));
 		return result;
 	}
 
@@ -272,15 +343,17 @@ public class EnumeratedTypeSet extends TypeSet {
 	 * @see java.util.Set#addAll(java.util.Collection)
 	 */
 	public boolean addAll(TypeSet s) {
-		if (s instanceof EnumeratedTypeSet) {
-			EnumeratedTypeSet ets= (EnumeratedTypeSet) s;
-
-			return fMembers.addAll(ets.fMembers);
-		} else {
-			EnumeratedTypeSet ets= s.enumerate();
-
-			return fMembers.addAll(ets.fMembers);
+		EnumeratedTypeSet ets= s.enumerate();
+		if (ets.getTypeSetEnvironment() != getTypeSetEnvironment()) {
+			boolean changed= false;
+			for (int i= 0; i < ets.fSize; i++)
+				changed|= add(ets.getType(ets.fIds[i]));
+			return changed;
 		}
+		boolean changed= false;
+		for (int i= 0; i < ets.fSize; i++)
+			changed|= addId(ets.fIds[i]);
+		return changed;
 	}
 
 	@Override
@@ -303,17 +376,23 @@ public class EnumeratedTypeSet extends TypeSet {
 		if (s.isUniverse())
 			return false;
 		EnumeratedTypeSet ets= s.enumerate();
+		if (ets.fSize > fSize)
+			return false;
 
-		return fMembers.containsAll(ets.fMembers);
+		BitSet missing= (BitSet) getBits(ets).clone();
+		missing.andNot(fBits);
+		return missing.isEmpty();
 	}
 
 	/* (non-Javadoc)
 	 * @see java.util.Set#removeAll(java.util.Collection)
 	 */
 	public boolean removeAll(EnumeratedTypeSet s) {
-		if (isUniverse())
-			fMembers= cloneSet(fMembers);
-		return fMembers.removeAll(s.fMembers);
+		if (!fBits.intersects(getBits(s)))
+			return false;
+		fBits.andNot(getBits(s));
+		compact();
+		return true;
 	}
 
 	/* (non-Javadoc)
@@ -325,10 +404,14 @@ public class EnumeratedTypeSet extends TypeSet {
 		EnumeratedTypeSet ets= (EnumeratedTypeSet) s;
 
 		if (isUniverse()) {
-			fMembers= cloneSet(ets.fMembers);
+			clear();
+			addAll(ets);
 			return true;
-		} else
-			return fMembers.retainAll(ets.fMembers);
+		}
+		fBits.and(getBits(ets));
+		int oldSize= fSize;
+		compact();
+		return fSize != oldSize;
 	}
 
 	/* (non-Javadoc)
@@ -336,7 +419,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public boolean isSingleton() {
-		return fMembers.size() == 1;
+		return fSize == 1;
 	}
 
 	/* (non-Javadoc)
@@ -344,7 +427,9 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public TType anyMember() {
-		return fMembers.iterator().next();
+		if (fSize == 0)
+			throw new NoSuchElementException();
+		return getType(fIds[0]);
 	}
 
 	/* (non-Javadoc)
@@ -352,29 +437,22 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public TypeSet upperBound() {
-		if (fMembers.size() == 1)
-			return new SingletonTypeSet(fMembers.iterator().next(), getTypeSetEnvironment());
-		if (fMembers.contains(getJavaLangObject()))
+		if (fSize == 1)
+			return new SingletonTypeSet(anyMember(), getTypeSetEnvironment());
+		if (contains(getJavaLangObject()))
 			return new SingletonTypeSet(getJavaLangObject(), getTypeSetEnvironment());
 
-		EnumeratedTypeSet result= new EnumeratedTypeSet(getTypeSetEnvironment());
+		// Add to result each member that has no proper supertype among the members
+		TypeSetEnvironment typeSetEnvironment= getTypeSetEnvironment();
+		BitSet removed= new BitSet();
+		for (int i= 0; i < fSize; i++) {
+			removed.or(typeSetEnvironment.getSubTypeClosure(fIds[i]).fBits);
+		}
 
-		// Add to result each element of fMembers that has no proper supertype in fMembers
-		result.fMembers.addAll(fMembers);
-		for(Iterator<TType> iter= fMembers.iterator(); iter.hasNext(); ) {
-			TType t= iter.next();
-
-			if (t.isArrayType()) {
-				ArrayType at= (ArrayType) t;
-				int numDims= at.getDimensions();
-				for(Iterator<TType> subIter=TTypes.getAllSubTypesIterator(at.getElementType()); subIter.hasNext(); ) {
-					result.fMembers.remove(TTypes.createArrayType(subIter.next(), numDims));
-				}
-			} else {
-				for (Iterator<TType> iterator= TTypes.getAllSubTypesIterator(t); iterator.hasNext();) {
-					result.fMembers.remove(iterator.next());
-				}
-			}
+		EnumeratedTypeSet result= new EnumeratedTypeSet(typeSetEnvironment);
+		for (int i= 0; i < fSize; i++) {
+			if (!removed.get(fIds[i]))
+				result.addId(fIds[i]);
 		}
 		result.initComplete();
 		return result;
@@ -385,35 +463,29 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public TypeSet lowerBound() {
-		if (fMembers.size() == 1)
-			return new SingletonTypeSet(fMembers.iterator().next(), getTypeSetEnvironment());
-
-		EnumeratedTypeSet result= new EnumeratedTypeSet(getTypeSetEnvironment());
+		if (fSize == 1)
+			return new SingletonTypeSet(anyMember(), getTypeSetEnvironment());
 
-		// Add to result each element of fMembers that has no proper subtype in fMembers
-		result.fMembers.addAll(fMembers);
+		// Add to result each member that has no proper subtype among the members
+		TypeSetEnvironment typeSetEnvironment= getTypeSetEnvironment();
+		int objectId= typeSetEnvironment.findTypeId(getJavaLangObject());
+		BitSet removed= new BitSet();
+		for (int i= 0; i < fSize; i++) {
+			int id= fIds[i];
 
-		for(Iterator<TType> iter= fMembers.iterator(); iter.hasNext(); ) {
-			TType t= iter.next();
-
-			// java.lang.Object is only in the lower bound if fMembers consists
+			// java.lang.Object is only in the lower bound if the members consist
 			// of only java.lang.Object, but that case is handled above.
-			if (t.equals(getJavaLangObject())) {
-				result.fMembers.remove(t);
+			if (id == objectId) {
+				removed.set(id);
 				continue;
 			}
+			removed.or(typeSetEnvironment.getSuperTypeClosure(id).fBits);
+		}
 
-			if (t instanceof ArrayType) {
-				ArrayType at= (ArrayType) t;
-				int numDims= at.getDimensions();
-				for(Iterator<TType> superIter=TTypes.getAllSuperTypesIterator(at.getElementType()); superIter.hasNext(); ) {
-					result.fMembers.remove(TTypes.createArrayType(superIter.next(), numDims));
-				}
-			} else {
-				for (Iterator<TType> iterator= TTypes.getAllSuperTypesIterator(t); iterator.hasNext();) {
-					result.fMembers.remove(iterator.next());
-				}
-			}
+		EnumeratedTypeSet result= new EnumeratedTypeSet(typeSetEnvironment);
+		for (int i= 0; i < fSize; i++) {
+			if (!removed.get(fIds[i]))
+				result.addId(fIds[i]);
 		}
 		if (result.size() > 0)
 			return result;
@@ -426,7 +498,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public boolean hasUniqueLowerBound() {
-		return fMembers.size() == 1;
+		return fSize == 1;
 	}
 
 	/* (non-Javadoc)
@@ -434,7 +506,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public boolean hasUniqueUpperBound() {
-		return fMembers.size() == 1;
+		return fSize == 1;
 	}
 
 	/* (non-Javadoc)
@@ -442,8 +514,8 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public TType uniqueLowerBound() {
-		if (fMembers.size() == 1)
-			return fMembers.iterator().next();
+		if (fSize == 1)
+			return getType(fIds[0]);
 		return null;
 	}
 
@@ -452,17 +524,39 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	@Override
 	public TType uniqueUpperBound() {
-		if (fMembers.size() == 1)
-			return fMembers.iterator().next();
+		if (fSize == 1)
+			return getType(fIds[0]);
 		return null;
 	}
 
+	private TType getType(int id) {
+		return getTypeSetEnvironment().getType(id);
+	}
+
 	/* (non-Javadoc)
 	 * @see java.util.Set#iterator()
 	 */
 	@Override
 	public Iterator<TType> iterator() {
-		return fMembers.iterator();
+		final int[] ids= fIds;
+		final int size= fSize;
+		return new Iterator<TType>() {
+			private int fIndex= 0;
+
+			public boolean hasNext() {
+				return fIndex < size;
+			}
+
+			public TType next() {
+				if (fIndex >= size)
+					throw new NoSuchElementException();
+				return getType(ids[fIndex++]);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	/**
@@ -506,7 +600,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	}
 
 	public void initComplete() {
-		Assert.isTrue(! fMembers.isEmpty());
+		Assert.isTrue(fSize > 0);
 	}
 
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -305,19 +305,11 @@ public class SubTypesSet extends TypeSet {
 		if (fEnumCache == null) {
 			fEnumCache= new EnumeratedTypeSet(getTypeSetEnvironment());
 
+			TypeSetEnvironment typeSetEnvironment= getTypeSetEnvironment();
 			for(Iterator<TType> iter= fUpperBounds.iterator(); iter.hasNext(); ) {
 				TType ub= iter.next();
 
-				if (ub instanceof ArrayType) {
-					ArrayType at= (ArrayType) ub;
-					int numDims= at.getDimensions();
-					for(Iterator<TType> elemSubIter=TTypes.getAllSubTypesIterator(at.getElementType()); elemSubIter.hasNext(); )
-						fEnumCache.add(TTypes.createArrayType(elemSubIter.next(), numDims));
-				} else {
-					for (Iterator<TType> iterator= TTypes.getAllSubTypesIterator(ub); iterator.hasNext();) {
-						fEnumCache.fMembers.add(iterator.next());
-					}
-				}
+				fEnumCache.addAll(typeSetEnvironment.getSubTypeClosure(typeSetEnvironment.getTypeId(ub)));
 				fEnumCache.add(ub);
 			}
 //			fEnumCache.initComplete();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -294,19 +294,13 @@ public class SuperTypesSet extends TypeSet {
 			fEnumCache= new EnumeratedTypeSet(getTypeSetEnvironment());
 			boolean anyLBIsIntfOrArray= false;
 
+			TypeSetEnvironment typeSetEnvironment= getTypeSetEnvironment();
 			for(Iterator<TType> iter= fLowerBounds.iterator(); iter.hasNext(); ) {
 				TType lb= iter.next();
 
-				if (lb instanceof ArrayType) {
-					ArrayType at= (ArrayType) lb;
-					int numDims= at.getDimensions();
-					for(Iterator<TType> elemSuperIter=TTypes.getAllSuperTypesIterator(at.getElementType()); elemSuperIter.hasNext(); )
-						fEnumCache.add(TTypes.createArrayType(elemSuperIter.next(), numDims));
+				fEnumCache.addAll(typeSetEnvironment.getSuperTypeClosure(typeSetEnvironment.getTypeId(lb)));
+				if (lb instanceof ArrayType)
 					anyLBIsIntfOrArray= true;
-				} else {
-					for (Iterator<TType> iterator= TTypes.getAllSuperTypesIterator(lb); iterator.hasNext(); )
-					fEnumCache.fMembers.add(iterator.next());
-				}
 				fEnumCache.add(lb);
 			}
 			if (anyLBIsIntfOrArray) fEnumCache.add(getJavaLangObject());
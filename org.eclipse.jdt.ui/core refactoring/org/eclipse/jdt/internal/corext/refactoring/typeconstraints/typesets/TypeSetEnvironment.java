@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,16 +11,40 @@
 
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.ArrayType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TypeEnvironment;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints2.TTypes;
 
 
 
 public class TypeSetEnvironment {
 
+	/**
+	 * The types of a subtype or supertype closure, as ids of the types in this environment.
+	 *
+	 * @since 3.8
+	 */
+	static final class TypeClosure {
+		/** The ids of the types, in the order of the type iterators of {@link TTypes}. */
+		final int[] fIds;
+		/** The ids of the types. */
+		final BitSet fBits;
+
+		TypeClosure(int[] ids, BitSet bits) {
+			fIds= ids;
+			fBits= bits;
+		}
+	}
+
 	private final TypeEnvironment fTypeEnvironment;
 	private final TypeUniverseSet fUniverse;
 	private final EmptyTypeSet fEmptyTypeSet;
@@ -30,13 +54,42 @@ public class TypeSetEnvironment {
 	private final Map<TType, SuperTypesOfSingleton> fSuperTypesOfSingletons= new LinkedHashMap<TType, SuperTypesOfSingleton>();//@perf
 	private final Map<Object, SuperTypesSet> fSuperTypesSets= new LinkedHashMap<Object, SuperTypesSet>();//@perf
 
+	/**
+	 * The ids of the types, see {@link #getTypeId(TType)}.
+	 * @since 3.8
+	 */
+	private final Map<TType, Integer> fTypeIds= new HashMap<TType, Integer>();
+	/**
+	 * The types, indexed by id.
+	 * @since 3.8
+	 */
+	private final List<TType> fTypes= new ArrayList<TType>();
+	/**
+	 * The subtype closures, indexed by type id, or <code>null</code> if not computed yet.
+	 * @since 3.8
+	 */
+	private final List<TypeClosure> fSubTypeClosures= new ArrayList<TypeClosure>();
+	/**
+	 * The supertype closures, indexed by type id, or <code>null</code> if not computed yet.
+	 * @since 3.8
+	 */
+	private final List<TypeClosure> fSuperTypeClosures= new ArrayList<TypeClosure>();
+	/**
+	 * The subtypes count of the type environment when the subtype closures were computed.
+	 * @since 3.8
+	 */
+	private int fSubTypesCount;
+
 	private int fgCommonExprHits= 0;
 	private int fgCommonExprMisses= 0;
+	private int fClosureHits= 0;
+	private int fClosureMisses= 0;
 
 	public TypeSetEnvironment(TypeEnvironment typeEnvironment) {
 		fTypeEnvironment= typeEnvironment;
 		fUniverse= new TypeUniverseSet(this);
 		fEmptyTypeSet= new EmptyTypeSet(this);
+		fSubTypesCount= typeEnvironment.getSubTypesCount();
 	}
 
 	public TType getJavaLangObject() {
@@ -116,9 +169,138 @@ public class TypeSetEnvironment {
 		}
 	}
 
+	/**
+	 * Returns the id of the given type. The ids of the types of an environment are
+	 * consecutive, starting at <code>0</code>, so that sets of types can be represented
+	 * as bit sets.
+	 *
+	 * @param type the type
+	 * @return the id of the type, assigned on first use
+	 * @since 3.8
+	 */
+	int getTypeId(TType type) {
+		Integer id= fTypeIds.get(type);
+		if (id != null)
+			return id.intValue();
+
+		int result= fTypes.size();
+		fTypeIds.put(type, new Integer(result));
+		fTypes.add(type);
+		fSubTypeClosures.add(null);
+		fSuperTypeClosures.add(null);
+		return result;
+	}
+
+	/**
+	 * Returns the id of the given type, without assigning one.
+	 *
+	 * @param type the type
+	 * @return the id of the type, or <code>-1</code> if the type has no id yet
+	 * @since 3.8
+	 */
+	int findTypeId(TType type) {
+		Integer id= fTypeIds.get(type);
+		return id != null ? id.intValue() : -1;
+	}
+
+	/**
+	 * @param id a type id
+	 * @return the type with the given id
+	 * @since 3.8
+	 */
+	TType getType(int id) {
+		return fTypes.get(id);
+	}
+
+	/**
+	 * Returns the types {@link TTypes#getAllSubTypesIterator(TType)} enumerates for the given
+	 * type. For array types, these are the array types of the subtypes of the element type.
+	 *
+	 * @param id the id of the type
+	 * @return the subtype closure, which must not be modified
+	 * @since 3.8
+	 */
+	TypeClosure getSubTypeClosure(int id) {
+		int subTypesCount= fTypeEnvironment.getSubTypesCount();
+		if (subTypesCount != fSubTypesCount) {
+			// types created since may be subtypes of types with a computed closure
+			for (int i= 0; i < fSubTypeClosures.size(); i++)
+				fSubTypeClosures.set(i, null);
+			fSubTypesCount= subTypesCount;
+		}
+		TypeClosure closure= fSubTypeClosures.get(id);
+		if (closure != null) {
+			fClosureHits++;
+			return closure;
+		}
+		fClosureMisses++;
+		TType type= getType(id);
+		if (type.isArrayType()) {
+			ArrayType arrayType= (ArrayType) type;
+			closure= createClosure(TTypes.getAllSubTypesIterator(arrayType.getElementType()), arrayType.getDimensions());
+		} else {
+			closure= createClosure(TTypes.getAllSubTypesIterator(type), 0);
+		}
+		fSubTypeClosures.set(id, closure);
+		return closure;
+	}
+
+	/**
+	 * Returns the types {@link TTypes#getAllSuperTypesIterator(TType)} enumerates for the given
+	 * type. For array types, these are the array types of the supertypes of the element type.
+	 *
+	 * @param id the id of the type
+	 * @return the supertype closure, which must not be modified
+	 * @since 3.8
+	 */
+	TypeClosure getSuperTypeClosure(int id) {
+		TypeClosure closure= fSuperTypeClosures.get(id);
+		if (closure != null) {
+			fClosureHits++;
+			return closure;
+		}
+		fClosureMisses++;
+		TType type= getType(id);
+		if (type.isArrayType()) {
+			ArrayType arrayType= (ArrayType) type;
+			closure= createClosure(TTypes.getAllSuperTypesIterator(arrayType.getElementType()), arrayType.getDimensions());
+		} else {
+			closure= createClosure(TTypes.getAllSuperTypesIterator(type), 0);
+		}
+		fSuperTypeClosures.set(id, closure);
+		return closure;
+	}
+
+	private TypeClosure createClosure(Iterator<TType> types, int dimensions) {
+		BitSet bits= new BitSet();
+		int[] ids= new int[16];
+		int size= 0;
+		while (types.hasNext()) {
+			TType type= types.next();
+			if (dimensions > 0)
+				type= TTypes.createArrayType(type, dimensions);
+			int id= getTypeId(type);
+			if (!bits.get(id)) {
+				bits.set(id);
+				if (size == ids.length) {
+					int[] newIds= new int[size * 2];
+					System.arraycopy(ids, 0, newIds, 0, size);
+					ids= newIds;
+				}
+				ids[size++]= id;
+			}
+		}
+		int[] result= new int[size];
+		System.arraycopy(ids, 0, result, 0, size);
+		return new TypeClosure(result, bits);
+	}
+
 	public void dumpStats() {
 		System.out.println("Common expression hits:   " + fgCommonExprHits); //$NON-NLS-1$
 		System.out.println("Common expression misses: " + fgCommonExprMisses); //$NON-NLS-1$
+		System.out.println("Type closure hits:        " + fClosureHits); //$NON-NLS-1$
+		System.out.println("Type closure misses:      " + fClosureMisses); //$NON-NLS-1$
+		System.out.println("Numbered types:           " + fTypes.size()); //$NON-NLS-1$
 	}
 
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -45,7 +45,13 @@ public abstract class ConstraintVariable2 {
 		}
 	}
 
+	/**
+	 * @return the equivalence set of this variable, or <code>null</code> if it has none.
+	 *         Never answers a set that has been merged into another set.
+	 */
 	public TypeEquivalenceSet getTypeEquivalenceSet() {
+		if (fTypeEquivalenceSet != null)
+			fTypeEquivalenceSet= fTypeEquivalenceSet.getRepresentative();
 		return fTypeEquivalenceSet;
 	}
 
@@ -58,7 +64,7 @@ public abstract class ConstraintVariable2 {
 
 	public ITypeSet getTypeEstimate() {
 		Assert.isNotNull(fTypeEquivalenceSet);
-		return fTypeEquivalenceSet.getTypeEstimate();
+		return getTypeEquivalenceSet().getTypeEstimate();
 	}
 
 	public void setData(String name, Object data) {
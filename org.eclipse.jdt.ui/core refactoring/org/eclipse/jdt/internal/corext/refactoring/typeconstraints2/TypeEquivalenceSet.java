@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,73 +15,186 @@ import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
 
+/**
+ * A set of constraint variables that must have the same type.
+ * <p>
+ * Equivalence sets are merged with {@link #union(TypeEquivalenceSet, TypeEquivalenceSet)}.
+ * Merged sets form a union-find forest: a set that has been merged into another one only
+ * forwards to its representative, and {@link ConstraintVariable2#getTypeEquivalenceSet()}
+ * always answers the representative. The variables of a set are kept as a list of segments,
+ * so that merging does not copy them.
+ * </p>
+ */
 public class TypeEquivalenceSet {
 
-	private ConstraintVariable2[] fVariables;
+	/**
+	 * A part of the variables of an equivalence set.
+	 */
+	private static final class Segment {
+		final ConstraintVariable2[] fVariables;
+		Segment fNext;
+
+		Segment(ConstraintVariable2[] variables) {
+			fVariables= variables;
+		}
+	}
+
+	/**
+	 * The set this set has been merged into, or <code>null</code> if this set is a representative.
+	 */
+	private TypeEquivalenceSet fParent;
+	private Segment fFirst;
+	private Segment fLast;
+	private int fSize;
 	private ITypeSet fTypeEstimate;
 
 
 	public TypeEquivalenceSet(ConstraintVariable2 first, ConstraintVariable2 second) {
-		fVariables= new ConstraintVariable2[] {first, second };
+		this(new ConstraintVariable2[] {first, second });
 	}
 
 	public TypeEquivalenceSet(ConstraintVariable2 variable) {
-		fVariables= new ConstraintVariable2[] {variable};
+		this(new ConstraintVariable2[] {variable});
+	}
+
+	private TypeEquivalenceSet(ConstraintVariable2[] variables) {
+		fFirst= new Segment(variables);
+		fLast= fFirst;
+		fSize= variables.length;
+	}
+
+	/**
+	 * Merges two equivalence sets. The result contains the variables of <code>first</code>
+	 * followed by the variables of <code>second</code>, and has the type estimate of
+	 * <code>first</code>. The smaller set is attached to the larger one, and the variables
+	 * of both sets answer the result as their set from now on.
+	 *
+	 * @param first the first set
+	 * @param second the second set, which must not share variables with the first set
+	 * @return the merged set
+	 * @since 3.8
+	 */
+	public static TypeEquivalenceSet union(TypeEquivalenceSet first, TypeEquivalenceSet second) {
+		first= first.getRepresentative();
+		second= second.getRepresentative();
+		if (first == second)
+			return first;
+
+		TypeEquivalenceSet result;
+		TypeEquivalenceSet merged;
+		if (first.fSize >= second.fSize) {
+			result= first;
+			merged= second;
+		} else {
+			result= second;
+			merged= first;
+		}
+		first.fLast.fNext= second.fFirst;
+		result.fFirst= first.fFirst;
+		result.fLast= second.fLast;
+		result.fSize= first.fSize + second.fSize;
+		result.fTypeEstimate= first.fTypeEstimate;
+
+		merged.fParent= result;
+		merged.fFirst= null;
+		merged.fLast= null;
+		merged.fSize= 0;
+		merged.fTypeEstimate= null;
+		return result;
+	}
+
+	/**
+	 * @return the set this set has been merged into, or this set if it has not been merged
+	 * @since 3.8
+	 */
+	TypeEquivalenceSet getRepresentative() {
+		TypeEquivalenceSet root= this;
+		while (root.fParent != null)
+			root= root.fParent;
+
+		TypeEquivalenceSet set= this;
+		while (set != root) { // path compression
+			TypeEquivalenceSet next= set.fParent;
+			set.fParent= root;
+			set= next;
+		}
+		return root;
 	}
 
+	/**
+	 * Adds a variable that is not in any equivalence set yet.
+	 *
+	 * @param variable the variable
+	 */
 	public void add(ConstraintVariable2 variable) {
-		for (int i= 0; i < fVariables.length; i++)
-			if (fVariables[i] == variable)
-				return;
-
-		int length= fVariables.length;
-		ConstraintVariable2[] newElements= new ConstraintVariable2[length + 1];
-		System.arraycopy(fVariables, 0, newElements, 0, length);
-		newElements[length]= variable;
-		fVariables= newElements;
+		TypeEquivalenceSet set= getRepresentative();
+		if (variable.getTypeEquivalenceSet() == set)
+			return;
+
+		Segment segment= new Segment(new ConstraintVariable2[] { variable });
+		set.fLast.fNext= segment;
+		set.fLast= segment;
+		set.fSize++;
 	}
 
 	public ConstraintVariable2[] getContributingVariables() {
-		return fVariables;
+		TypeEquivalenceSet set= getRepresentative();
+		if (set.fFirst.fNext != null) {
+			ConstraintVariable2[] variables= new ConstraintVariable2[set.fSize];
+			int index= 0;
+			for (Segment segment= set.fFirst; segment != null; segment= segment.fNext) {
+				System.arraycopy(segment.fVariables, 0, variables, index, segment.fVariables.length);
+				index+= segment.fVariables.length;
+			}
+			set.fFirst= new Segment(variables);
+			set.fLast= set.fFirst;
+		}
+		return set.fFirst.fVariables;
 	}
 
 	public void addAll(ConstraintVariable2[] variables) {
-		if (fVariables.length * variables.length > 100) {
-			LinkedHashSet<ConstraintVariable2> result= new LinkedHashSet<ConstraintVariable2>(fVariables.length + variables.length);
-			result.addAll(Arrays.asList(fVariables));
+		ConstraintVariable2[] contributingVariables= getContributingVariables();
+		ConstraintVariable2[] newVariables;
+		if (contributingVariables.length * variables.length > 100) {
+			LinkedHashSet<ConstraintVariable2> result= new LinkedHashSet<ConstraintVariable2>(contributingVariables.length + variables.length);
+			result.addAll(Arrays.asList(contributingVariables));
 			result.addAll(Arrays.asList(variables));
-			fVariables= result.toArray(new ConstraintVariable2[result.size()]);
+			newVariables= result.toArray(new ConstraintVariable2[result.size()]);
 
 		} else {
-			List<ConstraintVariable2> elements= Arrays.asList(fVariables);
-			ArrayList<ConstraintVariable2> result= new ArrayList<ConstraintVariable2>(fVariables.length + variables.length);
+			List<ConstraintVariable2> elements= Arrays.asList(contributingVariables);
+			ArrayList<ConstraintVariable2> result= new ArrayList<ConstraintVariable2>(contributingVariables.length + variables.length);
 			result.addAll(elements);
 			for (int i= 0; i < variables.length; i++) {
 				ConstraintVariable2 right= variables[i];
 				if (! result.contains(right))
 					result.add(right);
 			}
-			fVariables= result.toArray(new ConstraintVariable2[result.size()]);
+			newVariables= result.toArray(new ConstraintVariable2[result.size()]);
 		}
-
+		TypeEquivalenceSet set= getRepresentative();
+		set.fFirst= new Segment(newVariables);
+		set.fLast= set.fFirst;
+		set.fSize= newVariables.length;
 	}
 
 	public void setTypeEstimate(ITypeSet estimate) {
-		fTypeEstimate= estimate;
+		getRepresentative().fTypeEstimate= estimate;
 	}
 
 	public ITypeSet getTypeEstimate() {
-		return fTypeEstimate;
+		return getRepresentative().fTypeEstimate;
 	}
 
 	@Override
 	public String toString() {
+		ConstraintVariable2[] variables= getContributingVariables();
 		StringBuffer result= new StringBuffer();
-		if (fVariables.length > 0)
-			result.append(fVariables[0].toString());
-		for (int i= 1; i < fVariables.length; i++) {
+		if (variables.length > 0)
+			result.append(variables[0].toString());
+		for (int i= 1; i < variables.length; i++) {
 			result.append(" =^= \n"); //$NON-NLS-1$
-			result.append(fVariables[i].toString());
+			result.append(variables[i].toString());
 		}
 		return result.toString();
 	}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.util;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
+
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringCoreMessages;
+import org.eclipse.jdt.internal.corext.util.Messages;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
+
+/**
+ * A synthetic change wrapping a {@link CompilationUnitChange} that has been written to a
+ * {@link TextChangeStore}.
+ * <p>
+ * The compilation unit change is read back when its children are requested or when it is
+ * performed, and it is only added as a child for the duration of these calls. The change
+ * read back is referenced weakly, such that a preview that shows it keeps working on the
+ * same change, but the change does not stay in memory once nobody uses it anymore. The
+ * change is validated against the modification stamp recorded in the store, without
+ * reading it back.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class StoredTextChange extends CompositeChange {
+
+	private final ICompilationUnit fUnit;
+	private final TextChangeStore fStore;
+	private TextChangeStore.Record fRecord;
+	private WeakReference<CompilationUnitChange> fChange;
+
+	public StoredTextChange(ICompilationUnit unit, TextChangeStore store, TextChangeStore.Record record) {
+		super(unit.getElementName());
+		fUnit= unit;
+		fStore= store;
+		fRecord= record;
+		markAsSynthetic();
+	}
+
+	/**
+	 * Reads the compilation unit change back from the store, unless it is still referenced.
+	 *
+	 * @return the compilation unit change
+	 * @throws CoreException if the change can not be read
+	 */
+	private CompilationUnitChange materialize() throws CoreException {
+		CompilationUnitChange change= fChange != null ? fChange.get() : null;
+		if (change == null) {
+			if (fRecord == null)
+				throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IStatus.ERROR, getName(), null));
+			try {
+				change= fStore.read(fRecord, fUnit);
+			} catch (IOException e) {
+				throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IStatus.ERROR, e.getMessage(), e));
+			}
+			change.initializeValidationData(null);
+			fChange= new WeakReference<CompilationUnitChange>(change);
+		}
+		return change;
+	}
+
+	/**
+	 * Returns whether this change currently keeps the compilation unit change read back from
+	 * the store as a child.
+	 *
+	 * @return <code>true</code> if the compilation unit change is a child of this change
+	 */
+	public boolean isMaterialized() {
+		return super.getChildren().length > 0;
+	}
+
+	/*
+	 * @see org.eclipse.ltk.core.refactoring.CompositeChange#getChildren()
+	 */
+	@Override
+	public Change[] getChildren() {
+		try {
+			add(materialize());
+			return super.getChildren();
+		} catch (CoreException e) {
+			JavaPlugin.log(e);
+			return new Change[0];
+		} finally {
+			clear();
+		}
+	}
+
+	/*
+	 * @see org.eclipse.ltk.core.refactoring.CompositeChange#isValid(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+		if (fRecord == null)
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IStatus.ERROR, getName(), null));
+		IFile file= (IFile) fUnit.getResource();
+		if (file == null || !file.exists() || file.getModificationStamp() != fRecord.getModificationStamp() || isDirty(file)) {
+			String label= BasicElementLabels.getPathLabel(fUnit.getPath(), false);
+			return RefactoringStatus.createFatalErrorStatus(Messages.format(RefactoringCoreMessages.StoredTextChange_file_modified, label));
+		}
+		return new RefactoringStatus();
+	}
+
+	private static boolean isDirty(IFile file) {
+		ITextFileBuffer buffer= FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		return buffer != null && buffer.isDirty();
+	}
+
+	/*
+	 * @see org.eclipse.ltk.core.refactoring.CompositeChange#perform(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	public Change perform(IProgressMonitor pm) throws CoreException {
+		CompilationUnitChange change= materialize();
+		try {
+			add(change);
+			return super.perform(pm);
+		} finally {
+			clear();
+			fChange= null;
+			change.dispose();
+		}
+	}
+
+	/*
+	 * @see org.eclipse.ltk.core.refactoring.CompositeChange#getModifiedElement()
+	 */
+	@Override
+	public Object getModifiedElement() {
+		return fUnit;
+	}
+
+	/*
+	 * @see org.eclipse.ltk.core.refactoring.CompositeChange#getAffectedObjects()
+	 */
+	@Override
+	public Object[] getAffectedObjects() {
+		return new Object[] { fUnit };
+	}
+
+	/*
+	 * @see org.eclipse.ltk.core.refactoring.CompositeChange#dispose()
+	 */
+	@Override
+	public void dispose() {
+		super.dispose();
+		CompilationUnitChange change= fChange != null ? fChange.get() : null;
+		if (change != null) {
+			change.dispose();
+			fChange= null;
+		}
+		if (fRecord != null) {
+			fStore.release(fRecord);
+			fRecord= null;
+		}
+	}
+
+}
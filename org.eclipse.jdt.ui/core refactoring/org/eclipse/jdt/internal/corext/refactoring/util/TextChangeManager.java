@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,34 +10,85 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.util;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.TextChange;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 /**
  * A <code>TextChangeManager</code> manages associations between <code>ICompilationUnit</code>
  * or <code>IFile</code> and <code>TextChange</code> objects.
+ * <p>
+ * A manager created with a limit on the changes in memory writes the least recently used
+ * changes to a temporary store when the limit is exceeded. Stored changes are read back
+ * when they are requested again. Clients that create the final change of a refactoring
+ * should use {@link #getChangesToPerform()} in this case, which does not read back stored
+ * changes until they are previewed or performed.
+ * </p>
  */
 public class TextChangeManager {
 
-	private Map<ICompilationUnit, TextChange> fMap= new HashMap<ICompilationUnit, TextChange>(10);
+	/**
+	 * Default limit on the number of changes kept in memory by managers that are allowed to
+	 * write changes to a temporary store.
+	 *
+	 * @since 3.8
+	 */
+	public static final int DEFAULT_CHANGES_IN_MEMORY= 500;
+
+	private Map<ICompilationUnit, TextChange> fMap;
 
 	private final boolean fKeepExecutedTextEdits;
 
+	private final int fMaxChangesInMemory;
+
+	private Map<ICompilationUnit, TextChangeStore.Record> fStored;
+
+	private TextChangeStore fStore;
+
 	public TextChangeManager() {
 		this(false);
 	}
 
 	public TextChangeManager(boolean keepExecutedTextEdits) {
+		this(keepExecutedTextEdits, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a text change manager that keeps at most <code>maxChangesInMemory</code>
+	 * changes in memory. Changes that exceed the limit are written to a temporary store if
+	 * they can be read back without loss.
+	 *
+	 * @param keepExecutedTextEdits whether created changes keep their preview edits
+	 * @param maxChangesInMemory the maximum number of changes kept in memory, or
+	 *        {@link Integer#MAX_VALUE} to keep all changes in memory
+	 * @since 3.8
+	 */
+	public TextChangeManager(boolean keepExecutedTextEdits, int maxChangesInMemory) {
 		fKeepExecutedTextEdits= keepExecutedTextEdits;
+		fMaxChangesInMemory= maxChangesInMemory;
+		if (maxChangesInMemory == Integer.MAX_VALUE) {
+			fMap= new HashMap<ICompilationUnit, TextChange>(10);
+		} else {
+			fMap= new LinkedHashMap<ICompilationUnit, TextChange>(16, 0.75f, true);
+			fStored= new HashMap<ICompilationUnit, TextChangeStore.Record>();
+		}
 	}
 
 	/**
@@ -48,7 +99,9 @@ public class TextChangeManager {
 	 * @param change the change associated with the compilation unit
 	 */
 	public void manage(ICompilationUnit cu, TextChange change) {
+		releaseStored(cu);
 		fMap.put(cu, change);
+		spill();
 	}
 
 	/**
@@ -61,9 +114,13 @@ public class TextChangeManager {
 	public TextChange get(ICompilationUnit cu) {
 		TextChange result= fMap.get(cu);
 		if (result == null) {
-			result= new CompilationUnitChange(cu.getElementName(), cu);
-			result.setKeepPreviewEdits(fKeepExecutedTextEdits);
+			result= readStored(cu);
+			if (result == null) {
+				result= new CompilationUnitChange(cu.getElementName(), cu);
+				result.setKeepPreviewEdits(fKeepExecutedTextEdits);
+			}
 			fMap.put(cu, result);
+			spill();
 		}
 		return result;
 	}
@@ -76,40 +133,67 @@ public class TextChangeManager {
 	 * @return the removed <tt>TextChange</tt>.
 	 */
 	public TextChange remove(ICompilationUnit unit) {
-		return fMap.remove(unit);
+		TextChange result= fMap.remove(unit);
+		if (result == null)
+			result= readStored(unit);
+		return result;
 	}
 
 	/**
 	 * Returns all text changes managed by this instance.
+	 * <p>
+	 * Changes that have been written to the temporary store are read back, but stay in the
+	 * store: the returned changes are copies which are not kept by this manager. Use
+	 * {@link #get(ICompilationUnit)} to modify a managed change.
+	 * </p>
 	 *
 	 * @return all text changes managed by this instance
 	 */
 	public TextChange[] getAllChanges(){
-		Set<ICompilationUnit> cuSet= fMap.keySet();
-		ICompilationUnit[] cus= cuSet.toArray(new ICompilationUnit[cuSet.size()]);
-		// sort by cu name:
-		Arrays.sort(cus, new Comparator<ICompilationUnit>() {
-			public int compare(ICompilationUnit o1, ICompilationUnit o2) {
-				String name1= o1.getElementName();
-				String name2= o2.getElementName();
-				return name1.compareTo(name2);
-			}
-		});
-
+		ICompilationUnit[] cus= getSortedCompilationUnits();
 		TextChange[] textChanges= new TextChange[cus.length];
 		for (int i= 0; i < cus.length; i++) {
-			textChanges[i]= fMap.get(cus[i]);
+			TextChange change= fMap.get(cus[i]);
+			if (change == null)
+				change= readStoredCopy(cus[i]);
+			textChanges[i]= change;
 		}
 		return textChanges;
 	}
 
+	/**
+	 * Returns the changes to perform for all compilation units managed by this instance.
+	 * In contrast to {@link #getAllChanges()}, changes that have been written to the
+	 * temporary store are not read back, but returned as changes that read them back
+	 * when they are previewed or performed. The stored changes are handed over to the
+	 * returned changes and the temporary store is deleted when these are disposed. The
+	 * manager must not be used afterwards.
+	 *
+	 * @return the changes to perform, sorted by compilation unit name
+	 * @since 3.8
+	 */
+	public Change[] getChangesToPerform() {
+		ICompilationUnit[] cus= getSortedCompilationUnits();
+		Change[] changes= new Change[cus.length];
+		for (int i= 0; i < cus.length; i++) {
+			Change change= fMap.get(cus[i]);
+			if (change == null)
+				change= new StoredTextChange(cus[i], fStore, fStored.get(cus[i]));
+			changes[i]= change;
+		}
+		if (fStored != null)
+			fStored.clear();
+		return changes;
+	}
+
 	/**
 	 * Returns all compilation units managed by this instance.
 	 *
 	 * @return all compilation units managed by this instance
 	 */
 	public ICompilationUnit[] getAllCompilationUnits(){
-		return fMap.keySet().toArray(new ICompilationUnit[fMap.keySet().size()]);
+		Set<ICompilationUnit> cus= getCompilationUnits();
+		return cus.toArray(new ICompilationUnit[cus.size()]);
 	}
 
 	/**
@@ -117,6 +201,12 @@ public class TextChangeManager {
 	 */
 	public void clear() {
 		fMap.clear();
+		if (fStored != null) {
+			for (Iterator<TextChangeStore.Record> iter= fStored.values().iterator(); iter.hasNext();) {
+				fStore.release(iter.next());
+			}
+			fStored.clear();
+		}
 	}
 
 	/**
@@ -126,7 +216,123 @@ public class TextChangeManager {
 	 * @return <code>true</code> if any text changes are managed for the specified compilation unit and <code>false</code> otherwise
 	 */
 	public boolean containsChangesIn(ICompilationUnit cu){
-		return fMap.containsKey(cu);
+		return fMap.containsKey(cu) || fStored != null && fStored.containsKey(cu);
+	}
+
+	/**
+	 * Returns the number of changes which have been written to the temporary store.
+	 *
+	 * @return the number of stored changes
+	 * @since 3.8
+	 */
+	public int getStoredChangesCount() {
+		return fStored != null ? fStored.size() : 0;
+	}
+
+	/**
+	 * Returns the size of the temporary store.
+	 *
+	 * @return the size of the temporary store in bytes
+	 * @since 3.8
+	 */
+	public long getStoreSize() {
+		if (fStore == null)
+			return 0;
+		try {
+			return fStore.getFileLength();
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			return 0;
+		}
+	}
+
+	private Set<ICompilationUnit> getCompilationUnits() {
+		if (fStored == null || fStored.isEmpty())
+			return fMap.keySet();
+		Set<ICompilationUnit> result= new HashSet<ICompilationUnit>(fMap.keySet());
+		result.addAll(fStored.keySet());
+		return result;
+	}
+
+	private ICompilationUnit[] getSortedCompilationUnits() {
+		Set<ICompilationUnit> cuSet= getCompilationUnits();
+		ICompilationUnit[] cus= cuSet.toArray(new ICompilationUnit[cuSet.size()]);
+		// sort by cu name:
+		Arrays.sort(cus, new Comparator<ICompilationUnit>() {
+			public int compare(ICompilationUnit o1, ICompilationUnit o2) {
+				String name1= o1.getElementName();
+				String name2= o2.getElementName();
+				return name1.compareTo(name2);
+			}
+		});
+		return cus;
+	}
+
+	/**
+	 * Writes the least recently used changes to the temporary store until the number of
+	 * changes in memory is within the limit. Changes that can not be stored are kept in
+	 * memory.
+	 */
+	private void spill() {
+		if (fMap.size() <= fMaxChangesInMemory)
+			return;
+
+		int excess= fMap.size() - fMaxChangesInMemory;
+		List<ICompilationUnit> spilled= new ArrayList<ICompilationUnit>(excess);
+		for (Iterator<Map.Entry<ICompilationUnit, TextChange>> iter= fMap.entrySet().iterator(); iter.hasNext() && spilled.size() < excess;) {
+			Map.Entry<ICompilationUnit, TextChange> entry= iter.next();
+			ICompilationUnit cu= entry.getKey();
+			TextChange change= entry.getValue();
+			if (!TextChangeStore.canStore(cu, change))
+				continue;
+			try {
+				if (fStore == null)
+					fStore= new TextChangeStore();
+				fStored.put(cu, fStore.write((CompilationUnitChange) change));
+				spilled.add(cu);
+			} catch (IOException e) {
+				// keep the remaining changes in memory
+				JavaPlugin.log(e);
+				break;
+			}
+		}
+		for (Iterator<ICompilationUnit> iter= spilled.iterator(); iter.hasNext();) {
+			fMap.remove(iter.next());
+		}
+	}
+
+	private TextChange readStored(ICompilationUnit cu) {
+		if (fStored == null)
+			return null;
+		TextChangeStore.Record record= fStored.remove(cu);
+		if (record == null)
+			return null;
+		try {
+			return fStore.read(record, cu);
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			return null;
+		} finally {
+			fStore.release(record);
+		}
+	}
+
+	private TextChange readStoredCopy(ICompilationUnit cu) {
+		TextChangeStore.Record record= fStored.get(cu);
+		try {
+			return fStore.read(record, cu);
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			return null;
+		}
+	}
+
+	private void releaseStored(ICompilationUnit cu) {
+		if (fStored == null)
+			return;
+		TextChangeStore.Record record= fStored.remove(cu);
+		if (record != null)
+			fStore.release(record);
 	}
 }
 
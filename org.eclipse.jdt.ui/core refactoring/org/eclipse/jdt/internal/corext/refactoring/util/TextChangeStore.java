@@ -0,0 +1,485 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.TextEditGroup;
+
+import org.eclipse.ltk.core.refactoring.CategorizedTextEditGroup;
+import org.eclipse.ltk.core.refactoring.GroupCategory;
+import org.eclipse.ltk.core.refactoring.GroupCategorySet;
+import org.eclipse.ltk.core.refactoring.TextChange;
+import org.eclipse.ltk.core.refactoring.TextEditChangeGroup;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * A temporary file holding serialized {@link CompilationUnitChange}s.
+ * <p>
+ * Only changes whose edit trees consist of {@link MultiTextEdit}s, {@link ReplaceEdit}s,
+ * {@link InsertEdit}s and {@link DeleteEdit}s can be stored. The regions of released
+ * records are reused by later records, and free regions at the end of the file are
+ * truncated. The file is deleted as soon as all records have been released. Group categories are not serialized but kept in
+ * memory, since they are shared by all changes of a refactoring.
+ * </p>
+ * <p>
+ * The store is thread safe.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class TextChangeStore {
+
+	private static final byte MULTI= 0;
+	private static final byte REPLACE= 1;
+	private static final byte INSERT= 2;
+	private static final byte DELETE= 3;
+
+	private static final String ENCODING= "UTF-8"; //$NON-NLS-1$
+
+	/**
+	 * A stored change.
+	 */
+	static final class Record {
+
+		private final long fOffset;
+		private final int fLength;
+		private final long fModificationStamp;
+
+		private Record(long offset, int length, long modificationStamp) {
+			fOffset= offset;
+			fLength= length;
+			fModificationStamp= modificationStamp;
+		}
+
+		/**
+		 * @return the modification stamp of the file when the change was stored
+		 */
+		public long getModificationStamp() {
+			return fModificationStamp;
+		}
+	}
+
+	private final List<GroupCategory> fCategories;
+
+	/**
+	 * The free regions of the file, from offset to length. Adjacent regions are merged.
+	 */
+	private final SortedMap<Long, Integer> fFreeRegions;
+
+	private File fFile;
+	private RandomAccessFile fAccess;
+	private int fLiveRecords;
+
+	public TextChangeStore() {
+		fCategories= new ArrayList<GroupCategory>();
+		fFreeRegions= new TreeMap<Long, Integer>();
+	}
+
+	/**
+	 * Tells whether the given change can be stored. Changes on files which are open in a
+	 * buffer are not stored, since they may be modified before they are performed.
+	 *
+	 * @param cu the compilation unit of the change
+	 * @param change the change
+	 * @return <code>true</code> if the change can be stored
+	 */
+	public static boolean canStore(ICompilationUnit cu, TextChange change) {
+		if (change.getClass() != CompilationUnitChange.class || change.getDescriptor() != null)
+			return false;
+
+		if (cu.isWorkingCopy())
+			return false;
+
+		IFile file= ((CompilationUnitChange) change).getFile();
+		if (file == null || !file.exists())
+			return false;
+
+		IPath path= file.getFullPath();
+		if (FileBuffers.getTextFileBufferManager().getTextFileBuffer(path, LocationKind.IFILE) != null)
+			return false;
+
+		TextEdit edit= change.getEdit();
+		if (edit != null && !isSupported(edit))
+			return false;
+
+		Map<TextEdit, Integer> indices= index(edit);
+		TextEditChangeGroup[] groups= change.getTextEditChangeGroups();
+		for (int i= 0; i < groups.length; i++) {
+			TextEdit[] edits= groups[i].getTextEdits();
+			for (int j= 0; j < edits.length; j++) {
+				if (!indices.containsKey(edits[j]))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSupported(TextEdit edit) {
+		Class<? extends TextEdit> clazz= edit.getClass();
+		if (clazz != MultiTextEdit.class && clazz != ReplaceEdit.class && clazz != InsertEdit.class && clazz != DeleteEdit.class)
+			return false;
+
+		TextEdit[] children= edit.getChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (!isSupported(children[i]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the given change to the store. The change must be storable.
+	 *
+	 * @param change the change to store
+	 * @return the record of the stored change
+	 * @throws IOException if the change can not be written
+	 * @see #canStore(ICompilationUnit, TextChange)
+	 */
+	public Record write(CompilationUnitChange change) throws IOException {
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		DataOutputStream out= new DataOutputStream(bytes);
+
+		writeString(out, change.getName());
+		out.writeInt(change.getSaveMode());
+		out.writeBoolean(change.getKeepPreviewEdits());
+		out.writeBoolean(change.isEnabled());
+		writeString(out, change.getTextType());
+
+		TextEdit root= change.getEdit();
+		out.writeBoolean(root != null);
+		if (root != null)
+			writeEdit(out, root);
+
+		Map<TextEdit, Integer> indices= index(root);
+		TextEditChangeGroup[] groups= change.getTextEditChangeGroups();
+		out.writeInt(groups.length);
+		for (int i= 0; i < groups.length; i++) {
+			TextEditChangeGroup group= groups[i];
+			writeString(out, group.getName());
+			out.writeBoolean(group.isEnabled());
+
+			TextEdit[] edits= group.getTextEdits();
+			out.writeInt(edits.length);
+			for (int j= 0; j < edits.length; j++) {
+				out.writeInt(indices.get(edits[j]).intValue());
+			}
+
+			List<GroupCategory> categories= getCategories(group.getGroupCategorySet());
+			out.writeInt(categories.size());
+			for (Iterator<GroupCategory> iter= categories.iterator(); iter.hasNext();) {
+				out.writeInt(getCategoryIndex(iter.next()));
+			}
+		}
+		out.close();
+
+		long modificationStamp= change.getFile().getModificationStamp();
+		synchronized (this) {
+			if (fAccess == null) {
+				fFile= File.createTempFile("jdtTextChanges", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+				fFile.deleteOnExit();
+				fAccess= new RandomAccessFile(fFile, "rw"); //$NON-NLS-1$
+			}
+			long offset= allocate(bytes.size());
+			fAccess.seek(offset);
+			fAccess.write(bytes.toByteArray());
+			fLiveRecords++;
+			return new Record(offset, bytes.size(), modificationStamp);
+		}
+	}
+
+	/**
+	 * Returns the offset of a region of the given length, reusing the first free region
+	 * that is large enough.
+	 *
+	 * @param length the length of the region
+	 * @return the offset of the region
+	 * @throws IOException if the length of the file can not be determined
+	 */
+	private long allocate(int length) throws IOException {
+		for (Iterator<Map.Entry<Long, Integer>> iter= fFreeRegions.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<Long, Integer> region= iter.next();
+			int free= region.getValue().intValue();
+			if (free >= length) {
+				long offset= region.getKey().longValue();
+				iter.remove();
+				if (free > length)
+					fFreeRegions.put(new Long(offset + length), new Integer(free - length));
+				return offset;
+			}
+		}
+		return fAccess.length();
+	}
+
+	/**
+	 * Marks the given region as free. Merges it with adjacent free regions and truncates
+	 * the file if the region is at its end.
+	 *
+	 * @param offset the offset of the region
+	 * @param length the length of the region
+	 * @throws IOException if the file can not be truncated
+	 */
+	private void free(long offset, int length) throws IOException {
+		SortedMap<Long, Integer> before= fFreeRegions.headMap(new Long(offset));
+		if (!before.isEmpty()) {
+			Long previous= before.lastKey();
+			int previousLength= fFreeRegions.get(previous).intValue();
+			if (previous.longValue() + previousLength == offset) {
+				fFreeRegions.remove(previous);
+				offset= previous.longValue();
+				length+= previousLength;
+			}
+		}
+		Integer nextLength= fFreeRegions.remove(new Long(offset + length));
+		if (nextLength != null)
+			length+= nextLength.intValue();
+
+		if (offset + length == fAccess.length()) {
+			fAccess.setLength(offset);
+		} else {
+			fFreeRegions.put(new Long(offset), new Integer(length));
+		}
+	}
+
+	/**
+	 * Reads a change from the store. The record stays valid.
+	 *
+	 * @param record the record of the change
+	 * @param cu the compilation unit of the change
+	 * @return the change
+	 * @throws IOException if the change can not be read
+	 */
+	public CompilationUnitChange read(Record record, ICompilationUnit cu) throws IOException {
+		byte[] bytes= new byte[record.fLength];
+		synchronized (this) {
+			fAccess.seek(record.fOffset);
+			fAccess.readFully(bytes);
+		}
+
+		DataInputStream in= new DataInputStream(new ByteArrayInputStream(bytes));
+		CompilationUnitChange change= new CompilationUnitChange(readString(in), cu);
+		change.setSaveMode(in.readInt());
+		change.setKeepPreviewEdits(in.readBoolean());
+		change.setEnabled(in.readBoolean());
+		change.setTextType(readString(in));
+
+		List<TextEdit> edits= new ArrayList<TextEdit>();
+		if (in.readBoolean())
+			change.setEdit(readEdit(in, edits));
+
+		int groupCount= in.readInt();
+		for (int i= 0; i < groupCount; i++) {
+			String name= readString(in);
+			boolean enabled= in.readBoolean();
+
+			TextEdit[] groupEdits= new TextEdit[in.readInt()];
+			for (int j= 0; j < groupEdits.length; j++) {
+				groupEdits[j]= edits.get(in.readInt());
+			}
+
+			GroupCategory[] categories= new GroupCategory[in.readInt()];
+			for (int j= 0; j < categories.length; j++) {
+				categories[j]= getCategory(in.readInt());
+			}
+
+			TextEditGroup group;
+			if (categories.length == 0) {
+				group= new TextEditGroup(name, groupEdits);
+			} else {
+				group= new CategorizedTextEditGroup(name, groupEdits, new GroupCategorySet(categories));
+			}
+			TextEditChangeGroup changeGroup= new TextEditChangeGroup(change, group);
+			changeGroup.setEnabled(enabled);
+			change.addTextEditChangeGroup(changeGroup);
+		}
+		return change;
+	}
+
+	/**
+	 * Releases a record. Its region is reused by later records. The store is deleted
+	 * when all records have been released.
+	 *
+	 * @param record the record to release
+	 */
+	public synchronized void release(Record record) {
+		fLiveRecords--;
+		if (fAccess == null)
+			return;
+
+		if (fLiveRecords == 0) {
+			try {
+				fAccess.close();
+			} catch (IOException e) {
+				// the file is deleted anyway
+			}
+			fFile.delete();
+			fAccess= null;
+			fFile= null;
+			fFreeRegions.clear();
+		} else {
+			try {
+				free(record.fOffset, record.fLength);
+			} catch (IOException e) {
+				// the region is not reused
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the temporary file.
+	 *
+	 * @return the length of the file in bytes, or <code>0</code> if there is no file
+	 * @throws IOException if the length can not be determined
+	 */
+	synchronized long getFileLength() throws IOException {
+		return fAccess != null ? fAccess.length() : 0;
+	}
+
+	/**
+	 * Returns the edits of the tree in pre-order, mapped to their position.
+	 *
+	 * @param root the root of the edit tree, or <code>null</code>
+	 * @return the map from edit to its position
+	 */
+	private static Map<TextEdit, Integer> index(TextEdit root) {
+		Map<TextEdit, Integer> result= new IdentityHashMap<TextEdit, Integer>();
+		if (root != null)
+			index(root, result);
+		return result;
+	}
+
+	private static void index(TextEdit edit, Map<TextEdit, Integer> result) {
+		result.put(edit, new Integer(result.size()));
+		TextEdit[] children= edit.getChildren();
+		for (int i= 0; i < children.length; i++) {
+			index(children[i], result);
+		}
+	}
+
+	private static void writeEdit(DataOutputStream out, TextEdit edit) throws IOException {
+		if (edit instanceof ReplaceEdit) {
+			out.writeByte(REPLACE);
+			writeString(out, ((ReplaceEdit) edit).getText());
+		} else if (edit instanceof InsertEdit) {
+			out.writeByte(INSERT);
+			writeString(out, ((InsertEdit) edit).getText());
+		} else if (edit instanceof DeleteEdit) {
+			out.writeByte(DELETE);
+		} else {
+			out.writeByte(MULTI);
+		}
+		out.writeInt(edit.getOffset());
+		out.writeInt(edit.getLength());
+
+		TextEdit[] children= edit.getChildren();
+		out.writeInt(children.length);
+		for (int i= 0; i < children.length; i++) {
+			writeEdit(out, children[i]);
+		}
+	}
+
+	private static TextEdit readEdit(DataInputStream in, List<TextEdit> edits) throws IOException {
+		byte kind= in.readByte();
+		String text= kind == REPLACE || kind == INSERT ? readString(in) : null;
+		int offset= in.readInt();
+		int length= in.readInt();
+
+		TextEdit edit;
+		switch (kind) {
+			case REPLACE:
+				edit= new ReplaceEdit(offset, length, text);
+				break;
+			case INSERT:
+				edit= new InsertEdit(offset, text);
+				break;
+			case DELETE:
+				edit= new DeleteEdit(offset, length);
+				break;
+			default:
+				edit= new MultiTextEdit(offset, length);
+				break;
+		}
+		edits.add(edit);
+
+		int childCount= in.readInt();
+		for (int i= 0; i < childCount; i++) {
+			edit.addChild(readEdit(in, edits));
+		}
+		return edit;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<GroupCategory> getCategories(GroupCategorySet set) {
+		return set.asList();
+	}
+
+	private synchronized int getCategoryIndex(GroupCategory category) {
+		for (int i= 0; i < fCategories.size(); i++) {
+			if (fCategories.get(i) == category)
+				return i;
+		}
+		fCategories.add(category);
+		return fCategories.size() - 1;
+	}
+
+	private synchronized GroupCategory getCategory(int index) {
+		return fCategories.get(index);
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes= string.getBytes(ENCODING);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length= in.readInt();
+		if (length == -1)
+			return null;
+		byte[] bytes= new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, ENCODING);
+	}
+}
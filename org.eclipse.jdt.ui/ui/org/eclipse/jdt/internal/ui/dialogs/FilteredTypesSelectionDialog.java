@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,8 +18,11 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Font;
@@ -35,6 +38,7 @@ import org.eclipse.swt.widgets.Text;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
@@ -95,6 +99,7 @@ import org.eclipse.jdt.internal.corext.util.Strings;
 import org.eclipse.jdt.internal.corext.util.TypeFilter;
 import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
 import org.eclipse.jdt.internal.corext.util.TypeInfoRequestorAdapter;
+import org.eclipse.jdt.internal.corext.util.TypeNameSnapshot;
 
 import org.eclipse.jdt.launching.IVMInstall;
 import org.eclipse.jdt.launching.IVMInstallType;
@@ -179,6 +184,20 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 
 	private TypeItemsFilter fFilter;
 
+	/**
+	 * The job reconciling the type name snapshot, or <code>null</code>.
+	 *
+	 * @since 3.8
+	 */
+	private SnapshotJob fSnapshotJob;
+
+	/**
+	 * Tells whether the dialog has been closed, after which no snapshot job is scheduled.
+	 *
+	 * @since 3.8
+	 */
+	private boolean fIsClosed;
+
 	/**
 	 * Creates new FilteredTypesSelectionDialog instance
 	 *
@@ -550,9 +569,24 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	protected void fillContentProvider(AbstractContentProvider provider, ItemsFilter itemsFilter, IProgressMonitor progressMonitor) throws CoreException {
 		TypeItemsFilter typeSearchFilter= (TypeItemsFilter) itemsFilter;
 		TypeSearchRequestor requestor= new TypeSearchRequestor(provider, typeSearchFilter);
+		fTypeItemsComparator.clearKeys();
+		progressMonitor.setTaskName(JavaUIMessages.FilteredTypesSelectionDialog_searchJob_taskName);
+
+		if (isWorkspaceScope(typeSearchFilter.getSearchScope())) {
+			TypeNameSnapshot snapshot= TypeNameSnapshot.getInstance();
+			boolean isPrevious= !snapshot.isReconciled() && snapshot.isAvailable();
+			if (snapshot.needsReconcile())
+				scheduleSnapshotJob(isPrevious);
+			if (isPrevious || (snapshot.isAvailable() && !snapshot.needsReconcile())) {
+				// show the types of the last session until the search engine is ready, and the
+				// incrementally updated types afterwards
+				snapshot.collect(typeSearchFilter.getTypeInfoFilter(), requestor, progressMonitor);
+				return;
+			}
+		}
+
 		SearchEngine engine= new SearchEngine((WorkingCopyOwner) null);
 		String packPattern= typeSearchFilter.getPackagePattern();
-		progressMonitor.setTaskName(JavaUIMessages.FilteredTypesSelectionDialog_searchJob_taskName);
 
 		/*
 		 * Setting the filter into match everything mode avoids filtering twice
@@ -689,7 +723,7 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	@Override
 	public void reloadCache(boolean checkDuplicates, IProgressMonitor monitor) {
 		IProgressMonitor remainingMonitor;
-		if (ConsistencyRunnable.needsExecution()) {
+		if (ConsistencyRunnable.needsExecution() && !canShowSnapshot()) {
 			monitor.beginTask(JavaUIMessages.TypeSelectionDialog_progress_consistency, 10);
 			try {
 				ConsistencyRunnable runnable= new ConsistencyRunnable();
@@ -711,6 +745,96 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 		monitor.done();
 	}
 
+	/**
+	 * Tells whether the types can be shown from the type name snapshot, in which case the
+	 * consistency check is done by the snapshot job.
+	 *
+	 * @return <code>true</code> if the snapshot can be shown
+	 * @since 3.8
+	 */
+	private boolean canShowSnapshot() {
+		if (!isWorkspaceScope(fSearchScope))
+			return false;
+		TypeNameSnapshot snapshot= TypeNameSnapshot.getInstance();
+		return !snapshot.isReconciled() && snapshot.isAvailable();
+	}
+
+	private static boolean isWorkspaceScope(IJavaSearchScope scope) {
+		return scope.equals(SearchEngine.createWorkspaceScope());
+	}
+
+	private synchronized void scheduleSnapshotJob(boolean refresh) {
+		if (fIsClosed || (fSnapshotJob != null && fSnapshotJob.getState() != Job.NONE))
+			return;
+		fSnapshotJob= new SnapshotJob(refresh);
+		fSnapshotJob.schedule();
+	}
+
+	/*
+	 * @see org.eclipse.ui.dialogs.FilteredItemsSelectionDialog#close()
+	 * @since 3.8
+	 */
+	@Override
+	public boolean close() {
+		synchronized (this) {
+			// a search that is still running must not schedule a new job
+			fIsClosed= true;
+			if (fSnapshotJob != null)
+				fSnapshotJob.cancel();
+		}
+		return super.close();
+	}
+
+	/**
+	 * Reconciles the type name snapshot in the background and, if the dialog shows the
+	 * snapshot, checks the consistency of the history and searches again afterwards.
+	 *
+	 * @since 3.8
+	 */
+	private class SnapshotJob extends Job {
+
+		private final boolean fRefresh;
+
+		public SnapshotJob(boolean refresh) {
+			super(JavaUIMessages.FilteredTypesSelectionDialog_snapshotJob_name);
+			fRefresh= refresh;
+			setSystem(true);
+			setPriority(Job.LONG);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				if (fRefresh && ConsistencyRunnable.needsExecution())
+					new ConsistencyRunnable().run(monitor);
+				TypeNameSnapshot.getInstance().reconcile(monitor);
+			} catch (InvocationTargetException e) {
+				JavaPlugin.log(e);
+				return Status.CANCEL_STATUS;
+			} catch (InterruptedException e) {
+				return Status.CANCEL_STATUS;
+			} catch (OperationCanceledException e) {
+				return Status.CANCEL_STATUS;
+			} catch (JavaModelException e) {
+				JavaPlugin.log(e);
+				return Status.CANCEL_STATUS;
+			}
+
+			if (fRefresh) {
+				final Shell shell= getShell();
+				if (shell != null && !shell.isDisposed()) {
+					shell.getDisplay().asyncExec(new Runnable() {
+						public void run() {
+							if (!shell.isDisposed())
+								triggerSearch();
+						}
+					});
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
 	/*
 	 * @see org.eclipse.jdt.ui.dialogs.ITypeSelectionComponent#triggerSearch()
 	 */
@@ -1189,6 +1313,10 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			return fTypeInfoFilter.getElementKind();
 		}
 
+		public TypeInfoFilter getTypeInfoFilter() {
+			return fTypeInfoFilter;
+		}
+
 		public IJavaSearchScope getSearchScope() {
 			return fTypeInfoFilter.getSearchScope();
 		}
@@ -1352,16 +1480,51 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	}
 
 	/**
-	 * Compares TypeItems is used during sorting
+	 * Compares TypeItems is used during sorting. The names, container names and categories of the
+	 * compared types are computed once per type and package fragment root, not per comparison.
 	 */
 	private static class TypeItemsComparator implements Comparator<TypeNameMatch> {
 
+		/**
+		 * The precomputed sort key of a type.
+		 */
+		private static class TypeKey {
+			final String fSimpleTypeName;
+			final String fTypeContainerName;
+			final boolean fIsDeprecated;
+			final RootKey fRootKey;
+
+			TypeKey(TypeNameMatch type, RootKey rootKey) {
+				fSimpleTypeName= type.getSimpleTypeName();
+				fTypeContainerName= type.getTypeContainerName();
+				fIsDeprecated= Flags.isDeprecated(type.getModifiers());
+				fRootKey= rootKey;
+			}
+		}
+
+		/**
+		 * The precomputed sort key of a package fragment root.
+		 */
+		private static class RootKey {
+			final int fCategory;
+			final String fContainerName;
+
+			RootKey(int category, String containerName) {
+				fCategory= category;
+				fContainerName= containerName;
+			}
+		}
+
 		private final Map<String, String> fLib2Name= new HashMap<String, String>();
 
 		private final String[] fInstallLocations;
 
 		private final String[] fVMNames;
 
+		private final Map<TypeNameMatch, TypeKey> fTypeKeys= new IdentityHashMap<TypeNameMatch, TypeKey>();
+
+		private final Map<IPackageFragmentRoot, RootKey> fRootKeys= new HashMap<IPackageFragmentRoot, RootKey>();
+
 		/**
 		 * Creates new instance of TypeItemsComparator
 		 */
@@ -1410,31 +1573,56 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			return MessageFormat.format(JavaUIMessages.FilteredTypesSelectionDialog_library_name_format, new Object[] { name });
 		}
 
+		/**
+		 * Forgets the sort keys of the types, e.g. before the types of a new search are added.
+		 * The keys of the package fragment roots are kept.
+		 */
+		public synchronized void clearKeys() {
+			fTypeKeys.clear();
+		}
+
+		private synchronized TypeKey getKey(TypeNameMatch type) {
+			TypeKey key= fTypeKeys.get(type);
+			if (key == null) {
+				IPackageFragmentRoot root= type.getPackageFragmentRoot();
+				RootKey rootKey= fRootKeys.get(root);
+				if (rootKey == null) {
+					rootKey= new RootKey(getElementTypeCategory(root), getContainerName(root));
+					fRootKeys.put(root, rootKey);
+				}
+				key= new TypeKey(type, rootKey);
+				fTypeKeys.put(type, key);
+			}
+			return key;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 *
 		 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
 		 */
 		public int compare(TypeNameMatch leftInfo, TypeNameMatch rightInfo) {
-			int result= compareName(leftInfo.getSimpleTypeName(), rightInfo.getSimpleTypeName());
+			TypeKey left= getKey(leftInfo);
+			TypeKey right= getKey(rightInfo);
+			int result= compareName(left.fSimpleTypeName, right.fSimpleTypeName);
 			if (result != 0)
 				return result;
 			
-			result= compareDeprecation(leftInfo.getModifiers(), rightInfo.getModifiers());
+			result= compareDeprecation(left.fIsDeprecated, right.fIsDeprecated);
 			if (result != 0)
 				return result;
 			
-			result= compareTypeContainerName(leftInfo.getTypeContainerName(), rightInfo.getTypeContainerName());
+			result= compareTypeContainerName(left.fTypeContainerName, right.fTypeContainerName);
 			if (result != 0)
 				return result;
 
-			int leftCategory= getElementTypeCategory(leftInfo);
-			int rightCategory= getElementTypeCategory(rightInfo);
+			int leftCategory= left.fRootKey.fCategory;
+			int rightCategory= right.fRootKey.fCategory;
 			if (leftCategory < rightCategory)
 				return -1;
 			if (leftCategory > rightCategory)
 				return +1;
-			return compareContainerName(leftInfo, rightInfo);
+			return left.fRootKey.fContainerName.compareTo(right.fRootKey.fContainerName);
 		}
 
 		private int compareName(String leftString, String rightString) {
@@ -1450,9 +1638,8 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			}
 		}
 		
-		private int compareDeprecation(int leftType, int rightType) {
-			boolean rightIsDeprecated= Flags.isDeprecated(rightType);
-			if (Flags.isDeprecated(leftType))
+		private int compareDeprecation(boolean leftIsDeprecated, boolean rightIsDeprecated) {
+			if (leftIsDeprecated)
 				return rightIsDeprecated ? 0 : +1;
 			return rightIsDeprecated ? -1 : 0;
 		}
@@ -1469,12 +1656,7 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			return compareName(leftString, rightString);
 		}
 
-		private int compareContainerName(TypeNameMatch leftType, TypeNameMatch rightType) {
-			return getContainerName(leftType).compareTo(getContainerName(rightType));
-		}
-
-		private String getContainerName(TypeNameMatch type) {
-			IPackageFragmentRoot root= type.getPackageFragmentRoot();
+		private String getContainerName(IPackageFragmentRoot root) {
 			if (root.isExternal()) {
 				String name= root.getPath().toOSString();
 				for (int i= 0; i < fInstallLocations.length; i++) {
@@ -1491,9 +1673,9 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			return buf.toString();
 		}
 
-		private int getElementTypeCategory(TypeNameMatch type) {
+		private int getElementTypeCategory(IPackageFragmentRoot root) {
 			try {
-				if (type.getPackageFragmentRoot().getKind() == IPackageFragmentRoot.K_SOURCE)
+				if (root.getKind() == IPackageFragmentRoot.K_SOURCE)
 					return 0;
 			} catch (JavaModelException e) {
 				JavaPlugin.log(e);
@@ -1505,9 +1687,16 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	/**
 	 * Extends the <code>SelectionHistory</code>, providing support for
 	 * <code>OpenTypeHistory</code>.
+	 * <p>
+	 * The dialog asks whether an item is in the history for each comparison while sorting, so
+	 * the items are also kept in a hash set.
+	 * </p>
 	 */
 	protected class TypeSelectionHistory extends SelectionHistory {
 
+		/** The history items, or <code>null</code> if they have to be computed. */
+		private Set<Object> fItemSet;
+
 		/**
 		 * Creates new instance of TypeSelectionHistory
 		 */
@@ -1524,6 +1713,23 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 		@Override
 		public synchronized void accessed(Object object) {
 			super.accessed(object);
+			fItemSet= null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see org.eclipse.ui.dialogs.FilteredItemsSelectionDialog.SelectionHistory#contains(java.lang.Object)
+		 */
+		@Override
+		public synchronized boolean contains(Object object) {
+			if (fItemSet == null) {
+				Object[] items= getHistoryItems();
+				fItemSet= new HashSet<Object>(2 * items.length);
+				for (int i= 0; i < items.length; i++)
+					fItemSet.add(items[i]);
+			}
+			return fItemSet.contains(object);
 		}
 
 		/*
@@ -1534,6 +1740,7 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 		@Override
 		public synchronized boolean remove(Object element) {
 			OpenTypeHistory.getInstance().remove((TypeNameMatch) element);
+			fItemSet= null;
 			return super.remove(element);
 		}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -95,6 +95,48 @@ public abstract class AbstractCleanUp implements ICleanUp {
 		return new RefactoringStatus();
 	}
 
+	/**
+	 * Creates a new clean up with the same options as this clean up. The copy does
+	 * not share any state with this clean up, such that both can create fixes for
+	 * different compilation units at the same time. The pre- and post conditions
+	 * of the copy are checked independently of this clean up.
+	 * <p>
+	 * Returns <code>null</code> by default. Subclasses whose fixes are known to not
+	 * share any state may override, see {@link #copyOptionsTo(AbstractCleanUp)}.
+	 * </p>
+	 *
+	 * @return a new clean up, or <code>null</code> if this clean up can not be copied
+	 * @since 3.8
+	 */
+	public AbstractCleanUp createConcurrentCopy() {
+		return null;
+	}
+
+	/**
+	 * Sets the options of this clean up on the given copy.
+	 *
+	 * @param copy a new instance of the class of this clean up
+	 * @return the copy, or <code>null</code> if the options are not set or the copy is not of
+	 *         the same class as this clean up, e.g. because this clean up is a subclass
+	 * @see #createConcurrentCopy()
+	 * @since 3.8
+	 */
+	protected final AbstractCleanUp copyOptionsTo(AbstractCleanUp copy) {
+		if (fOptions == null || copy.getClass() != getClass())
+			return null;
+
+		copy.setOptions(fOptions);
+		return copy;
+	}
+
+	/**
+	 * @return the options of this clean up or <code>null</code> if not set
+	 * @since 3.8
+	 */
+	public CleanUpOptions getOptions() {
+		return fOptions;
+	}
+
 	/**
 	 * @param key the name of the option
 	 * @return <code>true</code> if option with <code>key</code> is enabled
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,14 @@ public class ConvertLoopCleanUp extends AbstractCleanUp {
 		super();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public AbstractCleanUp createConcurrentCopy() {
+		return copyOptionsTo(new ConvertLoopCleanUp());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,6 +44,18 @@ public class ImportsCleanUp extends AbstractCleanUp {
 		super();
     }
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The state of a copy is confined to the copy, its pre- and post conditions are checked
+	 * independently.
+	 * </p>
+	 */
+	@Override
+	public AbstractCleanUp createConcurrentCopy() {
+		return copyOptionsTo(new ImportsCleanUp());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
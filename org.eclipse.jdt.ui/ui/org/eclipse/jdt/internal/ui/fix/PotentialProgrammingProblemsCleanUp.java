@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -165,6 +165,21 @@ public class PotentialProgrammingProblemsCleanUp extends AbstractMultiFix {
 		return PotentialProgrammingProblemsFix.checkPostConditions(monitor);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The serial version context is shared by all instances. The context computing
+	 * the serial version hashes must not be used concurrently.
+	 * </p>
+	 */
+	@Override
+	public AbstractCleanUp createConcurrentCopy() {
+		if (isEnabled(CleanUpConstants.ADD_MISSING_SERIAL_VERSION_ID) && isEnabled(CleanUpConstants.ADD_MISSING_SERIAL_VERSION_ID_GENERATED))
+			return null;
+
+		return copyOptionsTo(new PotentialProgrammingProblemsCleanUp());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,7 +10,12 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.javaeditor;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
@@ -20,12 +25,16 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
 import org.eclipse.ui.IPartListener2;
 import org.eclipse.ui.IWindowListener;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.IWorkbenchPartReference;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.texteditor.IDocumentProvider;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.ITypeRoot;
@@ -48,6 +57,11 @@ import org.eclipse.jdt.internal.ui.JavaPlugin;
 /**
  * Provides a shared AST for clients. The shared AST is
  * the AST of the active Java editor's input element.
+ * <p>
+ * The ASTs of recently active Java editors are kept as well, as long as their
+ * documents are not modified, such that switching between editors does not
+ * require to create the AST again.
+ * </p>
  *
  * @since 3.0
  */
@@ -104,6 +118,9 @@ public final class ASTProvider {
 		 * @see org.eclipse.ui.IPartListener2#partClosed(org.eclipse.ui.IWorkbenchPartReference)
 		 */
 		public void partClosed(IWorkbenchPartReference ref) {
+			if (isJavaEditor(ref))
+				fRecentASTs.remove(getInputJavaElement(ref.getPart(false)));
+
 			if (isActiveEditor(ref)) {
 				if (DEBUG)
 					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "closed active editor: " + ref.getTitle()); //$NON-NLS-1$ //$NON-NLS-2$
@@ -144,6 +161,9 @@ public final class ASTProvider {
 		 * @see org.eclipse.ui.IPartListener2#partInputChanged(org.eclipse.ui.IWorkbenchPartReference)
 		 */
 		public void partInputChanged(IWorkbenchPartReference ref) {
+			if (isJavaEditor(ref))
+				fRecentASTs.remove(getInputJavaElement(ref.getPart(false)));
+
 			if (isJavaEditor(ref) && isActiveEditor(ref))
 				activeJavaEditorChanged(ref.getPart(true));
 		}
@@ -202,6 +222,119 @@ public final class ASTProvider {
 		}
 	}
 
+	/**
+	 * Keeps the ASTs of recently active Java elements. An AST is only returned
+	 * as long as the document it has been created from is not modified.
+	 * The cache is bounded by the number of entries only: the memory retained by
+	 * an AST is dominated by its binding environment, which cannot be measured
+	 * cheaply, and walking the AST would slow down every editor switch.
+	 *
+	 * @since 3.8
+	 */
+	private static final class RecentASTCache {
+
+		private static final class Entry {
+			final CompilationUnit fAST;
+			final IDocument fDocument;
+			final long fModificationStamp;
+
+			Entry(CompilationUnit ast, IDocument document, long modificationStamp) {
+				fAST= ast;
+				fDocument= document;
+				fModificationStamp= modificationStamp;
+			}
+
+			boolean isValid(IDocument document) {
+				return (document == null || document == fDocument) && fModificationStamp == getModificationStamp(fDocument);
+			}
+		}
+
+		/**
+		 * Maximal number of cached ASTs. ASTs with bindings are large, so keep this small.
+		 */
+		private static final int MAX_ENTRIES= 4;
+
+		private final LinkedHashMap<ITypeRoot, Entry> fEntries= new LinkedHashMap<ITypeRoot, Entry>(MAX_ENTRIES, 0.75f, true);
+
+		/**
+		 * Caches the AST of an element that is no longer active.
+		 *
+		 * @param javaElement the Java element
+		 * @param ast the AST of the element
+		 * @param document the document from which the AST has been created
+		 * @param modificationStamp the modification stamp of the document the AST corresponds to
+		 */
+		public synchronized void put(ITypeRoot javaElement, CompilationUnit ast, IDocument document, long modificationStamp) {
+			remove(javaElement);
+			fEntries.put(javaElement, new Entry(ast, document, modificationStamp));
+
+			Iterator<Entry> iter= fEntries.values().iterator();
+			while (iter.hasNext() && fEntries.size() > MAX_ENTRIES) {
+				iter.next();
+				iter.remove();
+			}
+		}
+
+		/**
+		 * Returns the cached AST for the given element, if the AST is still valid.
+		 *
+		 * @param javaElement the Java element
+		 * @param document the document the AST must have been created from, or <code>null</code>
+		 * 			to accept the document from which the AST has been created
+		 * @return the AST or <code>null</code> if no valid AST is cached
+		 */
+		public synchronized CompilationUnit get(ITypeRoot javaElement, IDocument document) {
+			Entry entry= fEntries.get(javaElement);
+			if (entry == null)
+				return null;
+
+			if (!entry.isValid(document)) {
+				remove(javaElement);
+				return null;
+			}
+			return entry.fAST;
+		}
+
+		/**
+		 * Returns the modification stamp the cached AST for the given element corresponds to.
+		 *
+		 * @param javaElement the Java element
+		 * @return the modification stamp or {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+		 */
+		public synchronized long getASTModificationStamp(ITypeRoot javaElement) {
+			Entry entry= fEntries.get(javaElement);
+			return entry != null ? entry.fModificationStamp : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		}
+
+		public synchronized void remove(ITypeRoot javaElement) {
+			if (javaElement == null)
+				return;
+
+			fEntries.remove(javaElement);
+		}
+
+		public synchronized boolean contains(CompilationUnit ast) {
+			for (Iterator<Entry> iter= fEntries.values().iterator(); iter.hasNext();) {
+				if (iter.next().fAST == ast)
+					return true;
+			}
+			return false;
+		}
+
+		public synchronized void clear() {
+			fEntries.clear();
+		}
+	}
+
+	/**
+	 * A lock on which threads wait for the AST of a Java element.
+	 *
+	 * @since 3.8
+	 */
+	private static final class WaitLock {
+		int fWaiters= 0;
+	}
+
 	public static final int SHARED_AST_LEVEL= AST.JLS4;
 	public static final boolean SHARED_AST_STATEMENT_RECOVERY= true;
 	public static final boolean SHARED_BINDING_RECOVERY= true;
@@ -214,9 +347,13 @@ public final class ASTProvider {
 	private CompilationUnit fAST;
 	private ActivationListener fActivationListener;
 	private Object fReconcileLock= new Object();
-	private Object fWaitLock= new Object();
+	private final Map<ITypeRoot, WaitLock> fWaitLocks= new HashMap<ITypeRoot, WaitLock>();
 	private volatile boolean fIsReconciling;
 	private IWorkbenchPart fActiveEditor;
+	private IDocument fActiveDocument;
+	private long fReconcileModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	private long fASTModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	private final RecentASTCache fRecentASTs= new RecentASTCache();
 
 
 	/**
@@ -252,14 +389,35 @@ public final class ASTProvider {
 
 	void activeJavaEditorChanged(IWorkbenchPart editor) {
 
-		ITypeRoot javaElement= null;
-		if (editor instanceof JavaEditor)
-			javaElement= ((JavaEditor)editor).getInputJavaElement();
+		ITypeRoot javaElement= getInputJavaElement(editor);
+		IDocument document= getDocument(editor);
 
 		synchronized (this) {
+			if (fAST != null && fActiveJavaElement != null && fActiveDocument != null && fASTModificationStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP)
+				fRecentASTs.put(fActiveJavaElement, fAST, fActiveDocument, fASTModificationStamp);
+
 			fActiveEditor= editor;
 			fActiveJavaElement= javaElement;
-			cache(null, javaElement);
+			fActiveDocument= document;
+
+			CompilationUnit recentAST= null;
+			if (javaElement != null && document != null) {
+				recentAST= fRecentASTs.get(javaElement, document);
+				if (recentAST != null) {
+					fASTModificationStamp= fRecentASTs.getASTModificationStamp(javaElement);
+					fRecentASTs.remove(javaElement);
+				}
+			}
+
+			if (recentAST != null) {
+				if (DEBUG)
+					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "restoring recent AST: " + toString(recentAST) + " for: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+				fAST= recentAST;
+				notifyWaiters(javaElement);
+			} else {
+				cache(null, javaElement);
+			}
 		}
 
 		if (DEBUG)
@@ -274,6 +432,33 @@ public final class ASTProvider {
 				fReconcilingJavaElement= null;
 			}
 		}
+
+		// Signal - threads might wait for an element that is no longer active
+		notifyAllWaiters();
+	}
+
+	private static ITypeRoot getInputJavaElement(IWorkbenchPart editor) {
+		if (editor instanceof JavaEditor)
+			return ((JavaEditor)editor).getInputJavaElement();
+		return null;
+	}
+
+	private static IDocument getDocument(IWorkbenchPart editor) {
+		if (!(editor instanceof JavaEditor))
+			return null;
+
+		JavaEditor javaEditor= (JavaEditor)editor;
+		IDocumentProvider provider= javaEditor.getDocumentProvider();
+		if (provider == null)
+			return null;
+
+		return provider.getDocument(javaEditor.getEditorInput());
+	}
+
+	private static long getModificationStamp(IDocument document) {
+		if (document instanceof IDocumentExtension4)
+			return ((IDocumentExtension4)document).getModificationStamp();
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 	}
 
 	/**
@@ -284,7 +469,7 @@ public final class ASTProvider {
 	 * @return <code>true</code> if the given AST is the cached one
 	 */
 	public boolean isCached(CompilationUnit ast) {
-		return ast != null && fAST == ast;
+		return ast != null && (fAST == ast || fRecentASTs.contains(ast));
 	}
 
 	/**
@@ -317,6 +502,10 @@ public final class ASTProvider {
 			fReconcilingJavaElement= javaElement;
 			fIsReconciling= true;
 		}
+		synchronized (this) {
+			if (javaElement.equals(fActiveJavaElement))
+				fReconcileModificationStamp= getModificationStamp(fActiveDocument);
+		}
 		cache(null, javaElement);
 	}
 
@@ -388,10 +577,75 @@ public final class ASTProvider {
 			disposeAST();
 
 		fAST= ast;
+		fASTModificationStamp= ast != null ? fReconcileModificationStamp : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 
 		// Signal AST change
-		synchronized (fWaitLock) {
-			fWaitLock.notifyAll();
+		if (javaElement != null)
+			notifyWaiters(javaElement);
+		else
+			notifyAllWaiters();
+	}
+
+	/**
+	 * Returns the lock on which threads wait for the AST of the given element.
+	 * The lock must be released with {@link #releaseWaitLock(ITypeRoot, WaitLock)}.
+	 *
+	 * @param javaElement the Java element
+	 * @return the wait lock
+	 * @since 3.8
+	 */
+	private WaitLock acquireWaitLock(ITypeRoot javaElement) {
+		synchronized (fWaitLocks) {
+			WaitLock lock= fWaitLocks.get(javaElement);
+			if (lock == null) {
+				lock= new WaitLock();
+				fWaitLocks.put(javaElement, lock);
+			}
+			lock.fWaiters++;
+			return lock;
+		}
+	}
+
+	private void releaseWaitLock(ITypeRoot javaElement, WaitLock lock) {
+		synchronized (fWaitLocks) {
+			if (--lock.fWaiters == 0)
+				fWaitLocks.remove(javaElement);
+		}
+	}
+
+	/**
+	 * Wakes up the threads waiting for the AST of the given element.
+	 *
+	 * @param javaElement the Java element
+	 * @since 3.8
+	 */
+	private void notifyWaiters(ITypeRoot javaElement) {
+		WaitLock lock;
+		synchronized (fWaitLocks) {
+			lock= fWaitLocks.get(javaElement);
+		}
+		if (lock != null) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Wakes up all threads waiting for an AST.
+	 *
+	 * @since 3.8
+	 */
+	private void notifyAllWaiters() {
+		List<WaitLock> locks;
+		synchronized (fWaitLocks) {
+			locks= new ArrayList<WaitLock>(fWaitLocks.values());
+		}
+		for (Iterator<WaitLock> iter= locks.iterator(); iter.hasNext();) {
+			WaitLock lock= iter.next();
+			synchronized (lock) {
+				lock.notifyAll();
+			}
 		}
 	}
 
@@ -434,6 +688,16 @@ public final class ASTProvider {
 			}
 		}
 
+		if (!isActiveElement) {
+			CompilationUnit recentAST= fRecentASTs.get(input, null);
+			if (recentAST != null) {
+				if (DEBUG)
+					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning recent AST:" + toString(recentAST) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+				return recentAST;
+			}
+		}
+
 		final boolean canReturnNull= waitFlag == SharedASTProvider.WAIT_NO || (waitFlag == SharedASTProvider.WAIT_ACTIVE_ONLY && !(isActiveElement && fAST == null));
 		boolean isReconciling= false;
 		final ITypeRoot activeElement;
@@ -450,12 +714,17 @@ public final class ASTProvider {
 		if (isReconciling) {
 			try {
 				// Wait for AST
-				synchronized (fWaitLock) {
-					if (isReconciling(input)) {
-						if (DEBUG)
-							System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "waiting for AST for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
-						fWaitLock.wait();
+				WaitLock waitLock= acquireWaitLock(input);
+				try {
+					synchronized (waitLock) {
+						if (isReconciling(input)) {
+							if (DEBUG)
+								System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "waiting for AST for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
+							waitLock.wait();
+						}
 					}
+				} finally {
+					releaseWaitLock(input, waitLock);
 				}
 
 				// Check whether active element is still valid
@@ -587,10 +856,9 @@ public final class ASTProvider {
 		fActivationListener= null;
 
 		disposeAST();
+		fRecentASTs.clear();
 
-		synchronized (fWaitLock) {
-			fWaitLock.notifyAll();
-		}
+		notifyAllWaiters();
 	}
 
 	/**
@@ -615,9 +883,7 @@ public final class ASTProvider {
 					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "  ignoring AST of out-dated editor"); //$NON-NLS-1$ //$NON-NLS-2$
 
 				// Signal - threads might wait for wrong element
-				synchronized (fWaitLock) {
-					fWaitLock.notifyAll();
-				}
+				notifyAllWaiters();
 
 				return;
 			}
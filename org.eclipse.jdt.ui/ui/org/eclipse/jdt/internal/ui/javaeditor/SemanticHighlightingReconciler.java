@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,9 @@
 package org.eclipse.jdt.internal.ui.javaeditor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.swt.widgets.Display;
@@ -22,7 +25,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.TextPresentation;
@@ -30,16 +35,26 @@ import org.eclipse.jface.text.source.ISourceViewer;
 
 import org.eclipse.ui.IWorkbenchPartSite;
 
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.BooleanLiteral;
 import org.eclipse.jdt.core.dom.CharacterLiteral;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
 import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
 
 import org.eclipse.jdt.internal.corext.dom.GenericVisitor;
@@ -222,6 +237,177 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		}
 	}
 
+	/**
+	 * Computes the outline of an AST, that is a description of all nodes except the bodies of
+	 * methods and initializers, and collects these bodies.
+	 * <p>
+	 * The bodies are parsed independently of each other, and the names in a body can only be
+	 * bound to declarations in the outline, in the body itself or in other compilation units.
+	 * Hence, as long as the outline and the other compilation units do not change, the
+	 * highlighted positions of a body only change if the body is edited.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	private static class OutlineCollector extends ASTVisitor {
+
+		/** The outline */
+		private final StringBuffer fOutline= new StringBuffer();
+		/** The bodies, in document order */
+		private final List<Block> fBodies= new ArrayList<Block>();
+
+		public OutlineCollector() {
+			super(true);
+		}
+
+		/*
+		 * @see org.eclipse.jdt.core.dom.ASTVisitor#preVisit2(org.eclipse.jdt.core.dom.ASTNode)
+		 */
+		@Override
+		public boolean preVisit2(ASTNode node) {
+			StructuralPropertyDescriptor location= node.getLocationInParent();
+			fOutline.append('(').append(node.getNodeType()).append(',').append(node.getFlags() & (ASTNode.MALFORMED | ASTNode.RECOVERED));
+			if (location != null)
+				fOutline.append(',').append(location.getId());
+
+			if (location == MethodDeclaration.BODY_PROPERTY || location == Initializer.BODY_PROPERTY) {
+				fBodies.add((Block) node);
+				return false;
+			}
+
+			List<?> properties= node.structuralPropertiesForType();
+			for (int i= 0, n= properties.size(); i < n; i++) {
+				StructuralPropertyDescriptor property= (StructuralPropertyDescriptor) properties.get(i);
+				if (property.isSimpleProperty()) {
+					String value= String.valueOf(node.getStructuralProperty(property));
+					fOutline.append(',').append(value.length()).append(':').append(value);
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * @see org.eclipse.jdt.core.dom.ASTVisitor#postVisit(org.eclipse.jdt.core.dom.ASTNode)
+		 */
+		@Override
+		public void postVisit(ASTNode node) {
+			fOutline.append(')');
+		}
+
+		/**
+		 * @return the outline of the visited nodes
+		 */
+		public String getOutline() {
+			return fOutline.toString();
+		}
+
+		/**
+		 * Returns the body strictly containing the given range.
+		 *
+		 * @param offset the range offset
+		 * @param length the range length
+		 * @return the body or <code>null</code> if the range is not inside of a body
+		 */
+		public Block getBody(int offset, int length) {
+			int low= 0;
+			int high= fBodies.size() - 1;
+			while (low <= high) {
+				int middle= (low + high) >>> 1;
+				Block body= fBodies.get(middle);
+				int start= body.getStartPosition();
+				if (offset <= start) {
+					high= middle - 1;
+				} else if (offset >= start + body.getLength()) {
+					low= middle + 1;
+				} else {
+					return offset + length < start + body.getLength() ? body : null;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Tracks the regions of the document that have been changed since the positions have last
+	 * been reconciled.
+	 *
+	 * @since 3.8
+	 */
+	private class DirtyRegionTracker implements IDocumentListener, ITextInputListener, IElementChangedListener {
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			// Do nothing
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentChanged(DocumentEvent event) {
+			String text= event.getText();
+			addDirtyRegion(event.getOffset(), event.getLength(), text != null ? text.length() : 0);
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentAboutToBeChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+			if (oldInput != null)
+				oldInput.removeDocumentListener(this);
+			invalidateOutline();
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+			if (newInput != null)
+				newInput.addDocumentListener(this);
+		}
+
+		/*
+		 * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+		 */
+		public void elementChanged(ElementChangedEvent event) {
+			JavaEditor editor= fEditor;
+			IJavaElement input= editor != null ? editor.getInputJavaElement() : null;
+			if (input == null || isAffectingOtherElements(event.getDelta(), input))
+				invalidateOutline();
+		}
+
+		/**
+		 * Tells whether the delta describes changes to other elements than the given
+		 * compilation unit. Such changes can change the bindings of the compilation unit.
+		 *
+		 * @param delta the delta
+		 * @param input the compilation unit
+		 * @return <code>true</code> if other elements are affected
+		 */
+		private boolean isAffectingOtherElements(IJavaElementDelta delta, IJavaElement input) {
+			IJavaElement element= delta.getElement();
+			if (element.getElementType() >= IJavaElement.COMPILATION_UNIT)
+				return !input.equals(element.getAncestor(IJavaElement.COMPILATION_UNIT));
+
+			if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & ~(IJavaElementDelta.F_CHILDREN | IJavaElementDelta.F_FINE_GRAINED)) != 0)
+				return true;
+
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++) {
+				if (isAffectingOtherElements(children[i], input))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The maximal number of dirty regions to track separately.
+	 * @since 3.8
+	 */
+	private static final int MAX_DIRTY_REGIONS= 16;
+
 	/** Position collector */
 	private PositionCollector fCollector= new PositionCollector();
 
@@ -272,17 +458,82 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 */
 	private Highlighting fJobDeprecatedMemberHighlighting;
 
+	/**
+	 * Outline of the reconciled AST - cache for background thread, only valid during {@link #reconciled(CompilationUnit, boolean, IProgressMonitor)}
+	 * @since 3.8
+	 */
+	private String fJobOutline;
+	/**
+	 * Modification count of the document the reconciled AST has been created from - cache for background thread, only valid during {@link #reconciled(CompilationUnit, boolean, IProgressMonitor)}
+	 * @since 3.8
+	 */
+	private int fJobModificationCount;
+
+	/**
+	 * The dirty region tracker, or <code>null</code> if not installed
+	 * @since 3.8
+	 */
+	private DirtyRegionTracker fDirtyRegionTracker;
+	/**
+	 * Lock for the dirty regions, the modification counts and the outline.
+	 * @since 3.8
+	 */
+	private final Object fDirtyRegionsLock= new Object();
+	/**
+	 * Regions of the document changed since the positions have last been reconciled.
+	 * @since 3.8
+	 */
+	private final List<Position> fDirtyRegions= new ArrayList<Position>();
+	/**
+	 * Number of changes of the document and of invalidations of the outline.
+	 * @since 3.8
+	 */
+	private int fModificationCount;
+	/**
+	 * Number of changes of the document when the current reconcile operation has been
+	 * started, or <code>-1</code> if unknown.
+	 * @since 3.8
+	 */
+	private int fReconcileModificationCount= -1;
+	/**
+	 * The outline of the AST the positions have last been reconciled with, or
+	 * <code>null</code> if the positions have to be reconciled with a whole AST.
+	 * @since 3.8
+	 */
+	private String fOutline;
+
 	/*
 	 * @see org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener#aboutToBeReconciled()
 	 */
 	public void aboutToBeReconciled() {
-		// Do nothing
+		synchronized (fDirtyRegionsLock) {
+			fReconcileModificationCount= fModificationCount;
+		}
 	}
 
 	/*
 	 * @see org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener#reconciled(CompilationUnit, boolean, IProgressMonitor)
 	 */
 	public void reconciled(CompilationUnit ast, boolean forced, IProgressMonitor progressMonitor) {
+		int modificationCount;
+		synchronized (fDirtyRegionsLock) {
+			modificationCount= fReconcileModificationCount;
+			fReconcileModificationCount= -1;
+		}
+		reconciled(ast, forced, modificationCount, progressMonitor);
+	}
+
+	/**
+	 * Reconciles the positions with the given AST.
+	 *
+	 * @param ast the AST
+	 * @param forced <code>true</code> iff this reconcile has been forced
+	 * @param modificationCount the number of changes of the document when the AST has been
+	 *            requested, or <code>-1</code> if unknown
+	 * @param progressMonitor the progress monitor
+	 * @since 3.8
+	 */
+	private void reconciled(CompilationUnit ast, boolean forced, int modificationCount, IProgressMonitor progressMonitor) {
 		// ensure at most one thread can be reconciling at any time
 		synchronized (fReconcileLock) {
 			if (fIsReconciling)
@@ -303,11 +554,11 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			if (ast == null || fJobPresenter.isCanceled())
 				return;
 
-			ASTNode[] subtrees= getAffectedSubtrees(ast);
+			ASTNode[] subtrees= getAffectedSubtrees(ast, forced, modificationCount);
 			if (subtrees.length == 0)
 				return;
 
-			startReconcilingPositions();
+			startReconcilingPositions(subtrees);
 
 			if (!fJobPresenter.isCanceled()) {
 				fJobDeprecatedMemberHighlighting= null;
@@ -334,6 +585,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			fJobSemanticHighlightings= null;
 			fJobHighlightings= null;
 			fJobDeprecatedMemberHighlighting= null;
+			fJobOutline= null;
 			synchronized (fReconcileLock) {
 				fIsReconciling= false;
 			}
@@ -341,32 +593,77 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	}
 
 	/**
+	 * Returns the subtrees of the AST that may be affected by the document changes since the
+	 * positions have last been reconciled. These are the bodies of methods and initializers
+	 * containing the changes, as long as the rest of the AST is unchanged. Otherwise, it is
+	 * the whole AST.
+	 *
 	 * @param node Root node
+	 * @param forced <code>true</code> iff the reconcile has been forced
+	 * @param modificationCount the number of changes of the document when the AST has been
+	 *            requested, or <code>-1</code> if unknown
 	 * @return Array of subtrees that may be affected by past document changes
 	 */
-	private ASTNode[] getAffectedSubtrees(ASTNode node) {
-		// TODO: only return nodes which are affected by document changes - would require an 'anchor' concept for taking distant effects into account
-		return new ASTNode[] { node };
+	private ASTNode[] getAffectedSubtrees(CompilationUnit node, boolean forced, int modificationCount) {
+		fJobOutline= null;
+		if (modificationCount == -1 || fDirtyRegionTracker == null)
+			return new ASTNode[] { node };
+
+		OutlineCollector collector= new OutlineCollector();
+		node.accept(collector);
+
+		synchronized (fDirtyRegionsLock) {
+			if (modificationCount != fModificationCount)
+				// the AST may not match the document
+				return new ASTNode[] { node };
+
+			fJobOutline= collector.getOutline();
+			fJobModificationCount= modificationCount;
+			if (forced || fOutline == null || !fOutline.equals(fJobOutline))
+				return new ASTNode[] { node };
+
+			List<ASTNode> subtrees= new ArrayList<ASTNode>(fDirtyRegions.size());
+			for (int i= 0, n= fDirtyRegions.size(); i < n; i++) {
+				Position region= fDirtyRegions.get(i);
+				Block body= collector.getBody(region.getOffset(), region.getLength());
+				if (body == null)
+					return new ASTNode[] { node };
+				if (!subtrees.contains(body))
+					subtrees.add(body);
+			}
+			ASTNode[] result= subtrees.toArray(new ASTNode[subtrees.size()]);
+			// keep the removed positions in document order
+			Arrays.sort(result, new Comparator<ASTNode>() {
+				public int compare(ASTNode node1, ASTNode node2) {
+					return node1.getStartPosition() - node2.getStartPosition();
+				}
+			});
+			return result;
+		}
 	}
 
 	/**
 	 * Start reconciling positions.
+	 *
+	 * @param subtrees the AST subtrees, in document order
 	 */
-	private void startReconcilingPositions() {
-		fJobPresenter.addAllPositions(fRemovedPositions);
+	private void startReconcilingPositions(ASTNode[] subtrees) {
+		if (subtrees.length == 1 && subtrees[0].getParent() == null) {
+			fJobPresenter.addAllPositions(fRemovedPositions);
+		} else {
+			for (int i= 0; i < subtrees.length; i++)
+				fJobPresenter.addAllPositions(fRemovedPositions, subtrees[i].getStartPosition(), subtrees[i].getLength());
+		}
 		fNOfRemovedPositions= fRemovedPositions.size();
 	}
 
 	/**
-	 * Reconcile positions based on the AST subtrees
+	 * Reconcile positions based on the AST subtrees. Only the positions inside of the subtrees
+	 * are reconciled.
 	 *
 	 * @param subtrees the AST subtrees
 	 */
 	private void reconcilePositions(ASTNode[] subtrees) {
-		// FIXME: remove positions not covered by subtrees
-
-
-
 		for (int i= 0, n= subtrees.length; i < n; i++)
 			subtrees[i].accept(fCollector);
 		List<Position> oldPositions= fRemovedPositions;
@@ -387,6 +684,11 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @param removedPositions the removed positions
 	 */
 	private void updatePresentation(TextPresentation textPresentation, List<Position> addedPositions, List<Position> removedPositions) {
+		if (addedPositions.isEmpty() && removedPositions.isEmpty()) {
+			reconciledWith(fJobOutline, fJobModificationCount);
+			return;
+		}
+
 		Runnable runnable= fJobPresenter.createUpdateRunnable(textPresentation, addedPositions, removedPositions);
 		if (runnable == null)
 			return;
@@ -407,7 +709,120 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		if (display == null || display.isDisposed())
 			return;
 
-		display.asyncExec(runnable);
+		display.asyncExec(createTrackingRunnable(runnable, fJobPresenter, fJobOutline, fJobModificationCount));
+	}
+
+	/**
+	 * Creates a runnable that runs the given update runnable and remembers whether the
+	 * positions have been reconciled with the current document.
+	 *
+	 * @param runnable the update runnable
+	 * @param presenter the presenter
+	 * @param outline the outline of the AST, or <code>null</code> if the AST may not match the
+	 *            document
+	 * @param modificationCount the number of changes of the document the AST has been created
+	 *            from
+	 * @return the runnable
+	 * @since 3.8
+	 */
+	private Runnable createTrackingRunnable(final Runnable runnable, final SemanticHighlightingPresenter presenter, final String outline, final int modificationCount) {
+		return new Runnable() {
+			public void run() {
+				boolean canceled= presenter.isCanceled();
+				runnable.run();
+				if (outline == null)
+					invalidateOutline();
+				else if (!canceled)
+					reconciledWith(outline, modificationCount);
+			}
+		};
+	}
+
+	/**
+	 * Remembers that the positions have been reconciled with an AST, if the document has not
+	 * been changed since the AST has been created.
+	 *
+	 * @param outline the outline of the AST, or <code>null</code> if the AST may not match the
+	 *            document
+	 * @param modificationCount the number of changes of the document the AST has been created
+	 *            from
+	 * @since 3.8
+	 */
+	private void reconciledWith(String outline, int modificationCount) {
+		if (outline == null)
+			return;
+
+		synchronized (fDirtyRegionsLock) {
+			if (modificationCount == fModificationCount) {
+				fOutline= outline;
+				fDirtyRegions.clear();
+			}
+		}
+	}
+
+	/**
+	 * Adds a changed region of the document. Regions overlapping or touching the change are
+	 * merged with it.
+	 *
+	 * @param offset the offset of the change
+	 * @param length the length of the replaced text
+	 * @param textLength the length of the new text
+	 * @since 3.8
+	 */
+	private void addDirtyRegion(int offset, int length, int textLength) {
+		synchronized (fDirtyRegionsLock) {
+			fModificationCount++;
+			if (fOutline == null) {
+				// the next reconcile will be a full one
+				fDirtyRegions.clear();
+				return;
+			}
+
+			int delta= textLength - length;
+			int start= offset;
+			int end= offset + textLength;
+			for (Iterator<Position> iter= fDirtyRegions.iterator(); iter.hasNext();) {
+				Position region= iter.next();
+				int regionStart= region.getOffset();
+				int regionEnd= regionStart + region.getLength();
+				if (regionEnd < offset)
+					continue;
+				if (regionStart > offset + length) {
+					region.setOffset(regionStart + delta);
+					continue;
+				}
+				start= Math.min(start, regionStart);
+				end= Math.max(end, regionEnd >= offset + length ? regionEnd + delta : offset + textLength);
+				iter.remove();
+			}
+			fDirtyRegions.add(new Position(start, end - start));
+
+			if (fDirtyRegions.size() > MAX_DIRTY_REGIONS) {
+				start= Integer.MAX_VALUE;
+				end= Integer.MIN_VALUE;
+				for (int i= 0, n= fDirtyRegions.size(); i < n; i++) {
+					Position region= fDirtyRegions.get(i);
+					start= Math.min(start, region.getOffset());
+					end= Math.max(end, region.getOffset() + region.getLength());
+				}
+				fDirtyRegions.clear();
+				fDirtyRegions.add(new Position(start, end - start));
+			}
+		}
+	}
+
+	/**
+	 * Forgets the outline, such that the positions are reconciled with the whole AST the next time.
+	 *
+	 * @since 3.8
+	 */
+	private void invalidateOutline() {
+		synchronized (fDirtyRegionsLock) {
+			// ASTs created before are outdated
+			fModificationCount++;
+			fOutline= null;
+			fDirtyRegions.clear();
+		}
 	}
 
 	/**
@@ -437,6 +852,13 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 
 		if (fEditor instanceof CompilationUnitEditor) {
 			((CompilationUnitEditor)fEditor).addReconcileListener(this);
+
+			fDirtyRegionTracker= new DirtyRegionTracker();
+			fSourceViewer.addTextInputListener(fDirtyRegionTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.addDocumentListener(fDirtyRegionTracker);
+			JavaCore.addElementChangedListener(fDirtyRegionTracker, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
 		} else if (fEditor == null) {
 			fSourceViewer.addTextInputListener(this);
 			scheduleJob();
@@ -458,6 +880,16 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			fEditor= null;
 		}
 
+		if (fDirtyRegionTracker != null) {
+			JavaCore.removeElementChangedListener(fDirtyRegionTracker);
+			fSourceViewer.removeTextInputListener(fDirtyRegionTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.removeDocumentListener(fDirtyRegionTracker);
+			fDirtyRegionTracker= null;
+		}
+		invalidateOutline();
+
 		fSourceViewer= null;
 		fSemanticHighlightings= null;
 		fHighlightings= null;
@@ -534,6 +966,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @since 3.2
 	 */
 	public void refresh() {
+		invalidateOutline();
 		scheduleJob();
 	}
 }
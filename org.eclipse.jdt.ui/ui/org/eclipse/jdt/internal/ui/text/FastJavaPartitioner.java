@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TypedPosition;
+import org.eclipse.jface.text.rules.FastPartitioner;
+import org.eclipse.jface.text.rules.IPartitionTokenScanner;
+import org.eclipse.jface.text.rules.IToken;
+
+
+/**
+ * A {@link FastPartitioner} that applies the result of a re-partitioning to the document in one
+ * batch.
+ * <p>
+ * Typing an unclosed <code>/*</code> or <code>"</code> in a huge document turns all following
+ * partitions into a single one, and closing it splits that partition up again. The
+ * {@link FastPartitioner} removes and adds the partition positions one at a time, which is
+ * linear in the number of partitions for each of them. This partitioner scans exactly like the
+ * {@link FastPartitioner}, but collects the affected positions while scanning and rebuilds the
+ * position category at once when many of them change.
+ * </p>
+ *
+ * @since 3.8
+ */
+public class FastJavaPartitioner extends FastPartitioner {
+
+	/**
+	 * The number of changed positions above which the position category is rebuilt instead of
+	 * updated position by position.
+	 */
+	private static final int BATCH_THRESHOLD= 64;
+
+	/** The position category of the partitions. */
+	private final String fPositionCategory;
+	/** The position updater used to adapt the partitions to document changes. */
+	private final DefaultPositionUpdater fPositionUpdater;
+	/** Tells whether the partitions of the connected document have been computed. */
+	private boolean fIsInitialized= false;
+
+	/* Region of the partitions changed by the last document change */
+	private int fStartOffset;
+	private int fEndOffset;
+	private int fDeleteOffset;
+
+
+	/**
+	 * Creates a new partitioner that uses the given scanner and may return partitions of the
+	 * given legal content types.
+	 *
+	 * @param scanner the scanner this partitioner is supposed to use
+	 * @param legalContentTypes the legal content types of this partitioner
+	 */
+	public FastJavaPartitioner(IPartitionTokenScanner scanner, String[] legalContentTypes) {
+		super(scanner, legalContentTypes);
+		fPositionCategory= getManagingPositionCategories()[0];
+		fPositionUpdater= new DefaultPositionUpdater(fPositionCategory);
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.rules.FastPartitioner#connect(org.eclipse.jface.text.IDocument, boolean)
+	 */
+	@Override
+	public void connect(IDocument document, boolean delayInitialization) {
+		fIsInitialized= false;
+		super.connect(document, delayInitialization);
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.rules.FastPartitioner#initialize()
+	 */
+	@Override
+	protected void initialize() {
+		super.initialize();
+		fIsInitialized= true;
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.rules.FastPartitioner#disconnect()
+	 */
+	@Override
+	public void disconnect() {
+		super.disconnect();
+		fIsInitialized= false;
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.rules.FastPartitioner#stopRewriteSession(org.eclipse.jface.text.DocumentRewriteSession)
+	 */
+	@Override
+	public void stopRewriteSession(DocumentRewriteSession session) {
+		super.stopRewriteSession(session);
+		// the partitions are flushed and computed again on demand
+		if (getActiveRewriteSession() == null)
+			fIsInitialized= false;
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.rules.FastPartitioner#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	@Override
+	public void documentAboutToBeChanged(DocumentEvent e) {
+		super.documentAboutToBeChanged(e);
+		if (fIsInitialized) {
+			fStartOffset= -1;
+			fEndOffset= -1;
+			fDeleteOffset= -1;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.rules.FastPartitioner#documentChanged2(org.eclipse.jface.text.DocumentEvent)
+	 */
+	@Override
+	public IRegion documentChanged2(DocumentEvent e) {
+		if (!fIsInitialized)
+			return null;
+
+		try {
+			Position[] category= getPositions();
+			IRegion line= fDocument.getLineInformationOfOffset(e.getOffset());
+			int reparseStart= line.getOffset();
+			int partitionStart= -1;
+			String contentType= null;
+			int newLength= e.getText() == null ? 0 : e.getText().length();
+
+			int first= fDocument.computeIndexInCategory(fPositionCategory, reparseStart);
+			if (first > 0) {
+				TypedPosition partition= (TypedPosition) category[first - 1];
+				if (partition.includes(reparseStart)) {
+					partitionStart= partition.getOffset();
+					contentType= partition.getType();
+					if (e.getOffset() == partition.getOffset() + partition.getLength())
+						reparseStart= partitionStart;
+					--first;
+				} else if (reparseStart == e.getOffset() && reparseStart == partition.getOffset() + partition.getLength()) {
+					partitionStart= partition.getOffset();
+					contentType= partition.getType();
+					reparseStart= partitionStart;
+					--first;
+				} else {
+					partitionStart= partition.getOffset() + partition.getLength();
+					contentType= IDocument.DEFAULT_CONTENT_TYPE;
+				}
+			}
+
+			fPositionUpdater.update(e);
+			for (int i= first; i < category.length; i++) {
+				Position p= category[i];
+				if (p.isDeleted) {
+					fDeleteOffset= e.getOffset();
+					break;
+				}
+			}
+			clearPositionCache();
+			category= getPositions();
+
+			fScanner.setPartialRange(fDocument, reparseStart, fDocument.getLength() - reparseStart, contentType, partitionStart);
+
+			// the positions from 'affected' on are replaced by 'replacement' up to 'first'
+			int affected= first;
+			List<Position> replacement= new ArrayList<Position>();
+			List<Position> removed= new ArrayList<Position>();
+			boolean converged= false;
+
+			int behindLastScannedPosition= reparseStart;
+			IToken token= fScanner.nextToken();
+			while (!token.isEOF()) {
+				contentType= getTokenContentType(token);
+				if (!isSupportedContentType(contentType)) {
+					token= fScanner.nextToken();
+					continue;
+				}
+
+				int start= fScanner.getTokenOffset();
+				int length= fScanner.getTokenLength();
+				behindLastScannedPosition= start + length;
+				int lastScannedPosition= behindLastScannedPosition - 1;
+
+				// remove all affected positions
+				while (first < category.length) {
+					TypedPosition p= (TypedPosition) category[first];
+					if (lastScannedPosition >= p.offset + p.length
+							|| (p.overlapsWith(start, length) && (!contains(category, first, start, length) || !contentType.equals(p.getType())))) {
+						rememberRegion(p.offset, p.length);
+						removed.add(p);
+						++first;
+					} else
+						break;
+				}
+
+				if (contains(category, first, start, length)) {
+					// if the position already exists and we have scanned at least the area
+					// covered by the event, we are done
+					if (lastScannedPosition >= e.getOffset() + newLength) {
+						converged= true;
+						break;
+					}
+					replacement.add(category[first]);
+					++first;
+				} else {
+					replacement.add(new TypedPosition(start, length, contentType));
+					rememberRegion(start, length);
+				}
+				token= fScanner.nextToken();
+			}
+
+			if (!converged) {
+				// keep the positions in front of the last scanned position, remove all behind it
+				while (first < category.length && category[first].offset < behindLastScannedPosition)
+					replacement.add(category[first++]);
+				while (first < category.length) {
+					Position p= category[first++];
+					rememberRegion(p.offset, p.length);
+					removed.add(p);
+				}
+			}
+
+			applyChanges(category, affected, first, replacement, removed);
+
+		} catch (BadPositionCategoryException x) {
+			// should never happen on connected documents
+		} catch (BadLocationException x) {
+		} finally {
+			clearPositionCache();
+		}
+
+		return createRegion();
+	}
+
+	/**
+	 * Tells whether the document contains a partition of the given range, given that all
+	 * positions in front of <code>index</code> have already been handled.
+	 *
+	 * @param category the current positions
+	 * @param index the index of the first position not yet handled
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @return <code>true</code> if a position with the given range exists
+	 */
+	private static boolean contains(Position[] category, int index, int offset, int length) {
+		for (int i= index; i < category.length && category[i].offset <= offset; i++) {
+			if (category[i].offset == offset && category[i].length == length)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces the positions from <code>start</code> to <code>end</code> by the given
+	 * replacement.
+	 *
+	 * @param category the current positions
+	 * @param start the index of the first replaced position
+	 * @param end the index behind the last replaced position
+	 * @param replacement the new and retained positions, in document order
+	 * @param removed the positions to remove
+	 * @throws BadPositionCategoryException if the position category is not defined
+	 * @throws BadLocationException if a new position is invalid
+	 */
+	private void applyChanges(Position[] category, int start, int end, List<Position> replacement, List<Position> removed) throws BadPositionCategoryException, BadLocationException {
+		int added= replacement.size() - (end - start - removed.size());
+		if (removed.size() + added <= BATCH_THRESHOLD) {
+			for (int i= 0; i < removed.size(); i++)
+				fDocument.removePosition(fPositionCategory, removed.get(i));
+			for (int i= 0; i < replacement.size(); i++) {
+				Position p= replacement.get(i);
+				if (!fDocument.containsPosition(fPositionCategory, p.offset, p.length))
+					fDocument.addPosition(fPositionCategory, p);
+			}
+			return;
+		}
+
+		// re-adding the positions in document order appends each of them
+		fDocument.removePositionCategory(fPositionCategory);
+		fDocument.addPositionCategory(fPositionCategory);
+		for (int i= 0; i < start; i++)
+			fDocument.addPosition(fPositionCategory, category[i]);
+		for (int i= 0; i < replacement.size(); i++)
+			fDocument.addPosition(fPositionCategory, replacement.get(i));
+		for (int i= end; i < category.length; i++)
+			fDocument.addPosition(fPositionCategory, category[i]);
+	}
+
+	/**
+	 * Remembers the given range as changed.
+	 *
+	 * @param offset the offset
+	 * @param length the length
+	 */
+	private void rememberRegion(int offset, int length) {
+		if (fStartOffset == -1 || offset < fStartOffset)
+			fStartOffset= offset;
+
+		int endOffset= offset + length;
+		if (fEndOffset == -1 || endOffset > fEndOffset)
+			fEndOffset= endOffset;
+	}
+
+	/**
+	 * Creates the minimal region containing all partition changes using the remembered offsets.
+	 *
+	 * @return the minimal region containing all the partition changes
+	 */
+	private IRegion createRegion() {
+		if (fDeleteOffset == -1) {
+			if (fStartOffset == -1 || fEndOffset == -1)
+				return null;
+			return new Region(fStartOffset, fEndOffset - fStartOffset);
+		} else if (fStartOffset == -1 || fEndOffset == -1) {
+			return new Region(fDeleteOffset, 0);
+		} else {
+			int offset= Math.min(fDeleteOffset, fStartOffset);
+			int endOffset= Math.max(fDeleteOffset, fEndOffset);
+			return new Region(offset, endOffset - offset);
+		}
+	}
+}
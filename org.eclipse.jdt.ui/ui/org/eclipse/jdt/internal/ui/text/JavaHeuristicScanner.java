@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,11 +16,11 @@ import org.eclipse.core.runtime.Assert;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextUtilities;
-import org.eclipse.jface.text.TypedRegion;
 
 import org.eclipse.jdt.ui.text.IJavaPartitions;
 
@@ -114,7 +114,7 @@ public final class JavaHeuristicScanner implements Symbols {
 		 */
 		@Override
 		public boolean stop(char ch, int position, boolean forward) {
-			return super.stop(ch, position, true) && isDefaultPartition(position);
+			return super.stop(ch, position, true) && isInPartition(position);
 		}
 
 		/*
@@ -122,16 +122,15 @@ public final class JavaHeuristicScanner implements Symbols {
 		 */
 		@Override
 		public int nextPosition(int position, boolean forward) {
-			ITypedRegion partition= getPartition(position);
-			if (fPartition.equals(partition.getType()))
+			if (isInPartition(position))
 				return super.nextPosition(position, forward);
 
 			if (forward) {
-				int end= partition.getOffset() + partition.getLength();
+				int end= fCachedPartitionEnd;
 				if (position < end)
 					return end;
 			} else {
-				int offset= partition.getOffset();
+				int offset= fCachedPartitionOffset;
 				if (position > offset)
 					return offset - 1;
 			}
@@ -163,7 +162,7 @@ public final class JavaHeuristicScanner implements Symbols {
 		 */
 		@Override
 		public boolean stop(char ch, int position, boolean forward) {
-			return super.stop(ch, position, true) || !isDefaultPartition(position);
+			return super.stop(ch, position, true) || !isInPartition(position);
 		}
 
 		/*
@@ -171,16 +170,15 @@ public final class JavaHeuristicScanner implements Symbols {
 		 */
 		@Override
 		public int nextPosition(int position, boolean forward) {
-			ITypedRegion partition= getPartition(position);
-			if (fPartition.equals(partition.getType()))
+			if (isInPartition(position))
 				return super.nextPosition(position, forward);
 
 			if (forward) {
-				int end= partition.getOffset() + partition.getLength();
+				int end= fCachedPartitionEnd;
 				if (position < end)
 					return end;
 			} else {
-				int offset= partition.getOffset();
+				int offset= fCachedPartitionOffset;
 				if (position > offset)
 					return offset - 1;
 			}
@@ -218,7 +216,7 @@ public final class JavaHeuristicScanner implements Symbols {
 		 */
 		@Override
 		public boolean stop(char ch, int position, boolean forward) {
-			return Arrays.binarySearch(fChars, ch) >= 0 && isDefaultPartition(position);
+			return Arrays.binarySearch(fChars, ch) >= 0 && isInPartition(position);
 		}
 
 		/*
@@ -226,16 +224,15 @@ public final class JavaHeuristicScanner implements Symbols {
 		 */
 		@Override
 		public int nextPosition(int position, boolean forward) {
-			ITypedRegion partition= getPartition(position);
-			if (fPartition.equals(partition.getType()))
+			if (isInPartition(position))
 				return super.nextPosition(position, forward);
 
 			if (forward) {
-				int end= partition.getOffset() + partition.getLength();
+				int end= fCachedPartitionEnd;
 				if (position < end)
 					return end;
 			} else {
-				int offset= partition.getOffset();
+				int offset= fCachedPartitionOffset;
 				if (position > offset)
 					return offset - 1;
 			}
@@ -243,6 +240,62 @@ public final class JavaHeuristicScanner implements Symbols {
 		}
 	}
 
+	/**
+	 * A view of a range of the snapshot characters.
+	 *
+	 * @since 3.8
+	 */
+	private final class SnapshotSequence implements CharSequence {
+		private int fStart;
+		private int fLength;
+
+		/**
+		 * Sets the range of the snapshot characters.
+		 *
+		 * @param start the start in the snapshot characters
+		 * @param length the length of the range
+		 */
+		public void set(int start, int length) {
+			fStart= start;
+			fLength= length;
+		}
+
+		/*
+		 * @see java.lang.CharSequence#length()
+		 */
+		public int length() {
+			return fLength;
+		}
+
+		/*
+		 * @see java.lang.CharSequence#charAt(int)
+		 */
+		public char charAt(int index) {
+			return fSnapshot[fStart + index];
+		}
+
+		/*
+		 * @see java.lang.CharSequence#subSequence(int, int)
+		 */
+		public CharSequence subSequence(int start, int end) {
+			return new String(fSnapshot, fStart + start, end - start);
+		}
+
+		/*
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return new String(fSnapshot, fStart, fLength);
+		}
+	}
+
+	/**
+	 * The minimal number of characters by which the snapshot is extended.
+	 * @since 3.8
+	 */
+	private static final int SNAPSHOT_EXTENT= 4096;
+
 	/** The document being scanned. */
 	private final IDocument fDocument;
 	/** The partitioning being used for scanning. */
@@ -257,10 +310,68 @@ public final class JavaHeuristicScanner implements Symbols {
 	/** the most recently read position. */
 	private int fPos;
 	/**
-	 * The most recently used partition.
-	 * @since 3.2
+	 * The offset of the most recently used partition.
+	 * @since 3.8
 	 */
-	private ITypedRegion fCachedPartition= new TypedRegion(-1, 0, "__no_partition_at_all"); //$NON-NLS-1$
+	private int fCachedPartitionOffset= -1;
+	/**
+	 * The end offset of the most recently used partition.
+	 * @since 3.8
+	 */
+	private int fCachedPartitionEnd= -1;
+	/**
+	 * Whether the most recently used partition is the partition to scan in.
+	 * @since 3.8
+	 */
+	private boolean fCachedPartitionMatches;
+
+	/* snapshot state */
+
+	/**
+	 * Whether the characters and partitions are read from a snapshot.
+	 * @since 3.8
+	 */
+	private boolean fSnapshotMode;
+	/**
+	 * The characters of the snapshot window, or <code>null</code> if no snapshot has been taken.
+	 * @since 3.8
+	 */
+	private char[] fSnapshot;
+	/**
+	 * The document offset of the snapshot window.
+	 * @since 3.8
+	 */
+	private int fSnapshotOffset;
+	/**
+	 * The modification stamp of the document when the snapshot has been taken.
+	 * @since 3.8
+	 */
+	private long fSnapshotStamp;
+	/**
+	 * The number of partitions in the snapshot window.
+	 * @since 3.8
+	 */
+	private int fPartitionCount;
+	/**
+	 * The offsets of the partitions in the snapshot window, in ascending order.
+	 * @since 3.8
+	 */
+	private int[] fPartitionOffsets;
+	/**
+	 * The end offsets of the partitions in the snapshot window.
+	 * @since 3.8
+	 */
+	private int[] fPartitionEnds;
+	/**
+	 * Whether the partitions in the snapshot window are the partition to scan in.
+	 * @since 3.8
+	 */
+	private boolean[] fPartitionMatches;
+	/**
+	 * The view on the snapshot used for identifiers.
+	 * @since 3.8
+	 */
+	private final SnapshotSequence fSnapshotSequence= new SnapshotSequence();
 
 	/* preset stop conditions */
 	private final StopCondition fNonWSDefaultPart= new NonWhitespaceDefaultPartition();
@@ -292,6 +403,23 @@ public final class JavaHeuristicScanner implements Symbols {
 		this(document, IJavaPartitions.JAVA_PARTITIONING, IDocument.DEFAULT_CONTENT_TYPE);
 	}
 
+	/**
+	 * Enables or disables the snapshot mode. In snapshot mode, the characters and partitions of
+	 * the scanned range of the document are copied to arrays, which are extended as scanning
+	 * proceeds. This is faster when a lot of the document is scanned, e.g. by the
+	 * {@link JavaIndenter}. The snapshot is discarded when the document is modified.
+	 * <p>
+	 * The snapshot mode has no effect if the document does not provide modification stamps.
+	 * </p>
+	 *
+	 * @param snapshotMode <code>true</code> to enable the snapshot mode
+	 * @since 3.8
+	 */
+	public void setSnapshotMode(boolean snapshotMode) {
+		fSnapshotMode= snapshotMode && getModificationStamp() != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		discardSnapshot();
+	}
+
 	/**
 	 * Returns the most recent internal scan position.
 	 *
@@ -359,15 +487,12 @@ public final class JavaHeuristicScanner implements Symbols {
 			else
 				to= pos;
 
-			String identOrKeyword;
 			try {
-				identOrKeyword= fDocument.get(from, to - from);
+				return getToken(from, to);
 			} catch (BadLocationException e) {
 				return TokenEOF;
 			}
 
-			return getToken(identOrKeyword);
-
 
 		} else {
 			// operators, number literals etc
@@ -435,15 +560,12 @@ public final class JavaHeuristicScanner implements Symbols {
 			else
 				from= pos + 1;
 
-			String identOrKeyword;
 			try {
-				identOrKeyword= fDocument.get(from, to - from);
+				return getToken(from, to);
 			} catch (BadLocationException e) {
 				return TokenEOF;
 			}
 
-			return getToken(identOrKeyword);
-
 
 		} else {
 			// operators, number literals etc
@@ -452,72 +574,90 @@ public final class JavaHeuristicScanner implements Symbols {
 
 	}
 
+	/**
+	 * Returns one of the keyword constants or <code>TokenIDENT</code> for the identifier in the
+	 * given range of the document.
+	 *
+	 * @param from the start of the identifier
+	 * @param to the end of the identifier
+	 * @return one of the constants defined in {@link Symbols}
+	 * @throws BadLocationException if the range is not in the document
+	 * @since 3.8
+	 */
+	private int getToken(int from, int to) throws BadLocationException {
+		if (fSnapshot != null && from >= fSnapshotOffset && to <= fSnapshotOffset + fSnapshot.length) {
+			fSnapshotSequence.set(from - fSnapshotOffset, to - from);
+			return getToken(fSnapshotSequence);
+		}
+		return getToken(fDocument.get(from, to - from));
+	}
+
 	/**
 	 * Returns one of the keyword constants or <code>TokenIDENT</code> for a scanned identifier.
 	 *
 	 * @param s a scanned identifier
 	 * @return one of the constants defined in {@link Symbols}
 	 */
-	private int getToken(String s) {
+	private int getToken(CharSequence s) {
 		Assert.isNotNull(s);
 
 		switch (s.length()) {
 			case 2:
-				if ("if".equals(s)) //$NON-NLS-1$
+				if ("if".contentEquals(s)) //$NON-NLS-1$
 					return TokenIF;
-				if ("do".equals(s)) //$NON-NLS-1$
+				if ("do".contentEquals(s)) //$NON-NLS-1$
 					return TokenDO;
 				break;
 			case 3:
-				if ("for".equals(s)) //$NON-NLS-1$
+				if ("for".contentEquals(s)) //$NON-NLS-1$
 					return TokenFOR;
-				if ("try".equals(s)) //$NON-NLS-1$
+				if ("try".contentEquals(s)) //$NON-NLS-1$
 					return TokenTRY;
-				if ("new".equals(s)) //$NON-NLS-1$
+				if ("new".contentEquals(s)) //$NON-NLS-1$
 					return TokenNEW;
 				break;
 			case 4:
-				if ("case".equals(s)) //$NON-NLS-1$
+				if ("case".contentEquals(s)) //$NON-NLS-1$
 					return TokenCASE;
-				if ("else".equals(s)) //$NON-NLS-1$
+				if ("else".contentEquals(s)) //$NON-NLS-1$
 					return TokenELSE;
-				if ("enum".equals(s)) //$NON-NLS-1$
+				if ("enum".contentEquals(s)) //$NON-NLS-1$
 					return TokenENUM;
-				if ("goto".equals(s)) //$NON-NLS-1$
+				if ("goto".contentEquals(s)) //$NON-NLS-1$
 					return TokenGOTO;
 				break;
 			case 5:
-				if ("break".equals(s)) //$NON-NLS-1$
+				if ("break".contentEquals(s)) //$NON-NLS-1$
 					return TokenBREAK;
-				if ("catch".equals(s)) //$NON-NLS-1$
+				if ("catch".contentEquals(s)) //$NON-NLS-1$
 					return TokenCATCH;
-				if ("class".equals(s)) //$NON-NLS-1$
+				if ("class".contentEquals(s)) //$NON-NLS-1$
 					return TokenCLASS;
-				if ("while".equals(s)) //$NON-NLS-1$
+				if ("while".contentEquals(s)) //$NON-NLS-1$
 					return TokenWHILE;
 				break;
 			case 6:
-				if ("return".equals(s)) //$NON-NLS-1$
+				if ("return".contentEquals(s)) //$NON-NLS-1$
 					return TokenRETURN;
-				if ("static".equals(s)) //$NON-NLS-1$
+				if ("static".contentEquals(s)) //$NON-NLS-1$
 					return TokenSTATIC;
-				if ("switch".equals(s)) //$NON-NLS-1$
+				if ("switch".contentEquals(s)) //$NON-NLS-1$
 					return TokenSWITCH;
-				if ("throws".equals(s)) //$NON-NLS-1$
+				if ("throws".contentEquals(s)) //$NON-NLS-1$
 					return TokenTHROWS;
 				break;
 			case 7:
-				if ("default".equals(s)) //$NON-NLS-1$
+				if ("default".contentEquals(s)) //$NON-NLS-1$
 					return TokenDEFAULT;
-				if ("finally".equals(s)) //$NON-NLS-1$
+				if ("finally".contentEquals(s)) //$NON-NLS-1$
 					return TokenFINALLY;
 				break;
 			case 9:
-				if ("interface".equals(s)) //$NON-NLS-1$
+				if ("interface".contentEquals(s)) //$NON-NLS-1$
 					return TokenINTERFACE;
 				break;
 			case 12:
-				if ("synchronized".equals(s)) //$NON-NLS-1$
+				if ("synchronized".contentEquals(s)) //$NON-NLS-1$
 					return TokenSYNCHRONIZED;
 				break;
 		}
@@ -565,7 +705,7 @@ public final class JavaHeuristicScanner implements Symbols {
 				if (start == NOT_FOUND)
 					return NOT_FOUND;
 
-				if (fDocument.getChar(start) == openingPeer)
+				if (getChar(start) == openingPeer)
 					depth++;
 				else
 					depth--;
@@ -620,7 +760,7 @@ public final class JavaHeuristicScanner implements Symbols {
 				if (start == NOT_FOUND)
 					return NOT_FOUND;
 
-				if (fDocument.getChar(start) == closingPeer)
+				if (getChar(start) == closingPeer)
 					depth++;
 				else
 					depth--;
@@ -729,11 +869,12 @@ public final class JavaHeuristicScanner implements Symbols {
 
 		Assert.isLegal(bound <= fDocument.getLength());
 
+		validateSnapshot();
 		try {
 			fPos= start;
 			while (fPos < bound) {
 
-				fChar= fDocument.getChar(fPos);
+				fChar= getChar(fPos);
 				if (condition.stop(fChar, fPos, true))
 					return fPos;
 
@@ -789,11 +930,12 @@ public final class JavaHeuristicScanner implements Symbols {
 		Assert.isLegal(bound >= -1);
 		Assert.isLegal(start < fDocument.getLength() );
 
+		validateSnapshot();
 		try {
 			fPos= start;
 			while (fPos > bound) {
 
-				fChar= fDocument.getChar(fPos);
+				fChar= getChar(fPos);
 				if (condition.stop(fChar, fPos, false))
 					return fPos;
 
@@ -839,42 +981,191 @@ public final class JavaHeuristicScanner implements Symbols {
 	 * @return <code>true</code> if <code>position</code> is in the default partition of <code>fDocument</code>, <code>false</code> otherwise
 	 */
 	public boolean isDefaultPartition(int position) {
-		return fPartition.equals(getPartition(position).getType());
+		validateSnapshot();
+		return isInPartition(position);
 	}
 
 	/**
-	 * Returns the partition at <code>position</code>.
+	 * Checks whether <code>position</code> resides in the partition to scan in, without
+	 * validating the snapshot.
+	 *
+	 * @param position the position to be checked
+	 * @return <code>true</code> if <code>position</code> is in the partition to scan in
+	 * @since 3.8
+	 */
+	private boolean isInPartition(int position) {
+		updatePartition(position);
+		return fCachedPartitionMatches;
+	}
+
+	/**
+	 * Makes the partition at <code>position</code> the most recently used partition.
+	 * If accessing the document fails, a dummy zero-length partition is used.
 	 *
 	 * @param position the position to get the partition for
-	 * @return the partition at <code>position</code> or a dummy zero-length
-	 *         partition if accessing the document fails
+	 * @since 3.8
 	 */
-	private ITypedRegion getPartition(int position) {
-		if (!contains(fCachedPartition, position)) {
-			Assert.isTrue(position >= 0);
-			Assert.isTrue(position <= fDocument.getLength());
+	private void updatePartition(int position) {
+		if (fCachedPartitionOffset <= position && position < fCachedPartitionEnd)
+			return;
+
+		Assert.isTrue(position >= 0);
+		Assert.isTrue(position <= fDocument.getLength());
+
+		if (fSnapshotMode && (isInSnapshot(position) || takeSnapshot(position))) {
+			int index= findSnapshotPartition(position);
+			if (index != -1) {
+				fCachedPartitionOffset= fPartitionOffsets[index];
+				fCachedPartitionEnd= fPartitionEnds[index];
+				fCachedPartitionMatches= fPartitionMatches[index];
+				return;
+			}
+		}
 
-			try {
-				fCachedPartition= TextUtilities.getPartition(fDocument, fPartitioning, position, false);
-			} catch (BadLocationException e) {
-				fCachedPartition= new TypedRegion(position, 0, "__no_partition_at_all"); //$NON-NLS-1$
+		try {
+			ITypedRegion partition= TextUtilities.getPartition(fDocument, fPartitioning, position, false);
+			fCachedPartitionOffset= partition.getOffset();
+			fCachedPartitionEnd= partition.getOffset() + partition.getLength();
+			fCachedPartitionMatches= fPartition.equals(partition.getType());
+		} catch (BadLocationException e) {
+			fCachedPartitionOffset= position;
+			fCachedPartitionEnd= position;
+			fCachedPartitionMatches= false;
+		}
+	}
+
+	/**
+	 * Returns the character at <code>position</code>, from the snapshot if in snapshot mode.
+	 *
+	 * @param position the position
+	 * @return the character at the position
+	 * @throws BadLocationException if the position is not in the document
+	 * @since 3.8
+	 */
+	private char getChar(int position) throws BadLocationException {
+		if (fSnapshotMode && (isInSnapshot(position) || takeSnapshot(position)))
+			return fSnapshot[position - fSnapshotOffset];
+		return fDocument.getChar(position);
+	}
+
+	/**
+	 * @param position the position
+	 * @return <code>true</code> if the snapshot contains the given position
+	 * @since 3.8
+	 */
+	private boolean isInSnapshot(int position) {
+		return fSnapshot != null && fSnapshotOffset <= position && position < fSnapshotOffset + fSnapshot.length;
+	}
+
+	/**
+	 * Takes a snapshot of a window of the document containing <code>position</code>. If there
+	 * is a snapshot already, the window is extended to at least twice its size, such that
+	 * scanning through the document copies every character only a few times.
+	 *
+	 * @param position the position
+	 * @return <code>true</code> if the snapshot has been taken, <code>false</code> if the position
+	 *         is not in the document or the snapshot could not be taken
+	 * @since 3.8
+	 */
+	private boolean takeSnapshot(int position) {
+		int length= fDocument.getLength();
+		if (position < 0 || position >= length)
+			return false;
+
+		int start;
+		int end;
+		if (fSnapshot == null) {
+			start= position - SNAPSHOT_EXTENT;
+			end= position + SNAPSHOT_EXTENT;
+		} else {
+			int extent= Math.max(SNAPSHOT_EXTENT, fSnapshot.length);
+			start= Math.min(fSnapshotOffset, position - extent);
+			end= Math.max(fSnapshotOffset + fSnapshot.length, position + extent);
+		}
+		start= Math.max(0, start);
+		end= Math.min(length, end);
+
+		try {
+			long stamp= getModificationStamp();
+			ITypedRegion[] partitions= TextUtilities.computePartitioning(fDocument, fPartitioning, start, end - start, false);
+			char[] snapshot= new char[end - start];
+			fDocument.get(start, end - start).getChars(0, end - start, snapshot, 0);
+
+			if (fPartitionOffsets == null || fPartitionOffsets.length < partitions.length) {
+				fPartitionOffsets= new int[partitions.length];
+				fPartitionEnds= new int[partitions.length];
+				fPartitionMatches= new boolean[partitions.length];
 			}
+			for (int i= 0; i < partitions.length; i++) {
+				ITypedRegion partition= partitions[i];
+				fPartitionOffsets[i]= partition.getOffset();
+				fPartitionEnds[i]= partition.getOffset() + partition.getLength();
+				fPartitionMatches[i]= fPartition.equals(partition.getType());
+			}
+			fPartitionCount= partitions.length;
+			fSnapshot= snapshot;
+			fSnapshotOffset= start;
+			fSnapshotStamp= stamp;
+			return true;
+		} catch (BadLocationException e) {
+			discardSnapshot();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the index of the snapshot partition containing <code>position</code>.
+	 *
+	 * @param position the position
+	 * @return the index of the partition, or <code>-1</code> if none contains the position
+	 * @since 3.8
+	 */
+	private int findSnapshotPartition(int position) {
+		int low= 0;
+		int high= fPartitionCount - 1;
+		while (low <= high) {
+			int middle= (low + high) >>> 1;
+			if (position < fPartitionOffsets[middle])
+				high= middle - 1;
+			else if (position >= fPartitionEnds[middle])
+				low= middle + 1;
+			else
+				return middle;
 		}
+		return -1;
+	}
 
-		return fCachedPartition;
+	/**
+	 * Discards the snapshot if the document has been modified since it has been taken.
+	 *
+	 * @since 3.8
+	 */
+	private void validateSnapshot() {
+		if (fSnapshot != null && fSnapshotStamp != getModificationStamp())
+			discardSnapshot();
 	}
 
 	/**
-	 * Returns <code>true</code> if <code>region</code> contains <code>position</code>.
+	 * Discards the snapshot and the most recently used partition.
 	 *
-	 * @param region a region
-	 * @param position an offset
-	 * @return <code>true</code> if <code>region</code> contains <code>position</code>
-	 * @since 3.2
+	 * @since 3.8
+	 */
+	private void discardSnapshot() {
+		fSnapshot= null;
+		fPartitionCount= 0;
+		fCachedPartitionOffset= -1;
+		fCachedPartitionEnd= -1;
+	}
+
+	/**
+	 * @return the modification stamp of the document, or
+	 *         {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} if not available
+	 * @since 3.8
 	 */
-	private boolean contains(IRegion region, int position) {
-		int offset= region.getOffset();
-		return offset <= position && position < offset + region.getLength();
+	private long getModificationStamp() {
+		if (fDocument instanceof IDocumentExtension4)
+			return ((IDocumentExtension4) fDocument).getModificationStamp();
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 	}
 
 	/**
@@ -401,7 +401,7 @@ public final class JavaIndenter {
 	 * @param document the document to scan
 	 * @param scanner the {@link JavaHeuristicScanner}to be used for scanning
 	 *        the document. It must be installed on the same
-	 *        <code>IDocument</code>.
+	 *        <code>IDocument</code>. It is switched to snapshot mode.
 	 * @param project the java project to get the formatter preferences from, or
 	 *        <code>null</code> to use the workspace settings
 	 * @since 3.1
@@ -411,6 +411,8 @@ public final class JavaIndenter {
 		Assert.isNotNull(scanner);
 		fDocument= document;
 		fScanner= scanner;
+		// the indenter scans a lot of the document, possibly back to its start
+		fScanner.setSnapshotMode(true);
 		fPrefs= new CorePrefs(project);
 	}
 
@@ -38,6 +38,7 @@ public final class CorrectionMessages extends NLS {
 	public static String ModifierCorrectionSubProcessor_remove_override;
 	public static String ModifierCorrectionSubProcessor_removefinal_description;
 	public static String ModifierCorrectionSubProcessor_removevolatile_description;
+	public static String QuickAssistLightBulbUpdater_job_name;
 	public static String QuickAssistProcessor_convert_anonym_to_nested;
 	public static String QuickAssistProcessor_convert_local_to_field_description;
 	public static String QuickAssistProcessor_convert_to_indexed_for_loop;
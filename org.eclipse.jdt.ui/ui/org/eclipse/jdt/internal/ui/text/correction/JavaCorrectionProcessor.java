@@ -16,9 +16,12 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
@@ -147,10 +150,26 @@ public class JavaCorrectionProcessor implements org.eclipse.jface.text.quickassi
 	}
 
 	public static boolean hasAssists(IInvocationContext context) {
+		return hasAssists(context, new NullProgressMonitor());
+	}
+
+	/**
+	 * Tells whether there are quick assists for the given context. The monitor is checked
+	 * between the assist processors.
+	 *
+	 * @param context the invocation context
+	 * @param monitor the progress monitor
+	 * @return <code>true</code> if a quick assist processor has assists
+	 * @throws OperationCanceledException if the monitor has been cancelled
+	 * @since 3.8
+	 */
+	public static boolean hasAssists(IInvocationContext context, IProgressMonitor monitor) {
 		ContributedProcessorDescriptor[] processors= getAssistProcessors();
 		SafeHasAssist collector= new SafeHasAssist(context);
 
 		for (int i= 0; i < processors.length; i++) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
 			collector.process(processors[i]);
 			if (collector.hasAssists()) {
 				return true;
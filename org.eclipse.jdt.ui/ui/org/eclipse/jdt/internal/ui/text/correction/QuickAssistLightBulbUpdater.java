@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,11 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.text.correction;
 
+import java.lang.ref.WeakReference;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.GC;
@@ -20,8 +23,17 @@ import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Canvas;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.ISelectionProvider;
+import org.eclipse.jface.viewers.SelectionChangedEvent;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
@@ -48,14 +60,18 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jdt.ui.PreferenceConstants;
 import org.eclipse.jdt.ui.SharedASTProvider;
-import org.eclipse.jdt.ui.text.java.IInvocationContext;
 
 import org.eclipse.jdt.internal.ui.JavaPluginImages;
 import org.eclipse.jdt.internal.ui.viewsupport.ISelectionListenerWithAST;
 import org.eclipse.jdt.internal.ui.viewsupport.SelectionListenerWithASTManager;
 
 /**
- *
+ * Shows a light bulb at the caret position if there are quick assists.
+ * <p>
+ * The quick assist processors are asked in a job of their own, so that they neither block the
+ * UI thread nor the other listeners of the shared AST. The job is cancelled when the caret moves.
+ * The results are cached per position until a new AST is created.
+ * </p>
  */
 public class QuickAssistLightBulbUpdater {
 
@@ -102,14 +118,66 @@ public class QuickAssistLightBulbUpdater {
 
 	}
 
+	/**
+	 * Computes whether there are quick assists for a selection.
+	 */
+	private class LightBulbJob extends Job {
+
+		private final IAnnotationModel fModel;
+		private final AssistContext fContext;
+
+		public LightBulbJob(IAnnotationModel model, AssistContext context) {
+			super(CorrectionMessages.QuickAssistLightBulbUpdater_job_name);
+			fModel= model;
+			fContext= context;
+			setPriority(Job.DECORATE);
+			setSystem(true);
+		}
+
+		/*
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			boolean hasAssists;
+			try {
+				hasAssists= JavaCorrectionProcessor.hasAssists(fContext, monitor);
+			} catch (OperationCanceledException e) {
+				return Status.CANCEL_STATUS;
+			}
+			synchronized (QuickAssistLightBulbUpdater.this) {
+				if (monitor.isCanceled() || fJob != this)
+					return Status.CANCEL_STATUS;
+				putCachedResult(fContext.getASTRoot(), fContext.getSelectionOffset(), fContext.getSelectionLength(), hasAssists);
+				updateLightBulb(fModel, fContext.getSelectionOffset(), fContext.getSelectionLength(), hasAssists);
+				fJob= null;
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/** The maximum number of cached results, the cache is cleared when it is full. */
+	private static final int MAX_CACHE_SIZE= 1000;
+
 	private final Annotation fAnnotation;
 	private boolean fIsAnnotationShown;
 	private ITextEditor fEditor;
 	private ITextViewer fViewer;
 
 	private ISelectionListenerWithAST fListener;
+	private ISelectionChangedListener fCaretListener;
 	private IPropertyChangeListener fPropertyChangeListener;
 
+	/** The job computing the assists for the current selection, or <code>null</code>. */
+	private volatile LightBulbJob fJob;
+	/**
+	 * The AST of the cached results, or <code>null</code>. Only its identity is used, so it
+	 * is not kept alive by the cache.
+	 */
+	private WeakReference<CompilationUnit> fCacheAST;
+	/** Whether there are assists, keyed by the selection offset and length. */
+	private final Map<Long, Boolean> fCache= new HashMap<Long, Boolean>();
+
 	public QuickAssistLightBulbUpdater(ITextEditor part, ITextViewer viewer) {
 		fEditor= part;
 		fViewer= viewer;
@@ -129,6 +197,16 @@ public class QuickAssistLightBulbUpdater {
 			}
 		};
 		SelectionListenerWithASTManager.getDefault().addListener(fEditor, fListener);
+
+		ISelectionProvider selectionProvider= fEditor.getSelectionProvider();
+		if (selectionProvider != null) {
+			fCaretListener= new ISelectionChangedListener() {
+				public void selectionChanged(SelectionChangedEvent event) {
+					cancelJob();
+				}
+			};
+			selectionProvider.addSelectionChangedListener(fCaretListener);
+		}
 	}
 
 	private void uninstallSelectionListener() {
@@ -136,6 +214,18 @@ public class QuickAssistLightBulbUpdater {
 			SelectionListenerWithASTManager.getDefault().removeListener(fEditor, fListener);
 			fListener= null;
 		}
+		if (fCaretListener != null) {
+			ISelectionProvider selectionProvider= fEditor.getSelectionProvider();
+			if (selectionProvider != null)
+				selectionProvider.removeSelectionChangedListener(fCaretListener);
+			fCaretListener= null;
+		}
+		synchronized (this) {
+			cancelJob();
+			fJob= null;
+			fCache.clear();
+			fCacheAST= null;
+		}
 		IAnnotationModel model= getAnnotationModel();
 		if (model != null) {
 			removeLightBulb(model);
@@ -219,22 +309,70 @@ public class QuickAssistLightBulbUpdater {
 		calculateLightBulb(model, context);
 	}
 
+	private synchronized void calculateLightBulb(IAnnotationModel model, AssistContext context) {
+		cancelJob();
+		Boolean hasAssists= getCachedResult(context.getASTRoot(), context.getSelectionOffset(), context.getSelectionLength());
+		if (hasAssists != null) {
+			updateLightBulb(model, context.getSelectionOffset(), context.getSelectionLength(), hasAssists.booleanValue());
+			return;
+		}
+		fJob= new LightBulbJob(model, context);
+		fJob.schedule();
+	}
+
+	private void cancelJob() {
+		LightBulbJob job= fJob;
+		if (job != null)
+			job.cancel();
+	}
+
 	/*
 	 * Needs to be called synchronized
 	 */
-	private void calculateLightBulb(IAnnotationModel model, IInvocationContext context) {
-		boolean needsAnnotation= JavaCorrectionProcessor.hasAssists(context);
+	private void updateLightBulb(IAnnotationModel model, int offset, int length, boolean needsAnnotation) {
 		if (fIsAnnotationShown) {
 			model.removeAnnotation(fAnnotation);
 		}
 		if (needsAnnotation) {
-			model.addAnnotation(fAnnotation, new Position(context.getSelectionOffset(), context.getSelectionLength()));
+			model.addAnnotation(fAnnotation, new Position(offset, length));
 		}
 		fIsAnnotationShown= needsAnnotation;
 	}
 
+	/*
+	 * Needs to be called synchronized
+	 */
+	private Boolean getCachedResult(CompilationUnit astRoot, int offset, int length) {
+		if (!isCacheAST(astRoot))
+			return null;
+		return fCache.get(new Long(getCacheKey(offset, length)));
+	}
+
+	/*
+	 * Needs to be called synchronized
+	 */
+	private void putCachedResult(CompilationUnit astRoot, int offset, int length, boolean hasAssists) {
+		if (!isCacheAST(astRoot) || fCache.size() >= MAX_CACHE_SIZE) {
+			fCache.clear();
+			fCacheAST= new WeakReference<CompilationUnit>(astRoot);
+		}
+		fCache.put(new Long(getCacheKey(offset, length)), Boolean.valueOf(hasAssists));
+	}
+
+	/*
+	 * Needs to be called synchronized
+	 */
+	private boolean isCacheAST(CompilationUnit astRoot) {
+		return astRoot != null && fCacheAST != null && fCacheAST.get() == astRoot;
+	}
+
+	private static long getCacheKey(int offset, int length) {
+		return ((long) offset << 32) | (length & 0xffffffffL);
+	}
+
 	private void removeLightBulb(IAnnotationModel model) {
 		synchronized (this) {
+			cancelJob();
 			if (fIsAnnotationShown) {
 				model.removeAnnotation(fAnnotation);
 				fIsAnnotationShown= false;
@@ -29,6 +29,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.InvalidRegistryObjectException;
 import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.Status;
 
 import org.eclipse.jface.text.IDocument;
@@ -82,6 +83,14 @@ final class CompletionProposalComputerDescriptor {
 	 * {@link #fIsReportingDelay}.
 	 */
 	private static final long MAX_DELAY= 5000;
+	/**
+	 * The time in milliseconds after which the progress monitor passed to a computation is
+	 * canceled, so that computers which check it return what they have found so far. Like
+	 * {@link #MAX_DELAY}, the deadline does not apply to the first invocation.
+	 *
+	 * @since 3.8
+	 */
+	private static final long COMPUTATION_DEADLINE= Long.getLong("org.eclipse.jdt.ui.codeAssistComputerDeadline", 2000).longValue(); // ms //$NON-NLS-1$
 
 	/* log constants */
 	private static final String COMPUTE_COMPLETION_PROPOSALS= "computeCompletionProposals()"; //$NON-NLS-1$
@@ -101,6 +110,29 @@ final class CompletionProposalComputerDescriptor {
 		PARTITION_SET= Collections.unmodifiableSet(partitions);
 	}
 
+	/**
+	 * A progress monitor that is canceled once a deadline has passed.
+	 *
+	 * @since 3.8
+	 */
+	private static final class DeadlineProgressMonitor extends ProgressMonitorWrapper {
+
+		private final long fDeadline;
+
+		DeadlineProgressMonitor(IProgressMonitor monitor, long deadline) {
+			super(monitor);
+			fDeadline= deadline;
+		}
+
+		/*
+		 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#isCanceled()
+		 */
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || System.currentTimeMillis() >= fDeadline;
+		}
+	}
+
 	/** The identifier of the extension. */
 	private final String fId;
 	/** The name of the extension. */
@@ -129,6 +161,11 @@ final class CompletionProposalComputerDescriptor {
 	private boolean fIsReportingDelay= false;
 	/** The start of the last operation. */
 	private long fStart;
+	/**
+	 * The latencies of the proposal and context information computations.
+	 * @since 3.8
+	 */
+	private final LatencyHistogram fLatencies= new LatencyHistogram();
 	/**
 	 * Tells whether we tried to load the computer.
 	 * @since 3.4
@@ -330,7 +367,7 @@ final class CompletionProposalComputerDescriptor {
 
 			try {
 				PerformanceStats stats= startMeter(context, computer);
-				List<ICompletionProposal> proposals= computer.computeCompletionProposals(context, monitor);
+				List<ICompletionProposal> proposals= computer.computeCompletionProposals(context, new DeadlineProgressMonitor(monitor, getDeadline()));
 				stopMeter(stats, COMPUTE_COMPLETION_PROPOSALS);
 
 				if (proposals != null) {
@@ -377,7 +414,7 @@ final class CompletionProposalComputerDescriptor {
 				return Collections.emptyList();
 
 			PerformanceStats stats= startMeter(context, computer);
-			List<IContextInformation> proposals= computer.computeContextInformation(context, monitor);
+			List<IContextInformation> proposals= computer.computeContextInformation(context, new DeadlineProgressMonitor(monitor, getDeadline()));
 			stopMeter(stats, COMPUTE_CONTEXT_INFORMATION);
 
 			if (proposals != null) {
@@ -477,14 +514,26 @@ final class CompletionProposalComputerDescriptor {
 			stats= null;
 		}
 
-		if (fIsReportingDelay) {
-			fStart= System.currentTimeMillis();
-		}
+		fStart= System.currentTimeMillis();
 
 		return stats;
 	}
 
+	/**
+	 * Returns the time at which the progress monitor of the current computation is canceled.
+	 *
+	 * @return the deadline in milliseconds
+	 * @since 3.8
+	 */
+	private long getDeadline() {
+		return fIsReportingDelay ? fStart + COMPUTATION_DEADLINE : Long.MAX_VALUE;
+	}
+
 	private void stopMeter(final PerformanceStats stats, String operation) {
+		long current= System.currentTimeMillis();
+		if (COMPUTE_COMPLETION_PROPOSALS.equals(operation) || COMPUTE_CONTEXT_INFORMATION.equals(operation))
+			fLatencies.add(current - fStart);
+
 		if (MEASURE_PERFORMANCE) {
 			stats.endRun();
 			if (stats.isFailure()) {
@@ -495,7 +544,6 @@ final class CompletionProposalComputerDescriptor {
 		}
 
 		if (fIsReportingDelay) {
-			long current= System.currentTimeMillis();
 			if (current - fStart > MAX_DELAY) {
 				IStatus status= createPerformanceStatus(operation);
 				fRegistry.informUser(this, status);
@@ -535,7 +583,7 @@ final class CompletionProposalComputerDescriptor {
 		String blame= createBlameMessage();
 		Object[] args= {operation};
 		String reason= Messages.format(JavaTextMessages.CompletionProposalComputerDescriptor_reason_performance, args);
-		return new Status(IStatus.WARNING, JavaPlugin.getPluginId(), IStatus.OK, blame + " " + reason, null); //$NON-NLS-1$
+		return new Status(IStatus.WARNING, JavaPlugin.getPluginId(), IStatus.OK, blame + " " + reason + " (" + fLatencies + ")", null); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 	}
 
 	private String createBlameMessage() {
@@ -579,6 +627,17 @@ final class CompletionProposalComputerDescriptor {
         }
     }
 
+	/**
+	 * Returns the latencies of the proposal and context information computations of the
+	 * described extension.
+	 *
+	 * @return the latency histogram of the described extension
+	 * @since 3.8
+	 */
+	LatencyHistogram getLatencies() {
+		return fLatencies;
+	}
+
 	/**
 	 * Returns the <code>needsSortingAfterFiltering</code> flag of the described extension.
 	 * 
@@ -272,6 +272,10 @@ public class ContentAssistProcessor implements IContentAssistProcessor {
 			System.err.println("Code Assist (setup):\t" + (setup - start) ); //$NON-NLS-1$
 			System.err.println("Code Assist (collect):\t" + (collect - setup) ); //$NON-NLS-1$
 			System.err.println("Code Assist (sort):\t" + (filter - collect) ); //$NON-NLS-1$
+			for (Iterator<CompletionProposalComputerDescriptor> it= fComputerRegistry.getProposalComputerDescriptors(fPartition).iterator(); it.hasNext();) {
+				CompletionProposalComputerDescriptor desc= it.next();
+				System.err.println("Code Assist latency (" + desc.getName() + "):\t" + desc.getLatencies()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
 		}
 
 		return result;
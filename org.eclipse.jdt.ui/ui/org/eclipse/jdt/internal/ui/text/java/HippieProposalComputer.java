@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,28 +10,46 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.text.java;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 import org.eclipse.jface.text.contentassist.IContextInformation;
 
-import org.eclipse.ui.texteditor.HippieProposalProcessor;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PlatformUI;
+
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
 
 import org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext;
 import org.eclipse.jdt.ui.text.java.IJavaCompletionProposalComputer;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 /**
- * A computer wrapper for the hippie processor.
+ * A computer for hippie word completions: proposes the words of the open documents that start
+ * with the word prefix at the invocation offset.
+ * <p>
+ * The words are looked up in a {@link HippieWordIndex} per document, which is kept up to date
+ * while the documents change, instead of scanning all open documents on each invocation.
+ * </p>
  *
  * @since 3.2
  */
 public final class HippieProposalComputer implements IJavaCompletionProposalComputer {
-	/** The wrapped processor. */
-	private final HippieProposalProcessor fProcessor= new HippieProposalProcessor();
 
 	/**
 	 * Default ctor to make it instantiatable via the extension mechanism.
@@ -43,21 +61,90 @@ public final class HippieProposalComputer implements IJavaCompletionProposalComp
 	 * @see org.eclipse.jface.text.contentassist.ICompletionProposalComputer#computeCompletionProposals(org.eclipse.jface.text.contentassist.TextContentAssistInvocationContext, org.eclipse.core.runtime.IProgressMonitor)
 	 */
 	public List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context, IProgressMonitor monitor) {
-		return Arrays.asList(fProcessor.computeCompletionProposals(context.getViewer(), context.getInvocationOffset()));
+		IDocument document= context.getDocument();
+		if (document == null)
+			return Collections.emptyList();
+
+		int offset= context.getInvocationOffset();
+		try {
+			int start= offset;
+			while (start > 0 && HippieWordIndex.isWordPart(document.getChar(start - 1)))
+				start--;
+			if (start == offset)
+				return Collections.emptyList();
+			String prefix= document.get(start, offset - start);
+
+			// the word being completed is not a completion of itself
+			int end= offset;
+			while (end < document.getLength() && HippieWordIndex.isWordPart(document.getChar(end)))
+				end++;
+			String currentWord= document.get(start, end - start);
+
+			Set<String> words= new LinkedHashSet<String>();
+			HippieWordIndex.getIndex(document).collectCompletions(prefix, currentWord, words);
+			for (Iterator<IDocument> it= getOpenDocuments().iterator(); it.hasNext();) {
+				if (monitor.isCanceled())
+					break; // propose the words found so far
+				IDocument other= it.next();
+				if (other != document)
+					HippieWordIndex.getIndex(other).collectCompletions(prefix, null, words);
+			}
+
+			List<ICompletionProposal> result= new ArrayList<ICompletionProposal>(words.size());
+			for (Iterator<String> it= words.iterator(); it.hasNext();) {
+				String word= it.next();
+				result.add(new JavaCompletionProposal(word, start, prefix.length(), null, word, 0));
+			}
+			return result;
+		} catch (BadLocationException x) {
+			JavaPlugin.log(x);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Returns the documents of the open text editors.
+	 *
+	 * @return the documents of the open text editors
+	 */
+	private static List<IDocument> getOpenDocuments() {
+		List<IDocument> documents= new ArrayList<IDocument>();
+		IWorkbenchWindow[] windows= PlatformUI.getWorkbench().getWorkbenchWindows();
+		for (int i= 0; i < windows.length; i++) {
+			IWorkbenchPage[] pages= windows[i].getPages();
+			for (int j= 0; j < pages.length; j++) {
+				IEditorReference[] references= pages[j].getEditorReferences();
+				for (int k= 0; k < references.length; k++) {
+					IEditorPart part= references[k].getEditor(false);
+					ITextEditor editor= null;
+					if (part instanceof ITextEditor)
+						editor= (ITextEditor) part;
+					else if (part != null)
+						editor= (ITextEditor) part.getAdapter(ITextEditor.class);
+					if (editor == null)
+						continue;
+					IDocumentProvider provider= editor.getDocumentProvider();
+					IDocument document= provider == null ? null : provider.getDocument(editor.getEditorInput());
+					if (document != null && !documents.contains(document))
+						documents.add(document);
+				}
+			}
+		}
+		return documents;
 	}
 
 	/*
 	 * @see org.eclipse.jface.text.contentassist.ICompletionProposalComputer#computeContextInformation(org.eclipse.jface.text.contentassist.TextContentAssistInvocationContext, org.eclipse.core.runtime.IProgressMonitor)
 	 */
 	public List<IContextInformation> computeContextInformation(ContentAssistInvocationContext context, IProgressMonitor monitor) {
-		return Arrays.asList(fProcessor.computeContextInformation(context.getViewer(), context.getInvocationOffset()));
+		return Collections.emptyList();
 	}
 
 	/*
 	 * @see org.eclipse.jface.text.contentassist.ICompletionProposalComputer#getErrorMessage()
 	 */
 	public String getErrorMessage() {
-		return fProcessor.getErrorMessage();
+		return null;
 	}
 
 	/*
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.java;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+
+
+/**
+ * A sorted index of the words of a document, kept up to date from document events. Words are
+ * runs of letters, digits, connector punctuation, non-spacing marks and letter numbers, as for
+ * hippie word completion.
+ * <p>
+ * Looking up the words with a given prefix takes time proportional to the logarithm of the
+ * number of words plus the number of matches. To bound the memory used, words longer than
+ * {@value #MAX_WORD_LENGTH} characters are not indexed, and no new words are added once the
+ * index holds {@value #MAX_WORDS} words.
+ * </p>
+ * <p>
+ * The index does not reference its document, so that the index of a document is discarded
+ * together with the document. This class is thread safe.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class HippieWordIndex implements IDocumentListener {
+
+	/** The maximum number of distinct words of an index. */
+	public static final int MAX_WORDS= 50000;
+	/** The maximum length of an indexed word. */
+	public static final int MAX_WORD_LENGTH= 100;
+	/** The minimum length of an indexed word, shorter words can not complete any prefix. */
+	private static final int MIN_WORD_LENGTH= 2;
+
+	/** The indexes of the documents, weakly referencing the documents. */
+	private static final Map<IDocument, HippieWordIndex> fgIndexes= new WeakHashMap<IDocument, HippieWordIndex>();
+
+	/**
+	 * Returns the index of the given document, creating it if needed. A new index is connected
+	 * to the document and updated until the document is discarded.
+	 *
+	 * @param document the document
+	 * @return the word index of the document
+	 */
+	public static HippieWordIndex getIndex(IDocument document) {
+		synchronized (fgIndexes) {
+			HippieWordIndex index= fgIndexes.get(document);
+			if (index == null) {
+				index= new HippieWordIndex();
+				synchronized (index) {
+					document.addDocumentListener(index);
+					index.addWords(document.get());
+				}
+				fgIndexes.put(document, index);
+			}
+			return index;
+		}
+	}
+
+	/** The number of occurrences of each indexed word, keyed by the word. */
+	private final TreeMap<String, int[]> fWords= new TreeMap<String, int[]>();
+	/** The start of the words removed in <code>documentAboutToBeChanged</code>. */
+	private int fChangeStart;
+	/** The end of the words removed in <code>documentAboutToBeChanged</code>. */
+	private int fChangeEnd;
+
+	/**
+	 * Creates an empty index. Use {@link #getIndex(IDocument)} to get the index of a document.
+	 */
+	HippieWordIndex() {
+	}
+
+	/**
+	 * Adds the words starting with the given prefix to the given collection, in lexicographic
+	 * order. The prefix itself is not added.
+	 *
+	 * @param prefix the prefix
+	 * @param exclude a word of which one occurrence is ignored, or <code>null</code>
+	 * @param result the collection to add the words to
+	 */
+	public synchronized void collectCompletions(String prefix, String exclude, Collection<String> result) {
+		SortedMap<String, int[]> matches= fWords.subMap(prefix, prefix + Character.MAX_VALUE);
+		for (Iterator<Map.Entry<String, int[]>> it= matches.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, int[]> entry= it.next();
+			String word= entry.getKey();
+			if (word.length() == prefix.length())
+				continue;
+			if (word.equals(exclude) && entry.getValue()[0] == 1)
+				continue;
+			result.add(word);
+		}
+	}
+
+	/**
+	 * Returns the number of occurrences of the given word.
+	 *
+	 * @param word the word
+	 * @return the number of occurrences of the word in the indexed document, or <code>0</code>
+	 *         if it is not indexed
+	 */
+	public synchronized int getCount(String word) {
+		int[] count= fWords.get(word);
+		return count == null ? 0 : count[0];
+	}
+
+	/**
+	 * Returns the number of distinct indexed words.
+	 *
+	 * @return the number of words
+	 */
+	public synchronized int size() {
+		return fWords.size();
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentAboutToBeChanged(DocumentEvent event) {
+		IDocument document= event.getDocument();
+		try {
+			fChangeStart= findWordStart(document, event.getOffset());
+			fChangeEnd= findWordEnd(document, event.getOffset() + event.getLength());
+			removeWords(document.get(fChangeStart, fChangeEnd - fChangeStart));
+		} catch (BadLocationException e) {
+			fChangeStart= -1;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentChanged(DocumentEvent event) {
+		IDocument document= event.getDocument();
+		if (fChangeStart == -1) {
+			// should not happen, start over
+			fWords.clear();
+			addWords(document.get());
+			return;
+		}
+
+		// the range of the removed words is delimited by non-word characters also after the change
+		int textLength= event.getText() == null ? 0 : event.getText().length();
+		int end= fChangeEnd - event.getLength() + textLength;
+		try {
+			addWords(document.get(fChangeStart, end - fChangeStart));
+		} catch (BadLocationException e) {
+			fWords.clear();
+			addWords(document.get());
+		}
+	}
+
+	private static int findWordStart(IDocument document, int offset) throws BadLocationException {
+		while (offset > 0 && isWordPart(document.getChar(offset - 1)))
+			offset--;
+		return offset;
+	}
+
+	private static int findWordEnd(IDocument document, int offset) throws BadLocationException {
+		int length= document.getLength();
+		while (offset < length && isWordPart(document.getChar(offset)))
+			offset++;
+		return offset;
+	}
+
+	/**
+	 * Tells whether the given character is part of a word.
+	 *
+	 * @param c the character
+	 * @return <code>true</code> if the character is part of a word
+	 */
+	public static boolean isWordPart(char c) {
+		if (Character.isLetterOrDigit(c))
+			return true;
+		switch (Character.getType(c)) {
+			case Character.CONNECTOR_PUNCTUATION:
+			case Character.NON_SPACING_MARK:
+			case Character.LETTER_NUMBER:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private void addWords(String text) {
+		int length= text.length();
+		int i= 0;
+		while (i < length) {
+			while (i < length && !isWordPart(text.charAt(i)))
+				i++;
+			int start= i;
+			while (i < length && isWordPart(text.charAt(i)))
+				i++;
+			int wordLength= i - start;
+			if (wordLength >= MIN_WORD_LENGTH && wordLength <= MAX_WORD_LENGTH) {
+				String word= text.substring(start, i);
+				int[] count= fWords.get(word);
+				if (count != null)
+					count[0]++;
+				else if (fWords.size() < MAX_WORDS)
+					fWords.put(new String(word), new int[] { 1 }); // don't keep the document text alive
+			}
+		}
+	}
+
+	private void removeWords(String text) {
+		int length= text.length();
+		int i= 0;
+		while (i < length) {
+			while (i < length && !isWordPart(text.charAt(i)))
+				i++;
+			int start= i;
+			while (i < length && isWordPart(text.charAt(i)))
+				i++;
+			int wordLength= i - start;
+			if (wordLength >= MIN_WORD_LENGTH && wordLength <= MAX_WORD_LENGTH) {
+				String word= text.substring(start, i);
+				int[] count= fWords.get(word);
+				if (count != null && --count[0] == 0)
+					fWords.remove(word);
+			}
+		}
+	}
+}
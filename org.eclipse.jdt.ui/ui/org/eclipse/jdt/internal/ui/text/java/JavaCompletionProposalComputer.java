@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,17 +16,25 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import org.eclipse.osgi.util.TextProcessor;
+
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Shell;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 
 import org.eclipse.jface.dialogs.ErrorDialog;
 import org.eclipse.jface.dialogs.MessageDialog;
 
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 import org.eclipse.jface.text.contentassist.IContextInformation;
@@ -121,15 +129,185 @@ public class JavaCompletionProposalComputer implements IJavaCompletionProposalCo
 		}
 	}
 
+	/**
+	 * The proposals computed for a token, reused while the user only extends the prefix of the
+	 * token, also across content assist sessions. The cache is keyed on the document, the
+	 * compilation unit, the start of the token and the modification stamp of the document. It
+	 * listens to the document to follow the end of the prefix and becomes invalid on any other
+	 * change. The relevance of the reused proposals is recomputed for the extended prefix.
+	 *
+	 * @since 3.8
+	 */
+	private static final class ProposalCache implements IDocumentListener {
+
+		// see org.eclipse.jdt.internal.codeassist.RelevanceConstants
+		private static final int R_CASE= 10;
+		private static final int R_EXACT_NAME= 4;
+
+		private final IDocument fDocument;
+		private final ICompilationUnit fUnit;
+		/** The start of the token. */
+		private final int fStart;
+		private final int fOffset;
+		private final AbstractJavaCompletionProposal[] fProposals;
+		private final int[] fReplacementLengths;
+		/** The relevance of the proposals without the part that depends on the prefix. */
+		private final int[] fRelevances;
+		/** The end of the prefix, moves while the user extends the prefix. */
+		private int fEnd;
+		/** The modification stamp of the document at the end of the prefix. */
+		private long fStamp;
+		private boolean fIsValid;
+
+		ProposalCache(IDocument document, ICompilationUnit unit, int offset, AbstractJavaCompletionProposal[] proposals) {
+			fDocument= document;
+			fUnit= unit;
+			fStart= getTokenStart(document, offset);
+			fOffset= offset;
+			fEnd= offset;
+			fStamp= getModificationStamp(document);
+			fProposals= proposals;
+			fReplacementLengths= new int[proposals.length];
+			fRelevances= new int[proposals.length];
+			for (int i= 0; i < proposals.length; i++) {
+				fReplacementLengths[i]= proposals[i].getReplacementLength();
+				fRelevances[i]= proposals[i].getRelevance() - getPrefixRelevance(proposals[i], document, offset);
+			}
+			fIsValid= true;
+			fDocument.addDocumentListener(this);
+		}
+
+		/**
+		 * Returns the cached proposals that are valid for the given offset.
+		 *
+		 * @param document the document
+		 * @param unit the compilation unit
+		 * @param offset the invocation offset
+		 * @return the proposals matching the extended prefix, or <code>null</code> if the
+		 *         proposals have to be computed
+		 */
+		List<ICompletionProposal> getProposals(IDocument document, ICompilationUnit unit, int offset) {
+			if (!fIsValid || document != fDocument || !unit.equals(fUnit) || offset != fEnd)
+				return null;
+			if (getModificationStamp(document) != fStamp || getTokenStart(document, offset) != fStart)
+				return null;
+
+			int delta= offset - fOffset;
+			List<ICompletionProposal> result= new ArrayList<ICompletionProposal>();
+			for (int i= 0; i < fProposals.length; i++) {
+				AbstractJavaCompletionProposal proposal= fProposals[i];
+				if (proposal.validate(document, offset, null)) {
+					proposal.setReplacementLength(fReplacementLengths[i] + delta);
+					proposal.setRelevance(fRelevances[i] + getPrefixRelevance(proposal, document, offset));
+					result.add(proposal);
+				}
+			}
+			return result.isEmpty() ? null : result;
+		}
+
+		/**
+		 * Returns the part of the relevance of a proposal that depends on the prefix, computed
+		 * like the core content assistant does.
+		 *
+		 * @param proposal the proposal
+		 * @param document the document
+		 * @param offset the end of the prefix
+		 * @return the relevance that depends on the prefix
+		 */
+		private static int getPrefixRelevance(AbstractJavaCompletionProposal proposal, IDocument document, int offset) {
+			String prefix= proposal.getPrefix(document, offset);
+			String name= getName(TextProcessor.deprocess(proposal.getDisplayString()));
+			int relevance= 0;
+			if (name.startsWith(prefix))
+				relevance+= R_CASE;
+			if (name.equalsIgnoreCase(prefix))
+				relevance+= R_EXACT_NAME;
+			return relevance;
+		}
+
+		private static String getName(String displayString) {
+			int end= 0;
+			while (end < displayString.length() && Character.isJavaIdentifierPart(displayString.charAt(end)))
+				end++;
+			return displayString.substring(0, end);
+		}
+
+		private static int getTokenStart(IDocument document, int offset) {
+			try {
+				int start= offset;
+				while (start > 0 && Character.isJavaIdentifierPart(document.getChar(start - 1)))
+					start--;
+				return start;
+			} catch (BadLocationException e) {
+				return -1;
+			}
+		}
+
+		private static long getModificationStamp(IDocument document) {
+			if (document instanceof IDocumentExtension4)
+				return ((IDocumentExtension4) document).getModificationStamp();
+			return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentAboutToBeChanged(DocumentEvent event) {
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentChanged(DocumentEvent event) {
+			String text= event.getText() == null ? "" : event.getText(); //$NON-NLS-1$
+			if (event.getLength() == 0 && event.getOffset() == fEnd && isIdentifierPart(text)) {
+				fEnd+= text.length();
+				fStamp= event.getModificationStamp();
+			} else if (text.length() == 0 && event.getOffset() + event.getLength() == fEnd && event.getOffset() >= fOffset) {
+				fEnd= event.getOffset();
+				fStamp= event.getModificationStamp();
+			} else {
+				dispose();
+			}
+		}
+
+		private static boolean isIdentifierPart(String text) {
+			if (text.length() == 0)
+				return false;
+			for (int i= 0; i < text.length(); i++) {
+				if (!Character.isJavaIdentifierPart(text.charAt(i)))
+					return false;
+			}
+			return true;
+		}
+
+		void dispose() {
+			if (fIsValid) {
+				fIsValid= false;
+				fDocument.removeDocumentListener(this);
+			}
+		}
+	}
+
 	private static final long JAVA_CODE_ASSIST_TIMEOUT= Long.getLong("org.eclipse.jdt.ui.codeAssistTimeout", 5000).longValue(); // ms //$NON-NLS-1$
 
 	private String fErrorMessage;
 
-	private final IProgressMonitor fTimeoutProgressMonitor;
+	/**
+	 * The proposals of the last invocation, or <code>null</code>. The cache is kept across
+	 * content assist sessions, since re-invoking content assist after typing more characters
+	 * starts a new session.
+	 *
+	 * @since 3.8
+	 */
+	private ProposalCache fProposalCache;
 
-	public JavaCompletionProposalComputer() {
-		fTimeoutProgressMonitor= createTimeoutProgressMonitor(JAVA_CODE_ASSIST_TIMEOUT);
-	}
+	/**
+	 * Tells whether the last computation completed and may be cached.
+	 *
+	 * @since 3.8
+	 */
+	private boolean fIsCacheable;
 
 	protected int guessContextInformationPosition(ContentAssistInvocationContext context) {
 		return context.getInvocationOffset();
@@ -159,8 +337,8 @@ public class JavaCompletionProposalComputer implements IJavaCompletionProposalCo
 		return contextPosition;
 	}
 
-	private List<IContextInformation> addContextInformations(JavaContentAssistInvocationContext context, int offset) {
-		List<ICompletionProposal> proposals= internalComputeCompletionProposals(offset, context);
+	private List<IContextInformation> addContextInformations(JavaContentAssistInvocationContext context, int offset, IProgressMonitor monitor) {
+		List<ICompletionProposal> proposals= internalComputeCompletionProposals(offset, context, monitor);
 		List<IContextInformation> result= new ArrayList<IContextInformation>(proposals.size());
 		List<IContextInformation> anonymousResult= new ArrayList<IContextInformation>(proposals.size());
 
@@ -191,7 +369,7 @@ public class JavaCompletionProposalComputer implements IJavaCompletionProposalCo
 			JavaContentAssistInvocationContext javaContext= (JavaContentAssistInvocationContext) context;
 
 			int contextInformationPosition= guessContextInformationPosition(javaContext);
-			List<IContextInformation> result= addContextInformations(javaContext, contextInformationPosition);
+			List<IContextInformation> result= addContextInformations(javaContext, contextInformationPosition, monitor);
 			return result;
 		}
 		return Collections.emptyList();
@@ -203,12 +381,52 @@ public class JavaCompletionProposalComputer implements IJavaCompletionProposalCo
 	public List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context, IProgressMonitor monitor) {
 		if (context instanceof JavaContentAssistInvocationContext) {
 			JavaContentAssistInvocationContext javaContext= (JavaContentAssistInvocationContext) context;
-			return internalComputeCompletionProposals(context.getInvocationOffset(), javaContext);
+			int offset= context.getInvocationOffset();
+			ICompilationUnit unit= javaContext.getCompilationUnit();
+			IDocument document= context.getDocument();
+			if (fProposalCache != null && unit != null && document != null) {
+				List<ICompletionProposal> proposals= fProposalCache.getProposals(document, unit, offset);
+				if (proposals != null)
+					return proposals;
+			}
+
+			List<ICompletionProposal> proposals= internalComputeCompletionProposals(offset, javaContext, monitor);
+			updateProposalCache(document, unit, offset, proposals);
+			return proposals;
 		}
 		return Collections.emptyList();
 	}
 
-	private List<ICompletionProposal> internalComputeCompletionProposals(int offset, JavaContentAssistInvocationContext context) {
+	/**
+	 * Remembers the given proposals for invocations at the end of an extended prefix, if they are
+	 * complete and can be filtered by prefix.
+	 *
+	 * @param document the document
+	 * @param unit the compilation unit
+	 * @param offset the invocation offset
+	 * @param proposals the computed proposals
+	 * @since 3.8
+	 */
+	private void updateProposalCache(IDocument document, ICompilationUnit unit, int offset, List<ICompletionProposal> proposals) {
+		if (fProposalCache != null) {
+			fProposalCache.dispose();
+			fProposalCache= null;
+		}
+		if (!fIsCacheable || document == null || unit == null || proposals.isEmpty())
+			return;
+
+		AbstractJavaCompletionProposal[] cached= new AbstractJavaCompletionProposal[proposals.size()];
+		for (int i= 0; i < cached.length; i++) {
+			ICompletionProposal proposal= proposals.get(i);
+			if (!(proposal instanceof AbstractJavaCompletionProposal))
+				return;
+			cached[i]= (AbstractJavaCompletionProposal) proposal;
+		}
+		fProposalCache= new ProposalCache(document, unit, offset, cached);
+	}
+
+	private List<ICompletionProposal> internalComputeCompletionProposals(int offset, JavaContentAssistInvocationContext context, IProgressMonitor monitor) {
+		fIsCacheable= false;
 		ICompilationUnit unit= context.getCompilationUnit();
 		if (unit == null)
 			return Collections.emptyList();
@@ -241,7 +459,8 @@ public class JavaCompletionProposalComputer implements IJavaCompletionProposalCo
 			Point selection= viewer.getSelectedRange();
 			if (selection.y > 0)
 				collector.setReplacementLength(selection.y);
-			unit.codeComplete(offset, collector, fTimeoutProgressMonitor);
+			unit.codeComplete(offset, collector, createTimeoutProgressMonitor(monitor, JAVA_CODE_ASSIST_TIMEOUT));
+			fIsCacheable= selection.y == 0;
 		} catch (OperationCanceledException x) {
 			IBindingService bindingSvc= (IBindingService)PlatformUI.getWorkbench().getAdapter(IBindingService.class);
 			String keyBinding= bindingSvc.getBestActiveBindingFormattedFor(IWorkbenchCommandConstants.EDIT_CONTENT_ASSIST);
@@ -275,34 +494,27 @@ public class JavaCompletionProposalComputer implements IJavaCompletionProposalCo
 	}
 
 	/**
-	 * Returns a new progress monitor that get cancelled after the given timeout.
+	 * Returns a new progress monitor that get cancelled after the given timeout, or when
+	 * the given monitor is cancelled.
 	 * 
+	 * @param monitor the progress monitor of the computation, or <code>null</code>
 	 * @param timeout the timeout in ms
 	 * @return the progress monitor
 	 * @since 3.5
 	 */
-	private IProgressMonitor createTimeoutProgressMonitor(final long timeout) {
-		return new IProgressMonitor() {
+	private IProgressMonitor createTimeoutProgressMonitor(IProgressMonitor monitor, final long timeout) {
+		return new ProgressMonitorWrapper(monitor != null ? monitor : new NullProgressMonitor()) {
 
 			private long fEndTime;
 			
+			@Override
 			public void beginTask(String name, int totalWork) {
 				fEndTime= System.currentTimeMillis() + timeout;
+				super.beginTask(name, totalWork);
 			}
+			@Override
 			public boolean isCanceled() {
-				return fEndTime <= System.currentTimeMillis();
-			}
-			public void done() {
-			}
-			public void internalWorked(double work) {
-			}
-			public void setCanceled(boolean value) {
-			}
-			public void setTaskName(String name) {
-			}
-			public void subTask(String name) {
-			}
-			public void worked(int work) {
+				return fEndTime <= System.currentTimeMillis() || super.isCanceled();
 			}
 		};
 	}
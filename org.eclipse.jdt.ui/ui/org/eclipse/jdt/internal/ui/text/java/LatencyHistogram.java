@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.java;
+
+
+/**
+ * A histogram of latencies in milliseconds. Bucket <code>0</code> counts latencies below
+ * 1 ms, bucket <code>i</code> counts latencies from 2<sup>i-1</sup> ms to below 2<sup>i</sup> ms,
+ * and the last bucket counts all longer latencies.
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class LatencyHistogram {
+
+	/** The number of buckets, the last one counts latencies of 2<sup>14</sup> ms and above. */
+	public static final int BUCKET_COUNT= 16;
+
+	private final int[] fCounts= new int[BUCKET_COUNT];
+	private int fTotalCount;
+	private long fMaximum;
+	private long fSum;
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param millis the latency in milliseconds
+	 */
+	public synchronized void add(long millis) {
+		fCounts[getBucket(millis)]++;
+		fTotalCount++;
+		fSum+= millis;
+		if (millis > fMaximum)
+			fMaximum= millis;
+	}
+
+	/**
+	 * Returns the bucket of the given latency.
+	 *
+	 * @param millis the latency in milliseconds
+	 * @return the index of the bucket counting the latency
+	 */
+	public static int getBucket(long millis) {
+		if (millis < 1)
+			return 0;
+		int bucket= 64 - Long.numberOfLeadingZeros(millis);
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Returns the lower bound of the given bucket.
+	 *
+	 * @param bucket the index of the bucket
+	 * @return the smallest latency counted in the bucket, in milliseconds
+	 */
+	public static long getLowerBound(int bucket) {
+		return bucket == 0 ? 0 : 1L << (bucket - 1);
+	}
+
+	/**
+	 * Returns the number of latencies counted in the given bucket.
+	 *
+	 * @param bucket the index of the bucket
+	 * @return the number of latencies in the bucket
+	 */
+	public synchronized int getCount(int bucket) {
+		return fCounts[bucket];
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 *
+	 * @return the number of recorded latencies
+	 */
+	public synchronized int getTotalCount() {
+		return fTotalCount;
+	}
+
+	/**
+	 * Returns the longest recorded latency.
+	 *
+	 * @return the longest latency in milliseconds, or <code>0</code> if none has been recorded
+	 */
+	public synchronized long getMaximum() {
+		return fMaximum;
+	}
+
+	/**
+	 * Returns the smallest bucket bound below which the given fraction of all recorded latencies
+	 * lie.
+	 *
+	 * @param fraction the fraction, between <code>0</code> and <code>1</code>
+	 * @return the upper bound of the percentile in milliseconds, or <code>0</code> if no latency
+	 *         has been recorded
+	 */
+	public synchronized long getPercentile(double fraction) {
+		if (fTotalCount == 0)
+			return 0;
+		int threshold= (int) Math.ceil(fraction * fTotalCount);
+		int count= 0;
+		for (int i= 0; i < BUCKET_COUNT - 1; i++) {
+			count+= fCounts[i];
+			if (count >= threshold)
+				return Math.min(getLowerBound(i + 1), fMaximum);
+		}
+		return fMaximum;
+	}
+
+	/**
+	 * Discards all recorded latencies.
+	 */
+	public synchronized void clear() {
+		for (int i= 0; i < BUCKET_COUNT; i++)
+			fCounts[i]= 0;
+		fTotalCount= 0;
+		fSum= 0;
+		fMaximum= 0;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuffer buf= new StringBuffer();
+		buf.append("count= ").append(fTotalCount); //$NON-NLS-1$
+		if (fTotalCount > 0) {
+			buf.append(", mean= ").append(fSum / fTotalCount); //$NON-NLS-1$
+			buf.append(", max= ").append(fMaximum); //$NON-NLS-1$
+			buf.append(" ["); //$NON-NLS-1$
+			boolean first= true;
+			for (int i= 0; i < BUCKET_COUNT; i++) {
+				if (fCounts[i] == 0)
+					continue;
+				if (!first)
+					buf.append(", "); //$NON-NLS-1$
+				first= false;
+				buf.append(i == BUCKET_COUNT - 1 ? ">=" : "<"); //$NON-NLS-1$ //$NON-NLS-2$
+				buf.append(i == BUCKET_COUNT - 1 ? getLowerBound(i) : getLowerBound(i + 1));
+				buf.append(": ").append(fCounts[i]); //$NON-NLS-1$
+			}
+			buf.append(']');
+		}
+		return buf.toString();
+	}
+}
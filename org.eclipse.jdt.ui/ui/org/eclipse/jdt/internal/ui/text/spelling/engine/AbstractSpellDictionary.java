@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,27 +11,29 @@
 package org.eclipse.jdt.internal.ui.text.spelling.engine;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.MalformedInputException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.URIUtil;
 
 import org.eclipse.core.resources.ResourcesPlugin;
 
@@ -52,58 +54,6 @@ import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
  */
 public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
-	/**
-	 * Byte array wrapper
-	 * @since 3.6
-	 */
-	private static class ByteArrayWrapper {
-
-		private static int hashCode(byte[] array) {
-			int prime= 31;
-			if (array == null)
-				return 0;
-			int result= 1;
-			for (int index= 0; index < array.length; index++) {
-				result= prime * result + array[index];
-			}
-			return result;
-		}
-
-		private byte[] byteArray;
-
-		public ByteArrayWrapper(byte[] byteArray) {
-			this.byteArray= byteArray;
-		}
-		@Override
-		public int hashCode() {
-			final int prime= 31;
-			int result= 1;
-			result= prime * result + ByteArrayWrapper.hashCode(byteArray);
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (!(obj instanceof ByteArrayWrapper))
-				return false;
-			ByteArrayWrapper other= (ByteArrayWrapper)obj;
-			if (!Arrays.equals(byteArray, other.byteArray))
-				return false;
-			return true;
-		}
-	}
-
-	
-	/**
-	 * Canonical name for UTF-8 encoding
-	 * @since 3.6
-	 */
-	private static final String UTF_8= "UTF-8"; //$NON-NLS-1$
-
 	/** The bucket capacity */
 	protected static final int BUCKET_CAPACITY= 4;
 
@@ -122,8 +72,18 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	/** The phonetic distance algorithm */
 	private IPhoneticDistanceAlgorithm fDistanceAlgorithm= new DefaultPhoneticDistanceAlgorithm();
 
-	/** The mapping from phonetic hashes to word lists */
-	private final Map<ByteArrayWrapper, Object> fHashBuckets= new HashMap<ByteArrayWrapper, Object>(getInitialSize(), LOAD_FACTOR);
+	/**
+	 * The index of the words loaded from the word list, or <code>null</code> if none
+	 * @since 3.8
+	 */
+	private PhoneticIndex fIndex= null;
+
+	/**
+	 * The mapping from phonetic hashes to the words hashed into the dictionary
+	 * after the word list has been loaded
+	 * @since 3.8
+	 */
+	private final Map<String, List<String>> fHashBuckets= new HashMap<String, List<String>>();
 
 	/** The phonetic hash provider */
 	private IPhoneticHashProvider fHashProvider= new DefaultPhoneticHashProvider();
@@ -144,6 +104,9 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 	/**
 	 * Returns the initial size of dictionary.
+	 * <p>
+	 * Since 3.8, this is the number of words the word list is expected to hold.
+	 * </p>
 	 * 
 	 * @return The initial size of dictionary.
 	 * @since 3.6
@@ -153,21 +116,56 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	}
 
 	/**
-	 * Returns all candidates with the same phonetic hash.
+	 * Adds the candidates with the same phonetic hash to a list.
 	 *
 	 * @param hash
 	 *                   The hash to retrieve the candidates of
-	 * @return Array of candidates for the phonetic hash
+	 * @param candidates
+	 *                   The list to add the candidates to
+	 * @param maximum
+	 *                   The maximum number of candidates to add
+	 * @since 3.8
 	 */
-	protected final Object getCandidates(final String hash) {
-		ByteArrayWrapper hashBytes;
-		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
-			return null;
+	private void getCandidates(final String hash, final List<String> candidates, final int maximum) {
+		int count= 0;
+
+		final PhoneticIndex index= fIndex;
+		if (index != null) {
+			final int bucket= index.findBucket(hash);
+			if (bucket != -1) {
+				final int end= index.getBucketEnd(bucket);
+				for (int word= index.getBucketStart(bucket); word < end && count < maximum; word++, count++)
+					candidates.add(index.getWord(word));
+			}
 		}
-		return fHashBuckets.get(hashBytes);
+
+		final List<String> words= fHashBuckets.get(hash);
+		if (words != null) {
+			for (int word= 0; word < words.size() && count < maximum; word++, count++)
+				candidates.add(words.get(word));
+		}
+	}
+
+	/**
+	 * Tells whether the words added by {@link #hashWord(String)} contain a word with
+	 * the given phonetic hash.
+	 *
+	 * @param hash
+	 *                   The phonetic hash of the word
+	 * @param word
+	 *                   The word
+	 * @return <code>true</code> iff the added words contain the word
+	 * @since 3.8
+	 */
+	private boolean containsAdded(final String hash, final String word) {
+		final List<String> words= fHashBuckets.get(hash);
+		if (words != null) {
+			for (int candidate= 0; candidate < words.size(); candidate++) {
+				if (words.get(candidate).equals(word))
+					return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -190,45 +188,17 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 		final StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
 		final HashSet<RankedWordProposal> result= new HashSet<RankedWordProposal>(BUCKET_CAPACITY * hashs.size());
+		final ArrayList<String> candidates= new ArrayList<String>(BUCKET_CAPACITY);
 
 		for (int index= 0; index < hashs.size(); index++) {
 
 			hash= hashs.get(index);
 
-			final Object candidates= getCandidates(hash);
-			if (candidates == null)
-				continue;
-			else if (candidates instanceof byte[]) {
-				String candidate;
-				try {
-					candidate= new String((byte[])candidates, UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
-				distance= fDistanceAlgorithm.getDistance(word, candidate);
-				if (distance < DISTANCE_THRESHOLD) {
-					buffer.setLength(0);
-					buffer.append(candidate);
-					if (sentence)
-						buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-					result.add(new RankedWordProposal(buffer.toString(), -distance));
-				}
-				continue;
-			}
-
-			@SuppressWarnings("unchecked")
-			final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-			int candidateSize= Math.min(500, candidateList.size()); // see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
-			for (int offset= 0; offset < candidateSize; offset++) {
+			candidates.clear();
+			getCandidates(hash, candidates, 500); // see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
+			for (int offset= 0; offset < candidates.size(); offset++) {
 
-				String candidate;
-				try {
-					candidate= new String(candidateList.get(offset), UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
+				final String candidate= candidates.get(offset);
 				distance= fDistanceAlgorithm.getDistance(word, candidate);
 
 				if (distance < DISTANCE_THRESHOLD) {
@@ -266,37 +236,15 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 		StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return;
-			}
-			distance= fDistanceAlgorithm.getDistance(word, candidate);
-			buffer.append(candidate);
-			if (sentence)
-				buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-			result.add(new RankedWordProposal(buffer.toString(), -distance));
+		final ArrayList<String> candidateList= new ArrayList<String>(BUCKET_CAPACITY);
+		getCandidates(fHashProvider.getHash(word), candidateList, Integer.MAX_VALUE);
+		if (candidateList.isEmpty())
 			return;
-		}
 
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
 		final ArrayList<RankedWordProposal> matches= new ArrayList<RankedWordProposal>(candidateList.size());
 
 		for (int index= 0; index < candidateList.size(); index++) {
-			String candidate;
-			try {
-				candidate= new String(candidateList.get(index), UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return;
-			}
+			final String candidate= candidateList.get(index);
 			distance= fDistanceAlgorithm.getDistance(word, candidate);
 
 			if (distance <= minimum) {
@@ -325,7 +273,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @since 3.3
 	 */
 	protected boolean isEmpty() {
-		return fHashBuckets.size() == 0;
+		return (fIndex == null || fIndex.getWordCount() == 0) && fHashBuckets.size() == 0;
 	}
 
 	/**
@@ -477,30 +425,13 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	protected final void hashWord(final String word) {
 
 		final String hash= fHashProvider.getHash(word);
-		ByteArrayWrapper hashBytes;
-		byte[] wordBytes;
-		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
-			wordBytes= word.getBytes(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
-			return;
-		}
-
-		Object bucket= fHashBuckets.get(hashBytes);
+		List<String> bucket= fHashBuckets.get(hash);
 
 		if (bucket == null) {
-			fHashBuckets.put(hashBytes, wordBytes);
-		} else if (bucket instanceof ArrayList) {
-			@SuppressWarnings("unchecked")
-			ArrayList<byte[]> bucketList= (ArrayList<byte[]>)bucket;
-			bucketList.add(wordBytes);
-		} else {
-			ArrayList<Object> list= new ArrayList<Object>(BUCKET_CAPACITY);
-			list.add(bucket);
-			list.add(wordBytes);
-			fHashBuckets.put(hashBytes, list);
+			bucket= new ArrayList<String>(1);
+			fHashBuckets.put(hash, bucket);
 		}
+		bucket.add(word);
 	}
 
 	/*
@@ -522,37 +453,31 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 			// Do nothing
 		}
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return false;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return false;
-			}
-			if (candidate.equals(word) || candidate.equals(word.toLowerCase()))
-				return true;
-			return false;
-		}
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-		byte[] wordBytes;
-		byte[] lowercaseWordBytes;
-		try {
-			wordBytes= word.getBytes(UTF_8);
-			lowercaseWordBytes= word.toLowerCase().getBytes(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
+		// the index is searched by the word itself, this does not allocate
+		final boolean hasUpperCase= hasUpperCase(word);
+		final PhoneticIndex index= fIndex;
+		if (index != null && (index.contains(word, false) || hasUpperCase && index.contains(word, true)))
+			return true;
+
+		if (fHashBuckets.isEmpty())
 			return false;
-		}
-		for (int index= 0; index < candidateList.size(); index++) {
-			byte[] candidate= candidateList.get(index);
-			if (Arrays.equals(candidate, wordBytes) || Arrays.equals(candidate, lowercaseWordBytes)) {
+
+		final String hash= fHashProvider.getHash(word);
+		return containsAdded(hash, word) || hasUpperCase && containsAdded(hash, word.toLowerCase());
+	}
+
+	/**
+	 * Tells whether the given word has an upper case character.
+	 *
+	 * @param word
+	 *                   The word
+	 * @return <code>true</code> iff the word has an upper case character
+	 * @since 3.8
+	 */
+	private static boolean hasUpperCase(final String word) {
+		for (int index= 0, length= word.length(); index < length; index++) {
+			if (Character.toLowerCase(word.charAt(index)) != word.charAt(index))
 				return true;
-			}
 		}
 		return false;
 	}
@@ -596,7 +521,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @see org.eclipse.jdt.ui.text.spelling.engine.ISpellDictionary#isLoaded()
 	 */
 	public synchronized final boolean isLoaded() {
-		return fLoaded || fHashBuckets.size() > 0;
+		return fLoaded || !isEmpty();
 	}
 
 	/**
@@ -612,12 +537,31 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 			 return fLoaded;
 
 		if (url != null) {
+			final File indexFile= getIndexFile();
+			String stamp= null;
+			if (indexFile != null) {
+				try {
+					stamp= getIndexStamp(url);
+					final PhoneticIndex index= PhoneticIndex.read(indexFile, stamp);
+					if (index != null) {
+						fIndex= index;
+						fMustLoad= false;
+						return true;
+					}
+				} catch (FileNotFoundException ex) {
+					// Reported when reading the word list
+				} catch (IOException ex) {
+					JavaPlugin.log(ex);
+				}
+			}
+
 			InputStream stream= null;
 			int line= 0;
 			try {
 				stream= url.openStream();
 				if (stream != null) {
 					String word= null;
+					final PhoneticIndex.Builder builder= new PhoneticIndex.Builder(getInitialSize());
 
 					// Setup a reader with a decoder in order to read over malformed input if needed.
 					CharsetDecoder decoder= Charset.forName(getEncoding()).newDecoder();
@@ -645,7 +589,16 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 						}
 						doRead= word != null;
 						if (doRead)
-							hashWord(word);
+							builder.add(fHashProvider.getHash(word), word);
+					}
+					fIndex= builder.build();
+
+					if (stamp != null) {
+						try {
+							fIndex.write(indexFile, stamp);
+						} catch (IOException ex) {
+							JavaPlugin.log(ex);
+						}
 					}
 					return true;
 				}
@@ -685,12 +638,55 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @since 3.3.
 	 */
 	private void compact() {
-		Iterator<Object> iter= fHashBuckets.values().iterator();
-		while (iter.hasNext()) {
-			Object element= iter.next();
-			if (element instanceof ArrayList)
-				((ArrayList<?>)element).trimToSize();
+		Iterator<List<String>> iter= fHashBuckets.values().iterator();
+		while (iter.hasNext())
+			((ArrayList<String>)iter.next()).trimToSize();
+	}
+
+	/**
+	 * Returns the file to keep the index of the word list in, so that the word list does
+	 * not have to be read again when the dictionary is loaded the next time.
+	 * <p>
+	 * The default implementation returns <code>null</code>. Subclasses with large word
+	 * lists that do not change should override.
+	 * </p>
+	 *
+	 * @return the index file, or <code>null</code> if the index should not be kept
+	 * @since 3.8
+	 */
+	protected File getIndexFile() {
+		return null;
+	}
+
+	/**
+	 * Returns the stamp identifying the word list and the way it is hashed. An index
+	 * file is only used if it has been written with the same stamp.
+	 * <p>
+	 * Word lists are identified by their URL and the version of this plug-in, which
+	 * ships the dictionaries and the phonetic hash providers. The modification stamps
+	 * reported by URL connections are not reliable for bundle entries, they are only
+	 * used for word lists in the local file system.
+	 * </p>
+	 *
+	 * @param url the URL of the word list
+	 * @return the stamp
+	 * @since 3.8
+	 */
+	private String getIndexStamp(final URL url) {
+		final StringBuffer buffer= new StringBuffer(url.toExternalForm());
+		buffer.append('|').append(JavaPlugin.getDefault().getBundle().getVersion());
+		if ("file".equals(url.getProtocol())) { //$NON-NLS-1$
+			try {
+				final File file= URIUtil.toFile(URIUtil.toURI(url));
+				if (file != null)
+					buffer.append('|').append(file.lastModified()).append('|').append(file.length());
+			} catch (URISyntaxException e) {
+				// identified by the URL only
+			}
 		}
+		buffer.append('|').append(getEncoding());
+		buffer.append('|').append(fHashProvider.getClass().getName());
+		return buffer.toString();
 	}
 
 	/**
@@ -719,6 +715,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	public synchronized void unload() {
 		fLoaded= false;
 		fMustLoad= true;
+		fIndex= null;
 		fHashBuckets.clear();
 	}
 
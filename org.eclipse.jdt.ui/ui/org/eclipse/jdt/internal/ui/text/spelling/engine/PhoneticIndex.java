@@ -0,0 +1,532 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.spelling.engine;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+/**
+ * An immutable index from phonetic hashes to the words of a dictionary.
+ * <p>
+ * The index is a single buffer holding a table of the phonetic hashes sorted by
+ * their hash codes, the offsets of the words of each hash, a table of the words
+ * sorted by their hash codes and the UTF-8 encoded hashes and words, packed one
+ * after the other. The buffer can be written to a file and read back, so that a
+ * dictionary does not have to be rebuilt from its word list.
+ * </p>
+ * <p>
+ * Looking up a hash or a word, or comparing a word of the index with a string
+ * does not allocate. The index can be used by several threads concurrently.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class PhoneticIndex {
+
+	/**
+	 * Builds a phonetic index.
+	 */
+	public static final class Builder {
+
+		private String[] fHashes;
+		private String[] fWords;
+		private int fSize= 0;
+
+		/**
+		 * Creates a new builder.
+		 *
+		 * @param initialSize the expected number of words
+		 */
+		public Builder(int initialSize) {
+			fHashes= new String[Math.max(initialSize, 16)];
+			fWords= new String[fHashes.length];
+		}
+
+		/**
+		 * Adds a word to the index. Words with the same phonetic hash are kept in
+		 * the order they have been added.
+		 *
+		 * @param hash the phonetic hash of the word
+		 * @param word the word
+		 */
+		public void add(String hash, String word) {
+			if (fSize == fHashes.length) {
+				String[] hashes= new String[fSize * 2];
+				String[] words= new String[fSize * 2];
+				System.arraycopy(fHashes, 0, hashes, 0, fSize);
+				System.arraycopy(fWords, 0, words, 0, fSize);
+				fHashes= hashes;
+				fWords= words;
+			}
+			fHashes[fSize]= hash;
+			fWords[fSize]= word;
+			fSize++;
+		}
+
+		/**
+		 * Returns the number of words added to this builder.
+		 *
+		 * @return the number of words
+		 */
+		public int size() {
+			return fSize;
+		}
+
+		/**
+		 * Builds the index from the words added to this builder.
+		 *
+		 * @return the index
+		 */
+		public PhoneticIndex build() {
+			// sort by hash code, keeping the words of each hash code in order
+			long[] entries= new long[fSize];
+			for (int index= 0; index < fSize; index++)
+				entries[index]= ((long) fHashes[index].hashCode() << 32) | index;
+			Arrays.sort(entries);
+
+			byte[][] hashBytes= new byte[fSize][];
+			byte[][] wordBytes= new byte[fSize][];
+			int[] hashCodes= new int[fSize];
+			int[] bucketStarts= new int[fSize + 1];
+			long[] wordEntries= new long[fSize];
+			boolean[] done= new boolean[fSize];
+			int keyCount= 0;
+			int wordCount= 0;
+			int hashArenaSize= 0;
+			int wordArenaSize= 0;
+
+			int runStart= 0;
+			while (runStart < fSize) {
+				int hashCode= (int) (entries[runStart] >> 32);
+				int runEnd= runStart + 1;
+				while (runEnd < fSize && (int) (entries[runEnd] >> 32) == hashCode)
+					runEnd++;
+
+				// different hashes with the same hash code get separate buckets
+				for (int first= runStart; first < runEnd; first++) {
+					if (done[first])
+						continue;
+
+					String hash= fHashes[(int) entries[first]];
+					hashCodes[keyCount]= hashCode;
+					hashBytes[keyCount]= encode(hash);
+					hashArenaSize+= hashBytes[keyCount].length;
+					bucketStarts[keyCount]= wordCount;
+					keyCount++;
+
+					for (int other= first; other < runEnd; other++) {
+						int word= (int) entries[other];
+						if (!done[other] && fHashes[word].equals(hash)) {
+							done[other]= true;
+							wordBytes[wordCount]= encode(fWords[word]);
+							wordEntries[wordCount]= ((long) fWords[word].hashCode() << 32) | wordCount;
+							wordArenaSize+= wordBytes[wordCount].length;
+							wordCount++;
+						}
+					}
+				}
+				runStart= runEnd;
+			}
+			bucketStarts[keyCount]= wordCount;
+			Arrays.sort(wordEntries, 0, wordCount);
+
+			int size= HEADER_SIZE + 4 * (keyCount + 2 * (keyCount + 1) + wordCount + 1 + 2 * wordCount) + hashArenaSize + wordArenaSize;
+			ByteBuffer buffer= ByteBuffer.allocate(size);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(keyCount).putInt(wordCount).putInt(hashArenaSize).putInt(wordArenaSize);
+
+			for (int key= 0; key < keyCount; key++)
+				buffer.putInt(hashCodes[key]);
+
+			int offset= 0;
+			for (int key= 0; key < keyCount; key++) {
+				buffer.putInt(offset);
+				offset+= hashBytes[key].length;
+			}
+			buffer.putInt(offset);
+
+			for (int key= 0; key <= keyCount; key++)
+				buffer.putInt(bucketStarts[key]);
+
+			offset= 0;
+			for (int word= 0; word < wordCount; word++) {
+				buffer.putInt(offset);
+				offset+= wordBytes[word].length;
+			}
+			buffer.putInt(offset);
+
+			for (int word= 0; word < wordCount; word++)
+				buffer.putInt((int) (wordEntries[word] >> 32));
+			for (int word= 0; word < wordCount; word++)
+				buffer.putInt((int) wordEntries[word]);
+
+			for (int key= 0; key < keyCount; key++)
+				buffer.put(hashBytes[key]);
+			for (int word= 0; word < wordCount; word++)
+				buffer.put(wordBytes[word]);
+
+			buffer.flip();
+			try {
+				return new PhoneticIndex(buffer);
+			} catch (IOException e) {
+				// cannot happen, the buffer has just been written
+				throw new IllegalStateException(e.getMessage());
+			}
+		}
+
+		private static byte[] encode(String string) {
+			try {
+				return string.getBytes(UTF_8);
+			} catch (UnsupportedEncodingException e) {
+				// UTF-8 is always supported
+				throw new IllegalStateException(e.getMessage());
+			}
+		}
+	}
+
+	/** Canonical name for UTF-8 encoding */
+	private static final String UTF_8= "UTF-8"; //$NON-NLS-1$
+
+	/** The magic number of the index format */
+	private static final int MAGIC= 0x4A505849;
+
+	/** The version of the index format */
+	private static final int VERSION= 2;
+
+	/** The size of the header, in bytes */
+	private static final int HEADER_SIZE= 6 * 4;
+
+	/** The buffer holding the index */
+	private final ByteBuffer fBuffer;
+
+	/** The number of phonetic hashes */
+	private final int fKeyCount;
+
+	/** The number of words */
+	private final int fWordCount;
+
+	/** The start of the sorted table of hash codes */
+	private final int fHashCodesStart;
+
+	/** The start of the offsets of the hashes in the hash arena */
+	private final int fHashOffsetsStart;
+
+	/** The start of the indices of the first word of each hash */
+	private final int fBucketsStart;
+
+	/** The start of the offsets of the words in the word arena */
+	private final int fWordOffsetsStart;
+
+	/** The start of the sorted table of the hash codes of the words */
+	private final int fWordHashCodesStart;
+
+	/** The start of the indices of the words in the order of their hash codes */
+	private final int fWordIndicesStart;
+
+	/** The start of the UTF-8 encoded hashes */
+	private final int fHashArenaStart;
+
+	/** The start of the UTF-8 encoded words */
+	private final int fWordArenaStart;
+
+	private PhoneticIndex(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("Invalid phonetic index"); //$NON-NLS-1$
+
+		fBuffer= buffer;
+		fKeyCount= buffer.getInt(8);
+		fWordCount= buffer.getInt(12);
+		fHashCodesStart= HEADER_SIZE;
+		fHashOffsetsStart= fHashCodesStart + 4 * fKeyCount;
+		fBucketsStart= fHashOffsetsStart + 4 * (fKeyCount + 1);
+		fWordOffsetsStart= fBucketsStart + 4 * (fKeyCount + 1);
+		fWordHashCodesStart= fWordOffsetsStart + 4 * (fWordCount + 1);
+		fWordIndicesStart= fWordHashCodesStart + 4 * fWordCount;
+		fHashArenaStart= fWordIndicesStart + 4 * fWordCount;
+		fWordArenaStart= fHashArenaStart + buffer.getInt(16);
+
+		if (fKeyCount < 0 || fWordCount < 0 || fWordArenaStart + buffer.getInt(20) != buffer.limit())
+			throw new IOException("Invalid phonetic index"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the number of phonetic hashes in this index.
+	 *
+	 * @return the number of hashes
+	 */
+	public int getHashCount() {
+		return fKeyCount;
+	}
+
+	/**
+	 * Returns the number of words in this index.
+	 *
+	 * @return the number of words
+	 */
+	public int getWordCount() {
+		return fWordCount;
+	}
+
+	/**
+	 * Returns the bucket of a phonetic hash.
+	 *
+	 * @param hash the phonetic hash
+	 * @return the index of the bucket, or <code>-1</code> if the index has no words
+	 *         with the hash
+	 */
+	public int findBucket(String hash) {
+		int hashCode= hash.hashCode();
+		int first= findFirst(fHashCodesStart, fKeyCount, hashCode);
+		if (first != -1) {
+			for (int key= first; key < fKeyCount && getInt(fHashCodesStart, key) == hashCode; key++) {
+				if (matches(hash, false, fHashArenaStart, fHashOffsetsStart, key))
+					return key;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Tells whether this index contains the given word.
+	 *
+	 * @param word the word
+	 * @param lowerCase <code>true</code> to look up the word with all its characters
+	 *            converted to lower case by {@link Character#toLowerCase(char)}
+	 * @return <code>true</code> if the index contains the word
+	 */
+	public boolean contains(String word, boolean lowerCase) {
+		int hashCode;
+		if (lowerCase) {
+			hashCode= 0;
+			for (int index= 0, length= word.length(); index < length; index++)
+				hashCode= 31 * hashCode + Character.toLowerCase(word.charAt(index));
+		} else {
+			hashCode= word.hashCode();
+		}
+
+		int first= findFirst(fWordHashCodesStart, fWordCount, hashCode);
+		if (first != -1) {
+			for (int entry= first; entry < fWordCount && getInt(fWordHashCodesStart, entry) == hashCode; entry++) {
+				if (matches(word, lowerCase, fWordArenaStart, fWordOffsetsStart, getInt(fWordIndicesStart, entry)))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the index of the first word in a bucket.
+	 *
+	 * @param bucket the index of the bucket
+	 * @return the index of the first word
+	 */
+	public int getBucketStart(int bucket) {
+		return fBuffer.getInt(fBucketsStart + 4 * bucket);
+	}
+
+	/**
+	 * Returns the index after the last word in a bucket.
+	 *
+	 * @param bucket the index of the bucket
+	 * @return the index after the last word
+	 */
+	public int getBucketEnd(int bucket) {
+		return fBuffer.getInt(fBucketsStart + 4 * (bucket + 1));
+	}
+
+	/**
+	 * Tells whether a word of this index is equal to the given string.
+	 *
+	 * @param word the index of the word
+	 * @param string the string to compare with
+	 * @return <code>true</code> if the word is equal to the string
+	 */
+	public boolean isEqual(int word, String string) {
+		return matches(string, false, fWordArenaStart, fWordOffsetsStart, word);
+	}
+
+	/**
+	 * Returns a word of this index.
+	 *
+	 * @param word the index of the word
+	 * @return the word
+	 */
+	public String getWord(int word) {
+		int position= fWordArenaStart + fBuffer.getInt(fWordOffsetsStart + 4 * word);
+		int end= fWordArenaStart + fBuffer.getInt(fWordOffsetsStart + 4 * (word + 1));
+		char[] characters= new char[end - position];
+		int length= 0;
+		while (position < end) {
+			int codePoint;
+			int first= fBuffer.get(position++) & 0xff;
+			if (first < 0x80) {
+				codePoint= first;
+			} else if (first < 0xe0) {
+				codePoint= (first & 0x1f) << 6 | fBuffer.get(position++) & 0x3f;
+			} else if (first < 0xf0) {
+				codePoint= (first & 0x0f) << 12 | (fBuffer.get(position++) & 0x3f) << 6 | fBuffer.get(position++) & 0x3f;
+			} else {
+				codePoint= (first & 0x07) << 18 | (fBuffer.get(position++) & 0x3f) << 12 | (fBuffer.get(position++) & 0x3f) << 6 | fBuffer.get(position++) & 0x3f;
+				characters[length++]= (char) (0xd800 + (codePoint - 0x10000 >> 10));
+				codePoint= 0xdc00 + (codePoint - 0x10000 & 0x3ff);
+			}
+			characters[length++]= (char) codePoint;
+		}
+		return new String(characters, 0, length);
+	}
+
+	private int getInt(int tableStart, int index) {
+		return fBuffer.getInt(tableStart + 4 * index);
+	}
+
+	/**
+	 * Finds the first entry with the given hash code in a sorted table of hash codes.
+	 *
+	 * @param tableStart the start of the table
+	 * @param count the number of entries in the table
+	 * @param hashCode the hash code
+	 * @return the index of the first entry with the hash code, or <code>-1</code> if
+	 *         there is none
+	 */
+	private int findFirst(int tableStart, int count, int hashCode) {
+		int low= 0;
+		int high= count - 1;
+		while (low <= high) {
+			int middle= (low + high) >>> 1;
+			int value= getInt(tableStart, middle);
+			if (value < hashCode) {
+				low= middle + 1;
+			} else if (value > hashCode) {
+				high= middle - 1;
+			} else {
+				while (middle > 0 && getInt(tableStart, middle - 1) == hashCode)
+					middle--;
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares UTF-8 encoded characters in the buffer with a string.
+	 *
+	 * @param string the string
+	 * @param lowerCase <code>true</code> to compare with the characters of the string
+	 *            converted to lower case
+	 * @param arenaStart the start of the arena holding the characters
+	 * @param offsetsStart the start of the offsets into the arena
+	 * @param element the index of the element to compare
+	 * @return <code>true</code> if the element is equal to the string
+	 */
+	private boolean matches(String string, boolean lowerCase, int arenaStart, int offsetsStart, int element) {
+		int position= arenaStart + fBuffer.getInt(offsetsStart + 4 * element);
+		int end= arenaStart + fBuffer.getInt(offsetsStart + 4 * (element + 1));
+		int length= string.length();
+		if (end - position < length)
+			return false;
+
+		int index= 0;
+		while (position < end) {
+			if (index == length)
+				return false;
+
+			int codePoint;
+			int first= fBuffer.get(position++) & 0xff;
+			if (first < 0x80) {
+				codePoint= first;
+			} else if (first < 0xe0) {
+				codePoint= (first & 0x1f) << 6 | fBuffer.get(position++) & 0x3f;
+			} else if (first < 0xf0) {
+				codePoint= (first & 0x0f) << 12 | (fBuffer.get(position++) & 0x3f) << 6 | fBuffer.get(position++) & 0x3f;
+			} else {
+				codePoint= (first & 0x07) << 18 | (fBuffer.get(position++) & 0x3f) << 12 | (fBuffer.get(position++) & 0x3f) << 6 | fBuffer.get(position++) & 0x3f;
+				if (index + 1 == length || string.charAt(index++) != (char) (0xd800 + (codePoint - 0x10000 >> 10)))
+					return false;
+				codePoint= 0xdc00 + (codePoint - 0x10000 & 0x3ff);
+			}
+			char character= string.charAt(index++);
+			if ((lowerCase ? Character.toLowerCase(character) : character) != codePoint)
+				return false;
+		}
+		return index == length;
+	}
+
+	/**
+	 * Writes this index to a file. The file is replaced atomically where the file
+	 * system supports it.
+	 *
+	 * @param file the file to write to
+	 * @param stamp the stamp identifying the word list the index has been built from
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(File file, String stamp) throws IOException {
+		File folder= file.getParentFile();
+		if (!folder.exists() && !folder.mkdirs())
+			throw new IOException(folder.getPath());
+
+		File temporary= File.createTempFile(file.getName(), null, folder);
+		DataOutputStream stream= new DataOutputStream(new FileOutputStream(temporary));
+		try {
+			stream.writeUTF(stamp);
+			ByteBuffer buffer= fBuffer.duplicate();
+			buffer.clear();
+			byte[] bytes= new byte[8192];
+			while (buffer.hasRemaining()) {
+				int length= Math.min(bytes.length, buffer.remaining());
+				buffer.get(bytes, 0, length);
+				stream.write(bytes, 0, length);
+			}
+		} finally {
+			stream.close();
+		}
+		if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+			temporary.delete();
+			throw new IOException(file.getPath());
+		}
+	}
+
+	/**
+	 * Reads an index written by {@link #write(File, String)}. The file is mapped into
+	 * memory and closed, the mapping stays valid until the index is garbage collected. On
+	 * platforms that lock mapped files, {@link #write(File, String)} cannot replace the
+	 * file while the index is in use.
+	 *
+	 * @param file the file to read from
+	 * @param stamp the stamp identifying the word list the index must have been built from
+	 * @return the index, or <code>null</code> if the file does not exist or has been
+	 *         written for a different word list
+	 * @throws IOException if the file could not be read or is corrupt
+	 */
+	public static PhoneticIndex read(File file, String stamp) throws IOException {
+		if (!file.isFile())
+			return null;
+
+		RandomAccessFile stream= new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			if (!stamp.equals(stream.readUTF()))
+				return null;
+			long position= stream.getFilePointer();
+			long length= stream.length() - position;
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("Invalid phonetic index"); //$NON-NLS-1$
+			return new PhoneticIndex(stream.getChannel().map(FileChannel.MapMode.READ_ONLY, position, length));
+		} finally {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.core.refactoring.tests.FileSystemHelper;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryIndex;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryManager;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryService;
+
+public class RefactoringHistoryIndexTests extends TestCase {
+
+	/** The time stamp of the first refactoring, in the first week of 2012 */
+	private static final long STAMP_FIRST_WEEK= 1325505600000L;
+
+	/** The time stamp of the first refactoring, in the third week of 2012 */
+	private static final long STAMP_THIRD_WEEK= 1326715200000L;
+
+	private IFileStore fHistoryStore;
+
+	/** The modification time stamp to set next, well before the index checks */
+	private long fModified;
+
+	protected void setUp() throws Exception {
+		fHistoryStore= EFS.getLocalFileSystem().getStore(FileSystemHelper.getRandomLocation(FileSystemHelper.getTempDir()));
+		fHistoryStore.mkdir(EFS.NONE, null);
+		fModified= (System.currentTimeMillis() / 1000 - 3600) * 1000;
+	}
+
+	protected void tearDown() throws Exception {
+		RefactoringHistoryIndex.deleteIndex(fHistoryStore);
+		fHistoryStore.delete(EFS.NONE, null);
+	}
+
+	private IFileStore getIndexFile(long stamp) {
+		return fHistoryStore.getFileStore(RefactoringHistoryManager.stampToPath(stamp)).getChild(RefactoringHistoryService.NAME_INDEX_FILE);
+	}
+
+	private IFileStore getLogStore() {
+		IFileStore log= RefactoringHistoryIndex.getIndex(fHistoryStore).getLogStore();
+		assertNotNull(log);
+		return log;
+	}
+
+	/*
+	 * Sets the modification time stamp of the store to a distinct time stamp in the past, such
+	 * that the index does not check it again just because it has been modified recently.
+	 */
+	private void setModified(IFileStore store) throws CoreException {
+		IFileInfo info= EFS.createFileInfo();
+		info.setLastModified(fModified);
+		store.putInfo(info, EFS.SET_LAST_MODIFIED, null);
+		fModified+= 1000;
+	}
+
+	/*
+	 * Writes an index file with count refactorings, starting at the specified time stamp.
+	 */
+	private void writeIndex(long stamp, int count) throws Exception {
+		IFileStore file= getIndexFile(stamp);
+		IFileStore folder= file.getParent();
+		folder.mkdir(EFS.NONE, null);
+		StringBuffer buffer= new StringBuffer();
+		for (int index= 0; index < count; index++) {
+			buffer.append(stamp + index);
+			buffer.append(RefactoringHistoryManager.DELIMITER_COMPONENT);
+			buffer.append(RefactoringHistoryManager.escapeString(getDescription(stamp + index)));
+			buffer.append(RefactoringHistoryManager.DELIMITER_ENTRY);
+		}
+		writeFile(file, buffer.toString().getBytes("utf-8"));
+		setModified(file);
+		for (IFileStore parent= folder; parent != null && !parent.equals(fHistoryStore.getParent()); parent= parent.getParent())
+			setModified(parent);
+	}
+
+	private static String getDescription(long stamp) {
+		return "Refactoring " + stamp;
+	}
+
+	private static byte[] readFile(IFileStore file) throws CoreException, IOException {
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		InputStream stream= file.openInputStream(EFS.NONE, null);
+		try {
+			byte[] buffer= new byte[4096];
+			for (int read= stream.read(buffer); read != -1; read= stream.read(buffer))
+				bytes.write(buffer, 0, read);
+		} finally {
+			stream.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeFile(IFileStore file, byte[] bytes) throws CoreException, IOException {
+		OutputStream stream= file.openOutputStream(EFS.NONE, null);
+		try {
+			stream.write(bytes);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private List readProxies() throws CoreException {
+		List result= new ArrayList();
+		RefactoringHistoryIndex.getIndex(fHistoryStore).readRefactoringDescriptorProxies(null, result, 0, Long.MAX_VALUE, new NullProgressMonitor());
+		return result;
+	}
+
+	/*
+	 * Asserts that the index contains count refactorings starting at each of the specified time stamps.
+	 */
+	private void assertProxies(long[] stamps, int[] counts) throws CoreException {
+		List proxies= readProxies();
+		RefactoringDescriptorProxy[] actual= (RefactoringDescriptorProxy[]) proxies.toArray(new RefactoringDescriptorProxy[proxies.size()]);
+		RefactoringHistoryManager.sortRefactoringDescriptorsAscending(actual);
+		int offset= 0;
+		for (int index= 0; index < stamps.length; index++) {
+			for (int entry= 0; entry < counts[index]; entry++, offset++) {
+				assertTrue("Too few refactorings", offset < actual.length);
+				assertEquals(stamps[index] + entry, actual[offset].getTimeStamp());
+				assertEquals(getDescription(stamps[index] + entry), actual[offset].getDescription());
+			}
+		}
+		assertEquals("Too many refactorings", offset, actual.length);
+	}
+
+	public void testReloadFromLog() throws Exception {
+		writeIndex(STAMP_FIRST_WEEK, 3);
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 3 });
+		writeIndex(STAMP_THIRD_WEEK, 2);
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 3, 2 });
+
+		int records= RefactoringHistoryIndex.getIndex(fHistoryStore).getLogRecords();
+		long length= getLogStore().fetchInfo().getLength();
+		assertTrue(length > 0);
+
+		RefactoringHistoryIndex.clearIndex(fHistoryStore);
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 3, 2 });
+		// the appended records have been read back instead of rebuilding the log
+		assertEquals(records, RefactoringHistoryIndex.getIndex(fHistoryStore).getLogRecords());
+		assertEquals(length, getLogStore().fetchInfo().getLength());
+	}
+
+	public void testRebuildTruncatedLog() throws Exception {
+		writeIndex(STAMP_FIRST_WEEK, 3);
+		writeIndex(STAMP_THIRD_WEEK, 2);
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 3, 2 });
+
+		IFileStore log= getLogStore();
+		byte[] bytes= readFile(log);
+		byte[] truncated= new byte[bytes.length - 5];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		RefactoringHistoryIndex.clearIndex(fHistoryStore);
+		writeFile(log, truncated);
+
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 3, 2 });
+		int records= RefactoringHistoryIndex.getIndex(fHistoryStore).getLogRecords();
+		assertEquals(bytes.length, log.fetchInfo().getLength());
+
+		RefactoringHistoryIndex.clearIndex(fHistoryStore);
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 3, 2 });
+		assertEquals(records, RefactoringHistoryIndex.getIndex(fHistoryStore).getLogRecords());
+	}
+
+	public void testRebuildCorruptLog() throws Exception {
+		writeIndex(STAMP_FIRST_WEEK, 3);
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 3 });
+
+		// keep the magic number and version, followed by a huge string length
+		IFileStore log= getLogStore();
+		byte[] bytes= readFile(log);
+		ByteArrayOutputStream corrupt= new ByteArrayOutputStream();
+		DataOutputStream output= new DataOutputStream(corrupt);
+		output.write(bytes, 0, 8);
+		output.writeInt(Integer.MAX_VALUE);
+		output.write(bytes, 12, bytes.length - 12);
+		output.flush();
+		RefactoringHistoryIndex.clearIndex(fHistoryStore);
+		writeFile(log, corrupt.toByteArray());
+
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 3 });
+		assertEquals(bytes.length, log.fetchInfo().getLength());
+	}
+
+	public void testModifiedIndexFile() throws Exception {
+		writeIndex(STAMP_FIRST_WEEK, 3);
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 3 });
+
+		// same modification time stamp, different length
+		IFileStore file= getIndexFile(STAMP_FIRST_WEEK);
+		long modified= file.fetchInfo().getLastModified();
+		writeIndex(STAMP_FIRST_WEEK, 2);
+		IFileInfo info= EFS.createFileInfo();
+		info.setLastModified(modified);
+		file.putInfo(info, EFS.SET_LAST_MODIFIED, null);
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 2 });
+
+		// same length, different modification time stamp
+		writeIndex(STAMP_FIRST_WEEK + 1, 2);
+		assertProxies(new long[] { STAMP_FIRST_WEEK + 1 }, new int[] { 2 });
+
+		// the changes have been persisted
+		RefactoringHistoryIndex.clearIndex(fHistoryStore);
+		assertProxies(new long[] { STAMP_FIRST_WEEK + 1 }, new int[] { 2 });
+	}
+
+	public void testCompaction() throws Exception {
+		writeIndex(STAMP_FIRST_WEEK, 1);
+		writeIndex(STAMP_THIRD_WEEK, 1);
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 1, 1 });
+
+		RefactoringHistoryIndex index= RefactoringHistoryIndex.getIndex(fHistoryStore);
+		int maxRecords= 0;
+		boolean compacted= false;
+		for (int count= 2; count <= 100; count++) {
+			int records= index.getLogRecords();
+			writeIndex(STAMP_FIRST_WEEK, count);
+			assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { count, 1 });
+			if (index.getLogRecords() < records)
+				compacted= true;
+			maxRecords= Math.max(maxRecords, index.getLogRecords());
+		}
+		assertTrue("The log has not been compacted", compacted);
+		assertTrue("The log is too large: " + maxRecords + " records", maxRecords < 100);
+
+		RefactoringHistoryIndex.clearIndex(fHistoryStore);
+		assertProxies(new long[] { STAMP_FIRST_WEEK, STAMP_THIRD_WEEK }, new int[] { 100, 1 });
+	}
+
+	public void testDeletedStore() throws Exception {
+		writeIndex(STAMP_FIRST_WEEK, 3);
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 3 });
+		IFileStore log= getLogStore();
+		assertTrue(log.fetchInfo().exists());
+
+		fHistoryStore.delete(EFS.NONE, null);
+		assertProxies(new long[0], new int[0]);
+		assertFalse("The log of a deleted history store has not been deleted", log.fetchInfo().exists());
+
+		IPath path= RefactoringHistoryManager.stampToPath(STAMP_FIRST_WEEK);
+		assertFalse(fHistoryStore.getFileStore(path).fetchInfo().exists());
+		fHistoryStore.mkdir(EFS.NONE, null);
+		writeIndex(STAMP_FIRST_WEEK, 1);
+		assertProxies(new long[] { STAMP_FIRST_WEEK }, new int[] { 1 });
+		assertTrue(log.fetchInfo().exists());
+	}
+}
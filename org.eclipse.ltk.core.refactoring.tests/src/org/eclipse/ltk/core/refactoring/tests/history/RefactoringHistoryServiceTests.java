@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2008 IBM Corporation and others.
+ * Copyright (c) 2006, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -564,6 +564,20 @@ public class RefactoringHistoryServiceTests extends TestCase {
 		assertEquals("Refactoring history has wrong size", 0, proxies.length);
 	}
 
+	public void testReadProjectHistory7() throws Exception {
+		final IProject project= fProject.getProject();
+		final RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		RefactoringHistory history= service.getProjectHistory(project, null);
+		assertEquals("Refactoring history has wrong size", TOTAL_PROJECT_NUMBER, history.getDescriptors().length);
+		IFolder folder= project.getFolder(RefactoringHistoryService.NAME_HISTORY_FOLDER);
+		folder.delete(true, null);
+		history= service.getProjectHistory(project, null);
+		assertTrue("Refactoring history should be empty", history.isEmpty());
+		executeRefactoring(project.getName(), 0, RefactoringDescriptor.NONE);
+		history= service.getProjectHistory(project, null);
+		assertEquals("Refactoring history has wrong size", 1, history.getDescriptors().length);
+	}
+
 	public void testReadRefactoringHistory0() throws Exception {
 		setUpWorkspaceRefactorings();
 		RefactoringHistory history= RefactoringHistoryService.getInstance().getWorkspaceHistory(null);
@@ -0,0 +1,898 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.SubProgressMonitor;
+
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+
+/**
+ * Persistent index of the refactoring descriptor proxies of a refactoring
+ * history store.
+ * <p>
+ * The refactoring history store itself remains the canonical format, since it
+ * may be shared with other workspaces through a version control system. The
+ * index keeps the time stamps and descriptions of all refactorings of the
+ * store in memory, sorted by time stamp, and remembers the modification time
+ * stamps of the folders and index files they have been read from. Reading the
+ * history then only requires to check these time stamps and to re-read the
+ * index files which have changed, instead of walking and parsing the whole
+ * store.
+ * </p>
+ * <p>
+ * The index is persisted in a binary log in the state location of the
+ * refactoring core plug-in, to which the changes are appended. The log is
+ * compacted once it mostly consists of outdated records. A missing or damaged
+ * log is rebuilt from the refactoring history store. The logs of history
+ * stores which do not exist anymore are deleted.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class RefactoringHistoryIndex {
+
+	/** A folder or index file of the refactoring history store */
+	private static final class Source {
+
+		/** The proxy descriptions, or <code>null</code> for folders */
+		private String[] fDescriptions;
+
+		/** The kind of the source */
+		private final int fKind;
+
+		/** The time stamp when the source has last been checked */
+		private long fChecked;
+
+		/** The length of the source */
+		private long fLength;
+
+		/** The modification time stamp, or <code>-1</code> if the source does not exist */
+		private long fModified;
+
+		/** The relative path of the folder */
+		private final String fPath;
+
+		/** The proxy time stamps, or <code>null</code> for folders */
+		private long[] fStamps;
+
+		/**
+		 * Creates a new source.
+		 *
+		 * @param kind
+		 *            the kind of the source
+		 * @param path
+		 *            the relative path of the folder of the source
+		 */
+		private Source(final int kind, final String path) {
+			fKind= kind;
+			fPath= path;
+		}
+
+		/**
+		 * Is the source possibly modified in the same file system time stamp
+		 * granularity as it has been checked?
+		 *
+		 * @return <code>true</code> if the source must be checked again
+		 */
+		private boolean isRacy() {
+			return fModified >= 0 && fModified >= fChecked - RACY_INTERVAL;
+		}
+	}
+
+	/** The source kind of folders */
+	private static final int KIND_FOLDER= 1;
+
+	/** The source kind of index files */
+	private static final int KIND_INDEX= 2;
+
+	/** The log file magic number */
+	private static final int LOG_MAGIC= 0x52484958;
+
+	/** The log file format version */
+	private static final int LOG_VERSION= 1;
+
+	/** The encoding of strings in the log */
+	private static final String LOG_ENCODING= "UTF-8"; //$NON-NLS-1$
+
+	/** The extension of the log files */
+	private static final String LOG_EXTENSION= ".log"; //$NON-NLS-1$
+
+	/** The maximal number of bytes read to determine the history store of a log */
+	private static final int LOG_HEADER_SIZE= 8192;
+
+	/** The minimal size of a source record in the log */
+	private static final int LOG_MIN_RECORD_SIZE= 29;
+
+	/** The minimal size of a refactoring entry of an index file record in the log */
+	private static final int LOG_MIN_ENTRY_SIZE= 12;
+
+	/** The minimal number of records before a log is compacted */
+	private static final int LOG_MIN_RECORDS= 64;
+
+	/** Maximal number of cached indexes */
+	private static final int MAX_INDEXES= 16;
+
+	/**
+	 * The coarsest time stamp granularity of supported file systems. A source
+	 * which has been modified within this interval before it has been checked
+	 * may have been modified again without a change of its time stamp.
+	 */
+	private static final long RACY_INTERVAL= 2000;
+
+	/** The modification time stamp of sources which must be scanned */
+	private static final long UNKNOWN_MODIFIED= -2;
+
+	/**
+	 * The index cache (element type:
+	 * <code>&lt;IFileStore, RefactoringHistoryIndex&gt;</code>)
+	 */
+	private static final Map fgIndexes= new LinkedHashMap(MAX_INDEXES, 0.75f, true) {
+
+		private static final long serialVersionUID= 1L;
+
+		protected final boolean removeEldestEntry(final Map.Entry entry) {
+			return size() > MAX_INDEXES;
+		}
+	};
+
+	/** Have the logs of deleted history stores already been deleted? */
+	private static boolean fgLogsPruned= false;
+
+	/**
+	 * Removes the index of the specified refactoring history store from the
+	 * index cache. The index is read from its log when it is requested again.
+	 *
+	 * @param store
+	 *            the refactoring history store
+	 */
+	public static void clearIndex(final IFileStore store) {
+		synchronized (fgIndexes) {
+			fgIndexes.remove(store);
+		}
+	}
+
+	/**
+	 * Deletes the index of the specified refactoring history store, including
+	 * its log.
+	 *
+	 * @param store
+	 *            the refactoring history store
+	 */
+	public static void deleteIndex(final IFileStore store) {
+		synchronized (fgIndexes) {
+			fgIndexes.remove(store);
+			try {
+				getLogStore(store).delete(EFS.NONE, null);
+			} catch (CoreException exception) {
+				RefactoringCorePlugin.log(exception);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the specified refactoring history store.
+	 *
+	 * @param store
+	 *            the refactoring history store
+	 * @return the index
+	 */
+	public static RefactoringHistoryIndex getIndex(final IFileStore store) {
+		synchronized (fgIndexes) {
+			if (!fgLogsPruned) {
+				fgLogsPruned= true;
+				pruneLogs();
+			}
+			RefactoringHistoryIndex index= (RefactoringHistoryIndex) fgIndexes.get(store);
+			if (index == null) {
+				index= new RefactoringHistoryIndex(store);
+				fgIndexes.put(store, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Returns the relative path of the specified child.
+	 *
+	 * @param path
+	 *            the relative path of the parent folder
+	 * @param name
+	 *            the name of the child
+	 * @return the relative path of the child
+	 */
+	private static String getChildPath(final String path, final String name) {
+		return path.length() == 0 ? name : path + '/' + name;
+	}
+
+	/**
+	 * Returns the log file store of the specified refactoring history store.
+	 *
+	 * @param store
+	 *            the refactoring history store
+	 * @return the log file store
+	 */
+	private static IFileStore getLogStore(final IFileStore store) {
+		final String name= Integer.toHexString(store.toURI().toString().hashCode()) + LOG_EXTENSION;
+		return EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_INDEX_FOLDER).getChild(name);
+	}
+
+	/**
+	 * Returns the modification time stamp of the specified file information.
+	 *
+	 * @param info
+	 *            the file information
+	 * @param directory
+	 *            <code>true</code> if the source is a folder,
+	 *            <code>false</code> if it is a file
+	 * @return the modification time stamp, or <code>-1</code> if the source
+	 *         does not exist
+	 */
+	private static long getModified(final IFileInfo info, final boolean directory) {
+		if (info.exists() && info.isDirectory() == directory)
+			return info.getLastModified();
+		return -1;
+	}
+
+	/**
+	 * Deletes the logs whose refactoring history store does not exist
+	 * anymore.
+	 */
+	private static void pruneLogs() {
+		final IFileStore folder= EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_INDEX_FOLDER);
+		IFileStore[] logs= null;
+		try {
+			logs= folder.childStores(EFS.NONE, null);
+		} catch (CoreException exception) {
+			return;
+		}
+		for (int index= 0; index < logs.length; index++) {
+			if (!logs[index].getName().endsWith(LOG_EXTENSION))
+				continue;
+			DataInputStream input= null;
+			try {
+				input= readLog(logs[index], logs[index].fetchInfo(), LOG_HEADER_SIZE);
+				if (input.readInt() != LOG_MAGIC || input.readInt() != LOG_VERSION)
+					continue;
+				final String uri= readString(input);
+				input.close();
+				input= null;
+				if (!EFS.getStore(new URI(uri)).fetchInfo().exists())
+					logs[index].delete(EFS.NONE, null);
+			} catch (IOException exception) {
+				// Damaged logs are rebuilt when they are read
+			} catch (URISyntaxException exception) {
+				// Do nothing
+			} catch (CoreException exception) {
+				// Do nothing
+			} finally {
+				if (input != null) {
+					try {
+						input.close();
+					} catch (IOException exception) {
+						// Do nothing
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the specified log into memory.
+	 *
+	 * @param store
+	 *            the log file store
+	 * @param info
+	 *            the file information of the log
+	 * @param limit
+	 *            the maximal number of bytes to read
+	 * @return the input to read the log from
+	 * @throws CoreException
+	 *             if the log cannot be opened
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static DataInputStream readLog(final IFileStore store, final IFileInfo info, final long limit) throws CoreException, IOException {
+		final long length= Math.min(info.getLength(), limit);
+		if (length < 0 || length > Integer.MAX_VALUE)
+			throw new IOException();
+		final byte[] bytes= new byte[(int) length];
+		final DataInputStream input= new DataInputStream(store.openInputStream(EFS.NONE, null));
+		try {
+			input.readFully(bytes);
+		} finally {
+			input.close();
+		}
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Reads a string from the log.
+	 *
+	 * @param input
+	 *            the input to read from, which knows the number of remaining bytes
+	 * @return the string
+	 * @throws IOException
+	 *             if an input/output error occurs, or if the length of the
+	 *             string exceeds the remaining log
+	 */
+	private static String readString(final DataInputStream input) throws IOException {
+		final int length= input.readInt();
+		if (length < 0 || length > input.available())
+			throw new IOException();
+		final byte[] bytes= new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, LOG_ENCODING);
+	}
+
+	/**
+	 * Writes a record of the specified source to the log.
+	 *
+	 * @param output
+	 *            the output to write to
+	 * @param source
+	 *            the source
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeSource(final DataOutputStream output, final Source source) throws IOException {
+		output.writeByte(source.fKind);
+		writeString(output, source.fPath);
+		output.writeLong(source.fModified);
+		output.writeLong(source.fLength);
+		output.writeLong(source.fChecked);
+		if (source.fKind == KIND_INDEX) {
+			final int count= source.fStamps != null ? source.fStamps.length : 0;
+			output.writeInt(count);
+			for (int index= 0; index < count; index++) {
+				output.writeLong(source.fStamps[index]);
+				writeString(output, source.fDescriptions[index]);
+			}
+		}
+	}
+
+	/**
+	 * Writes a string to the log.
+	 *
+	 * @param output
+	 *            the output to write to
+	 * @param string
+	 *            the string
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeString(final DataOutputStream output, final String string) throws IOException {
+		final byte[] bytes= string.getBytes(LOG_ENCODING);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/** The folders of the history store (element type: <code>&lt;String, Source&gt;</code>) */
+	private final Map fFolders= new HashMap();
+
+	/** The history store */
+	private final IFileStore fHistoryStore;
+
+	/** The index files of the history store, by folder path (element type: <code>&lt;String, Source&gt;</code>) */
+	private final Map fIndexes= new HashMap();
+
+	/** Has the log already been read? */
+	private boolean fLoaded= false;
+
+	/** The number of records in the log */
+	private int fLogRecords= 0;
+
+	/** The log file store, or <code>null</code> if the log cannot be written */
+	private IFileStore fLogStore;
+
+	/** Must the log be rewritten? */
+	private boolean fRewrite= true;
+
+	/** The sorted descriptions, or <code>null</code> if they must be sorted again */
+	private String[] fSortedDescriptions= null;
+
+	/** The sorted time stamps, or <code>null</code> if they must be sorted again */
+	private long[] fSortedStamps= null;
+
+	/**
+	 * Creates a new refactoring history index.
+	 *
+	 * @param store
+	 *            the history store
+	 */
+	private RefactoringHistoryIndex(final IFileStore store) {
+		fHistoryStore= store;
+		fLogStore= getLogStore(store);
+	}
+
+	/**
+	 * Adds the specified source to the index and records the change.
+	 *
+	 * @param source
+	 *            the source
+	 * @param changes
+	 *            the list of changed sources
+	 */
+	private void addSource(final Source source, final List changes) {
+		final Map map= source.fKind == KIND_FOLDER ? fFolders : fIndexes;
+		if (source.fModified == -1 && (source.fKind != KIND_FOLDER || source.fPath.length() > 0))
+			map.remove(source.fPath);
+		else
+			map.put(source.fPath, source);
+		if (source.fKind == KIND_INDEX)
+			fSortedStamps= null;
+		changes.add(source);
+	}
+
+	/**
+	 * Returns the number of records in the log, including outdated ones.
+	 *
+	 * @return the number of records
+	 */
+	public synchronized int getLogRecords() {
+		return fLogRecords;
+	}
+
+	/**
+	 * Returns the log file store.
+	 *
+	 * @return the log file store, or <code>null</code> if the log cannot be
+	 *         written
+	 */
+	public synchronized IFileStore getLogStore() {
+		return fLogStore;
+	}
+
+	/**
+	 * Reads the index from the log.
+	 */
+	private void load() {
+		fFolders.clear();
+		fIndexes.clear();
+		fLogRecords= 0;
+		fRewrite= true;
+		if (fLogStore == null)
+			return;
+		DataInputStream input= null;
+		try {
+			final IFileInfo info= fLogStore.fetchInfo();
+			if (!info.exists())
+				return;
+			input= readLog(fLogStore, info, Long.MAX_VALUE);
+			if (input.readInt() != LOG_MAGIC || input.readInt() != LOG_VERSION || !fHistoryStore.toURI().toString().equals(readString(input)))
+				return;
+			final List changes= new ArrayList();
+			for (int kind= input.read(); kind != -1; kind= input.read()) {
+				if ((kind != KIND_FOLDER && kind != KIND_INDEX) || input.available() < LOG_MIN_RECORD_SIZE - 1)
+					throw new IOException();
+				final Source source= new Source(kind, readString(input));
+				source.fModified= input.readLong();
+				source.fLength= input.readLong();
+				source.fChecked= input.readLong();
+				if (kind == KIND_INDEX) {
+					final int count= input.readInt();
+					if (count < 0 || count > input.available() / LOG_MIN_ENTRY_SIZE)
+						throw new IOException();
+					source.fStamps= new long[count];
+					source.fDescriptions= new String[count];
+					for (int index= 0; index < count; index++) {
+						source.fStamps[index]= input.readLong();
+						source.fDescriptions[index]= readString(input);
+					}
+				}
+				addSource(source, changes);
+			}
+			fLogRecords= changes.size();
+			fRewrite= false;
+		} catch (IOException exception) {
+			// The log is damaged and rebuilt
+			fFolders.clear();
+			fIndexes.clear();
+		} catch (CoreException exception) {
+			// The log is rebuilt
+			fFolders.clear();
+			fIndexes.clear();
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException exception) {
+					// Do nothing
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the refactoring descriptor proxies of the specified index file.
+	 *
+	 * @param path
+	 *            the relative path of the folder of the index file
+	 * @param info
+	 *            the file information of the index file
+	 * @param now
+	 *            the time stamp of the check
+	 * @param changes
+	 *            the list of changed sources
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs
+	 */
+	private void readIndex(final String path, final IFileInfo info, final long now, final List changes, final IProgressMonitor monitor) throws CoreException {
+		final Source source= new Source(KIND_INDEX, path);
+		source.fChecked= now;
+		source.fModified= getModified(info, false);
+		if (source.fModified != -1) {
+			source.fLength= info.getLength();
+			InputStream stream= null;
+			try {
+				stream= fHistoryStore.getFileStore(new Path(path)).getChild(RefactoringHistoryService.NAME_INDEX_FILE).openInputStream(EFS.NONE, monitor);
+				final RefactoringDescriptorProxy[] proxies= RefactoringHistoryManager.readRefactoringDescriptorProxies(stream, null, 0, Long.MAX_VALUE);
+				source.fStamps= new long[proxies.length];
+				source.fDescriptions= new String[proxies.length];
+				for (int index= 0; index < proxies.length; index++) {
+					source.fStamps[index]= proxies[index].getTimeStamp();
+					source.fDescriptions[index]= proxies[index].getDescription();
+				}
+			} catch (IOException exception) {
+				throw RefactoringHistoryManager.createCoreException(exception);
+			} finally {
+				if (stream != null) {
+					try {
+						stream.close();
+					} catch (IOException exception) {
+						// Do nothing
+					}
+				}
+			}
+		}
+		addSource(source, changes);
+	}
+
+	/**
+	 * Reads the refactoring descriptor proxies of the history store.
+	 * <p>
+	 * The refactoring descriptor proxies are added to the collection in no
+	 * particular order.
+	 * </p>
+	 *
+	 * @param project
+	 *            the name of the project, or <code>null</code> for the
+	 *            workspace
+	 * @param collection
+	 *            the collection of proxies to add to
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs
+	 */
+	public synchronized void readRefactoringDescriptorProxies(final String project, final Collection collection, final long start, final long end, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 100);
+			if (!fLoaded) {
+				load();
+				fLoaded= true;
+			}
+			final List changes= new ArrayList();
+			try {
+				synchronize(changes, new SubProgressMonitor(monitor, 90));
+			} finally {
+				writeLog(changes);
+			}
+			if (fSortedStamps == null)
+				sort();
+			int index= Arrays.binarySearch(fSortedStamps, start);
+			if (index < 0)
+				index= -index - 1;
+			while (index > 0 && fSortedStamps[index - 1] == start)
+				index--;
+			for (; index < fSortedStamps.length && fSortedStamps[index] <= end; index++)
+				collection.add(new DefaultRefactoringDescriptorProxy(fSortedDescriptions[index], project, fSortedStamps[index]));
+			monitor.worked(10);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Removes the specified folder and all sources below from the index, and
+	 * records the changes.
+	 *
+	 * @param path
+	 *            the relative path of the folder
+	 * @param now
+	 *            the time stamp of the check
+	 * @param changes
+	 *            the list of changed sources
+	 */
+	private void removeFolder(final String path, final long now, final List changes) {
+		final String prefix= path + '/';
+		final List removed= new ArrayList();
+		for (final Iterator iterator= fFolders.keySet().iterator(); iterator.hasNext();) {
+			final String current= (String) iterator.next();
+			if (current.equals(path) || current.startsWith(prefix) || path.length() == 0) {
+				final Source source= new Source(KIND_FOLDER, current);
+				source.fChecked= now;
+				source.fModified= -1;
+				removed.add(source);
+			}
+		}
+		for (final Iterator iterator= fIndexes.keySet().iterator(); iterator.hasNext();) {
+			final String current= (String) iterator.next();
+			if (current.equals(path) || current.startsWith(prefix) || path.length() == 0) {
+				final Source source= new Source(KIND_INDEX, current);
+				source.fChecked= now;
+				source.fModified= -1;
+				removed.add(source);
+			}
+		}
+		for (final Iterator iterator= removed.iterator(); iterator.hasNext();)
+			addSource((Source) iterator.next(), changes);
+	}
+
+	/**
+	 * Reads the children of the specified folder, and adds the sources which
+	 * are not yet in the index.
+	 *
+	 * @param path
+	 *            the relative path of the folder
+	 * @param info
+	 *            the file information of the folder
+	 * @param now
+	 *            the time stamp of the check
+	 * @param changes
+	 *            the list of changed sources
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs
+	 */
+	private void scanFolder(final String path, final IFileInfo info, final long now, final List changes, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 10);
+			final Source source= new Source(KIND_FOLDER, path);
+			source.fChecked= now;
+			source.fModified= getModified(info, true);
+			addSource(source, changes);
+			final IFileInfo[] infos= fHistoryStore.getFileStore(new Path(path)).childInfos(EFS.NONE, new SubProgressMonitor(monitor, 2, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+			final IProgressMonitor subMonitor= new SubProgressMonitor(monitor, 8);
+			try {
+				subMonitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, infos.length);
+				for (int index= 0; index < infos.length; index++) {
+					if (monitor.isCanceled())
+						throw new OperationCanceledException();
+					final IFileInfo child= infos[index];
+					if (child.isDirectory()) {
+						final String childPath= getChildPath(path, child.getName());
+						if (!fFolders.containsKey(childPath))
+							scanFolder(childPath, child, now, changes, new SubProgressMonitor(subMonitor, 1));
+						else
+							subMonitor.worked(1);
+					} else if (child.exists() && child.getName().equals(RefactoringHistoryService.NAME_INDEX_FILE) && !fIndexes.containsKey(path))
+						readIndex(path, child, now, changes, new SubProgressMonitor(subMonitor, 1));
+					else
+						subMonitor.worked(1);
+				}
+			} finally {
+				subMonitor.done();
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Sorts the refactoring descriptor proxies of all index files by time
+	 * stamp.
+	 */
+	private void sort() {
+		int count= 0;
+		for (final Iterator iterator= fIndexes.values().iterator(); iterator.hasNext();)
+			count+= ((Source) iterator.next()).fStamps.length;
+		final Object[][] entries= new Object[count][];
+		int offset= 0;
+		for (final Iterator iterator= fIndexes.values().iterator(); iterator.hasNext();) {
+			final Source source= (Source) iterator.next();
+			for (int index= 0; index < source.fStamps.length; index++)
+				entries[offset++]= new Object[] { new Long(source.fStamps[index]), source.fDescriptions[index]};
+		}
+		Arrays.sort(entries, new Comparator() {
+
+			public final int compare(final Object first, final Object second) {
+				return ((Long) ((Object[]) first)[0]).compareTo((Long) ((Object[]) second)[0]);
+			}
+		});
+		fSortedStamps= new long[count];
+		fSortedDescriptions= new String[count];
+		for (int index= 0; index < count; index++) {
+			fSortedStamps[index]= ((Long) entries[index][0]).longValue();
+			fSortedDescriptions[index]= (String) entries[index][1];
+		}
+	}
+
+	/**
+	 * Brings the index up to date with the history store.
+	 * <p>
+	 * Folders whose modification time stamp has changed are scanned for new
+	 * children, and index files whose modification time stamp or length has
+	 * changed are read again.
+	 * </p>
+	 *
+	 * @param changes
+	 *            the list of changed sources
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs
+	 */
+	private void synchronize(final List changes, final IProgressMonitor monitor) throws CoreException {
+		try {
+			final long now= System.currentTimeMillis();
+			if (!fFolders.containsKey("")) { //$NON-NLS-1$
+				final Source root= new Source(KIND_FOLDER, ""); //$NON-NLS-1$
+				root.fModified= UNKNOWN_MODIFIED;
+				fFolders.put(root.fPath, root);
+			}
+			final Source[] indexes= (Source[]) fIndexes.values().toArray(new Source[fIndexes.size()]);
+			final Source[] folders= (Source[]) fFolders.values().toArray(new Source[fFolders.size()]);
+			// Parents before children
+			Arrays.sort(folders, new Comparator() {
+
+				public final int compare(final Object first, final Object second) {
+					return ((Source) first).fPath.compareTo(((Source) second).fPath);
+				}
+			});
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, folders.length + indexes.length);
+			for (int index= 0; index < folders.length; index++) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				final Source folder= folders[index];
+				if (fFolders.get(folder.fPath) != folder) {
+					monitor.worked(1);
+					continue;
+				}
+				final IFileInfo info= fHistoryStore.getFileStore(new Path(folder.fPath)).fetchInfo();
+				final long modified= getModified(info, true);
+				if (modified == -1) {
+					if (folder.fModified != -1)
+						removeFolder(folder.fPath, now, changes);
+					monitor.worked(1);
+				} else if (modified != folder.fModified || folder.isRacy())
+					scanFolder(folder.fPath, info, now, changes, new SubProgressMonitor(monitor, 1));
+				else
+					monitor.worked(1);
+			}
+			for (int index= 0; index < indexes.length; index++) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				final Source source= indexes[index];
+				if (fIndexes.get(source.fPath) != source) {
+					monitor.worked(1);
+					continue;
+				}
+				final IFileInfo info= fHistoryStore.getFileStore(new Path(source.fPath)).getChild(RefactoringHistoryService.NAME_INDEX_FILE).fetchInfo();
+				final long modified= getModified(info, false);
+				if (modified != source.fModified || (modified != -1 && info.getLength() != source.fLength) || source.isRacy())
+					readIndex(source.fPath, info, now, changes, new SubProgressMonitor(monitor, 1));
+				else
+					monitor.worked(1);
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Writes the specified changes to the log.
+	 * <p>
+	 * The changes are appended, unless the log must be rewritten or consists
+	 * mostly of outdated records.
+	 * </p>
+	 *
+	 * @param changes
+	 *            the list of changed sources
+	 */
+	private void writeLog(final List changes) {
+		if (fLogStore == null || (changes.isEmpty() && !fRewrite))
+			return;
+		final Source root= (Source) fFolders.get(""); //$NON-NLS-1$
+		if (root != null && root.fModified == -1) {
+			// The history store does not exist anymore
+			if (!changes.isEmpty() || fLogRecords > 0) {
+				try {
+					fLogStore.delete(EFS.NONE, null);
+				} catch (CoreException exception) {
+					RefactoringCorePlugin.log(exception);
+				}
+			}
+			fLogRecords= 0;
+			fRewrite= true;
+			return;
+		}
+		final int live= fFolders.size() + fIndexes.size();
+		final boolean rewrite= fRewrite || fLogRecords + changes.size() > 2 * live + LOG_MIN_RECORDS;
+		OutputStream stream= null;
+		try {
+			final ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+			final DataOutputStream output= new DataOutputStream(bytes);
+			if (rewrite) {
+				output.writeInt(LOG_MAGIC);
+				output.writeInt(LOG_VERSION);
+				writeString(output, fHistoryStore.toURI().toString());
+				for (final Iterator iterator= fFolders.values().iterator(); iterator.hasNext();)
+					writeSource(output, (Source) iterator.next());
+				for (final Iterator iterator= fIndexes.values().iterator(); iterator.hasNext();)
+					writeSource(output, (Source) iterator.next());
+			} else {
+				for (final Iterator iterator= changes.iterator(); iterator.hasNext();)
+					writeSource(output, (Source) iterator.next());
+			}
+			output.flush();
+			if (rewrite)
+				fLogStore.getParent().mkdir(EFS.NONE, null);
+			// Mark the log as damaged until it has been written completely
+			fRewrite= true;
+			stream= fLogStore.openOutputStream(rewrite ? EFS.NONE : EFS.APPEND, null);
+			bytes.writeTo(stream);
+			stream.close();
+			stream= null;
+			fLogRecords= rewrite ? live : fLogRecords + changes.size();
+			fRewrite= false;
+		} catch (IOException exception) {
+			fLogStore= null;
+			RefactoringCorePlugin.log(exception);
+		} catch (CoreException exception) {
+			fLogStore= null;
+			RefactoringCorePlugin.log(exception);
+		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException exception) {
+					// Do nothing
+				}
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -128,6 +128,13 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 	/** The refactoring history index file name */
 	public static final String NAME_INDEX_FILE= "refactorings.index"; //$NON-NLS-1$
 
+	/**
+	 * The folder of the refactoring history index logs
+	 *
+	 * @since 3.8
+	 */
+	public static final String NAME_INDEX_FOLDER= ".index"; //$NON-NLS-1$
+
 	/** The name of the special workspace project */
 	public static final String NAME_WORKSPACE_PROJECT= ".workspace"; //$NON-NLS-1$
 
@@ -534,14 +541,17 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 			if (name.equals(NAME_WORKSPACE_PROJECT)) {
 				final IFileStore metaStore= stateStore.getChild(NAME_HISTORY_FOLDER).getChild(name);
 				metaStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 100));
+				RefactoringHistoryIndex.deleteIndex(metaStore);
 			} else {
 				final URI uri= project.getLocationURI();
 				if (uri != null && project.isAccessible()) {
 					try {
 						final IFileStore metaStore= stateStore.getChild(NAME_HISTORY_FOLDER).getChild(name);
 						metaStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
+						RefactoringHistoryIndex.deleteIndex(metaStore);
 						final IFileStore projectStore= EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER);
 						projectStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
+						RefactoringHistoryIndex.deleteIndex(projectStore);
 					} finally {
 						project.refreshLocal(IResource.DEPTH_INFINITE, new SubProgressMonitor(monitor, 60));
 					}
@@ -898,6 +908,8 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 				if (newStore.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
 					newStore.delete(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
 				oldStore.move(newStore, EFS.OVERWRITE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				RefactoringHistoryIndex.deleteIndex(oldStore);
+				RefactoringHistoryIndex.deleteIndex(newStore);
 			}
 		} catch (CoreException exception) {
 			RefactoringCorePlugin.log(exception);